@@ -0,0 +1,50 @@
+package com.encora.breakable_toy.benchmarks;
+
+import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.service.TaskService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Batch creation through TaskService.createTasks, the path of POST /todoslist
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+public class BulkCreateBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    private int batchSize;
+
+    @Param({"map", "columnar"})
+    private String storage;
+
+    private TaskService service;
+    private List<Task> batch;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    // Every iteration starts from an empty repository so it does not measure an ever growing table
+    @Setup(Level.Iteration)
+    public void setUpService() {
+        service = TaskFixtures.service(TaskFixtures.repository(storage));
+    }
+
+    // Created tasks get their IDs assigned, so each call needs fresh ones
+    @Setup(Level.Invocation)
+    public void setUpBatch() {
+        batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(TaskFixtures.task(random, 0));
+        }
+    }
+
+    @Benchmark
+    public List<Task> createTasks() {
+        return service.createTasks(batch);
+    }
+}
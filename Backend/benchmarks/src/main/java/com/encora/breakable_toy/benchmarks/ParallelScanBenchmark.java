@@ -0,0 +1,65 @@
+package com.encora.breakable_toy.benchmarks;
+
+import com.encora.breakable_toy.metrics.MetricsRegistry;
+import com.encora.breakable_toy.service.TaskQueryEngine;
+import com.encora.breakable_toy.service.TaskService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// getAllTasks requests that have to scan the whole table, run sequentially (parallelism 1) or split over a fork/join
+// pool of the given parallelism whatever the table size, to find the size from which the parallel scan pays off
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+public class ParallelScanBenchmark {
+
+    // Name filter too short for the trigram index, so every task is tested against it
+    private static final String SHORT_NAME = "le";
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    private int size;
+
+    @Param({"1", "2", "4"})
+    private int parallelism;
+
+    @Param({"map", "columnar"})
+    private String storage;
+
+    private ForkJoinPool pool;
+    private TaskService service;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var repository = TaskFixtures.repository(storage);
+        TaskFixtures.populate(repository, size, 0.01);
+        pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        TaskQueryEngine engine = new TaskQueryEngine(repository, metricsRegistry, pool, 0);
+        service = TaskFixtures.service(repository, engine, metricsRegistry);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    // Unsorted, so no index gives the page without testing every undone task
+    @Benchmark
+    public Map<String, Object> unsortedByDone() {
+        return service.getAllTasks(null, null, 1, false, null, null);
+    }
+
+    // Sorted, but the name filter makes the index walk test every task to count the matches
+    @Benchmark
+    public Map<String, Object> sortedByShortName() {
+        return service.getAllTasks("dueDate", null, 1, null, SHORT_NAME, null);
+    }
+}
@@ -0,0 +1,61 @@
+package com.encora.breakable_toy.benchmarks;
+
+import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.service.TaskService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Repeated getAllTasks requests with and without the query cache, and the cost a write pays to invalidate it
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+public class QueryCacheBenchmark {
+
+    // Entries the writes have to check, 0 disables the cache
+    @Param({"0", "1000"})
+    private int cacheSize;
+
+    @Param({"100000"})
+    private int size;
+
+    @Param({"map"})
+    private String storage;
+
+    private TaskService service;
+    private long taskId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var repository = TaskFixtures.repository(storage);
+        TaskFixtures.populate(repository, size, 0.5);
+        service = TaskFixtures.service(repository, cacheSize);
+        Task task = repository.findAll().get(0);
+        taskId = task.getId();
+    }
+
+    // Fill the cache with queries the toggled task never matches, so every write checks a full cache and keeps it
+    @Setup(Level.Iteration)
+    public void fillCache() {
+        for (int i = 1; i < cacheSize; i++) {
+            service.getAllTasks("priority", null, 1, null, "absent " + i, null);
+        }
+    }
+
+    // The same popular query over and over
+    @Benchmark
+    public Map<String, Object> repeatedQuery() {
+        return service.getAllTasks("priority", null, 1, false, null, null);
+    }
+
+    // A write scanning the cached entries for the ones it changes
+    @Benchmark
+    public Task toggleDone() {
+        Task task = service.markAsDone(taskId);
+        return service.markTaskAsUndone(task.getId());
+    }
+}
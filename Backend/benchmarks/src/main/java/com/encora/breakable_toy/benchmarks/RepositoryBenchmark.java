@@ -0,0 +1,66 @@
+package com.encora.breakable_toy.benchmarks;
+
+import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.repository.TaskRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Point reads, point writes and full sorted reads of the TaskRepository
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+public class RepositoryBenchmark {
+
+    @Param({"1000", "100000", "10000000"})
+    private int size;
+
+    @Param({"map", "columnar"})
+    private String storage;
+
+    private TaskRepository repository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        repository = TaskFixtures.repository(storage);
+        TaskFixtures.populate(repository, size, 0.5);
+    }
+
+    @Benchmark
+    public Optional<Task> findById() {
+        return repository.findById(randomId());
+    }
+
+    // Rewrite an existing task with a new priority, which moves it in every sorted index
+    @Benchmark
+    public Task save() {
+        Task task = new Task(repository.findById(randomId()).orElseThrow());
+        task.setPriority((task.getPriority() + 1) % 3);
+        return repository.save(task);
+    }
+
+    @Benchmark
+    public List<Task> findAllSortedByPriority() {
+        return repository.findAllSortedByPriority();
+    }
+
+    @Benchmark
+    public List<Task> findAllSortedByDueDate() {
+        return repository.findAllSortedByDueDate();
+    }
+
+    @Benchmark
+    public List<Task> findAllSortedByPriorityAndDueDate() {
+        return repository.findAllSortedByPriorityAndDueDate();
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, size + 1);
+    }
+}
@@ -0,0 +1,94 @@
+package com.encora.breakable_toy.benchmarks;
+
+import com.encora.breakable_toy.config.CborConfig;
+import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.service.TaskService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Jackson encoding of the getAllTasks response and of a bulk list, and decoding of a task and of a bulk list, in JSON
+// with the mapper Spring Boot configures and in CBOR with the mapper of the binary wire format
+// The size of each encoded payload is reported as the bytes secondary result
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"json", "cbor"})
+    private String format;
+
+    // Size of the payload written by the last invocation
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Payload {
+        public long bytes;
+    }
+
+    private ObjectMapper objectMapper;
+    private ObjectReader listReader;
+    private Map<String, Object> page;
+    private List<Task> list;
+    private Task task;
+    private byte[] taskBytes;
+    private byte[] listBytes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws JsonProcessingException {
+        objectMapper = switch (format) {
+            case "json" -> Jackson2ObjectMapperBuilder.json().build();
+            case "cbor" -> CborConfig.cborMapper();
+            default -> throw new IllegalArgumentException("Unknown format: " + format);
+        };
+        listReader = objectMapper.readerForListOf(Task.class);
+        var repository = TaskFixtures.repository("map");
+        TaskFixtures.populate(repository, 1000, 0.5);
+        TaskService service = TaskFixtures.service(repository);
+        page = service.getAllTasks("priority", null, 1, null, null, null);
+        list = repository.findAll();
+        task = repository.findById(1L).orElseThrow();
+        taskBytes = objectMapper.writeValueAsBytes(task);
+        listBytes = objectMapper.writeValueAsBytes(list);
+    }
+
+    @Benchmark
+    public byte[] writePage(Payload payload) throws JsonProcessingException {
+        return record(payload, objectMapper.writeValueAsBytes(page));
+    }
+
+    @Benchmark
+    public byte[] writeTask(Payload payload) throws JsonProcessingException {
+        return record(payload, objectMapper.writeValueAsBytes(task));
+    }
+
+    // 1000 tasks, as sent to or received from the bulk endpoints
+    @Benchmark
+    public byte[] writeList(Payload payload) throws JsonProcessingException {
+        return record(payload, objectMapper.writeValueAsBytes(list));
+    }
+
+    @Benchmark
+    public Task readTask() throws IOException {
+        return objectMapper.readValue(taskBytes, Task.class);
+    }
+
+    @Benchmark
+    public List<Task> readList() throws IOException {
+        return listReader.readValue(listBytes);
+    }
+
+    private static byte[] record(Payload payload, byte[] bytes) {
+        payload.bytes = bytes.length;
+        return bytes;
+    }
+}
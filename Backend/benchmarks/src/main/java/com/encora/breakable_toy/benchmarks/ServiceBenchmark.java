@@ -0,0 +1,68 @@
+package com.encora.breakable_toy.benchmarks;
+
+import com.encora.breakable_toy.service.TaskService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Filtered and paged getAllTasks requests, as the controller issues them
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+public class ServiceBenchmark {
+
+    @Param({"1000", "100000", "10000000"})
+    private int size;
+
+    // Fraction of the tasks matching the done filter, and independently the name filter
+    @Param({"0.01", "0.5"})
+    private double selectivity;
+
+    // Sort parameter of the request, none for ID order
+    @Param({"none", "priority", "dueDate"})
+    private String sortBy;
+
+    @Param({"map", "columnar"})
+    private String storage;
+
+    private TaskService service;
+    private String sort;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var repository = TaskFixtures.repository(storage);
+        TaskFixtures.populate(repository, size, selectivity);
+        service = TaskFixtures.service(repository);
+        sort = "none".equals(sortBy) ? null : sortBy;
+    }
+
+    @Benchmark
+    public Map<String, Object> firstPage() {
+        return service.getAllTasks(sort, null, 1, null, null, null);
+    }
+
+    @Benchmark
+    public Map<String, Object> filteredByDone() {
+        return service.getAllTasks(sort, null, 1, true, null, null);
+    }
+
+    @Benchmark
+    public Map<String, Object> filteredByName() {
+        return service.getAllTasks(sort, null, 1, null, TaskFixtures.NEEDLE, null);
+    }
+
+    @Benchmark
+    public Map<String, Object> filteredByDoneAndPriority() {
+        return service.getAllTasks(sort, null, 1, true, null, 2);
+    }
+
+    // Keyset pagination from the start, the cost does not depend on how deep the page is
+    @Benchmark
+    public Map<String, Object> firstCursorPage() {
+        return service.getAllTasks(sort, null, 1, true, null, null, "");
+    }
+}
@@ -0,0 +1,116 @@
+package com.encora.breakable_toy.benchmarks;
+
+import com.encora.breakable_toy.persistence.SnapshotStore;
+import com.encora.breakable_toy.repository.TaskRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Time from launching the application to its first successful GET /api/v1/todos, for the regular jar and for the
+// fast-start build, with and without its class data sharing archive, starting empty or from a snapshot image
+// Needs both builds: mvn package and mvn -Pfast-start package in the backend directory (-Dbackend.dir, .. by default)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StartupBenchmark {
+
+    private static final String JAR = "breakable-toy-0.0.1-SNAPSHOT.jar";
+
+    // jar: the repackaged jar, aot: the fast-start jar without its archive, aot-cds: the fast-start jar with it
+    @Param({"jar", "aot", "aot-cds"})
+    private String launch;
+
+    // Tasks of the snapshot image the application starts from, 0 for no image
+    @Param({"0", "100000"})
+    private int tasks;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private Path backend;
+    private Path imageDirectory;
+    private List<String> command;
+    private HttpRequest request;
+    private Process process;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        backend = Path.of(System.getProperty("backend.dir", "..")).toAbsolutePath().normalize();
+        Path fastStart = backend.resolve("target/fast-start");
+        command = new ArrayList<>(List.of(Path.of(System.getProperty("java.home"), "bin", "java").toString()));
+        switch (launch) {
+            case "jar" -> command.addAll(List.of("-jar", existing(backend.resolve("target").resolve(JAR))));
+            case "aot" -> command.addAll(List.of("-Dspring.aot.enabled=true", "-jar",
+                    existing(fastStart.resolve(JAR))));
+            case "aot-cds" -> command.addAll(List.of(
+                    "-XX:SharedArchiveFile=" + existing(fastStart.resolve("application.jsa")),
+                    "-Dspring.aot.enabled=true", "-jar", existing(fastStart.resolve(JAR))));
+            default -> throw new IllegalArgumentException("Unknown launch: " + launch);
+        }
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        command.add("--server.port=" + port);
+        if (tasks > 0) {
+            imageDirectory = Files.createTempDirectory("startup-image");
+            TaskRepository repository = TaskFixtures.repository("map");
+            TaskFixtures.populate(repository, tasks, 0.5);
+            Path image = new SnapshotStore(imageDirectory).write(0, repository.getNextId(), repository::forEach);
+            command.add("--todo.persistence.snapshot-image=" + image);
+        }
+        request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/v1/todos")).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (imageDirectory != null) {
+            WalFiles.delete(imageDirectory);
+        }
+    }
+
+    @Benchmark
+    public int firstRequest() throws IOException, InterruptedException {
+        process = new ProcessBuilder(command).redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        while (true) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("The application exited with status " + process.exitValue());
+            }
+            try {
+                HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == 200) {
+                    return response.statusCode();
+                }
+            } catch (ConnectException e) {
+                // Not listening yet
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void stopApplication() throws InterruptedException {
+        process.destroy();
+        process.waitFor();
+    }
+
+    private static String existing(Path path) {
+        if (!Files.exists(path)) {
+            throw new IllegalStateException(path + " is missing, build the backend with and without -Pfast-start");
+        }
+        return path.toString();
+    }
+}
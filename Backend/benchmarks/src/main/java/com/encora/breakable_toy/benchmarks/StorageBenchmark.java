@@ -0,0 +1,58 @@
+package com.encora.breakable_toy.benchmarks;
+
+import com.encora.breakable_toy.repository.TaskRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Full scans of the task storage, comparing the map and the columnar storage
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+public class StorageBenchmark {
+
+    @Param({"1000", "100000", "10000000"})
+    private int size;
+
+    // Fraction of the tasks that are done
+    @Param({"0.01", "0.5"})
+    private double selectivity;
+
+    @Param({"map", "columnar"})
+    private String storage;
+
+    private TaskRepository repository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        repository = TaskFixtures.repository(storage);
+        TaskFixtures.populate(repository, size, selectivity);
+    }
+
+    // Visit every task
+    @Benchmark
+    public long scanAll() {
+        long[] count = new long[1];
+        repository.forEach(task -> count[0]++);
+        return count[0];
+    }
+
+    // Visit the done tasks, the columnar storage rules the others out on its bitset
+    @Benchmark
+    public long scanDone() {
+        long[] count = new long[1];
+        repository.forEach(true, null, task -> count[0]++);
+        return count[0];
+    }
+
+    // Visit the done tasks of one priority
+    @Benchmark
+    public long scanDoneWithPriority() {
+        long[] count = new long[1];
+        repository.forEach(true, 2, task -> count[0]++);
+        return count[0];
+    }
+}
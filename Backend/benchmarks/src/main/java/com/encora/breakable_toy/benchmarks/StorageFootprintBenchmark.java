@@ -0,0 +1,58 @@
+package com.encora.breakable_toy.benchmarks;
+
+import com.encora.breakable_toy.repository.TaskRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.TimeUnit;
+
+// Heap retained per task by a populated repository, comparing the map and the columnar storage
+// The footprint is reported as the bytesPerTask secondary result, the primary result is the time to load the tasks
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+public class StorageFootprintBenchmark {
+
+    @Param({"100000", "1000000", "10000000"})
+    private int size;
+
+    @Param({"map", "columnar"})
+    private String storage;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+        public long bytesPerTask;
+    }
+
+    private TaskRepository repository;
+    private long baseline;
+
+    // The previous repository is dropped before measuring the baseline
+    @Setup(Level.Invocation)
+    public void setUp() {
+        repository = null;
+        baseline = usedHeap();
+    }
+
+    @Benchmark
+    public TaskRepository load(Footprint footprint) {
+        repository = TaskFixtures.repository(storage);
+        TaskFixtures.populate(repository, size, 0.5);
+        footprint.bytesPerTask = (usedHeap() - baseline) / size;
+        return repository;
+    }
+
+    // Heap in use once the garbage is collected
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
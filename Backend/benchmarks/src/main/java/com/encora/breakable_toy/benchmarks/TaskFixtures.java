@@ -0,0 +1,88 @@
+package com.encora.breakable_toy.benchmarks;
+
+import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.metrics.MetricsRegistry;
+import com.encora.breakable_toy.partition.TaskPartitionFactory;
+import com.encora.breakable_toy.repository.TaskChangeLog;
+import com.encora.breakable_toy.repository.TaskRepository;
+import com.encora.breakable_toy.service.TaskQueryCache;
+import com.encora.breakable_toy.service.TaskQueryEngine;
+import com.encora.breakable_toy.service.TaskService;
+import com.encora.breakable_toy.utils.AverageTime;
+import com.encora.breakable_toy.utils.CompletionAnalytics;
+import com.encora.breakable_toy.utils.TaskValidator;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Deterministic datasets and wiring shared by the benchmarks
+final class TaskFixtures {
+
+    // Substring carried by the names of the tasks selected by the name filter
+    static final String NEEDLE = "needle";
+
+    private static final int BATCH_SIZE = 10_000;
+    private static final LocalDateTime BASE_DATE = LocalDateTime.of(2030, 1, 1, 0, 0);
+
+    private TaskFixtures() {
+    }
+
+    // Empty repository on the given storage type (map or columnar)
+    static TaskRepository repository(String storage) {
+        return new TaskRepository(TaskPartitionFactory.storage(storage), new TaskChangeLog(10_000), new MetricsRegistry());
+    }
+
+    // Service wired the way the application context wires it, without the query cache so every request runs its query
+    static TaskService service(TaskRepository repository) {
+        return service(repository, 0);
+    }
+
+    // Service wired the way the application context wires it, with a query cache of the given size
+    static TaskService service(TaskRepository repository, int cacheSize) {
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        return service(repository, new TaskQueryEngine(repository, metricsRegistry), cacheSize, metricsRegistry);
+    }
+
+    // Service running its queries on the given engine, without the query cache
+    static TaskService service(TaskRepository repository, TaskQueryEngine engine, MetricsRegistry metricsRegistry) {
+        return service(repository, engine, 0, metricsRegistry);
+    }
+
+    private static TaskService service(TaskRepository repository, TaskQueryEngine engine, int cacheSize,
+                                       MetricsRegistry metricsRegistry) {
+        return new TaskService(repository, new TaskValidator(), new AverageTime(), new CompletionAnalytics(), engine,
+                new TaskQueryCache(cacheSize, metricsRegistry), metricsRegistry);
+    }
+
+    // Fill a repository with size tasks, a selectivity fraction of them being done and another (independent) fraction
+    // carrying the needle in their name
+    static void populate(TaskRepository repository, int size, double selectivity) {
+        SplittableRandom random = new SplittableRandom(42);
+        List<Task> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < size; i++) {
+            batch.add(task(random, selectivity));
+            if (batch.size() == BATCH_SIZE) {
+                repository.saveAll(batch);
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+        repository.saveAll(batch);
+    }
+
+    // New task without an ID, as a client would send it (but possibly done)
+    static Task task(SplittableRandom random, double selectivity) {
+        Task task = new Task();
+        task.setName((random.nextDouble() < selectivity ? NEEDLE : "task") + " " + random.nextInt(1_000_000));
+        task.setPriority(random.nextInt(3));
+        // A fifth of the tasks have no due date
+        if (random.nextInt(5) != 0) {
+            task.setDueDate(BASE_DATE.plusMinutes(random.nextInt(525_600)));
+        }
+        if (random.nextDouble() < selectivity) {
+            task.setDone(true);
+        }
+        return task;
+    }
+}
@@ -0,0 +1,54 @@
+package com.encora.breakable_toy.benchmarks;
+
+import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.persistence.FsyncPolicy;
+import com.encora.breakable_toy.persistence.TaskCodec;
+import com.encora.breakable_toy.persistence.WriteAheadLog;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Append and commit of single task records to the write-ahead log, per fsync policy
+// Run with -t to see the group commit amortize the fsyncs across concurrent writers
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WalBenchmark {
+
+    @Param({"ALWAYS", "INTERVAL", "NEVER"})
+    private FsyncPolicy fsyncPolicy;
+
+    private Path directory;
+    private WriteAheadLog writeAheadLog;
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("wal-benchmark");
+        writeAheadLog = new WriteAheadLog(directory, fsyncPolicy, 100);
+        writeAheadLog.open(0);
+        Task task = TaskFixtures.task(new SplittableRandom(42), 0.5);
+        task.setId(1L);
+        payload = TaskCodec.encode(task);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        writeAheadLog.close();
+        WalFiles.delete(directory);
+    }
+
+    @Benchmark
+    public long appendAndCommit() {
+        long position = writeAheadLog.append(WriteAheadLog.SAVE, payload);
+        writeAheadLog.commit(position, position);
+        return position;
+    }
+}
@@ -0,0 +1,74 @@
+package com.encora.breakable_toy.benchmarks;
+
+import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.persistence.FsyncPolicy;
+import com.encora.breakable_toy.persistence.TaskCodec;
+import com.encora.breakable_toy.persistence.WriteAheadLog;
+import com.encora.breakable_toy.repository.TaskRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Startup recovery: replay a write-ahead log of task records into an empty repository, then build its indexes
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+public class WalRecoveryBenchmark {
+
+    private static final int BATCH_SIZE = 10_000;
+
+    @Param({"100000", "1000000"})
+    private int records;
+
+    @Param({"map", "columnar"})
+    private String storage;
+
+    private Path directory;
+    private TaskRepository repository;
+
+    @Setup(Level.Trial)
+    public void writeLog() throws IOException {
+        directory = Files.createTempDirectory("wal-recovery-benchmark");
+        WriteAheadLog writeAheadLog = new WriteAheadLog(directory, FsyncPolicy.NEVER, 100);
+        writeAheadLog.open(0);
+        SplittableRandom random = new SplittableRandom(42);
+        for (int first = 0; first < records; first += BATCH_SIZE) {
+            List<byte[]> payloads = new ArrayList<>(BATCH_SIZE);
+            for (int i = first; i < Math.min(first + BATCH_SIZE, records); i++) {
+                Task task = TaskFixtures.task(random, 0.5);
+                task.setId(i + 1L);
+                payloads.add(TaskCodec.encode(task));
+            }
+            long last = writeAheadLog.appendAll(WriteAheadLog.SAVE, payloads);
+            writeAheadLog.commit(last - payloads.size() + 1, last);
+        }
+        writeAheadLog.close();
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpRepository() {
+        repository = TaskFixtures.repository(storage);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteLog() throws IOException {
+        WalFiles.delete(directory);
+    }
+
+    @Benchmark
+    public TaskRepository replay() throws IOException {
+        new WriteAheadLog(directory, FsyncPolicy.NEVER, 100)
+                .replay((type, position, payload) -> repository.restore(TaskCodec.decode(payload)));
+        repository.rebuildIndexes();
+        return repository;
+    }
+}
@@ -0,0 +1,62 @@
+package com.encora.breakable_toy.loadtest;
+
+import com.encora.breakable_toy.utils.Histogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latencies and response statuses of the measured requests of one operation
+public class EndpointStats {
+
+    private final Histogram latencies = new Histogram();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder errors = new LongAdder();
+    // Requests by response status, 0 for requests that got no response
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+    public void record(long latencyNanos, int status) {
+        latencies.record(latencyNanos);
+        maxNanos.accumulate(latencyNanos);
+        if (status < 200 || status >= 300) {
+            errors.increment();
+        }
+        statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+    }
+
+    // Add the requests of another operation, for the totals
+    public void merge(EndpointStats other) {
+        latencies.merge(other.latencies);
+        maxNanos.accumulate(other.maxNanos.get());
+        errors.add(other.errors.sum());
+        other.statuses.forEach((status, count) -> statuses.computeIfAbsent(status, s -> new LongAdder())
+                .add(count.sum()));
+    }
+
+    public long count() {
+        return latencies.count();
+    }
+
+    public long errors() {
+        return errors.sum();
+    }
+
+    // Latency at the given percentile, never above the largest one recorded although buckets are estimated by their
+    // middle
+    public long percentileNanos(double percentile) {
+        return Math.min(latencies.percentile(percentile), maxNanos());
+    }
+
+    public long maxNanos() {
+        return maxNanos.get();
+    }
+
+    // Requests by response status, in status order
+    public Map<Integer, Long> statuses() {
+        Map<Integer, Long> counts = new TreeMap<>();
+        statuses.forEach((status, count) -> counts.put(status, count.sum()));
+        return counts;
+    }
+}
@@ -0,0 +1,133 @@
+package com.encora.breakable_toy.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+
+// Command line options of the load test, given as --name=value; every other argument is passed to the application
+public class LoadOptions {
+
+    // open sends at a fixed rate whatever the response times, closed sends the next request once a client got its
+    // previous response
+    public enum Mode {OPEN, CLOSED}
+
+    private Mode mode = Mode.OPEN;
+    private int clients = 32;
+    private int rate = 500;
+    private Duration duration = Duration.ofSeconds(30);
+    private Duration warmup = Duration.ofSeconds(10);
+    private Duration thinkTime = Duration.ZERO;
+    private int seedTasks = 10_000;
+    private final EnumMap<Operation, Integer> mix = new EnumMap<>(Operation.class);
+    private Path report = Path.of("loadtest-report.json");
+    private String url;
+    private final List<String> applicationArgs = new ArrayList<>();
+
+    public LoadOptions() {
+        mix.put(Operation.LIST, 40);
+        mix.put(Operation.FILTER, 20);
+        mix.put(Operation.CREATE, 20);
+        mix.put(Operation.DONE, 10);
+        mix.put(Operation.DELETE, 10);
+    }
+
+    public static LoadOptions parse(String[] args) {
+        LoadOptions options = new LoadOptions();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            String name = arg.startsWith("--") && equals > 2 ? arg.substring(2, equals) : "";
+            String value = equals > 0 ? arg.substring(equals + 1) : "";
+            switch (name) {
+                case "mode" -> options.mode = Mode.valueOf(value.toUpperCase());
+                case "clients" -> options.clients = positive(name, Integer.parseInt(value));
+                case "rate" -> options.rate = positive(name, Integer.parseInt(value));
+                case "duration" -> options.duration = Duration.parse(value);
+                case "warmup" -> options.warmup = Duration.parse(value);
+                case "think-time" -> options.thinkTime = Duration.parse(value);
+                case "seed-tasks" -> options.seedTasks = Integer.parseInt(value);
+                case "mix" -> options.parseMix(value);
+                case "report" -> options.report = Path.of(value);
+                case "url" -> options.url = value;
+                default -> options.applicationArgs.add(arg);
+            }
+        }
+        if (options.seedTasks < 1) {
+            throw new IllegalArgumentException("seed-tasks must be positive");
+        }
+        if (options.duration.compareTo(options.warmup) <= 0) {
+            throw new IllegalArgumentException("duration must be longer than warmup");
+        }
+        return options;
+    }
+
+    // Weights such as list=40,create=20; the operations left out are not sent
+    private void parseMix(String value) {
+        mix.clear();
+        for (String entry : value.split(",")) {
+            String[] parts = entry.split("=", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("mix entries must be operation=weight: " + entry);
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("mix weights cannot be negative: " + entry);
+            }
+            mix.put(Operation.parse(parts[0].trim()), weight);
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("mix must have a positive weight");
+        }
+    }
+
+    private static int positive(String name, int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException(name + " must be positive");
+        }
+        return value;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getClients() {
+        return clients;
+    }
+
+    public int getRate() {
+        return rate;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    public Duration getWarmup() {
+        return warmup;
+    }
+
+    public Duration getThinkTime() {
+        return thinkTime;
+    }
+
+    public int getSeedTasks() {
+        return seedTasks;
+    }
+
+    public Map<Operation, Integer> getMix() {
+        return Collections.unmodifiableMap(mix);
+    }
+
+    public Path getReport() {
+        return report;
+    }
+
+    // Base URL of an already running server, or null to boot the application in this JVM
+    public String getUrl() {
+        return url;
+    }
+
+    public List<String> getApplicationArgs() {
+        return applicationArgs;
+    }
+}
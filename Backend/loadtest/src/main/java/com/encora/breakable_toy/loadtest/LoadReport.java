@@ -0,0 +1,105 @@
+package com.encora.breakable_toy.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Results of a run: the options it ran with, then the requests, errors, throughput and latency percentiles of each
+// operation and of all of them. The JSON file has a stable key order and no timestamp, so two runs diff line by line
+public class LoadReport {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] PERCENTILE_NAMES = {"p50Ms", "p90Ms", "p99Ms", "p999Ms"};
+
+    private final LoadOptions options;
+    private final Map<Operation, EndpointStats> stats;
+    private final long unsent;
+    private final EndpointStats total = new EndpointStats();
+    private final double measuredSeconds;
+
+    public LoadReport(LoadOptions options, Map<Operation, EndpointStats> stats, long unsent) {
+        this.options = options;
+        this.stats = stats;
+        this.unsent = unsent;
+        stats.values().forEach(total::merge);
+        this.measuredSeconds = options.getDuration().minus(options.getWarmup()).toNanos() / 1e9;
+    }
+
+    // The report as the JSON document written to the report file
+    public Map<String, Object> toMap() {
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("mode", options.getMode().name().toLowerCase());
+        config.put("clients", options.getClients());
+        if (options.getMode() == LoadOptions.Mode.OPEN) {
+            config.put("rate", options.getRate());
+        } else {
+            config.put("thinkTime", options.getThinkTime().toString());
+        }
+        config.put("duration", options.getDuration().toString());
+        config.put("warmup", options.getWarmup().toString());
+        config.put("seedTasks", options.getSeedTasks());
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        options.getMix().forEach((operation, weight) -> mix.put(operation.label(), weight));
+        config.put("mix", mix);
+        config.put("applicationArgs", options.getApplicationArgs());
+
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        stats.forEach((operation, endpointStats) -> endpoints.put(operation.label(), endpoint(endpointStats)));
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("config", config);
+        report.put("latencyFrom", options.getMode() == LoadOptions.Mode.OPEN ? "scheduled time" : "send time");
+        report.put("unsent", unsent);
+        report.put("total", endpoint(total));
+        report.put("endpoints", endpoints);
+        return report;
+    }
+
+    public void write(Path path) throws IOException {
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(path.toFile(), toMap());
+    }
+
+    // Table of the operations and the total, latencies in milliseconds
+    public void print(PrintStream out) {
+        out.printf("%-8s %9s %7s %9s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50", "p90", "p99", "p99.9", "max");
+        stats.forEach((operation, endpointStats) -> printRow(out, operation.label(), endpointStats));
+        printRow(out, "total", total);
+        if (unsent > 0) {
+            out.printf("%d scheduled requests were never sent, the server could not keep up with the rate%n", unsent);
+        }
+    }
+
+    private void printRow(PrintStream out, String name, EndpointStats endpointStats) {
+        out.printf("%-8s %9d %7d %9.1f", name, endpointStats.count(), endpointStats.errors(),
+                endpointStats.count() / measuredSeconds);
+        for (double percentile : PERCENTILES) {
+            out.printf(" %9.3f", millis(endpointStats.percentileNanos(percentile)));
+        }
+        out.printf(" %9.3f%n", millis(endpointStats.maxNanos()));
+    }
+
+    private Map<String, Object> endpoint(EndpointStats endpointStats) {
+        Map<String, Object> endpoint = new LinkedHashMap<>();
+        endpoint.put("requests", endpointStats.count());
+        endpoint.put("errors", endpointStats.errors());
+        endpoint.put("throughput", Math.round(endpointStats.count() / measuredSeconds * 10) / 10.0);
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            endpoint.put(PERCENTILE_NAMES[i], millis(endpointStats.percentileNanos(PERCENTILES[i])));
+        }
+        endpoint.put("maxMs", millis(endpointStats.maxNanos()));
+        Map<String, Long> statuses = new LinkedHashMap<>();
+        endpointStats.statuses().forEach((status, count) -> statuses.put(String.valueOf(status), count));
+        endpoint.put("statuses", statuses);
+        return endpoint;
+    }
+
+    // Milliseconds rounded to the microsecond
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+}
@@ -0,0 +1,180 @@
+package com.encora.breakable_toy.loadtest;
+
+import com.encora.breakable_toy.BreakableToyApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Boots the application (or targets a running one), seeds it through /todoslist and drives a mix of task requests
+// from concurrent clients, then reports the throughput and latency percentiles of each operation
+//
+// Open loop: requests are scheduled at a fixed rate and spread over the clients. A request's latency runs from its
+// scheduled time, not from when a free client sent it, so a stall counts against every request it delayed instead of
+// hiding them (no coordinated omission). Closed loop: each client sends its next request once it got the previous
+// response, which finds the saturation throughput; its latencies are service times
+public class LoadTest {
+
+    private static final long SEED = 42;
+    // How long the requests scheduled before the end of an open loop run may still be sent
+    private static final Duration DRAIN_TIME = Duration.ofSeconds(30);
+
+    private final LoadOptions options;
+    private final TaskClient taskClient;
+    private final Map<Operation, EndpointStats> stats = new EnumMap<>(Operation.class);
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    // Open loop requests scheduled but never sent because the run could not catch up
+    private final LongAdder unsent = new LongAdder();
+
+    public LoadTest(LoadOptions options, TaskClient taskClient) {
+        this.options = options;
+        this.taskClient = taskClient;
+        List<Operation> weighted = new ArrayList<>();
+        List<Integer> cumulative = new ArrayList<>();
+        int total = 0;
+        for (Map.Entry<Operation, Integer> entry : options.getMix().entrySet()) {
+            stats.put(entry.getKey(), new EndpointStats());
+            if (entry.getValue() > 0) {
+                total += entry.getValue();
+                weighted.add(entry.getKey());
+                cumulative.add(total);
+            }
+        }
+        this.operations = weighted.toArray(new Operation[0]);
+        this.cumulativeWeights = cumulative.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+        ConfigurableApplicationContext context = null;
+        String url = options.getUrl();
+        if (url == null) {
+            context = SpringApplication.run(BreakableToyApplication.class, applicationArgs(options));
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            url = "http://localhost:" + port + "/api/v1";
+        }
+        try {
+            TaskClient taskClient = new TaskClient(url);
+            System.out.printf("Seeding %d tasks%n", options.getSeedTasks());
+            taskClient.seed(options.getSeedTasks(), new SplittableRandom(SEED));
+            LoadTest loadTest = new LoadTest(options, taskClient);
+            loadTest.run();
+            LoadReport report = new LoadReport(options, loadTest.stats, loadTest.unsent.sum());
+            report.print(System.out);
+            report.write(options.getReport());
+            System.out.println("Report written to " + options.getReport().toAbsolutePath());
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    // The application arguments, on a random port and with quiet logs unless they say otherwise
+    private static String[] applicationArgs(LoadOptions options) {
+        List<String> args = new ArrayList<>(options.getApplicationArgs());
+        if (args.stream().noneMatch(arg -> arg.startsWith("--server.port="))) {
+            args.add("--server.port=0");
+        }
+        if (args.stream().noneMatch(arg -> arg.startsWith("--logging.level.root="))) {
+            args.add("--logging.level.root=WARN");
+        }
+        return args.toArray(new String[0]);
+    }
+
+    // Run the clients until the end of the run, recording the requests sent after the warmup
+    public void run() throws InterruptedException {
+        long start = System.nanoTime();
+        long warmupEnd = start + options.getWarmup().toNanos();
+        long end = start + options.getDuration().toNanos();
+        AtomicLong nextRequest = new AtomicLong();
+        System.out.printf("Running %s loop, %d clients, for %s (%s warmup)%n", options.getMode().name().toLowerCase(),
+                options.getClients(), options.getDuration(), options.getWarmup());
+        List<Thread> clients = new ArrayList<>();
+        for (int i = 0; i < options.getClients(); i++) {
+            SplittableRandom random = new SplittableRandom(SEED + i);
+            Runnable client = options.getMode() == LoadOptions.Mode.OPEN
+                    ? () -> openLoop(random, nextRequest, start, warmupEnd, end)
+                    : () -> closedLoop(random, warmupEnd, end);
+            Thread thread = new Thread(client, "load-client-" + i);
+            thread.start();
+            clients.add(thread);
+        }
+        for (Thread thread : clients) {
+            thread.join();
+        }
+    }
+
+    // Take the next scheduled request, wait for its time and send it; late requests are sent at once
+    private void openLoop(SplittableRandom random, AtomicLong nextRequest, long start, long warmupEnd, long end) {
+        long interval = 1_000_000_000L / options.getRate();
+        long deadline = end + DRAIN_TIME.toNanos();
+        while (true) {
+            long scheduled = start + nextRequest.getAndIncrement() * interval;
+            if (scheduled >= end) {
+                return;
+            }
+            if (System.nanoTime() > deadline) {
+                unsent.increment();
+                continue;
+            }
+            long wait;
+            while ((wait = scheduled - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            send(random, scheduled, scheduled >= warmupEnd);
+        }
+    }
+
+    // Send requests back to back, pausing for the think time between a response and the next request
+    private void closedLoop(SplittableRandom random, long warmupEnd, long end) {
+        long thinkTime = options.getThinkTime().toNanos();
+        while (true) {
+            long sent = System.nanoTime();
+            if (sent >= end) {
+                return;
+            }
+            send(random, sent, sent >= warmupEnd);
+            if (thinkTime > 0) {
+                LockSupport.parkNanos(thinkTime);
+            }
+        }
+    }
+
+    // Send a request of a random operation, recording its latency from the given start when measured
+    private void send(SplittableRandom random, long latencyStart, boolean measured) {
+        Operation operation = pick(random);
+        int status;
+        try {
+            status = taskClient.execute(operation, random);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            // Connection failures and timeouts are errors without a status
+            status = 0;
+        }
+        if (measured) {
+            stats.get(operation).record(System.nanoTime() - latencyStart, status);
+        }
+    }
+
+    private Operation pick(SplittableRandom random) {
+        int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int i = 0;
+        while (value >= cumulativeWeights[i]) {
+            i++;
+        }
+        return operations[i];
+    }
+}
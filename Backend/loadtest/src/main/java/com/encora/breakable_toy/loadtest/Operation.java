@@ -0,0 +1,29 @@
+package com.encora.breakable_toy.loadtest;
+
+// Kinds of request in the traffic mix, each one reported as its own endpoint
+public enum Operation {
+    // A page of every task, sorted by priority
+    LIST,
+    // Undone tasks of one priority whose name holds the seeded needle, sorted by due date
+    FILTER,
+    CREATE,
+    // Creation of a batch of tasks through /todoslist, as an ingest spike sends them
+    BULK,
+    DONE,
+    DELETE;
+
+    // Name used in the mix option and in the report
+    public String label() {
+        return name().toLowerCase();
+    }
+
+    // Parse an operation name, ignoring case
+    public static Operation parse(String name) {
+        for (Operation operation : values()) {
+            if (operation.name().equalsIgnoreCase(name)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation: " + name);
+    }
+}
@@ -0,0 +1,124 @@
+package com.encora.breakable_toy.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Sends the requests of each operation to the task endpoints and keeps the IDs they can target
+// Done requests pick a random seeded task; deletes take the tasks created during the run first, so the table keeps
+// about the seeded size whatever the mix
+public class TaskClient {
+
+    // Substring carried by the names of a tenth of the seeded tasks, searched by the filter operation
+    static final String NEEDLE = "needle";
+
+    private static final int SEED_BATCH_SIZE = 1000;
+    private static final int BULK_SIZE = 500;
+    private static final int PAGE_SIZE = 10;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String baseUrl;
+    private final List<Long> seededIds = new ArrayList<>();
+    private final ConcurrentLinkedQueue<Long> createdIds = new ConcurrentLinkedQueue<>();
+
+    public TaskClient(String baseUrl) {
+        this.baseUrl = baseUrl;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(REQUEST_TIMEOUT)
+                .build();
+    }
+
+    // Create the given number of tasks through /todoslist, in batches
+    public void seed(int tasks, SplittableRandom random) throws IOException, InterruptedException {
+        for (int created = 0; created < tasks; created += SEED_BATCH_SIZE) {
+            List<Map<String, Object>> batch = new ArrayList<>();
+            for (int i = created; i < Math.min(tasks, created + SEED_BATCH_SIZE); i++) {
+                batch.add(task((random.nextInt(10) == 0 ? NEEDLE : "task") + " " + i, random));
+            }
+            HttpResponse<String> response = send(post("/todoslist", batch));
+            if (response.statusCode() != 201) {
+                throw new IOException("Seeding failed with status " + response.statusCode() + ": " + response.body());
+            }
+            for (JsonNode task : objectMapper.readTree(response.body()).get("createdTasks")) {
+                seededIds.add(task.get("id").asLong());
+            }
+        }
+    }
+
+    // Send one request of the operation and return its response status
+    public int execute(Operation operation, SplittableRandom random) throws IOException, InterruptedException {
+        return switch (operation) {
+            case LIST -> {
+                int pages = Math.max(1, seededIds.size() / PAGE_SIZE);
+                yield send(get("/todos?sortBy=priority&page=" + (1 + random.nextInt(pages)))).statusCode();
+            }
+            case FILTER -> send(get("/todos?done=false&sortBy=dueDate&name=" + NEEDLE + "&priority="
+                    + random.nextInt(3))).statusCode();
+            case CREATE -> {
+                HttpResponse<String> response = send(post("/todos", task("load " + random.nextInt(), random)));
+                if (response.statusCode() == 201) {
+                    createdIds.add(objectMapper.readTree(response.body()).get("id").asLong());
+                }
+                yield response.statusCode();
+            }
+            case BULK -> {
+                List<Map<String, Object>> batch = new ArrayList<>(BULK_SIZE);
+                for (int i = 0; i < BULK_SIZE; i++) {
+                    batch.add(task("bulk " + random.nextInt(), random));
+                }
+                yield send(post("/todoslist", batch)).statusCode();
+            }
+            case DONE -> send(request("/todos/" + seededId(random) + "/done")
+                    .POST(HttpRequest.BodyPublishers.noBody()).build()).statusCode();
+            case DELETE -> {
+                Long id = createdIds.poll();
+                yield send(request("/todos/" + (id != null ? id : seededId(random)) + "/delete")
+                        .DELETE().build()).statusCode();
+            }
+        };
+    }
+
+    private long seededId(SplittableRandom random) {
+        return seededIds.get(random.nextInt(seededIds.size()));
+    }
+
+    // Undone task of a random priority, due within a year
+    private static Map<String, Object> task(String name, SplittableRandom random) {
+        LocalDateTime dueDate = LocalDateTime.now().plusDays(1 + random.nextInt(365));
+        return Map.of("name", name, "priority", random.nextInt(3), "dueDate", dueDate.toString());
+    }
+
+    private HttpRequest get(String path) {
+        return request(path).GET().build();
+    }
+
+    private HttpRequest post(String path, Object body) throws IOException {
+        return request(path)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .build();
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(REQUEST_TIMEOUT);
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
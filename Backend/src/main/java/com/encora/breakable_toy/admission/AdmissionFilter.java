@@ -0,0 +1,162 @@
+package com.encora.breakable_toy.admission;
+
+import com.encora.breakable_toy.metrics.MetricsRegistry;
+import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Admission control in front of the API: every request takes a slot of its class's bulkhead before it reaches a
+// controller, or is answered 429 with a Retry-After header once the class's slots and queue are full
+// Bulk requests therefore never hold more worker threads (or request bodies) than their budget, and reads and single
+// writes keep being served during an ingest spike. The slot of a streaming response is held until it completes. The
+// event stream, which holds no worker thread, and the endpoints outside the API, such as /metrics, are not limited
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class AdmissionFilter implements Filter {
+
+    private static final Logger log = LoggerFactory.getLogger(AdmissionFilter.class);
+
+    private static final String API = "/api/v1/";
+    private static final String CHANGE_STREAM = "/api/v1/todos/changes/stream";
+    private static final String EXPORT = "/api/v1/todos/export";
+    private static final Set<String> BULK_WRITES = Set.of("/api/v1/todoslist", "/api/v1/todos/bulk",
+            "/api/v1/todos/import");
+    // Origin the controllers accept (@CrossOrigin); CORS is applied by the handler mapping, which a rejected request
+    // never reaches, so the rejection carries the headers itself or the browser hides it from the frontend
+    private static final String ALLOWED_ORIGIN = "http://localhost:8080";
+
+    private final boolean enabled;
+    private final Map<RequestClass, Bulkhead> bulkheads = new EnumMap<>(RequestClass.class);
+    // Retry-After values in seconds, by class
+    private final Map<RequestClass, String> retryAfter = new EnumMap<>(RequestClass.class);
+
+    public AdmissionFilter(AdmissionProperties properties, MetricsRegistry metricsRegistry,
+                           @Value("${server.tomcat.threads.max:200}") int workerThreads,
+                           @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.enabled = properties.isEnabled();
+        int capacity = 0;
+        for (RequestClass requestClass : RequestClass.values()) {
+            AdmissionProperties.Budget budget = properties.budget(requestClass);
+            Bulkhead bulkhead = new Bulkhead(requestClass, budget, metricsRegistry);
+            bulkheads.put(requestClass, bulkhead);
+            capacity += bulkhead.capacity();
+            // Rounded up, a client must not come back before the suggested delay
+            long seconds = Math.max(1, (budget.getRetryAfter().toMillis() + 999) / 1000);
+            retryAfter.put(requestClass, Long.toString(seconds));
+        }
+        if (enabled && !virtualThreads && capacity > workerThreads) {
+            log.warn("The admission budgets hold up to {} requests but Tomcat has {} worker threads, a burst of one "
+                    + "request class can still starve the others", capacity, workerThreads);
+        }
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        RequestClass requestClass = enabled ? classify((HttpServletRequest) request) : null;
+        if (requestClass == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        Bulkhead bulkhead = bulkheads.get(requestClass);
+        boolean admitted;
+        try {
+            admitted = bulkhead.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admitted = false;
+        }
+        if (!admitted) {
+            reject((HttpServletRequest) request, (HttpServletResponse) response, requestClass);
+            return;
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        release(bulkhead, released);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                        release(bulkhead, released);
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                        release(bulkhead, released);
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                release(bulkhead, released);
+            }
+        }
+    }
+
+    // Class of an API request, or null when the request is not limited
+    private static RequestClass classify(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!path.startsWith(API)) {
+            return null;
+        }
+        switch (request.getMethod()) {
+            case "GET", "HEAD" -> {
+                if (path.equals(CHANGE_STREAM)) {
+                    return null;
+                }
+                return path.equals(EXPORT) ? RequestClass.BULK : RequestClass.READ;
+            }
+            case "POST", "PUT", "PATCH", "DELETE" -> {
+                return BULK_WRITES.contains(path) ? RequestClass.BULK : RequestClass.WRITE;
+            }
+            default -> {
+                // CORS preflights and OPTIONS requests cost nothing
+                return null;
+            }
+        }
+    }
+
+    // Answer 429 without reading the request body, readable by the frontend's origin along with its Retry-After
+    private void reject(HttpServletRequest request, HttpServletResponse response, RequestClass requestClass)
+            throws IOException {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, retryAfter.get(requestClass));
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ORIGIN);
+        if (ALLOWED_ORIGIN.equals(request.getHeader(HttpHeaders.ORIGIN))) {
+            response.setHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, ALLOWED_ORIGIN);
+            response.setHeader(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, HttpHeaders.RETRY_AFTER);
+        }
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"error\":\"Too many " + requestClass.label() + " requests, retry later\"}");
+    }
+
+    // Release the slot once, whichever of the completion events comes first
+    private static void release(Bulkhead bulkhead, AtomicBoolean released) {
+        if (released.compareAndSet(false, true)) {
+            bulkhead.release();
+        }
+    }
+}
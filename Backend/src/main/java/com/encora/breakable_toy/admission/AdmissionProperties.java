@@ -0,0 +1,113 @@
+package com.encora.breakable_toy.admission;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+// Settings of the admission control, bound from the todo.admission properties
+@ConfigurationProperties(prefix = "todo.admission")
+public class AdmissionProperties {
+
+    // Concurrency and queue limits of one request class
+    public static class Budget {
+        // Requests of the class handled at once
+        private int maxConcurrent;
+        // Requests of the class waiting for a slot, the next ones are rejected at once
+        private int maxQueued;
+        // Longest wait for a slot before the request is rejected
+        private Duration maxWait;
+        // Delay suggested to rejected clients in the Retry-After header
+        private Duration retryAfter = Duration.ofSeconds(1);
+
+        public Budget() {
+        }
+
+        private Budget(int maxConcurrent, int maxQueued, Duration maxWait, Duration retryAfter) {
+            this.maxConcurrent = maxConcurrent;
+            this.maxQueued = maxQueued;
+            this.maxWait = maxWait;
+            this.retryAfter = retryAfter;
+        }
+
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        public void setMaxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        public int getMaxQueued() {
+            return maxQueued;
+        }
+
+        public void setMaxQueued(int maxQueued) {
+            this.maxQueued = maxQueued;
+        }
+
+        public Duration getMaxWait() {
+            return maxWait;
+        }
+
+        public void setMaxWait(Duration maxWait) {
+            this.maxWait = maxWait;
+        }
+
+        public Duration getRetryAfter() {
+            return retryAfter;
+        }
+
+        public void setRetryAfter(Duration retryAfter) {
+            this.retryAfter = retryAfter;
+        }
+    }
+
+    // Whether API requests go through admission control
+    private boolean enabled = true;
+    // The defaults hold at most 198 requests at once, below the 200 Tomcat worker threads, so a flood of one class
+    // always leaves threads to the others
+    private Budget bulk = new Budget(2, 4, Duration.ofSeconds(1), Duration.ofSeconds(2));
+    private Budget write = new Budget(32, 32, Duration.ofMillis(500), Duration.ofSeconds(1));
+    private Budget read = new Budget(64, 64, Duration.ofMillis(500), Duration.ofSeconds(1));
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Budget getBulk() {
+        return bulk;
+    }
+
+    public void setBulk(Budget bulk) {
+        this.bulk = bulk;
+    }
+
+    public Budget getWrite() {
+        return write;
+    }
+
+    public void setWrite(Budget write) {
+        this.write = write;
+    }
+
+    public Budget getRead() {
+        return read;
+    }
+
+    public void setRead(Budget read) {
+        this.read = read;
+    }
+
+    // Budget of a request class
+    public Budget budget(RequestClass requestClass) {
+        return switch (requestClass) {
+            case BULK -> bulk;
+            case WRITE -> write;
+            case READ -> read;
+        };
+    }
+}
@@ -0,0 +1,82 @@
+package com.encora.breakable_toy.admission;
+
+import com.encora.breakable_toy.metrics.Counter;
+import com.encora.breakable_toy.metrics.MetricsRegistry;
+import com.encora.breakable_toy.metrics.Timer;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Bounded concurrency for one request class: a fixed number of slots and a bounded queue of requests waiting for one
+// Waiting requests are served in arrival order; a request finding the queue full, or still waiting after the maximum
+// wait, is rejected so it costs neither a thread nor memory for long
+public class Bulkhead {
+
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long maxWaitNanos;
+    // Fair, so the requests that waited longest get the freed slots
+    private final Semaphore slots;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Timer waitTimer;
+    private final Counter queueFullRejections;
+    private final Counter timeoutRejections;
+
+    public Bulkhead(RequestClass requestClass, AdmissionProperties.Budget budget, MetricsRegistry metricsRegistry) {
+        if (budget.getMaxConcurrent() < 1 || budget.getMaxQueued() < 0 || budget.getMaxWait().isNegative()) {
+            throw new IllegalArgumentException("Invalid admission budget for " + requestClass.label()
+                    + " requests: at least one concurrent request and no negative limit are required");
+        }
+        this.maxConcurrent = budget.getMaxConcurrent();
+        this.maxQueued = budget.getMaxQueued();
+        this.maxWaitNanos = budget.getMaxWait().toNanos();
+        this.slots = new Semaphore(maxConcurrent, true);
+        String label = requestClass.label();
+        this.waitTimer = metricsRegistry.timer("todo_admission_wait_seconds",
+                "Time admitted requests waited for a slot", "class", label);
+        this.queueFullRejections = metricsRegistry.counter("todo_admission_rejected_total",
+                "Requests rejected with 429 by the admission control", "class", label, "reason", "queue_full");
+        this.timeoutRejections = metricsRegistry.counter("todo_admission_rejected_total",
+                "Requests rejected with 429 by the admission control", "class", label, "reason", "timeout");
+        metricsRegistry.gauge("todo_admission_active", "Requests holding an admission slot",
+                () -> maxConcurrent - slots.availablePermits(), "class", label);
+        metricsRegistry.gauge("todo_admission_queued", "Requests waiting for an admission slot", queued::get,
+                "class", label);
+    }
+
+    // Take a slot, waiting for one in the queue if needed; false when the request is rejected
+    public boolean acquire() throws InterruptedException {
+        long start = System.nanoTime();
+        // Without waiting requests a free slot is taken at once, otherwise the request queues behind them
+        if (queued.get() == 0 && slots.tryAcquire()) {
+            waitTimer.recordSince(start);
+            return true;
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            queueFullRejections.increment();
+            return false;
+        }
+        try {
+            if (slots.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+                waitTimer.recordSince(start);
+                return true;
+            }
+            timeoutRejections.increment();
+            return false;
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    // Give back a slot taken by acquire
+    public void release() {
+        slots.release();
+    }
+
+    // Requests held at once at most, handled or waiting
+    public int capacity() {
+        return maxConcurrent + maxQueued;
+    }
+}
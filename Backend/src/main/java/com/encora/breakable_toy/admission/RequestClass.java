@@ -0,0 +1,16 @@
+package com.encora.breakable_toy.admission;
+
+// Kinds of API request that get their own admission budget, so one kind cannot take the worker threads of the others
+public enum RequestClass {
+    // Requests carrying or producing many tasks: bulk creation, bulk updates, import and export
+    BULK,
+    // Requests changing one task
+    WRITE,
+    // Every other read
+    READ;
+
+    // Name used in the metric labels and the error messages
+    public String label() {
+        return name().toLowerCase();
+    }
+}
@@ -1,12 +1,19 @@
 package com.encora.breakable_toy.config;
 
-import com.encora.breakable_toy.utils.AverageTime;
-import com.encora.breakable_toy.utils.Pages;
+import com.encora.breakable_toy.admission.AdmissionProperties;
+import com.encora.breakable_toy.metrics.MetricsRegistry;
+import com.encora.breakable_toy.partition.TaskPartitionFactory;
+import com.encora.breakable_toy.persistence.PersistenceProperties;
 import com.encora.breakable_toy.utils.TaskValidator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 @Configuration
+@EnableConfigurationProperties({PersistenceProperties.class, AdmissionProperties.class})
 public class AppConfig {
 
     // This method defines a TaskValidator bean
@@ -15,15 +22,21 @@ public class AppConfig {
         return new TaskValidator();
     }
 
-    // This method defines an AverageTime bean
-    @Bean
-    public AverageTime averageTime() {
-        return new AverageTime();
-    }
-
-    // This method defines a Pages bean
+    // This method defines the TaskPartitionFactory bean building the task store of each tenant: the storage selected
+    // by todo.storage.type, a change log of todo.changes.capacity mutations, a query cache of todo.query-cache.size
+    // responses, due soon events todo.due.notice ahead of the due dates, and full scans of at least
+    // todo.query.parallel-threshold tasks split over todo.query.parallelism threads
     @Bean
-    public Pages pages() {
-        return new Pages();
+    public TaskPartitionFactory taskPartitionFactory(@Value("${todo.storage.type:map}") String storageType,
+                                                     @Value("${todo.changes.capacity:10000}") int changeLogCapacity,
+                                                     @Value("${todo.query-cache.size:1000}") int queryCacheSize,
+                                                     @Value("${todo.due.notice:PT15M}") Duration dueNotice,
+                                                     @Value("${todo.query.parallelism:0}") int queryParallelism,
+                                                     @Value("${todo.query.parallel-threshold:200000}")
+                                                     int parallelThreshold,
+                                                     PersistenceProperties persistenceProperties,
+                                                     TaskValidator taskValidator, MetricsRegistry metricsRegistry) {
+        return new TaskPartitionFactory(storageType, changeLogCapacity, queryCacheSize, dueNotice,
+                queryParallelism, parallelThreshold, persistenceProperties, taskValidator, metricsRegistry);
     }
 }
@@ -0,0 +1,110 @@
+package com.encora.breakable_toy.config;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdScalarSerializer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+// Binary wire format: every endpoint also reads and writes CBOR, selected by the Accept and Content-Type headers
+// The documents have the JSON shape, but dates are epoch values instead of ISO strings: UTC epoch seconds, or an
+// [epoch seconds, nanoseconds] pair when the date has a fraction of a second, so they round-trip exactly
+@Configuration
+public class CborConfig {
+
+    // Single CBOR documents, for the regular endpoints
+    public static final MediaType CBOR = MediaType.APPLICATION_CBOR;
+    // CBOR sequence (RFC 8742), the binary counterpart of newline-delimited JSON for the export and the import
+    public static final MediaType CBOR_SEQ = MediaType.parseMediaType("application/cbor-seq");
+
+    // Mapper shared by the message converter and the streaming endpoints
+    public static ObjectMapper cborMapper() {
+        return Jackson2ObjectMapperBuilder.cbor()
+                .serializerByType(LocalDateTime.class, new EpochDateTimeSerializer())
+                .deserializerByType(LocalDateTime.class, new EpochDateTimeDeserializer())
+                .build();
+    }
+
+    // Registered next to the JSON converter, which stays the default when the client does not ask for CBOR
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter() {
+        return new MappingJackson2CborHttpMessageConverter(cborMapper());
+    }
+
+    // Writes a date as numbers straight into the generator, without formatting it into a string
+    static final class EpochDateTimeSerializer extends StdScalarSerializer<LocalDateTime> {
+
+        EpochDateTimeSerializer() {
+            super(LocalDateTime.class);
+        }
+
+        @Override
+        public void serialize(LocalDateTime value, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            long epochSecond = value.toEpochSecond(ZoneOffset.UTC);
+            int nano = value.getNano();
+            if (nano == 0) {
+                generator.writeNumber(epochSecond);
+                return;
+            }
+            generator.writeStartArray(value, 2);
+            generator.writeNumber(epochSecond);
+            generator.writeNumber(nano);
+            generator.writeEndArray();
+        }
+    }
+
+    // Reads the dates written by EpochDateTimeSerializer, and ISO strings from clients that keep the JSON encoding
+    static final class EpochDateTimeDeserializer extends StdScalarDeserializer<LocalDateTime> {
+
+        EpochDateTimeDeserializer() {
+            super(LocalDateTime.class);
+        }
+
+        @Override
+        public LocalDateTime deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            try {
+                switch (parser.currentToken()) {
+                    case VALUE_NUMBER_INT:
+                        return LocalDateTime.ofEpochSecond(parser.getLongValue(), 0, ZoneOffset.UTC);
+                    case START_ARRAY:
+                        long epochSecond = nextLong(parser, context);
+                        long nano = nextLong(parser, context);
+                        if (parser.nextToken() != JsonToken.END_ARRAY || nano < 0 || nano > 999_999_999) {
+                            break;
+                        }
+                        return LocalDateTime.ofEpochSecond(epochSecond, (int) nano, ZoneOffset.UTC);
+                    case VALUE_STRING:
+                        return LocalDateTime.parse(parser.getText());
+                    default:
+                        break;
+                }
+            } catch (DateTimeException e) {
+                return context.reportInputMismatch(LocalDateTime.class, "Invalid date: %s", e.getMessage());
+            }
+            return (LocalDateTime) context.handleUnexpectedToken(LocalDateTime.class, parser.currentToken(), parser,
+                    "Expected epoch seconds, [epoch seconds, nanoseconds] or an ISO-8601 date");
+        }
+
+        private static long nextLong(JsonParser parser, DeserializationContext context) throws IOException {
+            if (parser.nextToken() != JsonToken.VALUE_NUMBER_INT) {
+                context.reportInputMismatch(LocalDateTime.class,
+                        "Expected [epoch seconds, nanoseconds], found %s", parser.currentToken());
+            }
+            return parser.getLongValue();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.encora.breakable_toy.controller;
+
+import com.encora.breakable_toy.partition.CrossTenantQuery;
+import com.encora.breakable_toy.partition.TaskPartition;
+import com.encora.breakable_toy.partition.TaskPartitions;
+import com.encora.breakable_toy.partition.TenantLimitException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.*;
+
+// Endpoints spanning every tenant
+// They read and create the data of any tenant, so every request must carry the admin token as a bearer token; the
+// endpoints are disabled while no token is configured
+@RestController
+@RequestMapping("/api/v1/admin")
+@CrossOrigin(origins = "http://localhost:8080")
+public class AdminController {
+
+    private static final String BEARER = "Bearer ";
+
+    private final TaskPartitions taskPartitions;
+    private final CrossTenantQuery crossTenantQuery;
+    // Expected token, empty when the admin endpoints are disabled
+    private final byte[] adminToken;
+
+    // Thrown when a request may not use the admin endpoints, answered with the given status
+    private static final class AdminAccessException extends RuntimeException {
+        private final HttpStatus status;
+
+        private AdminAccessException(HttpStatus status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    // Constructor to inject the task partitions, the cross-tenant query and the admin token
+    @Autowired
+    public AdminController(TaskPartitions taskPartitions, CrossTenantQuery crossTenantQuery,
+                           @Value("${todo.admin.token:}") String adminToken) {
+        this.taskPartitions = taskPartitions;
+        this.crossTenantQuery = crossTenantQuery;
+        this.adminToken = adminToken.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Return the status of a refused admin request
+    @ExceptionHandler(AdminAccessException.class)
+    public ResponseEntity<Map<String, Object>> handleAdminAccess(AdminAccessException e) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(e.status);
+        if (e.status == HttpStatus.UNAUTHORIZED) {
+            response.header(HttpHeaders.WWW_AUTHENTICATE, "Bearer");
+        }
+        return response.body(Map.of("error", ErrorMessages.of(e)));
+    }
+
+    // Return a service unavailable response when a new tenant does not fit until idle ones are evicted
+    @ExceptionHandler(TenantLimitException.class)
+    public ResponseEntity<Map<String, Object>> handleTenantLimit(TenantLimitException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", ErrorMessages.of(e)));
+    }
+
+    // Endpoint to retrieve the tasks of every tenant with sorting, filtering, and pagination
+    @GetMapping("/todos")
+    public ResponseEntity<Map<String, Object>> getAllTasks(
+            @RequestParam(required = false) String sortBy,
+            @RequestParam(required = false) String sortOrder,
+            @RequestParam(defaultValue = "1") int page,
+            @RequestParam(required = false) Boolean done,
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) Integer priority,
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        authorize(authorization);
+        try {
+            // Run the query on every partition and merge the results
+            return ResponseEntity.ok(crossTenantQuery.findPage(sortBy, sortOrder, page, done, name, priority));
+        } catch (IllegalArgumentException e) {
+            // Return a bad request response if there is an error
+            return ResponseEntity.badRequest().body(Map.of("error", ErrorMessages.of(e)));
+        }
+    }
+
+    // Endpoint to list the tenants and their number of tasks
+    @GetMapping("/tenants")
+    public ResponseEntity<List<Map<String, Object>>> getTenants(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        authorize(authorization);
+        List<Map<String, Object>> tenants = new ArrayList<>();
+        for (TaskPartition partition : taskPartitions.all()) {
+            Map<String, Object> tenant = new LinkedHashMap<>();
+            tenant.put("tenant", partition.getTenant());
+            tenant.put("tasks", partition.getTaskRepository().count());
+            tenants.add(tenant);
+        }
+        return ResponseEntity.ok(tenants);
+    }
+
+    // Endpoint to create a tenant ahead of its first task, so its reads do not answer 404 until then
+    @PutMapping("/tenants/{tenant}")
+    public ResponseEntity<Map<String, Object>> provisionTenant(
+            @PathVariable String tenant,
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        authorize(authorization);
+        try {
+            boolean created = taskPartitions.provision(tenant);
+            return ResponseEntity.status(created ? HttpStatus.CREATED : HttpStatus.OK)
+                    .body(Map.of("tenant", tenant, "created", created));
+        } catch (IllegalArgumentException e) {
+            // Return a bad request response if the tenant is malformed
+            return ResponseEntity.badRequest().body(Map.of("error", ErrorMessages.of(e)));
+        }
+    }
+
+    // Refuse the request unless its Authorization header holds the admin token
+    // The tokens are compared in constant time, so the response time tells nothing about the expected one
+    private void authorize(String authorization) {
+        if (adminToken.length == 0) {
+            throw new AdminAccessException(HttpStatus.FORBIDDEN,
+                    "The admin endpoints are disabled, set todo.admin.token to enable them");
+        }
+        if (authorization == null || !authorization.startsWith(BEARER) || !MessageDigest.isEqual(adminToken,
+                authorization.substring(BEARER.length()).getBytes(StandardCharsets.UTF_8))) {
+            throw new AdminAccessException(HttpStatus.UNAUTHORIZED, "A valid admin token is required");
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.encora.breakable_toy.controller;
+
+// Messages of the error bodies, which are built with Map.of and so cannot hold a null message
+final class ErrorMessages {
+
+    private ErrorMessages() {
+    }
+
+    // Message of an exception, or its type when it has none
+    static String of(Exception e) {
+        String message = e.getMessage();
+        return message != null ? message : e.getClass().getSimpleName();
+    }
+}
@@ -1,15 +1,46 @@
 package com.encora.breakable_toy.controller;
 
+import com.encora.breakable_toy.config.CborConfig;
 import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.partition.InvalidTenantException;
+import com.encora.breakable_toy.partition.TaskPartition;
+import com.encora.breakable_toy.partition.TaskPartitions;
+import com.encora.breakable_toy.partition.TenantLimitException;
+import com.encora.breakable_toy.partition.UnknownTenantException;
+import com.encora.breakable_toy.service.BulkCreateResult;
+import com.encora.breakable_toy.service.BulkError;
+import com.encora.breakable_toy.service.BulkUpdateRequest;
+import com.encora.breakable_toy.service.BulkUpdateResult;
+import com.encora.breakable_toy.service.BulkValidationException;
+import com.encora.breakable_toy.service.TaskChangeFeed;
 import com.encora.breakable_toy.service.TaskService;
 import com.encora.breakable_toy.utils.AverageTime;
-import com.encora.breakable_toy.utils.Pages;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.util.*;
 
@@ -18,12 +49,79 @@ import java.util.*;
 @CrossOrigin(origins = "http://localhost:8080")
 public class TaskController {
 
-    private final TaskService taskService;
+    // Number of imported tasks handed to the service at once
+    private static final int IMPORT_CHUNK_SIZE = 1000;
+    // Maximum number of import errors reported back, the import itself goes on
+    private static final int MAX_IMPORT_ERRORS = 100;
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
 
-    // Constructor to inject TaskService
+    private final TaskPartitions taskPartitions;
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper cborMapper;
+
+    // Constructor to inject the task partitions and the JSON and CBOR mappers used by the streaming endpoints
     @Autowired
-    public TaskController(TaskService taskService) {
-        this.taskService = taskService;
+    public TaskController(TaskPartitions taskPartitions, ObjectMapper objectMapper,
+                          MappingJackson2CborHttpMessageConverter cborConverter) {
+        this.taskPartitions = taskPartitions;
+        this.objectMapper = objectMapper;
+        this.cborMapper = cborConverter.getObjectMapper();
+    }
+
+    // Partition of the tenant named by the current request, the default one when it names none
+    // Only the requests creating tasks create the partition of a new tenant, the others answer 404 for it
+    private TaskPartition partition(boolean create) {
+        HttpServletRequest request = ((ServletRequestAttributes) RequestContextHolder.currentRequestAttributes())
+                .getRequest();
+        String tenant = request.getHeader(TaskPartitions.TENANT_HEADER);
+        if (tenant == null) {
+            tenant = request.getParameter(TaskPartitions.TENANT_PARAMETER);
+        }
+        return create ? taskPartitions.getOrCreate(tenant) : taskPartitions.get(tenant);
+    }
+
+    private TaskPartition partition() {
+        return partition(false);
+    }
+
+    // Service of the tenant named by the current request
+    private TaskService taskService() {
+        return partition().getTaskService();
+    }
+
+    // Service of the tenant named by the current request, whose partition is created by its first tasks
+    private TaskService creatingTaskService() {
+        return partition(true).getTaskService();
+    }
+
+    // Check the entity tag of the tenant's data, true when the client already holds it and 304 Not Modified was set
+    private static boolean notModified(TaskPartition partition, WebRequest webRequest) {
+        // Responses differ by tenant and by format, a shared cache must not serve the response of one tenant to
+        // another, nor a CBOR response to a JSON client
+        HttpServletResponse response = ((ServletWebRequest) webRequest).getResponse();
+        if (response != null) {
+            response.addHeader(HttpHeaders.VARY, TaskPartitions.TENANT_HEADER);
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+        return webRequest.checkNotModified(partition.getDataETag());
+    }
+
+    // Return a not found response when a request names a tenant that has no tasks
+    @ExceptionHandler(UnknownTenantException.class)
+    public ResponseEntity<Map<String, Object>> handleUnknownTenant(UnknownTenantException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", ErrorMessages.of(e)));
+    }
+
+    // Return a bad request response when the tenant of a request is invalid
+    @ExceptionHandler(InvalidTenantException.class)
+    public ResponseEntity<Map<String, Object>> handleInvalidTenant(InvalidTenantException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", ErrorMessages.of(e)));
+    }
+
+    // Return a service unavailable response when a new tenant does not fit until idle ones are evicted
+    @ExceptionHandler(TenantLimitException.class)
+    public ResponseEntity<Map<String, Object>> handleTenantLimit(TenantLimitException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", ErrorMessages.of(e)));
     }
 
     // Endpoint to retrieve all tasks with sorting, filtering, and pagination
@@ -34,23 +132,183 @@ public class TaskController {
             @RequestParam(defaultValue = "1") int page,
             @RequestParam(required = false) Boolean done,
             @RequestParam(required = false) String name,
-            @RequestParam(required = false) Integer priority) {
+            @RequestParam(required = false) Integer priority,
+            @RequestParam(required = false) String after,
+            WebRequest webRequest) {
+        // Answer 304 Not Modified when the client already holds the current data
+        TaskPartition partition = partition();
+        if (notModified(partition, webRequest)) {
+            return null;
+        }
         try {
             // Call the service to get tasks
-            Map<String, Object> response = taskService.getAllTasks(sortBy, sortOrder, page, done, name, priority);
+            Map<String, Object> response = partition.getTaskService().getAllTasks(sortBy, sortOrder, page, done, name, priority, after);
             return ResponseEntity.ok(response);
         } catch (IllegalArgumentException e) {
             // Return a bad request response if there is an error
-            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+            return ResponseEntity.badRequest().body(Map.of("error", ErrorMessages.of(e)));
+        }
+    }
+
+    // Endpoint to suggest task names starting with a prefix, for the search box
+    @GetMapping("/todos/autocomplete")
+    public ResponseEntity<Map<String, Object>> autocompleteNames(
+            @RequestParam String prefix,
+            @RequestParam(defaultValue = "10") int limit) {
+        try {
+            // Call the service to get the suggestions
+            List<String> suggestions = taskService().autocompleteNames(prefix, limit);
+            return ResponseEntity.ok(Map.of("suggestions", suggestions));
+        } catch (IllegalArgumentException e) {
+            // Return a bad request response if there is an error
+            return ResponseEntity.badRequest().body(Map.of("error", ErrorMessages.of(e)));
+        }
+    }
+
+    // Endpoint to retrieve the undone tasks due within an ISO-8601 duration from now, earliest first
+    // No entity tag: the answer changes with the clock, not only with the data
+    @GetMapping("/todos/due")
+    public ResponseEntity<Map<String, Object>> getDueTasks(
+            @RequestParam(defaultValue = "PT1H") String within,
+            @RequestParam(defaultValue = "100") int limit) {
+        try {
+            // Call the service to get the due tasks
+            return ResponseEntity.ok(taskService().getDueTasks(within, limit));
+        } catch (IllegalArgumentException e) {
+            // Return a bad request response if there is an error
+            return ResponseEntity.badRequest().body(Map.of("error", ErrorMessages.of(e)));
+        }
+    }
+
+    // Endpoint to retrieve the undone tasks whose due date has passed, most overdue first
+    @GetMapping("/todos/overdue")
+    public ResponseEntity<Map<String, Object>> getOverdueTasks(
+            @RequestParam(defaultValue = "100") int limit) {
+        try {
+            // Call the service to get the overdue tasks
+            return ResponseEntity.ok(taskService().getOverdueTasks(limit));
+        } catch (IllegalArgumentException e) {
+            // Return a bad request response if there is an error
+            return ResponseEntity.badRequest().body(Map.of("error", ErrorMessages.of(e)));
         }
     }
 
+    // Endpoint to retrieve the task changes that followed a revision, so clients update their view instead of
+    // reloading it
+    // The revision is only meaningful with the epoch it was handed out with, a revision without one gets a resync
+    @GetMapping("/todos/changes")
+    public ResponseEntity<Map<String, Object>> getChanges(
+            @RequestParam long since,
+            @RequestParam(required = false) String epoch,
+            @RequestParam(defaultValue = "1000") int limit) {
+        try {
+            // Call the service to get the changes
+            return ResponseEntity.ok(taskService().getChangesSince(epoch, since, limit));
+        } catch (IllegalArgumentException e) {
+            // Return a bad request response if there is an error
+            return ResponseEntity.badRequest().body(Map.of("error", ErrorMessages.of(e)));
+        }
+    }
+
+    // Endpoint to stream the task changes as Server-Sent Events
+    // The stream starts after the given revision of the given epoch, the Last-Event-ID of a reconnecting client, or the
+    // current revision
+    @GetMapping(value = "/todos/changes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(
+            @RequestParam(required = false) Long since,
+            @RequestParam(required = false) String epoch,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) throws IOException {
+        TaskChangeFeed taskChangeFeed = partition().getTaskChangeFeed();
+        return since != null ? taskChangeFeed.subscribe(epoch, since) : taskChangeFeed.subscribe(lastEventId);
+    }
+
+    // Endpoint to export every task as newline-delimited JSON, or as a CBOR sequence when the client accepts one
+    // Tasks are written one by one straight from the repository, the servlet output stream provides the backpressure
+    @GetMapping("/todos/export")
+    public ResponseEntity<StreamingResponseBody> exportTasks(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        // Resolved on the request thread, the body is written from another one
+        TaskService taskService = taskService();
+        boolean cbor = names(accept, CborConfig.CBOR_SEQ);
+        ObjectMapper mapper = cbor ? cborMapper : objectMapper;
+        ObjectWriter writer = mapper.writerFor(Task.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = mapper.getFactory().createGenerator(outputStream)) {
+                // JSON lines are separated by the newline written after each task only, CBOR items need no separator
+                if (!cbor) {
+                    generator.setRootValueSeparator(null);
+                }
+                taskService.exportTasks(task -> {
+                    try {
+                        writer.writeValue(generator, task);
+                        if (!cbor) {
+                            generator.writeRaw('\n');
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(cbor ? CborConfig.CBOR_SEQ : NDJSON).body(body);
+    }
+
+    // Endpoint to import newline-delimited JSON tasks, or a CBOR sequence of tasks, as produced by the export
+    // The body is parsed as a stream and imported in fixed-size chunks, so memory use does not depend on its size
+    // The partition of a new tenant is only created once a chunk of tasks was parsed, an empty or malformed body
+    // creates nothing
+    @PostMapping("/todos/import")
+    public ResponseEntity<Map<String, Object>> importTasks(HttpServletRequest request) throws IOException {
+        boolean cbor = names(request.getContentType(), CborConfig.CBOR_SEQ);
+        ObjectMapper mapper = cbor ? cborMapper : objectMapper;
+        TaskService taskService = null;
+        int imported = 0;
+        int failed = 0;
+        int index = 0;
+        List<BulkError> errors = new ArrayList<>();
+        List<Task> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+        try (MappingIterator<Task> iterator = mapper.readerFor(Task.class).readValues(request.getInputStream())) {
+            boolean more = true;
+            while (more) {
+                more = iterator.hasNextValue();
+                if (more) {
+                    chunk.add(iterator.nextValue());
+                }
+                if (chunk.size() == IMPORT_CHUNK_SIZE || (!more && !chunk.isEmpty())) {
+                    if (taskService == null) {
+                        taskService = creatingTaskService();
+                    }
+                    // A refused chunk writes none of its tasks, imported counts exactly the tasks stored so far
+                    List<BulkError> chunkErrors = taskService.importTasks(chunk, index);
+                    imported += chunk.size() - chunkErrors.size();
+                    failed += chunkErrors.size();
+                    addImportErrors(errors, chunkErrors);
+                    index += chunk.size();
+                    chunk.clear();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            // Return a bad request response telling how far the import went
+            return ResponseEntity.badRequest().body(Map.of(
+                    "error", "Invalid " + (cbor ? "CBOR" : "JSON") + " at task " + (index + chunk.size()),
+                    "imported", imported));
+        } catch (IllegalArgumentException e) {
+            // A chunk the repository refused, the tasks of the previous chunks are kept
+            return ResponseEntity.badRequest().body(Map.of(
+                    "error", ErrorMessages.of(e),
+                    "imported", imported));
+        }
+        return ResponseEntity.ok(Map.of("imported", imported, "failed", failed, "errors", errors));
+    }
+
     // Endpoint to create a new task
     @PostMapping("/todos")
     public ResponseEntity<Map<String, String>> createTask(@RequestBody Task task) {
         try {
             // Call the service to create a task
-            Task createdTask = taskService.createTask(task);
+            Task createdTask = creatingTaskService().createTask(task);
             // Build the URI for the created task
             URI location = ServletUriComponentsBuilder.fromCurrentRequest()
                     .path("/{id}")
@@ -59,20 +317,60 @@ public class TaskController {
             return ResponseEntity.created(location).body(Map.of("id", createdTask.getId().toString()));
         } catch (IllegalArgumentException e) {
             // Return a bad request response if there is an error
-            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+            return ResponseEntity.badRequest().body(Map.of("error", ErrorMessages.of(e)));
         }
     }
 
     // Endpoint to create multiple tasks
+    // mode=atomic (default) creates all the tasks or none, mode=partial creates the valid ones and reports the others
     @PostMapping("/todoslist")
-    public ResponseEntity<Map<String, Object>> createTasks(@RequestBody List<Task> tasks) {
+    public ResponseEntity<Map<String, Object>> createTasks(
+            @RequestBody List<Task> tasks,
+            @RequestParam(defaultValue = "atomic") String mode) {
+        boolean partial;
+        if ("partial".equalsIgnoreCase(mode)) {
+            partial = true;
+        } else if ("atomic".equalsIgnoreCase(mode)) {
+            partial = false;
+        } else {
+            return ResponseEntity.badRequest().body(Map.of("error", "Mode must be atomic or partial"));
+        }
         try {
             // Call the service to create multiple tasks
-            List<Task> createdTasks = taskService.createTasks(tasks);
-            return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("createdTasks", createdTasks));
+            BulkCreateResult result = creatingTaskService().createTasks(tasks, partial);
+            if (result.getCreatedTasks().isEmpty() && !result.getErrors().isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of("error", "No task was created", "errors", result.getErrors()));
+            }
+            if (partial) {
+                return ResponseEntity.status(HttpStatus.CREATED)
+                        .body(Map.of("createdTasks", result.getCreatedTasks(), "errors", result.getErrors()));
+            }
+            return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("createdTasks", result.getCreatedTasks()));
+        } catch (BulkValidationException e) {
+            // Return a bad request response listing every invalid task
+            return ResponseEntity.badRequest().body(Map.of("error", ErrorMessages.of(e), "errors", e.getErrors()));
+        } catch (IllegalArgumentException e) {
+            // Return a bad request response if there is an error
+            return ResponseEntity.badRequest().body(Map.of("error", ErrorMessages.of(e)));
+        }
+    }
+
+    // Endpoint to mark done, mark undone, delete or reprioritize many tasks in one request
+    // Tasks are selected by an ID list, by the getAllTasks filters, or by both; the response counts the affected tasks
+    @PostMapping("/todos/bulk")
+    public ResponseEntity<Map<String, Object>> updateTasks(@RequestBody BulkUpdateRequest request) {
+        try {
+            // Call the service to apply the change to every selected task
+            BulkUpdateResult result = taskService().updateTasks(request);
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("matched", result.getMatched());
+            response.put("updated", result.getUpdated());
+            response.put("unchanged", result.getUnchanged());
+            response.put("notFound", result.getNotFound());
+            return ResponseEntity.ok(response);
         } catch (IllegalArgumentException e) {
             // Return a bad request response if there is an error
-            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+            return ResponseEntity.badRequest().body(Map.of("error", ErrorMessages.of(e)));
         }
     }
 
@@ -81,14 +379,14 @@ public class TaskController {
     public ResponseEntity<Map<String, String>> updateTask(@PathVariable Long id, @RequestBody Task updatedTask) {
         try {
             // Call the service to update the task
-            Task task = taskService.updateTask(id, updatedTask);
+            Task task = taskService().updateTask(id, updatedTask);
             return ResponseEntity.ok(Map.of("message", "Task updated successfully", "id", task.getId().toString()));
         } catch (NoSuchElementException e) {
             // Return a not found response if the task does not exist
             return ResponseEntity.notFound().build();
         } catch (IllegalArgumentException e) {
             // Return a bad request response if there is an error
-            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+            return ResponseEntity.badRequest().body(Map.of("error", ErrorMessages.of(e)));
         }
     }
 
@@ -97,7 +395,7 @@ public class TaskController {
     public ResponseEntity<Map<String, String>> markTaskAsDone(@PathVariable Long id) {
         try {
             // Call the service to mark the task as done
-            Task task = taskService.markAsDone(id);
+            Task task = taskService().markAsDone(id);
             return ResponseEntity.ok(Map.of("message", "Task marked as done", "id", task.getId().toString()));
         } catch (NoSuchElementException e) {
             // Return a not found response if the task does not exist
@@ -110,7 +408,7 @@ public class TaskController {
     public ResponseEntity<Map<String, String>> markTaskAsUndone(@PathVariable Long id) {
         try {
             // Call the service to mark the task as undone
-            Task task = taskService.markTaskAsUndone(id);
+            Task task = taskService().markTaskAsUndone(id);
             return ResponseEntity.ok(Map.of("message", "Task marked as undone", "id", task.getId().toString()));
         } catch (NoSuchElementException e) {
             // Return a not found response if the task does not exist
@@ -118,7 +416,7 @@ public class TaskController {
         } catch (Exception e) {
             // Return an internal server error response if there is an unexpected error
             e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", e.getMessage()));
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", ErrorMessages.of(e)));
         }
     }
 
@@ -126,22 +424,77 @@ public class TaskController {
     @DeleteMapping("/todos/{id}/delete")
     public ResponseEntity<Void> deleteTask(@PathVariable Long id) {
         // Call the service to delete the task
-        taskService.deleteTask(id);
+        taskService().deleteTask(id);
         // Return a no content response
         return ResponseEntity.noContent().build();
     }
 
+    // Whether a Content-Type or Accept header names the given media type, wildcards aside
+    private static boolean names(String header, MediaType type) {
+        if (header == null) {
+            return false;
+        }
+        try {
+            for (MediaType mediaType : MediaType.parseMediaTypes(header)) {
+                if (type.equalsTypeAndSubtype(mediaType)) {
+                    return true;
+                }
+            }
+        } catch (InvalidMediaTypeException e) {
+            // A malformed header selects the default format
+        }
+        return false;
+    }
+
+    // Keep the first import errors only
+    private void addImportErrors(List<BulkError> errors, List<BulkError> chunkErrors) {
+        for (BulkError error : chunkErrors) {
+            if (errors.size() == MAX_IMPORT_ERRORS) {
+                return;
+            }
+            errors.add(error);
+        }
+    }
+
     // Endpoint to get the average time to complete tasks
     @GetMapping("/avg-time")
-    public ResponseEntity<Map<String, Long>> getAverageTime() {
+    public ResponseEntity<Map<String, Long>> getAverageTime(WebRequest webRequest) {
+        // Answer 304 Not Modified when the client already holds the current statistics
+        TaskPartition partition = partition();
+        if (notModified(partition, webRequest)) {
+            return null;
+        }
         // Call the service to get average times
-        AverageTime averageTime = taskService.getAverageTimes();
+        AverageTime averageTime = partition.getTaskService().getAverageTimes();
         Map<String, Long> response = new HashMap<>();
         response.put("totalTime", averageTime.getTotalTimeInMinutes());
         response.put("highTime", averageTime.getHighTimeInMinutes());
         response.put("mediumTime", averageTime.getMediumTimeInMinutes());
         response.put("lowTime", averageTime.getLowTimeInMinutes());
+        // Completion time percentiles, in minutes
+        String[] groups = {"low", "medium", "high"};
+        for (int percentile : new int[]{50, 90, 99}) {
+            response.put("totalP" + percentile, averageTime.getTotalPercentileInMinutes(percentile));
+            for (int priority = 0; priority < groups.length; priority++) {
+                response.put(groups[priority] + "P" + percentile, averageTime.getPercentileInMinutes(priority, percentile));
+            }
+        }
         return ResponseEntity.ok(response);
     }
 
+    // Endpoint to retrieve the tasks created and completed per minute, hour or day over the latest buckets, with the
+    // average completion time by priority in each bucket and over the whole window
+    // No entity tag: the window moves with the clock, not only with the data
+    @GetMapping("/analytics")
+    public ResponseEntity<Map<String, Object>> getAnalytics(
+            @RequestParam(defaultValue = "minute") String resolution) {
+        try {
+            // Call the service to get the analytics
+            return ResponseEntity.ok(taskService().getAnalytics(resolution));
+        } catch (IllegalArgumentException e) {
+            // Return a bad request response if there is an error
+            return ResponseEntity.badRequest().body(Map.of("error", ErrorMessages.of(e)));
+        }
+    }
+
 }
@@ -22,6 +22,29 @@ public class Task {
         this.done = false;
     }
 
+    // Copy constructor, used to modify a task without touching the stored instance
+    public Task(Task other) {
+        this.id = other.id;
+        this.name = other.name;
+        this.done = other.done;
+        this.priority = other.priority;
+        this.creationDate = other.creationDate;
+        this.doneDate = other.doneDate;
+        this.dueDate = other.dueDate;
+    }
+
+    // Full constructor, used to materialize stored tasks without going through the defaults
+    public Task(Long id, String name, boolean done, int priority, LocalDateTime creationDate,
+                LocalDateTime doneDate, LocalDateTime dueDate) {
+        this.id = id;
+        this.name = name;
+        this.done = done;
+        this.priority = priority;
+        this.creationDate = creationDate;
+        this.doneDate = doneDate;
+        this.dueDate = dueDate;
+    }
+
     // Getters and setters
     public Long getId() {
         return id;
@@ -0,0 +1,21 @@
+package com.encora.breakable_toy.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Monotonic counter, striped so concurrent increments do not contend
+public class Counter {
+
+    private final LongAdder value = new LongAdder();
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+}
@@ -0,0 +1,98 @@
+package com.encora.breakable_toy.metrics;
+
+import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Times every request handled by a controller method, from the first byte in to the last byte out
+// The time therefore includes argument binding and response serialization, unlike the service timers.
+// Streaming responses are timed until their async processing completes
+@Component
+public class EndpointMetricsFilter implements Filter {
+
+    // Timers and error counters of one handler method
+    private static final class EndpointMetrics {
+        private final Timer timer;
+        private final Counter errors;
+
+        private EndpointMetrics(Timer timer, Counter errors) {
+            this.timer = timer;
+            this.errors = errors;
+        }
+    }
+
+    private final MetricsRegistry metricsRegistry;
+    private final Map<Method, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+
+    public EndpointMetricsFilter(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        record(request, response, start);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                record(request, response, start);
+            }
+        }
+    }
+
+    private void record(ServletRequest request, ServletResponse response, long start) {
+        long elapsed = System.nanoTime() - start;
+        // Requests that matched no controller method (static resources, unknown paths) are not timed
+        if (!(request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE) instanceof HandlerMethod handler)) {
+            return;
+        }
+        EndpointMetrics metrics = endpoints.get(handler.getMethod());
+        if (metrics == null) {
+            metrics = endpoints.computeIfAbsent(handler.getMethod(), method -> register((HttpServletRequest) request));
+        }
+        metrics.timer.record(elapsed);
+        if (((HttpServletResponse) response).getStatus() >= 400) {
+            metrics.errors.increment();
+        }
+    }
+
+    // Metrics of a handler method, labelled with the route that matched the first request it handled
+    private EndpointMetrics register(HttpServletRequest request) {
+        String method = request.getMethod();
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String route = pattern != null ? pattern.toString() : request.getRequestURI();
+        return new EndpointMetrics(
+                metricsRegistry.timer("todo_http_request_seconds",
+                        "Time spent handling requests, serialization included", "method", method, "route", route),
+                metricsRegistry.counter("todo_http_request_errors_total", "Requests answered with a 4xx or 5xx status",
+                        "method", method, "route", route));
+    }
+}
@@ -0,0 +1,17 @@
+package com.encora.breakable_toy.metrics;
+
+import java.util.function.LongSupplier;
+
+// Current value of something that goes up and down, such as a queue depth, read from its owner on every scrape
+public class Gauge {
+
+    private final LongSupplier value;
+
+    public Gauge(LongSupplier value) {
+        this.value = value;
+    }
+
+    public long get() {
+        return value.getAsLong();
+    }
+}
@@ -0,0 +1,135 @@
+package com.encora.breakable_toy.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+// Named timers and counters of the application, rendered in the Prometheus text format
+// Metrics are looked up once, when their owner is built, and then recorded to directly
+@Component
+public class MetricsRegistry {
+
+    // Bucket bounds of every timer, rendered once as le label values in seconds
+    private static final String[] BUCKET_BOUNDS = bucketBounds();
+
+    // Prometheus types of the metrics
+    private static final String HISTOGRAM = "histogram";
+    private static final String COUNTER = "counter";
+    private static final String GAUGE = "gauge";
+
+    // Metrics sharing a name, one per label set
+    private static final class Family {
+        private final String help;
+        private final String type;
+        private final Map<String, Object> metrics = new ConcurrentHashMap<>();
+
+        private Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private final Map<String, Family> families = new ConcurrentHashMap<>();
+
+    // Timer with the given name and labels, created on first use
+    // Labels are given as name, value pairs
+    public Timer timer(String name, String help, String... labels) {
+        return (Timer) family(name, help, HISTOGRAM).metrics.computeIfAbsent(labelSet(labels), key -> new Timer());
+    }
+
+    // Counter with the given name and labels, created on first use
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, COUNTER).metrics.computeIfAbsent(labelSet(labels), key -> new Counter());
+    }
+
+    // Gauge with the given name and labels reading the given value, the first value registered for them is kept
+    public Gauge gauge(String name, String help, LongSupplier value, String... labels) {
+        return (Gauge) family(name, help, GAUGE).metrics.computeIfAbsent(labelSet(labels), key -> new Gauge(value));
+    }
+
+    // Render every metric in the Prometheus text exposition format, timers as histograms in seconds
+    public String scrape() {
+        StringBuilder out = new StringBuilder(8192);
+        for (Map.Entry<String, Family> entry : new TreeMap<>(families).entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            out.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Object> metric : new TreeMap<>(family.metrics).entrySet()) {
+                String labels = metric.getKey();
+                if (metric.getValue() instanceof Timer timer) {
+                    // Buckets are cumulative: each one counts the durations up to its bound, the last one all of them
+                    long[] counts = timer.bucketCounts();
+                    long cumulative = 0;
+                    for (int i = 0; i < counts.length; i++) {
+                        cumulative += counts[i];
+                        String le = "le=\"" + BUCKET_BOUNDS[i] + "\"";
+                        sample(out, name + "_bucket", labels.isEmpty() ? le : labels + "," + le,
+                                Long.toString(cumulative));
+                    }
+                    sample(out, name + "_sum", labels, seconds(timer.totalNanos()));
+                    sample(out, name + "_count", labels, Long.toString(cumulative));
+                } else if (metric.getValue() instanceof Gauge gauge) {
+                    sample(out, name, labels, Long.toString(gauge.get()));
+                } else {
+                    sample(out, name, labels, Long.toString(((Counter) metric.getValue()).get()));
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private Family family(String name, String help, String type) {
+        Family family = families.computeIfAbsent(name, key -> new Family(help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered with another type");
+        }
+        return family;
+    }
+
+    // Label pairs joined as they appear between the braces of a sample
+    private static String labelSet(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be given as name, value pairs");
+        }
+        StringBuilder labelSet = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                labelSet.append(',');
+            }
+            labelSet.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+        return labelSet.toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, String value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static String[] bucketBounds() {
+        long[] nanos = Timer.boundsNanos();
+        String[] bounds = new String[nanos.length + 1];
+        for (int i = 0; i < nanos.length; i++) {
+            bounds[i] = BigDecimal.valueOf(nanos[i], 9).stripTrailingZeros().toPlainString();
+        }
+        bounds[nanos.length] = "+Inf";
+        return bounds;
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+}
@@ -0,0 +1,66 @@
+package com.encora.breakable_toy.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latency timer: counts of the recorded durations per fixed bucket, plus their sum
+// Buckets are cumulative since start, as Prometheus histograms are; quantiles over any window are computed by the
+// monitoring system from the increase of the buckets, never from the whole lifetime of the process.
+// Recording never allocates
+public class Timer {
+
+    // Upper bounds of the buckets in nanoseconds, from 50 µs to 10 s; a last bucket takes the longer durations
+    private static final long[] BOUNDS_NANOS = {
+            50_000, 100_000, 250_000, 500_000,
+            1_000_000, 2_500_000, 5_000_000, 10_000_000, 25_000_000, 50_000_000, 100_000_000, 250_000_000,
+            500_000_000, 1_000_000_000, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L};
+
+    private final LongAdder[] buckets = new LongAdder[BOUNDS_NANOS.length + 1];
+    private final LongAdder totalNanos = new LongAdder();
+
+    public Timer() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    // Record a duration
+    public void record(long nanos) {
+        int bucket = Arrays.binarySearch(BOUNDS_NANOS, nanos);
+        buckets[bucket >= 0 ? bucket : -bucket - 1].increment();
+        totalNanos.add(nanos);
+    }
+
+    // Record the time elapsed since a System.nanoTime() reading
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    // Number of recorded durations
+    public long count() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    // Sum of the recorded durations in nanoseconds
+    public long totalNanos() {
+        return totalNanos.sum();
+    }
+
+    // Upper bounds of the buckets in nanoseconds, the last bucket has none
+    public static long[] boundsNanos() {
+        return BOUNDS_NANOS.clone();
+    }
+
+    // Number of recorded durations of each bucket, one more than there are bounds
+    public long[] bucketCounts() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+}
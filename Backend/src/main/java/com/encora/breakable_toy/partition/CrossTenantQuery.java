@@ -0,0 +1,156 @@
+package com.encora.breakable_toy.partition;
+
+import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.metrics.MetricsRegistry;
+import com.encora.breakable_toy.metrics.Timer;
+import com.encora.breakable_toy.service.TaskPage;
+import com.encora.breakable_toy.service.TaskQuery;
+import com.encora.breakable_toy.utils.Pages;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Admin queries over every tenant: the query runs on each partition in parallel and the sorted results are merged
+// Each partition returns, in query order, its first page * pageSize matches and its match count; a k-way merge of
+// those runs yields the requested page, since no task beyond them can precede it
+@Component
+public class CrossTenantQuery {
+
+    private final TaskPartitions taskPartitions;
+    // Runs the per-partition queries, bounded so a large tenant count cannot start unbounded work
+    private final ExecutorService executor;
+    private final Timer queryTimer;
+
+    public CrossTenantQuery(TaskPartitions taskPartitions, MetricsRegistry metricsRegistry,
+                            @Value("${todo.partitions.query-threads:0}") int threads) {
+        this.taskPartitions = taskPartitions;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "cross-tenant-query-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.queryTimer = metricsRegistry.timer("todo_cross_tenant_query_seconds",
+                "Time spent running admin queries over every tenant");
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    // Retrieve one page of the tasks of every tenant matching the filters, in the requested order
+    // Tasks comparing equal are ordered by tenant, so pages are stable across requests
+    public Map<String, Object> findPage(String sortBy, String sortOrder, int page, Boolean done, String name,
+                                        Integer priority) {
+        long start = System.nanoTime();
+        try {
+            if (page < 1) {
+                throw new IllegalArgumentException("Page number must be greater than or equal to 1");
+            }
+            long limit = (long) page * Pages.TASKS_PER_PAGE;
+            if (limit > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Page number exceeds total pages");
+            }
+            TaskQuery query = TaskQuery.compile(sortBy, sortOrder, done, name, priority);
+
+            // Scatter: the partition queries run concurrently, each one on its own partition only
+            List<TaskPartition> partitions = taskPartitions.all();
+            List<CompletableFuture<TaskPage>> futures = new ArrayList<>(partitions.size());
+            for (TaskPartition partition : partitions) {
+                futures.add(CompletableFuture.supplyAsync(
+                        () -> partition.getTaskQueryEngine().findPage(query, 1, (int) limit), executor));
+            }
+
+            // Gather: one sorted run per partition
+            List<Run> runs = new ArrayList<>(partitions.size());
+            long totalTasks = 0;
+            for (int i = 0; i < partitions.size(); i++) {
+                TaskPage taskPage = join(futures.get(i));
+                totalTasks += taskPage.getTotalTasks();
+                if (!taskPage.getTasks().isEmpty()) {
+                    runs.add(new Run(partitions.get(i).getTenant(), taskPage.getTasks()));
+                }
+            }
+            if (totalTasks == 0) {
+                return Map.of("message", "No tasks found");
+            }
+            long totalPages = (totalTasks + Pages.TASKS_PER_PAGE - 1) / Pages.TASKS_PER_PAGE;
+            if (page > totalPages) {
+                throw new IllegalArgumentException("Page number exceeds total pages");
+            }
+
+            List<TenantTask> tasks = merge(runs, query.comparator(), (page - 1) * Pages.TASKS_PER_PAGE,
+                    Pages.TASKS_PER_PAGE);
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("tasks", tasks);
+            response.put("currentPage", page);
+            response.put("totalPages", totalPages);
+            response.put("totalTasks", totalTasks);
+            response.put("tenants", partitions.size());
+            return response;
+        } finally {
+            queryTimer.recordSince(start);
+        }
+    }
+
+    // K-way merge of sorted runs with a heap holding the head of each run, skipping the first offset tasks
+    private static List<TenantTask> merge(List<Run> runs, Comparator<Task> comparator, int offset, int count) {
+        Comparator<Run> byHead = (a, b) -> {
+            int result = comparator.compare(a.head(), b.head());
+            return result != 0 ? result : a.tenant.compareTo(b.tenant);
+        };
+        PriorityQueue<Run> heap = new PriorityQueue<>(Math.max(1, runs.size()), byHead);
+        heap.addAll(runs);
+        List<TenantTask> tasks = new ArrayList<>(count);
+        int skipped = 0;
+        while (!heap.isEmpty() && tasks.size() < count) {
+            Run run = heap.poll();
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                tasks.add(new TenantTask(run.tenant, run.head()));
+            }
+            run.position++;
+            if (run.position < run.tasks.size()) {
+                heap.add(run);
+            }
+        }
+        return tasks;
+    }
+
+    private static TaskPage join(CompletableFuture<TaskPage> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    // Sorted tasks of one partition and the position of the next one to merge
+    private static final class Run {
+        private final String tenant;
+        private final List<Task> tasks;
+        private int position;
+
+        private Run(String tenant, List<Task> tasks) {
+            this.tenant = tenant;
+            this.tasks = tasks;
+        }
+
+        private Task head() {
+            return tasks.get(position);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.encora.breakable_toy.partition;
+
+// Thrown when a request names a malformed tenant
+public class InvalidTenantException extends IllegalArgumentException {
+
+    public InvalidTenantException(String message) {
+        super(message);
+    }
+}
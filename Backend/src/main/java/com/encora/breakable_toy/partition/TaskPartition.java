@@ -0,0 +1,123 @@
+package com.encora.breakable_toy.partition;
+
+import com.encora.breakable_toy.persistence.TaskPersistence;
+import com.encora.breakable_toy.repository.TaskRepository;
+import com.encora.breakable_toy.service.TaskChangeFeed;
+import com.encora.breakable_toy.service.TaskDueNotifier;
+import com.encora.breakable_toy.service.TaskQueryEngine;
+import com.encora.breakable_toy.service.TaskService;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// The tasks of one tenant: its own storage, indexes, change log, completion statistics, query cache, due date events
+// and journal
+// Nothing is shared with the other partitions, so their writes never contend and their queries never scan each other
+public class TaskPartition {
+
+    private final String tenant;
+    private final TaskRepository taskRepository;
+    private final TaskQueryEngine taskQueryEngine;
+    private final TaskService taskService;
+    private final TaskChangeFeed taskChangeFeed;
+    private final TaskDueNotifier taskDueNotifier;
+    private final TaskPersistence taskPersistence;
+    // Requests using the partition, or -1 once it is evicted
+    private final AtomicInteger users = new AtomicInteger();
+    // Time, from System.nanoTime, the partition was last released
+    private volatile long lastUsed = System.nanoTime();
+
+    public TaskPartition(String tenant, TaskRepository taskRepository, TaskQueryEngine taskQueryEngine,
+                         TaskService taskService, TaskChangeFeed taskChangeFeed, TaskDueNotifier taskDueNotifier,
+                         TaskPersistence taskPersistence) {
+        this.tenant = tenant;
+        this.taskRepository = taskRepository;
+        this.taskQueryEngine = taskQueryEngine;
+        this.taskService = taskService;
+        this.taskChangeFeed = taskChangeFeed;
+        this.taskDueNotifier = taskDueNotifier;
+        this.taskPersistence = taskPersistence;
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    public TaskRepository getTaskRepository() {
+        return taskRepository;
+    }
+
+    public TaskQueryEngine getTaskQueryEngine() {
+        return taskQueryEngine;
+    }
+
+    public TaskService getTaskService() {
+        return taskService;
+    }
+
+    public TaskChangeFeed getTaskChangeFeed() {
+        return taskChangeFeed;
+    }
+
+    // Due soon and overdue events of the tasks of this tenant
+    public TaskDueNotifier getTaskDueNotifier() {
+        return taskDueNotifier;
+    }
+
+    // Weak entity tag of the task list and the statistics of this partition
+    // The tenant is part of the tag, so a tag obtained for one tenant never validates the data of another, and so is
+    // the epoch of the change log, so a tag handed out before a restart or an eviction never validates again
+    public String getDataETag() {
+        return "W/\"" + tenant + "-" + taskRepository.getRevisionEpoch() + "-" + taskService.getDataRevision() + "\"";
+    }
+
+    // Register a request using the partition, false when the partition was evicted and must not be used
+    boolean acquire() {
+        while (true) {
+            int current = users.get();
+            if (current < 0) {
+                return false;
+            }
+            if (users.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    // Unregister a request using the partition
+    void release() {
+        lastUsed = System.nanoTime();
+        users.decrementAndGet();
+    }
+
+    // Mark the partition evicted if no request used it since the given time and no client streams its changes
+    // Without persistence only an empty partition is evicted, its tasks would be lost otherwise. The checks are
+    // repeated once no request can acquire the partition anymore, so a request finishing meanwhile keeps it
+    boolean evict(long idleSince, boolean persistent) {
+        if (!idle(idleSince, persistent) || !users.compareAndSet(0, -1)) {
+            return false;
+        }
+        if (!idle(idleSince, persistent)) {
+            users.set(0);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean idle(long idleSince, boolean persistent) {
+        return lastUsed - idleSince <= 0 && !taskChangeFeed.hasSubscribers()
+                && (persistent || taskRepository.count() == 0);
+    }
+
+    // Restore the persisted tasks, if any, before the partition serves requests
+    void start() throws IOException {
+        taskPersistence.start();
+    }
+
+    // Close the change streams, stop the due date events and persist the tasks
+    void stop() throws IOException, InterruptedException {
+        taskChangeFeed.stop();
+        taskDueNotifier.stop();
+        taskPersistence.stop();
+    }
+}
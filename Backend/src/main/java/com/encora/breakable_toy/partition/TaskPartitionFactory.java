@@ -0,0 +1,118 @@
+package com.encora.breakable_toy.partition;
+
+import com.encora.breakable_toy.metrics.MetricsRegistry;
+import com.encora.breakable_toy.persistence.PersistenceProperties;
+import com.encora.breakable_toy.persistence.TaskPersistence;
+import com.encora.breakable_toy.repository.ColumnarTaskStorage;
+import com.encora.breakable_toy.repository.MapTaskStorage;
+import com.encora.breakable_toy.repository.TaskChangeLog;
+import com.encora.breakable_toy.repository.TaskRepository;
+import com.encora.breakable_toy.repository.TaskStorage;
+import com.encora.breakable_toy.service.TaskChangeFeed;
+import com.encora.breakable_toy.service.TaskDueNotifier;
+import com.encora.breakable_toy.service.TaskQueryCache;
+import com.encora.breakable_toy.service.TaskQueryEngine;
+import com.encora.breakable_toy.service.TaskService;
+import com.encora.breakable_toy.utils.AverageTime;
+import com.encora.breakable_toy.utils.CompletionAnalytics;
+import com.encora.breakable_toy.utils.TaskValidator;
+import jakarta.annotation.PreDestroy;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+// Builds the partition of a tenant, wired the way the application context used to wire the single task store
+// Every partition records into the same metrics, so the timers and counters cover all the tenants, and runs its
+// parallel scans on the same pool, so the scans of all the tenants together use at most one thread per core
+public class TaskPartitionFactory {
+
+    private final String storageType;
+    private final int changeLogCapacity;
+    private final int queryCacheSize;
+    private final Duration dueNotice;
+    private final int parallelThreshold;
+    // Runs the parallel scans of large queries, null when they are disabled
+    private final ForkJoinPool scanPool;
+    private final PersistenceProperties persistenceProperties;
+    private final TaskValidator taskValidator;
+    private final MetricsRegistry metricsRegistry;
+
+    public TaskPartitionFactory(String storageType, int changeLogCapacity, int queryCacheSize, Duration dueNotice,
+                                int queryParallelism, int parallelThreshold,
+                                PersistenceProperties persistenceProperties, TaskValidator taskValidator,
+                                MetricsRegistry metricsRegistry) {
+        // Fail on startup rather than on the first request of a tenant
+        storage(storageType);
+        if (dueNotice.isNegative()) {
+            throw new IllegalArgumentException("The due soon notice cannot be negative");
+        }
+        if (queryParallelism < 0) {
+            throw new IllegalArgumentException("The query parallelism cannot be negative");
+        }
+        this.storageType = storageType;
+        this.changeLogCapacity = changeLogCapacity;
+        this.queryCacheSize = queryCacheSize;
+        this.dueNotice = dueNotice;
+        this.parallelThreshold = parallelThreshold;
+        int parallelism = queryParallelism > 0 ? queryParallelism : Runtime.getRuntime().availableProcessors();
+        // A single thread gains nothing from splitting a scan
+        this.scanPool = parallelism > 1 ? scanPool(parallelism) : null;
+        this.persistenceProperties = persistenceProperties;
+        this.taskValidator = taskValidator;
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scanPool != null) {
+            scanPool.shutdownNow();
+        }
+    }
+
+    // New, empty storage of the given type (map or columnar)
+    public static TaskStorage storage(String type) {
+        return switch (type.toLowerCase()) {
+            case "map" -> new MapTaskStorage();
+            case "columnar" -> new ColumnarTaskStorage();
+            default -> throw new IllegalArgumentException("Unknown task storage type: " + type);
+        };
+    }
+
+    // Build the partition of a tenant, persisted in the given directory when persistence is enabled
+    // The partition is not started: its persisted tasks are restored by TaskPartitions before it is published
+    public TaskPartition create(String tenant, Path directory) {
+        TaskRepository taskRepository = new TaskRepository(storage(storageType), new TaskChangeLog(changeLogCapacity),
+                metricsRegistry);
+        TaskQueryEngine taskQueryEngine = new TaskQueryEngine(taskRepository, metricsRegistry, scanPool,
+                parallelThreshold);
+        TaskService taskService = new TaskService(taskRepository, taskValidator, new AverageTime(),
+                new CompletionAnalytics(), taskQueryEngine, new TaskQueryCache(queryCacheSize, metricsRegistry),
+                metricsRegistry);
+        TaskDueNotifier taskDueNotifier = new TaskDueNotifier(taskRepository, dueNotice, "task-due-notifier-" + tenant,
+                metricsRegistry);
+        TaskChangeFeed taskChangeFeed = new TaskChangeFeed(taskRepository, taskDueNotifier,
+                "task-change-feed-" + tenant);
+        TaskPersistence taskPersistence = new TaskPersistence(persistenceProperties, directory, snapshotImage(tenant),
+                taskRepository, taskService);
+        return new TaskPartition(tenant, taskRepository, taskQueryEngine, taskService, taskChangeFeed,
+                taskDueNotifier, taskPersistence);
+    }
+
+    // Snapshot image the partition of a tenant starts from, only the default tenant has one
+    private Path snapshotImage(String tenant) {
+        String image = persistenceProperties.getSnapshotImage();
+        return image != null && !image.isEmpty() && TaskPartitions.DEFAULT_TENANT.equals(tenant) ? Path.of(image) : null;
+    }
+
+    // Pool of daemon worker threads named after the scans they run
+    private static ForkJoinPool scanPool(int parallelism) {
+        return new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("task-scan-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+}
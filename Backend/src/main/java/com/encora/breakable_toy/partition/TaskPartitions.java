@@ -0,0 +1,258 @@
+package com.encora.breakable_toy.partition;
+
+import com.encora.breakable_toy.persistence.PersistenceProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// The task partitions, one per tenant, created by the first write to a tenant or when it is provisioned
+// Requests pick their partition with the X-Tenant header (or the tenant parameter, for clients that cannot set
+// headers); requests naming no tenant use the default partition, which holds the tasks stored before partitioning.
+// Reads never create a partition. Partitions left idle are evicted, persisted ones are restored on their next use
+@Component
+public class TaskPartitions {
+
+    private static final Logger log = LoggerFactory.getLogger(TaskPartitions.class);
+
+    // Header and request parameter naming the tenant of a request
+    public static final String TENANT_HEADER = "X-Tenant";
+    public static final String TENANT_PARAMETER = "tenant";
+    // Tenant of the requests naming none
+    public static final String DEFAULT_TENANT = "default";
+    // Tenants are directory names when persistence is enabled, so they are kept to a safe alphabet
+    private static final Pattern TENANT_PATTERN = Pattern.compile("[A-Za-z0-9][A-Za-z0-9_-]{0,63}");
+    // Directory, below the persistence directory, holding one directory per tenant other than the default one
+    private static final String TENANTS_DIRECTORY = "tenants";
+    // Request attribute prefix of the partitions a request uses, each one is released when the request completes
+    private static final String LEASE_ATTRIBUTE = TaskPartitions.class.getName() + ".lease.";
+    // Longest delay between two idle partition checks
+    private static final long MAX_EVICTION_INTERVAL_MILLIS = 60_000;
+
+    private final TaskPartitionFactory taskPartitionFactory;
+    private final PersistenceProperties persistenceProperties;
+    private final int maxTenants;
+    private final Duration idleTimeout;
+    private final ConcurrentHashMap<String, TaskPartition> partitions = new ConcurrentHashMap<>();
+    // Serializes the creation of partitions, which may restore persisted tasks, outside the map's bins
+    private final ReentrantLock creationLock = new ReentrantLock();
+    private volatile boolean stopped;
+    private ScheduledExecutorService evictor;
+
+    public TaskPartitions(TaskPartitionFactory taskPartitionFactory, PersistenceProperties persistenceProperties,
+                          @Value("${todo.partitions.max-tenants:1000}") int maxTenants,
+                          @Value("${todo.partitions.idle-timeout:PT30M}") Duration idleTimeout) {
+        this.taskPartitionFactory = taskPartitionFactory;
+        this.persistenceProperties = persistenceProperties;
+        this.maxTenants = maxTenants;
+        this.idleTimeout = idleTimeout;
+    }
+
+    // Restore the default partition and every persisted tenant, before the application accepts requests
+    @PostConstruct
+    public void start() throws IOException {
+        getOrCreate(DEFAULT_TENANT);
+        long timeout = idleTimeout.toMillis();
+        if (timeout > 0) {
+            long interval = Math.min(timeout, MAX_EVICTION_INTERVAL_MILLIS);
+            evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "tenant-evictor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            evictor.scheduleWithFixedDelay(this::evictIdle, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        if (!persistenceProperties.isEnabled()) {
+            return;
+        }
+        Path tenantsDirectory = Paths.get(persistenceProperties.getDirectory()).resolve(TENANTS_DIRECTORY);
+        if (!Files.isDirectory(tenantsDirectory)) {
+            return;
+        }
+        try (Stream<Path> directories = Files.list(tenantsDirectory)) {
+            for (Path directory : directories.filter(Files::isDirectory).toList()) {
+                String tenant = directory.getFileName().toString();
+                if (TENANT_PATTERN.matcher(tenant).matches()) {
+                    getOrCreate(tenant);
+                } else {
+                    log.warn("Ignoring {}, not a tenant directory", directory);
+                }
+            }
+        }
+    }
+
+    // Persist and close every partition
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        // An eviction in progress completes, its partition is no longer in the map stopped below
+        if (evictor != null) {
+            evictor.shutdown();
+            evictor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        creationLock.lock();
+        try {
+            stopped = true;
+        } finally {
+            creationLock.unlock();
+        }
+        for (TaskPartition partition : partitions.values()) {
+            partition.stop();
+        }
+    }
+
+    // Partition of a tenant to read from; a null or empty tenant selects the default partition
+    // A tenant evicted with its persisted tasks is restored, one never written to is unknown
+    public TaskPartition get(String tenant) {
+        return lookup(tenant, false);
+    }
+
+    // Partition of a tenant to write to, created on first use; a null or empty tenant selects the default partition
+    public TaskPartition getOrCreate(String tenant) {
+        return lookup(tenant, true);
+    }
+
+    // Create the partition of a tenant ahead of its first write, true when it did not exist yet
+    public boolean provision(String tenant) {
+        boolean existed = partitions.containsKey(tenant) || persisted(tenant);
+        getOrCreate(tenant);
+        return !existed;
+    }
+
+    // Every partition, ordered by tenant
+    public List<TaskPartition> all() {
+        List<TaskPartition> all = new ArrayList<>(partitions.values());
+        all.sort(Comparator.comparing(TaskPartition::getTenant));
+        return all;
+    }
+
+    // Find, restore or create a partition and lease it to the current request, if any
+    // An evicted partition is only left in the map while its eviction is checked, it is then removed or kept
+    private TaskPartition lookup(String tenant, boolean create) {
+        if (tenant == null || tenant.isEmpty()) {
+            tenant = DEFAULT_TENANT;
+        }
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request != null) {
+            Object leased = request.getAttribute(LEASE_ATTRIBUTE + tenant, RequestAttributes.SCOPE_REQUEST);
+            if (leased != null) {
+                return (TaskPartition) leased;
+            }
+        }
+        while (true) {
+            TaskPartition partition = partitions.get(tenant);
+            if (partition == null) {
+                if (!create && !persisted(tenant)) {
+                    if (!TENANT_PATTERN.matcher(tenant).matches()) {
+                        throw invalidTenant();
+                    }
+                    throw new UnknownTenantException(tenant);
+                }
+                partition = create(tenant);
+            }
+            if (request == null) {
+                return partition;
+            }
+            if (partition.acquire()) {
+                // Released once the request completes; a streaming response only holds it until its first dispatch
+                // ends, its change feed subscription keeps the partition from being evicted
+                request.setAttribute(LEASE_ATTRIBUTE + tenant, partition, RequestAttributes.SCOPE_REQUEST);
+                request.registerDestructionCallback(LEASE_ATTRIBUTE + tenant, partition::release,
+                        RequestAttributes.SCOPE_REQUEST);
+                return partition;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    // Whether the tasks of a tenant that is not loaded were persisted, so it can be restored
+    private boolean persisted(String tenant) {
+        return DEFAULT_TENANT.equals(tenant) || persistenceProperties.isEnabled()
+                && TENANT_PATTERN.matcher(tenant).matches() && Files.isDirectory(directory(tenant));
+    }
+
+    // Stop and drop the partitions nobody used for the idle timeout, the default one is always kept
+    // Partitions are stopped under the creation lock, so a tenant is only restored once its final snapshot is written
+    private void evictIdle() {
+        long idleSince = System.nanoTime() - idleTimeout.toNanos();
+        for (TaskPartition partition : partitions.values()) {
+            if (DEFAULT_TENANT.equals(partition.getTenant())
+                    || !partition.evict(idleSince, persistenceProperties.isEnabled())) {
+                continue;
+            }
+            creationLock.lock();
+            try {
+                partitions.remove(partition.getTenant(), partition);
+                partition.stop();
+                log.info("Evicted idle tenant {}", partition.getTenant());
+            } catch (IOException e) {
+                log.error("Could not persist the tasks of evicted tenant {}", partition.getTenant(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                creationLock.unlock();
+            }
+        }
+    }
+
+    private static InvalidTenantException invalidTenant() {
+        return new InvalidTenantException(
+                "Tenant must be 1 to 64 letters, digits, '-' or '_', starting with a letter or a digit");
+    }
+
+    private TaskPartition create(String tenant) {
+        if (!TENANT_PATTERN.matcher(tenant).matches()) {
+            throw invalidTenant();
+        }
+        creationLock.lock();
+        try {
+            TaskPartition partition = partitions.get(tenant);
+            if (partition != null) {
+                return partition;
+            }
+            if (stopped) {
+                throw new IllegalStateException("The task partitions are stopped");
+            }
+            if (partitions.size() >= maxTenants) {
+                throw new TenantLimitException("Too many tenants, at most " + maxTenants + " are allowed");
+            }
+            partition = taskPartitionFactory.create(tenant, directory(tenant));
+            try {
+                partition.start();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not restore the tasks of tenant " + tenant, e);
+            }
+            partitions.put(tenant, partition);
+            return partition;
+        } finally {
+            creationLock.unlock();
+        }
+    }
+
+    // Persistence directory of a tenant; the default tenant keeps the directory used before partitioning
+    private Path directory(String tenant) {
+        Path root = Paths.get(persistenceProperties.getDirectory());
+        return DEFAULT_TENANT.equals(tenant) ? root : root.resolve(TENANTS_DIRECTORY).resolve(tenant);
+    }
+}
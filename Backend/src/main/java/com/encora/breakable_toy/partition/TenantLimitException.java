@@ -0,0 +1,10 @@
+package com.encora.breakable_toy.partition;
+
+// Thrown when a tenant cannot be created because the maximum number of tenants are loaded
+// Not a client error: the same request succeeds once idle tenants have been evicted
+public class TenantLimitException extends RuntimeException {
+
+    public TenantLimitException(String message) {
+        super(message);
+    }
+}
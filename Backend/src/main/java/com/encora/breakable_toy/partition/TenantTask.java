@@ -0,0 +1,23 @@
+package com.encora.breakable_toy.partition;
+
+import com.encora.breakable_toy.entity.Task;
+
+// A task returned by a cross-tenant query, with the tenant owning it (task IDs are only unique within a tenant)
+public final class TenantTask {
+
+    private final String tenant;
+    private final Task task;
+
+    public TenantTask(String tenant, Task task) {
+        this.tenant = tenant;
+        this.task = task;
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    public Task getTask() {
+        return task;
+    }
+}
@@ -0,0 +1,11 @@
+package com.encora.breakable_toy.partition;
+
+import java.util.NoSuchElementException;
+
+// Thrown when a read names a tenant that was never written to nor provisioned
+public class UnknownTenantException extends NoSuchElementException {
+
+    public UnknownTenantException(String tenant) {
+        super("Unknown tenant: " + tenant);
+    }
+}
@@ -0,0 +1,20 @@
+package com.encora.breakable_toy.persistence;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Durability of directory entries: a created, renamed or deleted file only survives a crash once its directory is forced
+final class Directories {
+
+    private Directories() {
+    }
+
+    // Force the entries of a directory to disk
+    static void force(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+}
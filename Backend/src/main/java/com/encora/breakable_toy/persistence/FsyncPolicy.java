@@ -0,0 +1,11 @@
+package com.encora.breakable_toy.persistence;
+
+// When the write-ahead log forces its records to disk
+public enum FsyncPolicy {
+    // Every write waits until its record is on disk, concurrent writes share one fsync (group commit)
+    ALWAYS,
+    // Writes wait until their record reaches the operating system, the log is forced at a fixed interval
+    INTERVAL,
+    // Writes wait until their record reaches the operating system, the log is only forced on rotation and shutdown
+    NEVER
+}
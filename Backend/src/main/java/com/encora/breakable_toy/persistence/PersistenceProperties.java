@@ -0,0 +1,72 @@
+package com.encora.breakable_toy.persistence;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+// Settings of the task persistence, bound from the todo.persistence properties
+@ConfigurationProperties(prefix = "todo.persistence")
+public class PersistenceProperties {
+
+    // Whether tasks are logged and restored on startup, the store is memory only otherwise
+    private boolean enabled = false;
+    // Directory holding the log segments and the snapshots
+    private String directory = "data";
+    // When log records are forced to disk
+    private FsyncPolicy fsyncPolicy = FsyncPolicy.INTERVAL;
+    // Maximum time between two forces with the INTERVAL policy
+    private Duration fsyncInterval = Duration.ofMillis(100);
+    // Time between two snapshots, zero disables periodic snapshots
+    private Duration snapshotInterval = Duration.ofMinutes(10);
+    // Prebuilt snapshot file the default tenant starts from when its directory has no snapshot yet, or at every start
+    // when persistence is disabled
+    private String snapshotImage;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    public void setFsyncPolicy(FsyncPolicy fsyncPolicy) {
+        this.fsyncPolicy = fsyncPolicy;
+    }
+
+    public Duration getFsyncInterval() {
+        return fsyncInterval;
+    }
+
+    public void setFsyncInterval(Duration fsyncInterval) {
+        this.fsyncInterval = fsyncInterval;
+    }
+
+    public Duration getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    public void setSnapshotInterval(Duration snapshotInterval) {
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    public String getSnapshotImage() {
+        return snapshotImage;
+    }
+
+    public void setSnapshotImage(String snapshotImage) {
+        this.snapshotImage = snapshotImage;
+    }
+}
@@ -0,0 +1,175 @@
+package com.encora.breakable_toy.persistence;
+
+import com.encora.breakable_toy.entity.Task;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+// Point-in-time images of the task table, named after the log position they must be replayed from
+// Layout: magic (int), version (int), replay position (long), next ID (long), then one record per task
+// (length (int) followed by the TaskCodec bytes), an end marker (-1) and the CRC32 of everything before it (long)
+// Snapshots are written to a temporary file and moved in place, and read back through a memory mapping
+public class SnapshotStore {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotStore.class);
+
+    private static final int MAGIC = 0x54534E50;
+    private static final int VERSION = 1;
+    private static final int END_MARKER = -1;
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+
+    private final Path directory;
+
+    public SnapshotStore(Path directory) {
+        this.directory = directory;
+    }
+
+    // Header values of a loaded snapshot
+    public static final class Snapshot {
+        private final long replayStart;
+        private final long nextId;
+        private final int taskCount;
+
+        private Snapshot(long replayStart, long nextId, int taskCount) {
+            this.replayStart = replayStart;
+            this.nextId = nextId;
+            this.taskCount = taskCount;
+        }
+
+        // Log position the snapshot has to be replayed from
+        public long getReplayStart() {
+            return replayStart;
+        }
+
+        // Next task ID at the time of the snapshot
+        public long getNextId() {
+            return nextId;
+        }
+
+        // Number of tasks in the snapshot
+        public int getTaskCount() {
+            return taskCount;
+        }
+    }
+
+    // Write a snapshot of the tasks visited by the source, then drop the older snapshots
+    public Path write(long replayStart, long nextId, Consumer<Consumer<Task>> source) throws IOException {
+        Files.createDirectories(directory);
+        Path target = directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, replayStart, SNAPSHOT_SUFFIX));
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            CRC32 crc = new CRC32();
+            OutputStream stream = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+            DataOutputStream output = new DataOutputStream(new CheckedOutputStream(stream, crc));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(replayStart);
+            output.writeLong(nextId);
+            IOException[] failure = new IOException[1];
+            source.accept(task -> {
+                if (failure[0] != null) {
+                    return;
+                }
+                try {
+                    byte[] bytes = TaskCodec.encode(task);
+                    output.writeInt(bytes.length);
+                    output.write(bytes);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            output.writeInt(END_MARKER);
+            output.flush();
+            // The checksum covers everything written so far, so it is written around the checked stream
+            new DataOutputStream(stream).writeLong(crc.getValue());
+            stream.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // The rename must be durable before anything it replaces, older snapshots or log segments, is deleted
+        Directories.force(directory);
+
+        for (Path older : listSnapshots()) {
+            if (!older.equals(target)) {
+                Files.deleteIfExists(older);
+            }
+        }
+        return target;
+    }
+
+    // Load the most recent snapshot into the consumer, returns null when there is none
+    public Snapshot loadLatest(Consumer<Task> consumer) throws IOException {
+        List<Path> snapshots = listSnapshots();
+        if (snapshots.isEmpty()) {
+            return null;
+        }
+        return load(snapshots.get(snapshots.size() - 1), consumer);
+    }
+
+    // Load a snapshot file into the consumer, the checksum is verified before any task is handed out
+    public Snapshot load(Path path, Consumer<Task> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.limit() < 4 + 4 + 8 + 8 + 4 + 8 || mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+                throw new IOException("Not a task snapshot: " + path);
+            }
+            int checkedLength = mapped.limit() - 8;
+            CRC32 crc = new CRC32();
+            crc.update(mapped.slice(0, checkedLength));
+            if (crc.getValue() != mapped.getLong(checkedLength)) {
+                throw new IOException("Corrupt task snapshot: " + path);
+            }
+
+            mapped.position(8);
+            long replayStart = mapped.getLong();
+            long nextId = mapped.getLong();
+            int taskCount = 0;
+            int length;
+            while ((length = mapped.getInt()) != END_MARKER) {
+                int end = mapped.position() + length;
+                consumer.accept(TaskCodec.decode(mapped));
+                mapped.position(end);
+                taskCount++;
+            }
+            log.info("Loaded {} tasks from {}", taskCount, path);
+            return new Snapshot(replayStart, nextId, taskCount);
+        }
+    }
+
+    private List<Path> listSnapshots() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX);
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+}
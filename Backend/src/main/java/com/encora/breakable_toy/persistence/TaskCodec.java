@@ -0,0 +1,75 @@
+package com.encora.breakable_toy.persistence;
+
+import com.encora.breakable_toy.entity.Task;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+// Binary encoding of a task shared by the log records and the snapshots
+// Dates are stored as UTC epoch seconds plus nanoseconds, behind a presence flag
+public final class TaskCodec {
+
+    private TaskCodec() {
+    }
+
+    // Encode a task into a new array
+    public static byte[] encode(Task task) {
+        byte[] name = task.getName() != null ? task.getName().getBytes(StandardCharsets.UTF_8) : null;
+        int size = 8 + 4 + (name != null ? name.length : 0) + 1 + 1 + 3 * (1 + 8 + 4);
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putLong(task.getId());
+        if (name != null) {
+            buffer.putInt(name.length);
+            buffer.put(name);
+        } else {
+            buffer.putInt(-1);
+        }
+        buffer.put((byte) (task.isDone() ? 1 : 0));
+        buffer.put((byte) task.getPriority());
+        putDate(buffer, task.getCreationDate());
+        putDate(buffer, task.getDoneDate());
+        putDate(buffer, task.getDueDate());
+        return buffer.array();
+    }
+
+    // Decode a task from the current position of the buffer
+    public static Task decode(ByteBuffer buffer) {
+        Task task = new Task();
+        task.setId(buffer.getLong());
+        int nameLength = buffer.getInt();
+        if (nameLength >= 0) {
+            byte[] name = new byte[nameLength];
+            buffer.get(name);
+            task.setName(new String(name, StandardCharsets.UTF_8));
+        }
+        boolean done = buffer.get() == 1;
+        task.setPriority(buffer.get());
+        task.setCreationDate(getDate(buffer));
+        LocalDateTime doneDate = getDate(buffer);
+        task.setDone(done);
+        task.setDoneDate(doneDate);
+        task.setDueDate(getDate(buffer));
+        return task;
+    }
+
+    private static void putDate(ByteBuffer buffer, LocalDateTime date) {
+        if (date == null) {
+            buffer.put((byte) 0);
+            buffer.putLong(0);
+            buffer.putInt(0);
+        } else {
+            buffer.put((byte) 1);
+            buffer.putLong(date.toEpochSecond(ZoneOffset.UTC));
+            buffer.putInt(date.getNano());
+        }
+    }
+
+    private static LocalDateTime getDate(ByteBuffer buffer) {
+        boolean present = buffer.get() == 1;
+        long epochSecond = buffer.getLong();
+        int nano = buffer.getInt();
+        return present ? LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC) : null;
+    }
+}
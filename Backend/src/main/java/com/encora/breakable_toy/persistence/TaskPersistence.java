@@ -0,0 +1,189 @@
+package com.encora.breakable_toy.persistence;
+
+import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.repository.TaskJournal;
+import com.encora.breakable_toy.repository.TaskRepository;
+import com.encora.breakable_toy.service.TaskService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Makes a TaskRepository durable when todo.persistence.enabled is set, in its own directory
+// On startup the latest snapshot is loaded and only the log written after it is replayed, then every repository
+// write is journaled to the write-ahead log and a new snapshot is taken periodically and on shutdown
+// A directory without any snapshot starts from the snapshot image, when one is given: a snapshot file built ahead of
+// time, so new instances load their tasks in one sequential read instead of rebuilding them
+public class TaskPersistence implements TaskJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(TaskPersistence.class);
+
+    private final PersistenceProperties properties;
+    private final Path directory;
+    // Snapshot image to start from, null for none
+    private final Path snapshotImage;
+    private final TaskRepository taskRepository;
+    private final TaskService taskService;
+    // Only one snapshot runs at a time
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private WriteAheadLog writeAheadLog;
+    private SnapshotStore snapshotStore;
+    private ScheduledExecutorService scheduler;
+
+    public TaskPersistence(PersistenceProperties properties, Path directory, Path snapshotImage,
+                           TaskRepository taskRepository, TaskService taskService) {
+        this.properties = properties;
+        this.directory = directory;
+        this.snapshotImage = snapshotImage;
+        this.taskRepository = taskRepository;
+        this.taskService = taskService;
+    }
+
+    // Restore the tasks and start journaling, before the partition accepts requests
+    public void start() throws IOException {
+        if (!properties.isEnabled()) {
+            // A memory only store starts from the image every time
+            if (snapshotImage != null) {
+                long started = System.nanoTime();
+                restoreImage(new SnapshotStore(directory));
+                taskRepository.rebuildIndexes();
+                taskService.rebuildAverageTimes();
+                log.info("Restored {} tasks from {} in {} ms", taskRepository.count(), snapshotImage,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            }
+            return;
+        }
+        snapshotStore = new SnapshotStore(directory);
+        writeAheadLog = new WriteAheadLog(directory, properties.getFsyncPolicy(), properties.getFsyncInterval().toMillis());
+
+        long started = System.nanoTime();
+        long replayStart = restoreSnapshot();
+        long[] replayed = new long[1];
+        long lastPosition = writeAheadLog.replay((type, position, payload) -> {
+            if (position <= replayStart) {
+                return;
+            }
+            apply(type, payload);
+            replayed[0]++;
+        });
+        writeAheadLog.open(Math.max(lastPosition, replayStart));
+        taskRepository.rebuildIndexes();
+        taskRepository.setJournal(this);
+        taskService.rebuildAverageTimes();
+        log.info("Restored {} tasks from {} ({} log records replayed) in {} ms", taskRepository.count(), directory,
+                replayed[0], TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+
+        long interval = properties.getSnapshotInterval().toMillis();
+        if (interval > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "task-snapshot-" + directory.getFileName());
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::scheduledSnapshot, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Take a final snapshot so the next start has no log to replay, then flush and close the log
+    public void stop() throws IOException {
+        if (writeAheadLog == null) {
+            return;
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        snapshot();
+        taskRepository.setJournal(TaskJournal.NONE);
+        writeAheadLog.close();
+    }
+
+    // Write a snapshot of the current tasks and drop the log segments it covers
+    public void snapshot() throws IOException {
+        snapshotLock.lock();
+        try {
+            // New writes go to a fresh segment, so every older segment becomes droppable once the snapshot covers it
+            writeAheadLog.rotate();
+            long replayStart = writeAheadLog.replayStart();
+            long started = System.nanoTime();
+            Path path = snapshotStore.write(replayStart, taskRepository.getNextId(), taskRepository::forEach);
+            writeAheadLog.deleteSegmentsUpTo(replayStart);
+            log.info("Wrote snapshot {} in {} ms", path, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    @Override
+    public long logSave(Task task) {
+        return writeAheadLog.append(WriteAheadLog.SAVE, TaskCodec.encode(task));
+    }
+
+    @Override
+    public long logDelete(Long id) {
+        return writeAheadLog.append(WriteAheadLog.DELETE, ByteBuffer.allocate(8).putLong(id).array());
+    }
+
+    @Override
+    public long logSaveAll(List<Task> tasks) {
+        List<byte[]> payloads = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            payloads.add(TaskCodec.encode(task));
+        }
+        return writeAheadLog.appendAll(WriteAheadLog.SAVE, payloads);
+    }
+
+    @Override
+    public void commit(long position) {
+        writeAheadLog.commit(position, position);
+    }
+
+    @Override
+    public void commitAll(long firstPosition, long lastPosition) {
+        writeAheadLog.commit(firstPosition, lastPosition);
+    }
+
+    // Load the latest snapshot, or the image when there is none, returns the log position to replay from
+    private long restoreSnapshot() throws IOException {
+        SnapshotStore.Snapshot snapshot = snapshotStore.loadLatest(taskRepository::restore);
+        if (snapshot == null) {
+            // The image positions belong to the log of the instance it was taken from: every local record is newer
+            if (snapshotImage != null) {
+                restoreImage(snapshotStore);
+            }
+            return 0;
+        }
+        taskRepository.advanceNextId(snapshot.getNextId());
+        return snapshot.getReplayStart();
+    }
+
+    // Load the snapshot image, which has the snapshot layout
+    private void restoreImage(SnapshotStore store) throws IOException {
+        SnapshotStore.Snapshot image = store.load(snapshotImage, taskRepository::restore);
+        taskRepository.advanceNextId(image.getNextId());
+    }
+
+    // Apply a replayed log record to the primary table, the indexes are built once the replay is complete
+    private void apply(byte type, ByteBuffer payload) {
+        if (type == WriteAheadLog.SAVE) {
+            taskRepository.restore(TaskCodec.decode(payload));
+        } else if (type == WriteAheadLog.DELETE) {
+            taskRepository.restoreDelete(payload.getLong());
+        }
+    }
+
+    private void scheduledSnapshot() {
+        try {
+            snapshot();
+        } catch (IOException e) {
+            log.error("Could not write the task snapshot", e);
+        }
+    }
+}
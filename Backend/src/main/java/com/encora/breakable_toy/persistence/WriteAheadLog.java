@@ -0,0 +1,469 @@
+package com.encora.breakable_toy.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Append-only log of the task writes, split in segment files named after the first position they were opened at
+// Writers only queue their records, a single flusher thread writes every queued record in one batch and forces the
+// file according to the fsync policy, so concurrent writes share the cost of one write and one fsync (group commit)
+// Record layout: length (int), CRC32 of the body (int), then the body: type (byte), position (long), payload
+public class WriteAheadLog implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    // Record types
+    public static final byte SAVE = 1;
+    public static final byte DELETE = 2;
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_SIZE = 4 + 4;
+    private static final int BODY_HEADER_SIZE = 1 + 8;
+
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+
+    // Guards the queue and the positions below, writers never hold it while doing I/O
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition recordsQueued = lock.newCondition();
+    private final Condition recordsFlushed = lock.newCondition();
+    private List<LogRecord> queue = new ArrayList<>();
+    // Positions of the records that are logged but whose write is not yet visible in the repository
+    private final TreeSet<Long> inFlight = new TreeSet<>();
+    private long lastPosition;
+    private long writtenPosition;
+    private long durablePosition;
+    private boolean closed;
+    private IOException failure;
+
+    // Guards the current segment, held by the flusher while writing and by rotations
+    private final ReentrantLock ioLock = new ReentrantLock();
+    private FileChannel channel;
+    private Path segment;
+    private long segmentLastPosition;
+    private final List<Segment> closedSegments = new ArrayList<>();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+    private long lastFsyncNanos = System.nanoTime();
+    private Thread flusher;
+
+    public WriteAheadLog(Path directory, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis) {
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMillis);
+    }
+
+    // Callback receiving the records read back from the log
+    public interface RecordHandler {
+        void handle(byte type, long position, ByteBuffer payload);
+    }
+
+    // Replay every record of the existing segments, in log order, and return the last position found
+    // A torn or corrupt record ends its segment: it can only be the tail of a write interrupted by a crash, so the
+    // segment is truncated to its last good record before anything is appended to the log again
+    public long replay(RecordHandler handler) throws IOException {
+        long last = 0;
+        for (Path path : listSegments()) {
+            long segmentLast = 0;
+            long goodLength = -1;
+            try (FileChannel segment = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer mapped = segment.map(FileChannel.MapMode.READ_ONLY, 0, segment.size());
+                CRC32 crc = new CRC32();
+                while (mapped.remaining() >= HEADER_SIZE) {
+                    int length = mapped.getInt();
+                    int checksum = mapped.getInt();
+                    if (length < BODY_HEADER_SIZE || length > mapped.remaining()) {
+                        log.warn("Ignoring torn record at the end of {}", path);
+                        goodLength = mapped.position() - HEADER_SIZE;
+                        break;
+                    }
+                    ByteBuffer body = mapped.slice(mapped.position(), length);
+                    crc.reset();
+                    crc.update(body.duplicate());
+                    if ((int) crc.getValue() != checksum) {
+                        log.warn("Ignoring corrupt record at the end of {}", path);
+                        goodLength = mapped.position() - HEADER_SIZE;
+                        break;
+                    }
+                    mapped.position(mapped.position() + length);
+                    byte type = body.get();
+                    long position = body.getLong();
+                    handler.handle(type, position, body.slice());
+                    segmentLast = Math.max(segmentLast, position);
+                }
+                // Fewer bytes than a header left at the end are a torn header
+                if (goodLength < 0 && mapped.hasRemaining()) {
+                    log.warn("Ignoring torn record at the end of {}", path);
+                    goodLength = mapped.position();
+                }
+            }
+            if (goodLength >= 0) {
+                truncate(path, goodLength);
+            }
+            closedSegments.add(new Segment(path, segmentLast));
+            last = Math.max(last, segmentLast);
+        }
+        return last;
+    }
+
+    // Open a new segment after the given position and start the flusher thread
+    public void open(long lastPosition) throws IOException {
+        Files.createDirectories(directory);
+        this.lastPosition = lastPosition;
+        this.writtenPosition = lastPosition;
+        this.durablePosition = lastPosition;
+        this.segmentLastPosition = lastPosition;
+        this.channel = openSegment(lastPosition + 1);
+        flusher = new Thread(this::flushLoop, "task-wal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // Queue a record and return its position, the caller must then commit it
+    public long append(byte type, byte[] payload) {
+        return appendAll(type, List.of(payload));
+    }
+
+    // Queue records at consecutive positions and return the position of the last one, the caller must then commit them
+    public long appendAll(byte type, List<byte[]> payloads) {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("The write-ahead log is closed");
+            }
+            for (byte[] payload : payloads) {
+                long position = ++lastPosition;
+                queue.add(new LogRecord(type, position, payload));
+                inFlight.add(position);
+            }
+            recordsQueued.signal();
+            return lastPosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Mark the writes of a range of records as visible and wait until they are as durable as the fsync policy requires
+    public void commit(long fromPosition, long toPosition) {
+        lock.lock();
+        try {
+            inFlight.subSet(fromPosition, true, toPosition, true).clear();
+            while ((fsyncPolicy == FsyncPolicy.ALWAYS ? durablePosition : writtenPosition) < toPosition) {
+                if (failure != null) {
+                    throw new UncheckedIOException("The write-ahead log failed", failure);
+                }
+                if (closed && flusher == null) {
+                    throw new IllegalStateException("The write-ahead log is closed");
+                }
+                recordsFlushed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Position a snapshot can be replayed from: every record up to it is visible in the repository
+    public long replayStart() {
+        lock.lock();
+        try {
+            return inFlight.isEmpty() ? lastPosition : inFlight.first() - 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Close the current segment and continue in a new one, so older segments can be dropped after a snapshot
+    public void rotate() throws IOException {
+        ioLock.lock();
+        try {
+            channel.force(false);
+            channel.close();
+            closedSegments.add(new Segment(segment, segmentLastPosition));
+            long next;
+            lock.lock();
+            try {
+                next = lastPosition + 1;
+            } finally {
+                lock.unlock();
+            }
+            channel = openSegment(next);
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    // Delete the closed segments whose records are all covered by a snapshot replayed from the given position
+    public void deleteSegmentsUpTo(long position) throws IOException {
+        ioLock.lock();
+        try {
+            Iterator<Segment> iterator = closedSegments.iterator();
+            while (iterator.hasNext()) {
+                Segment closedSegment = iterator.next();
+                // A segment left empty, or truncated to nothing after a torn record, may have been reopened under the
+                // same name; it is still current then
+                if (closedSegment.path.equals(segment)) {
+                    iterator.remove();
+                } else if (closedSegment.lastPosition <= position) {
+                    Files.deleteIfExists(closedSegment.path);
+                    iterator.remove();
+                }
+            }
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    // Write and force every queued record, then stop the flusher
+    @Override
+    public void close() throws IOException {
+        Thread thread;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            thread = flusher;
+            recordsQueued.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        ioLock.lock();
+        try {
+            if (channel != null && channel.isOpen()) {
+                channel.force(false);
+                channel.close();
+            }
+        } finally {
+            ioLock.unlock();
+        }
+        lock.lock();
+        try {
+            flusher = null;
+            durablePosition = writtenPosition;
+            recordsFlushed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Flusher thread: take every queued record, write them in one go and force the file when the policy requires it
+    private void flushLoop() {
+        try {
+            while (true) {
+                List<LogRecord> batch = takeBatch();
+                if (batch == null) {
+                    return;
+                }
+                long written = batch.isEmpty() ? 0 : write(batch);
+                boolean forced = false;
+                if (fsyncPolicy == FsyncPolicy.ALWAYS
+                        || (fsyncPolicy == FsyncPolicy.INTERVAL && System.nanoTime() - lastFsyncNanos >= fsyncIntervalNanos)) {
+                    force();
+                    forced = true;
+                }
+                publish(written, forced);
+            }
+        } catch (IOException e) {
+            log.error("The write-ahead log failed, writes are rejected from now on", e);
+            lock.lock();
+            try {
+                failure = e;
+                closed = true;
+                recordsFlushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Wait for queued records, returns an empty batch when only an interval fsync is due and null once closed
+    private List<LogRecord> takeBatch() {
+        lock.lock();
+        try {
+            while (queue.isEmpty()) {
+                if (closed) {
+                    return null;
+                }
+                if (fsyncPolicy == FsyncPolicy.INTERVAL && durablePosition < writtenPosition) {
+                    long wait = fsyncIntervalNanos - (System.nanoTime() - lastFsyncNanos);
+                    if (wait <= 0) {
+                        return List.of();
+                    }
+                    recordsQueued.awaitNanos(wait);
+                } else {
+                    recordsQueued.awaitUninterruptibly();
+                }
+            }
+            List<LogRecord> batch = queue;
+            queue = new ArrayList<>();
+            return batch;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return List.of();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Frame the records into the buffer and write them to the current segment, returns the last position written
+    private long write(List<LogRecord> batch) throws IOException {
+        ioLock.lock();
+        try {
+            CRC32 crc = new CRC32();
+            long last = 0;
+            for (LogRecord record : batch) {
+                int length = BODY_HEADER_SIZE + record.payload.length;
+                if (buffer.remaining() < HEADER_SIZE + length) {
+                    drain();
+                }
+                ByteBuffer target = buffer.remaining() >= HEADER_SIZE + length
+                        ? buffer
+                        : ByteBuffer.allocate(HEADER_SIZE + length);
+                int start = target.position();
+                target.putInt(length);
+                target.putInt(0);
+                target.put(record.type);
+                target.putLong(record.position);
+                target.put(record.payload);
+                crc.reset();
+                crc.update(target.duplicate().position(start + HEADER_SIZE).limit(target.position()));
+                target.putInt(start + 4, (int) crc.getValue());
+                if (target != buffer) {
+                    target.flip();
+                    writeFully(target);
+                }
+                last = record.position;
+            }
+            drain();
+            segmentLastPosition = last;
+            return last;
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+
+    private void force() throws IOException {
+        ioLock.lock();
+        try {
+            channel.force(false);
+            lastFsyncNanos = System.nanoTime();
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    // Publish the flushed positions and wake the writers waiting in commit
+    private void publish(long written, boolean forced) {
+        lock.lock();
+        try {
+            if (written > 0) {
+                writtenPosition = written;
+            }
+            if (forced) {
+                durablePosition = writtenPosition;
+            }
+            recordsFlushed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Open the segment starting at the given position; an existing one can only be a segment whose every record was
+    // torn, truncated to nothing by the replay
+    private FileChannel openSegment(long firstPosition) throws IOException {
+        segment = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstPosition, SEGMENT_SUFFIX));
+        FileChannel opened = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        if (opened.size() != 0) {
+            opened.close();
+            throw new IOException("Log segment " + segment + " already holds records after position "
+                    + (firstPosition - 1));
+        }
+        // The new file must survive a crash along with the records forced into it
+        Directories.force(directory);
+        return opened;
+    }
+
+    // Cut a segment after its last good record, so records appended later are not hidden behind a torn one
+    private static void truncate(Path path, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+            channel.force(true);
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    // A queued record
+    private static final class LogRecord {
+        private final byte type;
+        private final long position;
+        private final byte[] payload;
+
+        private LogRecord(byte type, long position, byte[] payload) {
+            this.type = type;
+            this.position = position;
+            this.payload = payload;
+        }
+    }
+
+    // A segment that no longer receives records, with the last position it holds
+    private static final class Segment {
+        private final Path path;
+        private final long lastPosition;
+
+        private Segment(Path path, long lastPosition) {
+            this.path = path;
+            this.lastPosition = lastPosition;
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package com.encora.breakable_toy.repository;
+
+import com.encora.breakable_toy.entity.Task;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+// Column-oriented storage: one primitive array per field instead of one object per task
+// The task ID is the row number, dates are epoch seconds (UTC) plus nanos, the priority is a byte, the done flag
+// and the row occupancy are bitsets, and names are references into an interned pool. Task objects only exist while
+// a caller holds one; scans filter on the done and priority columns before materializing anything
+public class ColumnarTaskStorage implements TaskStorage {
+
+    // Rows per page, pages are allocated the first time one of their IDs is written
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    // Largest ID accepted, keeping the page directory within a million entries
+    static final long MAX_ID = (1L << 32) - 1;
+    // Seconds column value of a missing date
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    // One block of rows, written under its write lock and read optimistically
+    private static final class Page {
+        private final StampedLock lock = new StampedLock();
+        private final long[] present = new long[PAGE_SIZE / Long.SIZE];
+        private final long[] done = new long[PAGE_SIZE / Long.SIZE];
+        private final byte[] priority = new byte[PAGE_SIZE];
+        private final int[] name = new int[PAGE_SIZE];
+        private final long[] creationSeconds = new long[PAGE_SIZE];
+        private final int[] creationNanos = new int[PAGE_SIZE];
+        private final long[] doneSeconds = new long[PAGE_SIZE];
+        private final int[] doneNanos = new int[PAGE_SIZE];
+        private final long[] dueSeconds = new long[PAGE_SIZE];
+        private final int[] dueNanos = new int[PAGE_SIZE];
+    }
+
+    private final NamePool namePool = new NamePool();
+    // Page directory indexed by ID >> PAGE_SHIFT, replaced by a larger copy when an ID falls beyond it
+    private volatile Page[] pages = new Page[16];
+    // Guards the growth of the directory and the allocation of pages
+    private final ReentrantLock directoryLock = new ReentrantLock();
+    private final AtomicInteger size = new AtomicInteger();
+
+    @Override
+    public Task get(long id) {
+        return getMatching(id, null, null);
+    }
+
+    @Override
+    public Task getMatching(long id, Boolean done, Integer priority) {
+        Page page = page(id);
+        return page != null ? read(page, id, done, priority) : null;
+    }
+
+    @Override
+    public void compute(long id, UnaryOperator<Task> remapping) {
+        if (id < 0 || id > MAX_ID) {
+            throw new IllegalArgumentException("Task ID out of range: " + id);
+        }
+        Page page = pageForWrite(id);
+        int row = (int) id & PAGE_MASK;
+        long stamp = page.lock.writeLock();
+        try {
+            Task previous = isPresent(page, row) ? materialize(page, row, id) : null;
+            Task task = remapping.apply(previous);
+            if (task == previous) {
+                return;
+            }
+            if (task == null) {
+                clear(page, row);
+                size.decrementAndGet();
+                return;
+            }
+            write(page, row, task);
+            if (previous == null) {
+                size.incrementAndGet();
+            }
+        } finally {
+            page.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void forEachMatching(Boolean done, Integer priority, Consumer<Task> action) {
+        Page[] directory = pages;
+        for (int p = 0; p < directory.length; p++) {
+            if (directory[p] != null) {
+                scanPage(directory[p], p, 0, done, priority, action);
+            }
+        }
+    }
+
+    // Splits are ranges of pages, whose rows are scanned as forEachMatching does
+    @Override
+    public Spliterator<Task> spliterator(Boolean done, Integer priority) {
+        Page[] directory = pages;
+        return new PageSpliterator(directory, 0, 0, directory.length, done, priority);
+    }
+
+    // Visit the matching rows of a page from the given word of its bitsets on
+    private void scanPage(Page page, int pageNumber, int fromWord, Boolean done, Integer priority,
+                          Consumer<? super Task> action) {
+        for (int w = fromWord; w < page.present.length; w++) {
+            scanWord(page, pageNumber, w, done, priority, action);
+        }
+    }
+
+    // Visit the matching rows of one word of the bitsets of a page
+    private void scanWord(Page page, int pageNumber, int w, Boolean done, Integer priority,
+                          Consumer<? super Task> action) {
+        // Whole words of rows are ruled out on the bitsets before any row is read
+        long rows = page.present[w];
+        if (done != null) {
+            rows &= done ? page.done[w] : ~page.done[w];
+        }
+        long base = (long) pageNumber << PAGE_SHIFT;
+        while (rows != 0) {
+            int row = w * Long.SIZE + Long.numberOfTrailingZeros(rows);
+            rows &= rows - 1;
+            if (priority != null && page.priority[row] != priority) {
+                continue;
+            }
+            // The bitsets were read without the lock, the row is checked again consistently
+            Task task = read(page, base + row, done, priority);
+            if (task != null) {
+                action.accept(task);
+            }
+        }
+    }
+
+    // Counted on the columns without locking or materializing anything, so the result is as weakly consistent as a scan
+    @Override
+    public int count(Boolean done, Integer priority) {
+        int count = 0;
+        for (Page page : pages) {
+            if (page == null) {
+                continue;
+            }
+            for (int w = 0; w < page.present.length; w++) {
+                long rows = page.present[w];
+                if (done != null) {
+                    rows &= done ? page.done[w] : ~page.done[w];
+                }
+                if (priority == null) {
+                    count += Long.bitCount(rows);
+                    continue;
+                }
+                while (rows != 0) {
+                    int row = w * Long.SIZE + Long.numberOfTrailingZeros(rows);
+                    rows &= rows - 1;
+                    if (page.priority[row] == priority) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public boolean accepts(long id) {
+        return id >= 0 && id <= MAX_ID;
+    }
+
+    // Read one row and materialize it if it exists and matches the filters
+    // The columns are first read under an optimistic stamp, falling back to the read lock when a write interleaved
+    private Task read(Page page, long id, Boolean done, Integer priority) {
+        int row = (int) id & PAGE_MASK;
+        long stamp = page.lock.tryOptimisticRead();
+        if (stamp != 0) {
+            boolean present = isPresent(page, row);
+            boolean rowDone = isDone(page, row);
+            int rowPriority = page.priority[row];
+            String name = namePool.get(page.name[row]);
+            long creationSeconds = page.creationSeconds[row];
+            int creationNanos = page.creationNanos[row];
+            long doneSeconds = page.doneSeconds[row];
+            int doneNanos = page.doneNanos[row];
+            long dueSeconds = page.dueSeconds[row];
+            int dueNanos = page.dueNanos[row];
+            if (page.lock.validate(stamp)) {
+                if (!present || !matches(rowDone, rowPriority, done, priority)) {
+                    return null;
+                }
+                return new Task(id, name, rowDone, rowPriority, toDate(creationSeconds, creationNanos),
+                        toDate(doneSeconds, doneNanos), toDate(dueSeconds, dueNanos));
+            }
+        }
+        stamp = page.lock.readLock();
+        try {
+            if (!isPresent(page, row) || !matches(isDone(page, row), page.priority[row], done, priority)) {
+                return null;
+            }
+            return materialize(page, row, id);
+        } finally {
+            page.lock.unlockRead(stamp);
+        }
+    }
+
+    // Build the task stored in a row, the caller holds a lock of the page
+    private Task materialize(Page page, int row, long id) {
+        return new Task(id, namePool.get(page.name[row]), isDone(page, row), page.priority[row],
+                toDate(page.creationSeconds[row], page.creationNanos[row]),
+                toDate(page.doneSeconds[row], page.doneNanos[row]),
+                toDate(page.dueSeconds[row], page.dueNanos[row]));
+    }
+
+    // Store a task in a row, the caller holds the write lock of the page
+    private void write(Page page, int row, Task task) {
+        if (task.getPriority() < Byte.MIN_VALUE || task.getPriority() > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Priority out of range: " + task.getPriority());
+        }
+        // The new name is acquired first so a task keeping its name never frees the slot in between
+        int nameRef = namePool.acquire(task.getName());
+        if (isPresent(page, row)) {
+            namePool.release(page.name[row]);
+        }
+        page.name[row] = nameRef;
+        page.priority[row] = (byte) task.getPriority();
+        setBit(page.done, row, task.isDone());
+        setDate(page.creationSeconds, page.creationNanos, row, task.getCreationDate());
+        setDate(page.doneSeconds, page.doneNanos, row, task.getDoneDate());
+        setDate(page.dueSeconds, page.dueNanos, row, task.getDueDate());
+        setBit(page.present, row, true);
+    }
+
+    // Empty a row, the caller holds the write lock of the page
+    private void clear(Page page, int row) {
+        namePool.release(page.name[row]);
+        page.name[row] = NamePool.NO_NAME;
+        setBit(page.present, row, false);
+        setBit(page.done, row, false);
+    }
+
+    // Page holding an ID, or null when it was never written
+    private Page page(long id) {
+        if (id < 0 || id > MAX_ID) {
+            return null;
+        }
+        Page[] directory = pages;
+        int index = (int) (id >>> PAGE_SHIFT);
+        return index < directory.length ? directory[index] : null;
+    }
+
+    // Page holding an ID, allocating it (and growing the directory) if needed
+    private Page pageForWrite(long id) {
+        Page page = page(id);
+        if (page != null) {
+            return page;
+        }
+        int index = (int) (id >>> PAGE_SHIFT);
+        directoryLock.lock();
+        try {
+            Page[] directory = pages;
+            if (index >= directory.length) {
+                directory = Arrays.copyOf(directory, Math.max(index + 1, directory.length * 2));
+            }
+            if (directory[index] == null) {
+                directory[index] = new Page();
+            }
+            pages = directory;
+            return directory[index];
+        } finally {
+            directoryLock.unlock();
+        }
+    }
+
+    private static boolean matches(boolean rowDone, int rowPriority, Boolean done, Integer priority) {
+        return (done == null || rowDone == done) && (priority == null || rowPriority == priority);
+    }
+
+    private static boolean isPresent(Page page, int row) {
+        return (page.present[row >>> 6] & (1L << row)) != 0;
+    }
+
+    private static boolean isDone(Page page, int row) {
+        return (page.done[row >>> 6] & (1L << row)) != 0;
+    }
+
+    private static void setBit(long[] bits, int row, boolean value) {
+        if (value) {
+            bits[row >>> 6] |= 1L << row;
+        } else {
+            bits[row >>> 6] &= ~(1L << row);
+        }
+    }
+
+    private static void setDate(long[] seconds, int[] nanos, int row, LocalDateTime date) {
+        seconds[row] = date != null ? date.toEpochSecond(ZoneOffset.UTC) : NO_DATE;
+        nanos[row] = date != null ? date.getNano() : 0;
+    }
+
+    private static LocalDateTime toDate(long seconds, int nanos) {
+        return seconds != NO_DATE ? LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC) : null;
+    }
+
+    // Scan of a range of pages, split in halves; single steps go one bitset word at a time
+    private final class PageSpliterator implements Spliterator<Task> {
+
+        private final Page[] directory;
+        private final int end;
+        private final Boolean done;
+        private final Integer priority;
+        // Next page and next word of that page to scan
+        private int page;
+        private int word;
+
+        private PageSpliterator(Page[] directory, int page, int word, int end, Boolean done, Integer priority) {
+            this.directory = directory;
+            this.page = page;
+            this.word = word;
+            this.end = end;
+            this.done = done;
+            this.priority = priority;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Task> action) {
+            // The matches of one word are buffered, at most 64 tasks
+            List<Task> buffered = new ArrayList<>();
+            while (buffered.isEmpty() && page < end) {
+                Page current = directory[page];
+                if (current != null && word < current.present.length) {
+                    scanWord(current, page, word, done, priority, buffered::add);
+                    word++;
+                } else {
+                    page++;
+                    word = 0;
+                }
+            }
+            buffered.forEach(action);
+            return !buffered.isEmpty();
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Task> action) {
+            for (; page < end; page++, word = 0) {
+                if (directory[page] != null) {
+                    scanPage(directory[page], page, word, done, priority, action);
+                }
+            }
+        }
+
+        @Override
+        public Spliterator<Task> trySplit() {
+            // The prefix keeps the page being scanned, the split needs at least one more page after it
+            int mid = (page + 1 + end) >>> 1;
+            if (mid <= page || mid >= end) {
+                return null;
+            }
+            PageSpliterator prefix = new PageSpliterator(directory, page, word, mid, done, priority);
+            page = mid;
+            word = 0;
+            return prefix;
+        }
+
+        // Upper bound: every row of the remaining pages
+        @Override
+        public long estimateSize() {
+            return (long) (end - page) * PAGE_SIZE;
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL | DISTINCT;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.encora.breakable_toy.repository;
+
+import com.encora.breakable_toy.entity.Task;
+
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// Index of the pending deadlines: the keys of the undone tasks that have a due date, in due date order
+// Done tasks and tasks without a due date are left out, so every key in a due date range is a task due in that range
+// and range queries cost the size of their result; completing a task removes its deadline, reopening it restores it
+public class DueDateIndex {
+
+    private final ConcurrentSkipListSet<TaskKey> keys =
+            new ConcurrentSkipListSet<>(TaskOrder.DUE_DATE.keyComparator());
+
+    // Whether a task version has a pending deadline
+    static boolean isPending(Task task) {
+        return !task.isDone() && task.getDueDate() != null;
+    }
+
+    // Index a new version of a task, if it has a pending deadline
+    public void add(Task task) {
+        if (isPending(task)) {
+            keys.add(TaskKey.of(task));
+        }
+    }
+
+    // Remove a previously indexed version of a task
+    public void remove(Task task) {
+        if (isPending(task)) {
+            keys.remove(TaskKey.of(task));
+        }
+    }
+
+    // Drop every deadline
+    public void clear() {
+        keys.clear();
+    }
+
+    // Walk, in due date order, the keys due at or after from (null for the earliest) and before to
+    // The iterator is weakly consistent and never blocks writers
+    public Iterator<TaskKey> iteratorBetween(LocalDateTime from, LocalDateTime to) {
+        TaskKey upper = TaskKey.dueBound(to, Long.MIN_VALUE);
+        NavigableSet<TaskKey> range = from == null
+                ? keys.headSet(upper, false)
+                : keys.subSet(TaskKey.dueBound(from, Long.MIN_VALUE), true, upper, false);
+        return range.iterator();
+    }
+
+    // Earliest pending due date at or after from, or null when there is none
+    public LocalDateTime nextDueDate(LocalDateTime from) {
+        TaskKey key = keys.ceiling(TaskKey.dueBound(from, Long.MIN_VALUE));
+        return key != null ? key.getDueDate() : null;
+    }
+}
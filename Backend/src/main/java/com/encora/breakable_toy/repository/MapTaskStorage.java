@@ -0,0 +1,152 @@
+package com.encora.breakable_toy.repository;
+
+import com.encora.breakable_toy.entity.Task;
+
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+// Default storage: the task objects in a concurrent hash table
+// Reads never block; writes are serialized per ID by striped locks rather than inside ConcurrentHashMap.compute,
+// whose bin monitor would pin a virtual thread parking in the remapping function (on the journal, for instance)
+public class MapTaskStorage implements TaskStorage {
+
+    // Number of write locks, a power of two
+    private static final int STRIPES = 64;
+
+    private final ConcurrentHashMap<Long, Task> taskTable = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    public MapTaskStorage() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public Task get(long id) {
+        return taskTable.get(id);
+    }
+
+    @Override
+    public Task getMatching(long id, Boolean done, Integer priority) {
+        Task task = taskTable.get(id);
+        return task != null && matches(task, done, priority) ? task : null;
+    }
+
+    @Override
+    public void compute(long id, UnaryOperator<Task> remapping) {
+        ReentrantLock lock = stripes[(int) (id ^ (id >>> 32)) & (STRIPES - 1)];
+        lock.lock();
+        try {
+            Task previous = taskTable.get(id);
+            Task task = remapping.apply(previous);
+            if (task == previous) {
+                return;
+            }
+            if (task == null) {
+                taskTable.remove(id);
+            } else {
+                taskTable.put(id, task);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void forEachMatching(Boolean done, Integer priority, Consumer<Task> action) {
+        for (Task task : taskTable.values()) {
+            if (matches(task, done, priority)) {
+                action.accept(task);
+            }
+        }
+    }
+
+    // The hash table splits its own scans by ranges of bins
+    @Override
+    public Spliterator<Task> spliterator(Boolean done, Integer priority) {
+        return new MatchingSpliterator(taskTable.values().spliterator(), done, priority);
+    }
+
+    @Override
+    public int count(Boolean done, Integer priority) {
+        int count = 0;
+        for (Task task : taskTable.values()) {
+            if (matches(task, done, priority)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int size() {
+        return taskTable.size();
+    }
+
+    @Override
+    public boolean accepts(long id) {
+        // The ID sequence is kept one past the largest stored ID
+        return id < Long.MAX_VALUE;
+    }
+
+    private static boolean matches(Task task, Boolean done, Integer priority) {
+        return (done == null || task.isDone() == done) && (priority == null || task.getPriority() == priority);
+    }
+
+    // Filters the tasks of a table spliterator, splitting along with it
+    private static final class MatchingSpliterator implements Spliterator<Task> {
+
+        private final Spliterator<Task> tasks;
+        private final Boolean done;
+        private final Integer priority;
+
+        private MatchingSpliterator(Spliterator<Task> tasks, Boolean done, Integer priority) {
+            this.tasks = tasks;
+            this.done = done;
+            this.priority = priority;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Task> action) {
+            boolean[] found = new boolean[1];
+            while (!found[0] && tasks.tryAdvance(task -> {
+                if (matches(task, done, priority)) {
+                    action.accept(task);
+                    found[0] = true;
+                }
+            })) {
+                // Skip the tasks the filters reject
+            }
+            return found[0];
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Task> action) {
+            tasks.forEachRemaining(task -> {
+                if (matches(task, done, priority)) {
+                    action.accept(task);
+                }
+            });
+        }
+
+        @Override
+        public Spliterator<Task> trySplit() {
+            Spliterator<Task> prefix = tasks.trySplit();
+            return prefix != null ? new MatchingSpliterator(prefix, done, priority) : null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return tasks.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL | DISTINCT;
+        }
+    }
+}
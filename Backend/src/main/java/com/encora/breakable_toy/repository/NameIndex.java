@@ -0,0 +1,134 @@
+package com.encora.breakable_toy.repository;
+
+import com.encora.breakable_toy.entity.Task;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Inverted index over the lowercase task names
+// Substring searches intersect the posting lists of their trigrams, prefix searches walk the sorted name dictionary
+public class NameIndex {
+
+    // Length of the n-grams kept in the posting lists
+    public static final int GRAM_LENGTH = 3;
+
+    // Trigram -> IDs of the tasks whose name contains it
+    private final ConcurrentHashMap<String, Set<Long>> postings = new ConcurrentHashMap<>();
+    // Lowercase name -> IDs of the tasks with that name, sorted for prefix lookups
+    private final ConcurrentSkipListMap<String, Set<Long>> names = new ConcurrentSkipListMap<>();
+
+    // Index the name of a task
+    public void add(Task task) {
+        String name = normalize(task.getName());
+        if (name == null) {
+            return;
+        }
+        for (String gram : grams(name)) {
+            addId(postings, gram, task.getId());
+        }
+        addId(names, name, task.getId());
+    }
+
+    // Remove the name of a previously indexed task
+    public void remove(Task task) {
+        String name = normalize(task.getName());
+        if (name == null) {
+            return;
+        }
+        for (String gram : grams(name)) {
+            removeId(postings, gram, task.getId());
+        }
+        removeId(names, name, task.getId());
+    }
+
+    // Drop every name
+    public void clear() {
+        postings.clear();
+        names.clear();
+    }
+
+    // IDs of the tasks whose name may contain the search string, or null when the search is too short for the index
+    // Every matching task is among the candidates, callers still have to check the name of each one
+    public Set<Long> candidates(String search) {
+        String text = normalize(search);
+        if (text == null || text.length() < GRAM_LENGTH) {
+            return null;
+        }
+
+        // Start from the shortest posting list and keep the IDs present in all the others
+        List<Set<Long>> lists = new ArrayList<>();
+        for (String gram : grams(text)) {
+            Set<Long> ids = postings.get(gram);
+            if (ids == null) {
+                return Set.of();
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+
+        Set<Long> candidates = new HashSet<>(lists.get(0));
+        for (int i = 1; i < lists.size() && !candidates.isEmpty(); i++) {
+            candidates.retainAll(lists.get(i));
+        }
+        return candidates;
+    }
+
+    // IDs of one task per distinct name starting with the prefix, in name order, up to the limit
+    public List<Long> completions(String prefix, int limit) {
+        String text = normalize(prefix);
+        List<Long> ids = new ArrayList<>(limit);
+        if (text == null) {
+            return ids;
+        }
+        for (Map.Entry<String, Set<Long>> entry : names.tailMap(text).entrySet()) {
+            if (ids.size() == limit || !entry.getKey().startsWith(text)) {
+                break;
+            }
+            Iterator<Long> iterator = entry.getValue().iterator();
+            if (iterator.hasNext()) {
+                ids.add(iterator.next());
+            }
+        }
+        return ids;
+    }
+
+    // Distinct n-grams of a lowercase text
+    private static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+
+    // Fold every character the way a case-insensitive regionMatches compares them, so the index agrees with the query
+    // filter; String.toLowerCase may change the length of a name (İ becomes i plus a dot) and lose its trigrams
+    private static String normalize(String text) {
+        if (text == null) {
+            return null;
+        }
+        char[] folded = new char[text.length()];
+        for (int i = 0; i < folded.length; i++) {
+            folded[i] = Character.toLowerCase(Character.toUpperCase(text.charAt(i)));
+        }
+        return new String(folded);
+    }
+
+    // Adding and removing go through compute so an emptied set is never dropped while another ID is being added
+    private static void addId(ConcurrentMap<String, Set<Long>> map, String key, Long id) {
+        map.compute(key, (k, ids) -> {
+            Set<Long> set = ids != null ? ids : ConcurrentHashMap.newKeySet();
+            set.add(id);
+            return set;
+        });
+    }
+
+    private static void removeId(ConcurrentMap<String, Set<Long>> map, String key, Long id) {
+        map.computeIfPresent(key, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+}
@@ -0,0 +1,121 @@
+package com.encora.breakable_toy.repository;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Interned task names of the ColumnarTaskStorage, referenced by int
+// Names are reference counted: a slot is recycled once no stored task uses its name anymore
+class NamePool {
+
+    // Reference of a missing name
+    static final int NO_NAME = -1;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // Slot and reference count of an interned name, only touched inside the compute of its map entry
+    private static final class Entry {
+        private final int ref;
+        private int count;
+
+        private Entry(int ref) {
+            this.ref = ref;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    // Name of every slot, replaced by a larger copy when full
+    private volatile String[] names = new String[INITIAL_CAPACITY];
+    // Guards slot allocation and the free list
+    private final ReentrantLock lock = new ReentrantLock();
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int nextSlot;
+
+    // Reference of the name, interning it if needed; every acquire must be paired with a release
+    // Slots are allocated and freed outside the map's compute calls, so no lock is ever taken while holding a bin
+    int acquire(String name) {
+        if (name == null) {
+            return NO_NAME;
+        }
+        while (true) {
+            Entry entry = entries.computeIfPresent(name, (key, existing) -> {
+                existing.count++;
+                return existing;
+            });
+            if (entry != null) {
+                return entry.ref;
+            }
+            Entry created = new Entry(allocate(name));
+            created.count = 1;
+            if (entries.putIfAbsent(name, created) == null) {
+                return created.ref;
+            }
+            // Another writer interned the name first
+            free(created.ref);
+        }
+    }
+
+    // Drop one use of a name, freeing its slot after the last one
+    void release(int ref) {
+        if (ref == NO_NAME) {
+            return;
+        }
+        boolean[] unused = new boolean[1];
+        entries.computeIfPresent(names[ref], (key, entry) -> {
+            if (--entry.count > 0) {
+                return entry;
+            }
+            unused[0] = true;
+            return null;
+        });
+        if (unused[0]) {
+            free(ref);
+        }
+    }
+
+    // Name behind a reference
+    // The slot of a name is only recycled once every task using it was rewritten, so a reader that validates the
+    // row it read the reference from never sees another name
+    String get(int ref) {
+        if (ref == NO_NAME) {
+            return null;
+        }
+        String[] current = names;
+        return ref < current.length ? current[ref] : null;
+    }
+
+    // Number of distinct names in use
+    int size() {
+        return entries.size();
+    }
+
+    private int allocate(String name) {
+        lock.lock();
+        try {
+            int slot = freeCount > 0 ? freeSlots[--freeCount] : nextSlot++;
+            String[] current = names;
+            if (slot >= current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            current[slot] = name;
+            names = current;
+            return slot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void free(int slot) {
+        lock.lock();
+        try {
+            names[slot] = null;
+            if (freeCount == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+            }
+            freeSlots[freeCount++] = slot;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.encora.breakable_toy.repository;
+
+import com.encora.breakable_toy.entity.Task;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// Secondary index keeping the keys of the stored tasks sorted in a given order
+// A task version is removed by passing the exact version that was indexed, its key is rebuilt from it
+public class SortedTaskIndex {
+
+    private final TaskOrder order;
+    private final ConcurrentSkipListSet<TaskKey> keys;
+
+    public SortedTaskIndex(TaskOrder order) {
+        this.order = order;
+        this.keys = new ConcurrentSkipListSet<>(order.keyComparator());
+    }
+
+    // Order maintained by this index
+    public TaskOrder getOrder() {
+        return order;
+    }
+
+    // Index a new version of a task
+    public void add(Task task) {
+        keys.add(TaskKey.of(task));
+    }
+
+    // Remove a previously indexed version of a task
+    public void remove(Task task) {
+        keys.remove(TaskKey.of(task));
+    }
+
+    // Drop every key
+    public void clear() {
+        keys.clear();
+    }
+
+    // Walk the index keys in order, the iterator is weakly consistent and never blocks writers
+    public Iterator<TaskKey> iterator() {
+        return keys.iterator();
+    }
+
+    // Walk the index keys that come strictly after the given key, used for keyset pagination
+    public Iterator<TaskKey> iteratorAfter(TaskKey key) {
+        return keys.tailSet(key, false).iterator();
+    }
+}
@@ -0,0 +1,44 @@
+package com.encora.breakable_toy.repository;
+
+import com.encora.breakable_toy.entity.Task;
+
+// One mutation of the task table, as recorded in the TaskChangeLog
+public class TaskChange {
+
+    public enum Type {
+        // The task was created or replaced, the change carries its new version
+        SAVED,
+        // The task was deleted
+        DELETED
+    }
+
+    private final long revision;
+    private final Type type;
+    private final long id;
+    private final Task task;
+
+    public TaskChange(long revision, Type type, long id, Task task) {
+        this.revision = revision;
+        this.type = type;
+        this.id = id;
+        this.task = task;
+    }
+
+    // Position of the change in the change log, revisions only grow
+    public long getRevision() {
+        return revision;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    // New version of the task, or null when it was deleted
+    public Task getTask() {
+        return task;
+    }
+}
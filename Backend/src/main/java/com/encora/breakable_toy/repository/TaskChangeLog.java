@@ -0,0 +1,139 @@
+package com.encora.breakable_toy.repository;
+
+import com.encora.breakable_toy.entity.Task;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Bounded, in-memory log of the latest task mutations, each with a revision one above the previous one
+// Appends run inside the storage compute of every write, so they take no lock: a writer claims a revision from a
+// sequence, stores its change in a ring slot and then publishes every consecutive revision already stored. Readers
+// only see published revisions, so they never see a revision before the ones preceding it; once the ring wraps the
+// oldest changes are dropped and readers behind them must resync.
+// The log is not persisted, so its revisions only mean something within its epoch: a random ID drawn when the log is
+// created, handed to clients with the revisions. A revision of another epoch comes from before a restart or an
+// eviction, and is answered with a resync however its number compares to the current revisions
+public class TaskChangeLog {
+
+    private final AtomicReferenceArray<TaskChange> changes;
+    // Identifies this log among the logs of previous and later processes
+    private final String epoch;
+    // Latest revision claimed by a writer
+    private final AtomicLong sequence;
+    // Latest revision whose change, and every change before it, is stored
+    private final AtomicLong revision;
+    // Readers waiting for a change; the lock is only taken by writers when there is one
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+
+    public TaskChangeLog(int capacity) {
+        this(capacity, Long.toString(new SecureRandom().nextLong() & Long.MAX_VALUE, 36));
+    }
+
+    public TaskChangeLog(int capacity, String epoch) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The change log capacity must be positive");
+        }
+        this.changes = new AtomicReferenceArray<>(capacity);
+        this.epoch = epoch;
+        this.sequence = new AtomicLong();
+        this.revision = new AtomicLong();
+    }
+
+    // Epoch of the revisions of this log
+    public String getEpoch() {
+        return epoch;
+    }
+
+    // Record a mutation and return its revision
+    public long append(TaskChange.Type type, long id, Task task) {
+        long next = sequence.incrementAndGet();
+        TaskChange change = new TaskChange(next, type, id, task);
+        int slot = slot(next);
+        // A writer delayed by a whole lap of the ring must not overwrite the newer change stored since
+        TaskChange stored = changes.get(slot);
+        while ((stored == null || stored.getRevision() < next) && !changes.compareAndSet(slot, stored, change)) {
+            stored = changes.get(slot);
+        }
+        publish();
+        if (waiters.get() > 0) {
+            lock.lock();
+            try {
+                appended.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+        return next;
+    }
+
+    // Revision of the latest change
+    public long getRevision() {
+        return revision.get();
+    }
+
+    // Up to limit changes following the given revision of this epoch, in revision order, or null when some of them
+    // were already dropped and the caller has to reload the tasks
+    public List<TaskChange> changesSince(long since, int limit) {
+        long latest = revision.get();
+        long oldest = Math.max(1, latest - changes.length() + 1);
+        if (since > latest || since < oldest - 1) {
+            return null;
+        }
+        long last = Math.min(latest, since + limit);
+        List<TaskChange> result = new ArrayList<>((int) (last - since));
+        for (long r = since + 1; r <= last; r++) {
+            TaskChange change = changes.get(slot(r));
+            // Overwritten by a later lap of the ring while reading
+            if (change == null || change.getRevision() != r) {
+                return null;
+            }
+            result.add(change);
+        }
+        return result;
+    }
+
+    // Wait until a change follows the given revision or the timeout elapses, and return the latest revision
+    public long awaitChangeAfter(long since, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        // Registered before checking the revision, so a writer publishing after the check sees the waiter
+        waiters.incrementAndGet();
+        lock.lock();
+        try {
+            long latest;
+            while ((latest = revision.get()) <= since && nanos > 0) {
+                nanos = appended.awaitNanos(nanos);
+            }
+            return latest;
+        } finally {
+            lock.unlock();
+            waiters.decrementAndGet();
+        }
+    }
+
+    // Advance the published revision over every consecutive change already stored
+    // Any writer moves it forward, so a writer finishing before an earlier one does not wait for it; a change
+    // overwritten by a later lap counts as stored, it is dropped for every reader anyway
+    private void publish() {
+        while (true) {
+            long current = revision.get();
+            TaskChange change = changes.get(slot(current + 1));
+            if (change == null || change.getRevision() <= current) {
+                return;
+            }
+            revision.compareAndSet(current, current + 1);
+        }
+    }
+
+    private int slot(long revision) {
+        return (int) Math.floorMod(revision, (long) changes.length());
+    }
+}
@@ -0,0 +1,51 @@
+package com.encora.breakable_toy.repository;
+
+import com.encora.breakable_toy.entity.Task;
+
+import java.util.List;
+
+// Receives every write of the TaskRepository, used to make the stored tasks durable
+// Writes are logged while they still hold the table bin of their task, so records of one task are logged in write order
+public interface TaskJournal {
+
+    // Journal that records nothing, used while persistence is disabled
+    TaskJournal NONE = new TaskJournal() {
+        @Override
+        public long logSave(Task task) {
+            return 0;
+        }
+
+        @Override
+        public long logDelete(Long id) {
+            return 0;
+        }
+
+        @Override
+        public long logSaveAll(List<Task> tasks) {
+            return 0;
+        }
+
+        @Override
+        public void commit(long position) {
+        }
+
+        @Override
+        public void commitAll(long firstPosition, long lastPosition) {
+        }
+    };
+
+    // Record the new version of a task and return the position of the record
+    long logSave(Task task);
+
+    // Record the deletion of a task and return the position of the record
+    long logDelete(Long id);
+
+    // Record a batch of new tasks at consecutive positions and return the position of the last record
+    long logSaveAll(List<Task> tasks);
+
+    // Called once the logged write is visible in the table, waits until the record is as durable as configured
+    void commit(long position);
+
+    // Called once every write of a logged batch is visible in the table
+    void commitAll(long firstPosition, long lastPosition);
+}
@@ -0,0 +1,72 @@
+package com.encora.breakable_toy.repository;
+
+import com.encora.breakable_toy.entity.Task;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+// Sort key of one task version, as stored in the sorted indexes
+// Only the sorted fields are kept, as primitives, so an index entry does not retain the task itself
+public final class TaskKey {
+
+    // Due date seconds of tasks without a due date, sorting them last
+    private static final long NO_DUE_DATE = Long.MAX_VALUE;
+
+    private final long id;
+    private final int priority;
+    private final long dueSeconds;
+    private final int dueNanos;
+
+    private TaskKey(long id, int priority, long dueSeconds, int dueNanos) {
+        this.id = id;
+        this.priority = priority;
+        this.dueSeconds = dueSeconds;
+        this.dueNanos = dueNanos;
+    }
+
+    // Key of a task version
+    public static TaskKey of(Task task) {
+        LocalDateTime dueDate = task.getDueDate();
+        return new TaskKey(task.getId(), task.getPriority(),
+                dueDate != null ? dueDate.toEpochSecond(ZoneOffset.UTC) : NO_DUE_DATE,
+                dueDate != null ? dueDate.getNano() : 0);
+    }
+
+    // Bound on the due date order: sorts before every key with the same due date and a greater ID
+    static TaskKey dueBound(LocalDateTime dueDate, long id) {
+        return new TaskKey(id, 0, dueDate.toEpochSecond(ZoneOffset.UTC), dueDate.getNano());
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public long getDueSeconds() {
+        return dueSeconds;
+    }
+
+    public int getDueNanos() {
+        return dueNanos;
+    }
+
+    // Due date the key was built from, null for tasks without one
+    public LocalDateTime getDueDate() {
+        return dueSeconds == NO_DUE_DATE ? null : LocalDateTime.ofEpochSecond(dueSeconds, dueNanos, ZoneOffset.UTC);
+    }
+
+    // Whether this key was built from the given version of the task, keys of replaced versions do not match
+    public boolean matches(Task task) {
+        LocalDateTime dueDate = task.getDueDate();
+        if (task.getPriority() != priority) {
+            return false;
+        }
+        if (dueDate == null) {
+            return dueSeconds == NO_DUE_DATE;
+        }
+        return dueDate.toEpochSecond(ZoneOffset.UTC) == dueSeconds && dueDate.getNano() == dueNanos;
+    }
+}
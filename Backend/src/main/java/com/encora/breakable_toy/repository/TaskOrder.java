@@ -0,0 +1,43 @@
+package com.encora.breakable_toy.repository;
+
+import com.encora.breakable_toy.entity.Task;
+
+import java.util.Comparator;
+
+// Sort orders supported by the sorted indexes of the TaskRepository
+// Every order ends with the task ID so two different tasks never compare as equal; the task comparator and the
+// index key comparator of an order always agree
+public enum TaskOrder {
+
+    // Priority (descending)
+    PRIORITY(Comparator.comparingInt(Task::getPriority).reversed(),
+            Comparator.comparingInt(TaskKey::getPriority).reversed()),
+
+    // Due date, tasks without a due date last
+    DUE_DATE(Comparator.comparing(Task::getDueDate, Comparator.nullsLast(Comparator.naturalOrder())),
+            Comparator.comparingLong(TaskKey::getDueSeconds).thenComparingInt(TaskKey::getDueNanos)),
+
+    // Priority (descending) and due date
+    PRIORITY_AND_DUE_DATE(Comparator.comparingInt(Task::getPriority).reversed()
+            .thenComparing(Task::getDueDate, Comparator.nullsLast(Comparator.naturalOrder())),
+            Comparator.comparingInt(TaskKey::getPriority).reversed()
+                    .thenComparingLong(TaskKey::getDueSeconds).thenComparingInt(TaskKey::getDueNanos));
+
+    private final Comparator<Task> comparator;
+    private final Comparator<TaskKey> keyComparator;
+
+    TaskOrder(Comparator<Task> comparator, Comparator<TaskKey> keyComparator) {
+        this.comparator = comparator.thenComparing(Task::getId);
+        this.keyComparator = keyComparator.thenComparingLong(TaskKey::getId);
+    }
+
+    // Comparator defining this order
+    public Comparator<Task> comparator() {
+        return comparator;
+    }
+
+    // Same order over the index keys
+    public Comparator<TaskKey> keyComparator() {
+        return keyComparator;
+    }
+}
@@ -1,60 +1,559 @@
 package com.encora.breakable_toy.repository;
 
 import com.encora.breakable_toy.entity.Task;
-import org.springframework.stereotype.Repository;
+import com.encora.breakable_toy.metrics.MetricsRegistry;
+import com.encora.breakable_toy.metrics.Timer;
 
+import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
-@Repository
 public class TaskRepository {
 
-    private HashMap<Long, Task> taskTable = new HashMap<>();
-    private long currentId = 1;
+    // Primary table: a hash table of task objects or a columnar store, see todo.storage.type
+    private final TaskStorage storage;
+    // Latest mutations with their revisions, recorded inside the write so they follow the per-ID write order
+    private final TaskChangeLog changeLog;
+    // Next ID to hand out, allocated atomically
+    private final AtomicLong currentId = new AtomicLong(1);
+    // Sorted secondary indexes, maintained on every write
+    private final EnumMap<TaskOrder, SortedTaskIndex> sortedIndexes = new EnumMap<>(TaskOrder.class);
+    // Due dates of the undone tasks, maintained on every write
+    private final DueDateIndex dueDateIndex = new DueDateIndex();
+    // Trigram and prefix index over the task names, maintained on every write
+    private final NameIndex nameIndex = new NameIndex();
+    // Journal receiving every write, a no-op unless persistence is enabled
+    private volatile TaskJournal journal = TaskJournal.NONE;
+    // Time spent in each operation; scans include the time of the visitor they call
+    private final Timer findByIdTimer;
+    private final Timer saveTimer;
+    private final Timer saveAllTimer;
+    private final Timer replaceTimer;
+    private final Timer replaceAllTimer;
+    private final Timer deleteTimer;
+    private final Timer scanTimer;
+    private final Timer countTimer;
+    private final Timer findAllSortedTimer;
+    private final Timer findDueTimer;
+    private final Timer findNamesByPrefixTimer;
+
+    public TaskRepository(TaskStorage storage, TaskChangeLog changeLog, MetricsRegistry metricsRegistry) {
+        this.storage = storage;
+        this.changeLog = changeLog;
+        this.findByIdTimer = operationTimer(metricsRegistry, "findById");
+        this.saveTimer = operationTimer(metricsRegistry, "save");
+        this.saveAllTimer = operationTimer(metricsRegistry, "saveAll");
+        this.replaceTimer = operationTimer(metricsRegistry, "replace");
+        this.replaceAllTimer = operationTimer(metricsRegistry, "replaceAll");
+        this.deleteTimer = operationTimer(metricsRegistry, "delete");
+        this.scanTimer = operationTimer(metricsRegistry, "scan");
+        this.countTimer = operationTimer(metricsRegistry, "count");
+        this.findAllSortedTimer = operationTimer(metricsRegistry, "findAllSorted");
+        this.findDueTimer = operationTimer(metricsRegistry, "findDue");
+        this.findNamesByPrefixTimer = operationTimer(metricsRegistry, "findNamesByPrefix");
+        for (TaskOrder order : TaskOrder.values()) {
+            sortedIndexes.put(order, new SortedTaskIndex(order));
+        }
+    }
 
     // Retrieve all tasks
     public List<Task> findAll() {
-        return new ArrayList<>(taskTable.values());
+        List<Task> tasks = new ArrayList<>(storage.size());
+        forEach(tasks::add);
+        return tasks;
+    }
+
+    // Visit every stored task without copying the table
+    public void forEach(Consumer<Task> action) {
+        forEach(null, null, action);
+    }
+
+    // Visit the stored tasks whose done flag and priority match the given ones (null matches anything)
+    public void forEach(Boolean done, Integer priority, Consumer<Task> action) {
+        long start = System.nanoTime();
+        try {
+            storage.forEachMatching(done, priority, action);
+        } finally {
+            scanTimer.recordSince(start);
+        }
+    }
+
+    // Splittable scan of the stored tasks whose done flag and priority match the given ones (null matches anything),
+    // for queries running the parts of a scan in parallel
+    public Spliterator<Task> spliterator(Boolean done, Integer priority) {
+        return storage.spliterator(done, priority);
+    }
+
+    // Visit the stored tasks with the given IDs, skipping the ones that no longer exist
+    public void forEachById(Collection<Long> ids, Consumer<Task> action) {
+        forEachById(ids, null, null, action);
+    }
+
+    // Visit the stored tasks with the given IDs whose done flag and priority match the given ones
+    public void forEachById(Collection<Long> ids, Boolean done, Integer priority, Consumer<Task> action) {
+        for (Long id : ids) {
+            Task task = storage.getMatching(id, done, priority);
+            if (task != null) {
+                action.accept(task);
+            }
+        }
     }
 
     // Find a task by its ID
     public Optional<Task> findById(Long id) {
-        return Optional.ofNullable(taskTable.get(id));
+        long start = System.nanoTime();
+        try {
+            return Optional.ofNullable(storage.get(id));
+        } finally {
+            findByIdTimer.recordSince(start);
+        }
+    }
+
+    // Attach the journal that will receive every following write
+    public void setJournal(TaskJournal journal) {
+        this.journal = journal;
+    }
+
+    // Next ID the sequence will hand out
+    public long getNextId() {
+        return currentId.get();
+    }
+
+    // Move the ID sequence forward, used when restoring tasks so deleted IDs are not handed out again
+    public void advanceNextId(long nextId) {
+        currentId.accumulateAndGet(nextId, Math::max);
+    }
+
+    // Whether a task with the given ID can be stored
+    public boolean accepts(long id) {
+        return storage.accepts(id);
+    }
+
+    // Number of stored tasks
+    public int count() {
+        return storage.size();
+    }
+
+    // Number of stored tasks whose done flag and priority match the given ones (null matches anything)
+    public int count(Boolean done, Integer priority) {
+        long start = System.nanoTime();
+        try {
+            return done == null && priority == null ? storage.size() : storage.count(done, priority);
+        } finally {
+            countTimer.recordSince(start);
+        }
     }
 
     // Save a task
+    // Stored instances are treated as immutable once published, callers must save a copy to modify a task
     public Task save(Task task) {
-        if (task.getId() == null) {
-            task.setId(currentId++);
-        }
-        taskTable.put(task.getId(), task);
+        upsert(task);
         return task;
     }
 
+    // Save a task and return the version it replaced, or null when the task is new
+    public Task upsert(Task task) {
+        long start = System.nanoTime();
+        try {
+            if (task.getId() == null) {
+                task.setId(currentId.getAndIncrement());
+            } else {
+                // An ID out of range would leave the sequence past anything the storage can hold
+                if (!storage.accepts(task.getId())) {
+                    throw new IllegalArgumentException("Task ID out of range: " + task.getId());
+                }
+                // Keep the ID sequence ahead of explicitly assigned IDs
+                currentId.accumulateAndGet(task.getId() + 1, Math::max);
+            }
+            // Writes to the same ID are serialized by compute, so the indexes and the journal always follow the stored
+            // version
+            TaskJournal journal = this.journal;
+            long[] position = new long[1];
+            Task[] replaced = new Task[1];
+            storage.compute(task.getId(), previous -> {
+                // Logged first: a failing journal leaves the indexes and the change feed untouched
+                position[0] = journal.logSave(task);
+                reindex(previous, task);
+                changeLog.append(TaskChange.Type.SAVED, task.getId(), task);
+                replaced[0] = previous;
+                return task;
+            });
+            journal.commit(position[0]);
+            return replaced[0];
+        } finally {
+            saveTimer.recordSince(start);
+        }
+    }
+
+    // Store a task read from a snapshot or the log, before the repository serves requests
+    // Only the primary table and the ID sequence are written: restored records are not changes clients have to see,
+    // and a task replayed many times would be reindexed each time; rebuildIndexes runs once the restore is complete
+    public void restore(Task task) {
+        if (!storage.accepts(task.getId())) {
+            throw new IllegalArgumentException("Task ID out of range: " + task.getId());
+        }
+        currentId.accumulateAndGet(task.getId() + 1, Math::max);
+        storage.compute(task.getId(), previous -> task);
+    }
+
+    // Remove a task deleted by a replayed log record, before the repository serves requests
+    public void restoreDelete(long id) {
+        storage.compute(id, previous -> null);
+    }
+
+    // Build every secondary index from the stored tasks, after a restore
+    public void rebuildIndexes() {
+        for (SortedTaskIndex index : sortedIndexes.values()) {
+            index.clear();
+        }
+        dueDateIndex.clear();
+        nameIndex.clear();
+        storage.forEachMatching(null, null, task -> reindex(null, task));
+    }
+
+    // Save a batch of tasks with one ID allocation and one journal append
+    // New tasks are logged before they become visible, so no other write can reach them ahead of their log record;
+    // tasks that already have an ID may race with other writes and go through save one by one
+    public List<Task> saveAll(List<Task> tasks) {
+        long start = System.nanoTime();
+        try {
+            List<Task> newTasks = new ArrayList<>(tasks.size());
+            for (Task task : tasks) {
+                if (task.getId() == null) {
+                    newTasks.add(task);
+                } else {
+                    save(task);
+                }
+            }
+            if (newTasks.isEmpty()) {
+                return tasks;
+            }
+
+            long firstId;
+            do {
+                firstId = currentId.get();
+                // A batch the storage cannot hold is refused before any of its IDs is taken or anything is written
+                long lastId = firstId + newTasks.size() - 1;
+                if (!storage.accepts(lastId)) {
+                    throw new IllegalArgumentException("Task ID out of range: " + lastId);
+                }
+            } while (!currentId.compareAndSet(firstId, firstId + newTasks.size()));
+            for (int i = 0; i < newTasks.size(); i++) {
+                newTasks.get(i).setId(firstId + i);
+            }
+            TaskJournal journal = this.journal;
+            long lastPosition = journal.logSaveAll(newTasks);
+            for (Task task : newTasks) {
+                storage.compute(task.getId(), previous -> {
+                    reindex(previous, task);
+                    changeLog.append(TaskChange.Type.SAVED, task.getId(), task);
+                    return task;
+                });
+            }
+            journal.commitAll(lastPosition - newTasks.size() + 1, lastPosition);
+            return tasks;
+        } finally {
+            saveAllTimer.recordSince(start);
+        }
+    }
+
+    // Replace a stored task only if it has not changed since it was read
+    public boolean replace(Task current, Task updated) {
+        long start = System.nanoTime();
+        try {
+            TaskJournal journal = this.journal;
+            long[] position = new long[1];
+            boolean[] replaced = new boolean[1];
+            storage.compute(current.getId(), previous -> {
+                if (previous == null || !previous.equals(current)) {
+                    return previous;
+                }
+                position[0] = journal.logSave(updated);
+                reindex(previous, updated);
+                changeLog.append(TaskChange.Type.SAVED, updated.getId(), updated);
+                replaced[0] = true;
+                return updated;
+            });
+            if (replaced[0]) {
+                journal.commit(position[0]);
+            }
+            return replaced[0];
+        } finally {
+            replaceTimer.recordSince(start);
+        }
+    }
+
+    // Replace a batch of stored tasks, each only if it has not changed since it was read; a null update deletes the task
+    // Every record is logged before the first commit, so the journal flushes the batch together and only the first
+    // commit waits; the returned flags tell which tasks were replaced
+    public boolean[] replaceAll(List<Task> current, List<Task> updated) {
+        long start = System.nanoTime();
+        try {
+            TaskJournal journal = this.journal;
+            long[] positions = new long[current.size()];
+            boolean[] replaced = new boolean[current.size()];
+            for (int i = 0; i < current.size(); i++) {
+                Task expected = current.get(i);
+                Task task = updated.get(i);
+                int index = i;
+                storage.compute(expected.getId(), previous -> {
+                    if (previous == null || !previous.equals(expected)) {
+                        return previous;
+                    }
+                    positions[index] = task != null ? journal.logSave(task) : journal.logDelete(expected.getId());
+                    reindex(previous, task);
+                    if (task != null) {
+                        changeLog.append(TaskChange.Type.SAVED, task.getId(), task);
+                    } else {
+                        changeLog.append(TaskChange.Type.DELETED, expected.getId(), null);
+                    }
+                    replaced[index] = true;
+                    return task;
+                });
+            }
+            for (int i = 0; i < positions.length; i++) {
+                if (replaced[i]) {
+                    journal.commit(positions[i]);
+                }
+            }
+            return replaced;
+        } finally {
+            replaceAllTimer.recordSince(start);
+        }
+    }
+
     // Delete a task by its ID
     public void deleteById(Long id) {
-        taskTable.remove(id);
+        long start = System.nanoTime();
+        try {
+            TaskJournal journal = this.journal;
+            long[] position = new long[1];
+            storage.compute(id, previous -> {
+                if (previous == null) {
+                    return null;
+                }
+                position[0] = journal.logDelete(id);
+                reindex(previous, null);
+                changeLog.append(TaskChange.Type.DELETED, id, null);
+                return null;
+            });
+            if (position[0] != 0) {
+                journal.commit(position[0]);
+            }
+        } finally {
+            deleteTimer.recordSince(start);
+        }
+    }
+
+    // Delete a stored task only if it has not changed since it was read
+    public boolean delete(Task current) {
+        long start = System.nanoTime();
+        try {
+            TaskJournal journal = this.journal;
+            long[] position = new long[1];
+            boolean[] deleted = new boolean[1];
+            storage.compute(current.getId(), previous -> {
+                if (previous == null || !previous.equals(current)) {
+                    return previous;
+                }
+                position[0] = journal.logDelete(current.getId());
+                reindex(previous, null);
+                changeLog.append(TaskChange.Type.DELETED, current.getId(), null);
+                deleted[0] = true;
+                return null;
+            });
+            if (deleted[0]) {
+                journal.commit(position[0]);
+            }
+            return deleted[0];
+        } finally {
+            deleteTimer.recordSince(start);
+        }
+    }
+
+    // Revision of the latest mutation
+    public long getRevision() {
+        return changeLog.getRevision();
+    }
+
+    // Epoch of the revisions, changing whenever the change log starts over
+    public String getRevisionEpoch() {
+        return changeLog.getEpoch();
+    }
+
+    // Up to limit mutations following the given revision, or null when they are no longer all in the change log
+    public List<TaskChange> findChangesSince(long revision, int limit) {
+        return changeLog.changesSince(revision, limit);
+    }
+
+    // Up to limit mutations following a revision a client got, or null when it belongs to another epoch or the
+    // mutations are no longer all in the change log
+    public List<TaskChange> findChangesSince(String epoch, long revision, int limit) {
+        return changeLog.getEpoch().equals(epoch) ? changeLog.changesSince(revision, limit) : null;
+    }
+
+    // Wait until a mutation follows the given revision or the timeout elapses, and return the latest revision
+    public long awaitChangeAfter(long revision, long timeout, TimeUnit unit) throws InterruptedException {
+        return changeLog.awaitChangeAfter(revision, timeout, unit);
     }
 
     // Retrieve all tasks sorted by priority (descending)
     public List<Task> findAllSortedByPriority() {
-        return taskTable.values().stream()
-                .sorted(Comparator.comparingInt(Task::getPriority).reversed())
-                .collect(Collectors.toList());
+        return findAllSorted(TaskOrder.PRIORITY);
     }
 
     // Retrieve all tasks sorted by due date
     public List<Task> findAllSortedByDueDate() {
-        return taskTable.values().stream()
-                .sorted(Comparator.comparing(Task::getDueDate, Comparator.nullsLast(Comparator.naturalOrder())))
-                .collect(Collectors.toList());
+        return findAllSorted(TaskOrder.DUE_DATE);
     }
 
     // Retrieve all tasks sorted by priority (descending) and due date
     public List<Task> findAllSortedByPriorityAndDueDate() {
-        return taskTable.values().stream()
-                .sorted(Comparator.comparingInt(Task::getPriority).reversed()
-                        .thenComparing(Task::getDueDate, Comparator.nullsLast(Comparator.naturalOrder())))
-                .collect(Collectors.toList());
+        return findAllSorted(TaskOrder.PRIORITY_AND_DUE_DATE);
+    }
+
+    // Retrieve all tasks in the given order by walking its index
+    public List<Task> findAllSorted(TaskOrder order) {
+        long start = System.nanoTime();
+        try {
+            List<Task> tasks = new ArrayList<>(storage.size());
+            iterateSorted(order).forEachRemaining(tasks::add);
+            return tasks;
+        } finally {
+            findAllSortedTimer.recordSince(start);
+        }
+    }
+
+    // Iterate the tasks in the given order, lazily, so callers can stop after the page they need
+    public Iterator<Task> iterateSorted(TaskOrder order) {
+        return iterateSorted(order, null, null);
+    }
+
+    // Iterate, in the given order, the tasks whose done flag and priority match the given ones (null matches anything)
+    // Tasks are only materialized from the storage once their key comes up and they pass the filters
+    public Iterator<Task> iterateSorted(TaskOrder order, Boolean done, Integer priority) {
+        return new ResolvingIterator(sortedIndexes.get(order).iterator(), done, priority);
+    }
+
+    // Iterate the matching tasks that come strictly after the given key in the given order
+    public Iterator<Task> iterateSortedAfter(TaskOrder order, Task key, Boolean done, Integer priority) {
+        return new ResolvingIterator(sortedIndexes.get(order).iteratorAfter(TaskKey.of(key)), done, priority);
+    }
+
+    // Undone tasks due at or after from (null for the earliest) and before to, in due date order, at most limit of them
+    // Only the deadlines in the range are visited, whatever the number of stored tasks
+    public List<Task> findDueBetween(LocalDateTime from, LocalDateTime to, int limit) {
+        long start = System.nanoTime();
+        try {
+            List<Task> tasks = new ArrayList<>(Math.min(limit, 1024));
+            Iterator<Task> due = new ResolvingIterator(dueDateIndex.iteratorBetween(from, to), false, null);
+            while (tasks.size() < limit && due.hasNext()) {
+                tasks.add(due.next());
+            }
+            return tasks;
+        } finally {
+            findDueTimer.recordSince(start);
+        }
+    }
+
+    // Earliest due date of an undone task at or after from, or null when there is none
+    // The date of a version being replaced may briefly come up, callers must tolerate an early answer
+    public LocalDateTime findNextDueDate(LocalDateTime from) {
+        return dueDateIndex.nextDueDate(from);
+    }
+
+    // IDs of the tasks whose name may contain the search string, or null when the name index cannot narrow the search
+    public Set<Long> findCandidateIdsByName(String search) {
+        return nameIndex.candidates(search);
+    }
+
+    // Distinct task names starting with the prefix (ignoring case), in alphabetical order
+    public List<String> findNamesByPrefix(String prefix, int limit) {
+        long start = System.nanoTime();
+        try {
+            List<String> names = new ArrayList<>(limit);
+            forEachById(nameIndex.completions(prefix, limit), task -> names.add(task.getName()));
+            return names;
+        } finally {
+            findNamesByPrefixTimer.recordSince(start);
+        }
+    }
+
+    // Timer of one repository operation
+    private static Timer operationTimer(MetricsRegistry metricsRegistry, String operation) {
+        return metricsRegistry.timer("todo_repository_seconds", "Time spent in TaskRepository operations",
+                "operation", operation);
+    }
+
+    // Walks index keys and resolves them against the storage
+    // An index may briefly hold the key of a replaced version next to the key of the current one, keys that no longer
+    // describe the stored task are skipped so every task comes up once, at the position of its current version
+    private final class ResolvingIterator implements Iterator<Task> {
+
+        private final Iterator<TaskKey> keys;
+        private final Boolean done;
+        private final Integer priority;
+        private Task next;
+
+        private ResolvingIterator(Iterator<TaskKey> keys, Boolean done, Integer priority) {
+            this.keys = keys;
+            this.done = done;
+            this.priority = priority;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && keys.hasNext()) {
+                TaskKey key = keys.next();
+                if (priority != null && key.getPriority() != priority) {
+                    continue;
+                }
+                Task task = storage.getMatching(key.getId(), done, priority);
+                if (task != null && key.matches(task)) {
+                    next = task;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Task next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Task task = next;
+            next = null;
+            return task;
+        }
+    }
+
+    // Move a task from its previous version to its new version in every index
+    private void reindex(Task previous, Task task) {
+        for (SortedTaskIndex index : sortedIndexes.values()) {
+            if (previous != null) {
+                index.remove(previous);
+            }
+            if (task != null) {
+                index.add(task);
+            }
+        }
+        if (previous != null) {
+            dueDateIndex.remove(previous);
+        }
+        if (task != null) {
+            dueDateIndex.add(task);
+        }
+        // Most writes keep the name, the trigrams only change when it does
+        if (previous != null && task != null && Objects.equals(previous.getName(), task.getName())) {
+            return;
+        }
+        if (previous != null) {
+            nameIndex.remove(previous);
+        }
+        if (task != null) {
+            nameIndex.add(task);
+        }
     }
 }
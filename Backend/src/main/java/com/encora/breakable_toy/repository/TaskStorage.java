@@ -0,0 +1,39 @@
+package com.encora.breakable_toy.repository;
+
+import com.encora.breakable_toy.entity.Task;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+// Primary table of the TaskRepository, the indexes and the journal are kept by the repository on top of it
+// Implementations must serialize compute calls for the same ID and never block readers
+public interface TaskStorage {
+
+    // Stored task with the given ID, or null
+    Task get(long id);
+
+    // Stored task with the given ID if its done flag and priority match the given ones (null matches anything)
+    // Lets column-oriented storages skip materializing tasks a query would reject anyway
+    Task getMatching(long id, Boolean done, Integer priority);
+
+    // Replace the stored task with the result of the remapping function, given the current task or null;
+    // returning null deletes the task and returning the current instance leaves it untouched
+    void compute(long id, UnaryOperator<Task> remapping);
+
+    // Visit the stored tasks whose done flag and priority match the given ones (null matches anything)
+    void forEachMatching(Boolean done, Integer priority, Consumer<Task> action);
+
+    // Splittable scan of the stored tasks whose done flag and priority match the given ones, for parallel queries
+    // Splits cover disjoint parts of the table and are as weakly consistent as forEachMatching
+    Spliterator<Task> spliterator(Boolean done, Integer priority);
+
+    // Number of stored tasks whose done flag and priority match the given ones (null matches anything)
+    int count(Boolean done, Integer priority);
+
+    // Number of stored tasks
+    int size();
+
+    // Whether a task with the given ID can be stored, checked before the ID sequence moves past it
+    boolean accepts(long id);
+}
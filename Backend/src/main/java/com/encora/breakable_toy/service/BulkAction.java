@@ -0,0 +1,23 @@
+package com.encora.breakable_toy.service;
+
+import java.util.Locale;
+
+// State change applied by a bulk update to every selected task
+public enum BulkAction {
+    DONE,
+    UNDONE,
+    DELETE,
+    PRIORITY;
+
+    // Parse the action name of a bulk request, case-insensitively
+    public static BulkAction parse(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Action cannot be null");
+        }
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Action must be done, undone, delete or priority");
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.encora.breakable_toy.service;
+
+import com.encora.breakable_toy.entity.Task;
+
+import java.util.List;
+
+// Outcome of a bulk creation: the created tasks and, in partial mode, the items that were rejected
+public final class BulkCreateResult {
+
+    private final List<Task> createdTasks;
+    private final List<BulkError> errors;
+
+    public BulkCreateResult(List<Task> createdTasks, List<BulkError> errors) {
+        this.createdTasks = createdTasks;
+        this.errors = errors;
+    }
+
+    public List<Task> getCreatedTasks() {
+        return createdTasks;
+    }
+
+    public List<BulkError> getErrors() {
+        return errors;
+    }
+}
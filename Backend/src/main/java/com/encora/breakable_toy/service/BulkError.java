@@ -0,0 +1,21 @@
+package com.encora.breakable_toy.service;
+
+// Error of one item of a bulk request, identified by its position in the request
+public final class BulkError {
+
+    private final int index;
+    private final String error;
+
+    public BulkError(int index, String error) {
+        this.index = index;
+        this.error = error;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,76 @@
+package com.encora.breakable_toy.service;
+
+import java.util.List;
+
+// Body of a bulk update: the action, the tasks it targets and, for the priority action, the new priority
+// Tasks are selected by ID, by the getAllTasks filters, or by both (the listed tasks that match the filters)
+public class BulkUpdateRequest {
+
+    // Filters selecting the tasks, each one matches anything when missing
+    public static class Filter {
+        private Boolean done;
+        private String name;
+        private Integer priority;
+
+        public Boolean getDone() {
+            return done;
+        }
+
+        public void setDone(Boolean done) {
+            this.done = done;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Integer getPriority() {
+            return priority;
+        }
+
+        public void setPriority(Integer priority) {
+            this.priority = priority;
+        }
+    }
+
+    private String action;
+    private List<Long> ids;
+    private Filter filter;
+    private Integer priority;
+
+    public String getAction() {
+        return action;
+    }
+
+    public void setAction(String action) {
+        this.action = action;
+    }
+
+    public List<Long> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<Long> ids) {
+        this.ids = ids;
+    }
+
+    public Filter getFilter() {
+        return filter;
+    }
+
+    public void setFilter(Filter filter) {
+        this.filter = filter;
+    }
+
+    public Integer getPriority() {
+        return priority;
+    }
+
+    public void setPriority(Integer priority) {
+        this.priority = priority;
+    }
+}
@@ -0,0 +1,36 @@
+package com.encora.breakable_toy.service;
+
+import java.util.List;
+
+// Outcome of a bulk update: how many tasks were selected, changed or already in the requested state, and the
+// listed IDs that do not exist
+public final class BulkUpdateResult {
+
+    private final int matched;
+    private final int updated;
+    private final int unchanged;
+    private final List<Long> notFound;
+
+    public BulkUpdateResult(int matched, int updated, int unchanged, List<Long> notFound) {
+        this.matched = matched;
+        this.updated = updated;
+        this.unchanged = unchanged;
+        this.notFound = notFound;
+    }
+
+    public int getMatched() {
+        return matched;
+    }
+
+    public int getUpdated() {
+        return updated;
+    }
+
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    public List<Long> getNotFound() {
+        return notFound;
+    }
+}
@@ -0,0 +1,19 @@
+package com.encora.breakable_toy.service;
+
+import java.util.List;
+
+// Thrown when an all-or-nothing bulk request has invalid items, nothing was saved
+public class BulkValidationException extends IllegalArgumentException {
+
+    private final List<BulkError> errors;
+
+    public BulkValidationException(List<BulkError> errors) {
+        super(errors.size() + " of the tasks are invalid, no task was created");
+        this.errors = errors;
+    }
+
+    // Errors of every invalid item
+    public List<BulkError> getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,377 @@
+package com.encora.breakable_toy.service;
+
+import com.encora.breakable_toy.repository.TaskChange;
+import com.encora.breakable_toy.repository.TaskRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Pushes the task mutations to the subscribed clients as Server-Sent Events
+// A dispatcher thread waits on the change log and queues the events of every subscriber; each subscriber's queue is
+// bounded and written to its connection by a sender thread of its own, so a slow client never holds back the others
+// and writers never wait for the clients. A client whose write stalls, or whose queue fills up, is disconnected; it
+// reconnects and catches up from its last event. Each event ID holds the epoch of the change log and the revision,
+// so a reconnecting EventSource resumes where it stopped and one coming from before a restart is told to resync.
+// The due soon and overdue events of the partition's TaskDueNotifier are relayed on the same streams, as due events
+// without an ID: they are not replayed to a reconnecting client. The dispatcher is started by the first
+// subscription and stops once the last subscriber is gone, partitions nobody listens to do not have one
+public class TaskChangeFeed {
+
+    private static final Logger log = LoggerFactory.getLogger(TaskChangeFeed.class);
+
+    // Events waiting for one subscriber, changes only fill it up to BATCH_SIZE so due events and heartbeats fit
+    private static final int QUEUE_CAPACITY = 1100;
+    // Changes queued for one subscriber per round, so a subscriber catching up does not hold back the others
+    private static final int BATCH_SIZE = 1000;
+    // Longest wait for a change, bounds the delay before a new subscriber gets its backlog
+    private static final long WAIT_MILLIS = 1000;
+    // Wait between rounds while a subscriber catching up has no room for its next batch
+    private static final long BACKLOG_WAIT_MILLIS = 10;
+    // Idle time after which a comment is sent to keep the connections open and detect the closed ones
+    private static final long HEARTBEAT_NANOS = TimeUnit.SECONDS.toNanos(15);
+    // Longest write to one client before it is disconnected
+    private static final long SEND_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+    // Separates the epoch from the revision in the event IDs
+    private static final char EVENT_ID_SEPARATOR = ':';
+
+    // One connected client, its pending events and the revision of the last change queued for it
+    // Only its sender writes to the emitter, one event at a time, and completes it once the subscriber is closed
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        // Whether a sender task is scheduled or running
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile long revision;
+        // System.nanoTime() when the write in progress started, 0 between writes
+        private volatile long sendStart;
+        // Set once the subscriber is dropped, the sender then completes the emitter, with the error if there is one
+        private volatile boolean closed;
+        private volatile Exception error;
+
+        private Subscriber(SseEmitter emitter, long revision) {
+            this.emitter = emitter;
+            this.revision = revision;
+        }
+    }
+
+    private final TaskRepository taskRepository;
+    private final TaskDueNotifier taskDueNotifier;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    // Due date events waiting for the dispatcher, the notifier thread only queues them
+    private final Queue<TaskDueEvent> dueEvents = new ConcurrentLinkedQueue<>();
+    private final Consumer<TaskDueEvent> dueListener = dueEvents::add;
+    // Guards the start and the stop of the dispatcher
+    private final ReentrantLock lifecycleLock = new ReentrantLock();
+    private final String threadName;
+    private final AtomicInteger senderCount = new AtomicInteger();
+    // One thread per subscriber being written to, idle ones end after a minute
+    private final ExecutorService senders;
+    private volatile boolean running;
+    private boolean stopped;
+    private Thread dispatcher;
+
+    public TaskChangeFeed(TaskRepository taskRepository, TaskDueNotifier taskDueNotifier, String threadName) {
+        this.taskRepository = taskRepository;
+        this.taskDueNotifier = taskDueNotifier;
+        this.threadName = threadName;
+        this.senders = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 1, TimeUnit.MINUTES, new SynchronousQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, threadName + "-sender-" + senderCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    // Stop the dispatcher, if it is running, and close every stream
+    public void stop() throws InterruptedException {
+        lifecycleLock.lock();
+        try {
+            stopped = true;
+            if (dispatcher != null) {
+                taskDueNotifier.unsubscribe(dueListener);
+                running = false;
+                dispatcher.interrupt();
+                dispatcher.join();
+                dispatcher = null;
+            }
+        } finally {
+            lifecycleLock.unlock();
+        }
+        for (Subscriber subscriber : subscribers) {
+            drop(subscriber, null);
+        }
+        senders.shutdown();
+    }
+
+    // Whether a client is connected, a partition streaming to one is not idle
+    public boolean hasSubscribers() {
+        return !subscribers.isEmpty();
+    }
+
+    // Whether the dispatcher thread is running
+    boolean isDispatching() {
+        lifecycleLock.lock();
+        try {
+            return dispatcher != null;
+        } finally {
+            lifecycleLock.unlock();
+        }
+    }
+
+    // Open a stream of the changes following the event with the given ID, the Last-Event-ID of a reconnecting
+    // client, or following the current revision when null; an ID of another epoch, or a malformed one, gets a resync
+    public SseEmitter subscribe(String lastEventId) throws IOException {
+        if (lastEventId == null) {
+            return subscribe(null, null);
+        }
+        int separator = lastEventId.lastIndexOf(EVENT_ID_SEPARATOR);
+        try {
+            return subscribe(lastEventId.substring(0, Math.max(0, separator)),
+                    Long.parseLong(lastEventId.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            return subscribe("", 0L);
+        }
+    }
+
+    // Open a stream of the changes following the given revision of the given epoch, or following the current
+    // revision when null
+    // The stream starts with a revision event telling the client where it stands, preceded by a resync event when
+    // the changes since the requested revision are no longer available or the revision comes from another epoch
+    public SseEmitter subscribe(String epoch, Long since) throws IOException {
+        long current = taskRepository.getRevision();
+        long revision = since != null ? since : current;
+        SseEmitter emitter = new SseEmitter(0L); // Never times out, closed clients are detected by the heartbeat
+        if (since != null && taskRepository.findChangesSince(epoch, revision, 0) == null) {
+            // The client is further behind than the change log goes, or comes from before a restart
+            emitter.send(SseEmitter.event().id(eventId(current)).name("resync").data(current));
+            revision = current;
+        }
+        emitter.send(SseEmitter.event().id(eventId(revision)).name("revision").data(revision));
+        Subscriber subscriber = new Subscriber(emitter, revision);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        startDispatcher();
+        return emitter;
+    }
+
+    private void startDispatcher() {
+        lifecycleLock.lock();
+        try {
+            if (dispatcher != null || stopped) {
+                return;
+            }
+            running = true;
+            dispatcher = new Thread(this::dispatchLoop, threadName);
+            dispatcher.setDaemon(true);
+            dispatcher.start();
+            taskDueNotifier.subscribe(dueListener);
+        } finally {
+            lifecycleLock.unlock();
+        }
+    }
+
+    // End the dispatcher if nobody subscribed since the last subscriber left, true when it ended
+    // Checked under the lifecycle lock, so a subscription either sees the dispatcher running or starts a new one
+    private boolean stopDispatcherIfIdle() throws InterruptedException {
+        // Interruptible, stop() holds the lock while it waits for the dispatcher to end
+        lifecycleLock.lockInterruptibly();
+        try {
+            if (!subscribers.isEmpty() || !running) {
+                return false;
+            }
+            taskDueNotifier.unsubscribe(dueListener);
+            dueEvents.clear();
+            dispatcher = null;
+            return true;
+        } finally {
+            lifecycleLock.unlock();
+        }
+    }
+
+    private void dispatchLoop() {
+        long lastSend = System.nanoTime();
+        while (running) {
+            try {
+                if (subscribers.isEmpty() && stopDispatcherIfIdle()) {
+                    return;
+                }
+                dropStalled();
+                // Subscribers without room for more changes are left out of the wait, they are served again
+                // shortly instead of waking the dispatcher up in a loop
+                long target = taskRepository.getRevision();
+                boolean backlog = false;
+                for (Subscriber subscriber : subscribers) {
+                    if (subscriber.queue.size() < BATCH_SIZE) {
+                        target = Math.min(target, subscriber.revision);
+                    } else {
+                        backlog = true;
+                    }
+                }
+                long revision = taskRepository.awaitChangeAfter(target,
+                        backlog ? BACKLOG_WAIT_MILLIS : WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                // Due events wait for the next round, at most WAIT_MILLIS
+                if (queueDueEvents()) {
+                    lastSend = System.nanoTime();
+                }
+                boolean heartbeat = System.nanoTime() - lastSend >= HEARTBEAT_NANOS;
+                for (Subscriber subscriber : subscribers) {
+                    if (subscriber.revision < revision) {
+                        queueChanges(subscriber, revision);
+                    } else if (heartbeat) {
+                        queue(subscriber, SseEmitter.event().comment("heartbeat"));
+                    }
+                }
+                if (heartbeat || target < revision) {
+                    lastSend = System.nanoTime();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Change feed dispatch failed", e);
+            }
+        }
+    }
+
+    // Queue the next changes a subscriber is missing, as many as its queue has room for, or ask it to reload when
+    // they are gone from the change log
+    private void queueChanges(Subscriber subscriber, long revision) {
+        int room = BATCH_SIZE - subscriber.queue.size();
+        if (room <= 0) {
+            return;
+        }
+        List<TaskChange> changes = taskRepository.findChangesSince(subscriber.revision, room);
+        if (changes == null) {
+            if (queue(subscriber, SseEmitter.event().id(eventId(revision)).name("resync").data(revision))) {
+                subscriber.revision = revision;
+            }
+            return;
+        }
+        for (TaskChange change : changes) {
+            if (!queue(subscriber, SseEmitter.event()
+                    .id(eventId(change.getRevision()))
+                    .name("change")
+                    .data(change, MediaType.APPLICATION_JSON))) {
+                return;
+            }
+            subscriber.revision = change.getRevision();
+        }
+    }
+
+    // Queue the due date events for every subscriber, true when there was one
+    private boolean queueDueEvents() {
+        boolean queued = false;
+        TaskDueEvent event;
+        while ((event = dueEvents.poll()) != null) {
+            queued = true;
+            for (Subscriber subscriber : subscribers) {
+                queue(subscriber, SseEmitter.event().name("due").data(event, MediaType.APPLICATION_JSON));
+            }
+        }
+        return queued;
+    }
+
+    // Queue an event for a subscriber without waiting and make sure its sender runs, false when the subscriber fell
+    // so far behind that its queue is full and it was dropped
+    private boolean queue(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        if (!subscriber.queue.offer(event)) {
+            drop(subscriber, new IOException("The client is not reading its events"));
+            return false;
+        }
+        startSender(subscriber);
+        return true;
+    }
+
+    // Drop the subscribers whose current write has not completed within the send timeout
+    private void dropStalled() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            long sendStart = subscriber.sendStart;
+            if (sendStart != 0 && now - sendStart > SEND_TIMEOUT_NANOS) {
+                drop(subscriber, new TimeoutException("Writing an event to the client timed out"));
+            }
+        }
+    }
+
+    // Stop serving a subscriber and have its sender close the stream, with the error when there is one
+    // A stalled write is not interrupted, the stream is closed once the servlet container gives up on it; the client
+    // reconnects with the ID of the last event it got and catches up from there
+    private void drop(Subscriber subscriber, Exception error) {
+        subscribers.remove(subscriber);
+        subscriber.error = error;
+        subscriber.closed = true;
+        subscriber.queue.clear();
+        startSender(subscriber);
+    }
+
+    private void startSender(Subscriber subscriber) {
+        if (subscriber.sending.compareAndSet(false, true)) {
+            try {
+                senders.execute(() -> send(subscriber));
+            } catch (RuntimeException e) {
+                // The feed stopped
+                subscriber.sending.set(false);
+            }
+        }
+    }
+
+    // Write the queued events of a subscriber until its queue is empty, or close its stream once it was dropped
+    private void send(Subscriber subscriber) {
+        while (true) {
+            if (subscriber.closed) {
+                if (subscriber.error != null) {
+                    subscriber.emitter.completeWithError(subscriber.error);
+                } else {
+                    subscriber.emitter.complete();
+                }
+                return;
+            }
+            SseEmitter.SseEventBuilder event = subscriber.queue.poll();
+            if (event == null) {
+                subscriber.sending.set(false);
+                // An event queued, or a drop, after the poll found no sender running
+                if ((subscriber.queue.isEmpty() && !subscriber.closed)
+                        || !subscriber.sending.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+            subscriber.sendStart = System.nanoTime();
+            try {
+                subscriber.emitter.send(event);
+            } catch (IOException | IllegalStateException e) {
+                // The client went away, the emitter callbacks may not fire for a connection nobody reads anymore
+                subscribers.remove(subscriber);
+                subscriber.error = e;
+                subscriber.closed = true;
+            } finally {
+                subscriber.sendStart = 0;
+            }
+        }
+    }
+
+    // ID of the event carrying a revision
+    private String eventId(long revision) {
+        return taskRepository.getRevisionEpoch() + EVENT_ID_SEPARATOR + revision;
+    }
+}
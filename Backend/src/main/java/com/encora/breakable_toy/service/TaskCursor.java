@@ -0,0 +1,72 @@
+package com.encora.breakable_toy.service;
+
+import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.repository.TaskOrder;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+// Keyset cursors of the form <sortKey>,<id> pointing at the last task returned to a client
+// The sort key depends on the order: the priority, the due date ("none" when missing) or both joined with ':'
+// Queries sorted by ID use the bare ID as cursor
+public final class TaskCursor {
+
+    private static final String NO_DUE_DATE = "none";
+
+    private TaskCursor() {
+    }
+
+    // Build the cursor pointing after the given task
+    public static String encode(TaskOrder order, Task task) {
+        if (order == null) {
+            return String.valueOf(task.getId());
+        }
+        String dueDate = task.getDueDate() != null ? task.getDueDate().toString() : NO_DUE_DATE;
+        switch (order) {
+            case PRIORITY:
+                return task.getPriority() + "," + task.getId();
+            case DUE_DATE:
+                return dueDate + "," + task.getId();
+            default:
+                return task.getPriority() + ":" + dueDate + "," + task.getId();
+        }
+    }
+
+    // Turn a cursor into a probe task holding only the sort key fields, to be compared with the query order
+    public static Task decode(TaskOrder order, String cursor) {
+        try {
+            Task probe = new Task();
+            int separator = cursor.lastIndexOf(',');
+            probe.setId(Long.parseLong(cursor.substring(separator + 1)));
+            if (order == null) {
+                return probe;
+            }
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            String sortKey = cursor.substring(0, separator);
+            switch (order) {
+                case PRIORITY:
+                    probe.setPriority(Integer.parseInt(sortKey));
+                    break;
+                case DUE_DATE:
+                    probe.setDueDate(parseDueDate(sortKey));
+                    break;
+                default:
+                    int keySeparator = sortKey.indexOf(':');
+                    if (keySeparator < 0) {
+                        throw new IllegalArgumentException("Invalid cursor: " + cursor);
+                    }
+                    probe.setPriority(Integer.parseInt(sortKey.substring(0, keySeparator)));
+                    probe.setDueDate(parseDueDate(sortKey.substring(keySeparator + 1)));
+            }
+            return probe;
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    private static LocalDateTime parseDueDate(String dueDate) {
+        return NO_DUE_DATE.equals(dueDate) ? null : LocalDateTime.parse(dueDate);
+    }
+}
@@ -0,0 +1,39 @@
+package com.encora.breakable_toy.service;
+
+import com.encora.breakable_toy.entity.Task;
+
+import java.time.LocalDateTime;
+
+// A deadline of an undone task coming up or passing, as published by the TaskDueNotifier
+public class TaskDueEvent {
+
+    public enum Type {
+        // The task will be due within the notice period
+        DUE_SOON,
+        // The due date of the task has passed
+        OVERDUE
+    }
+
+    private final Type type;
+    private final Task task;
+    private final LocalDateTime firedAt;
+
+    public TaskDueEvent(Type type, Task task, LocalDateTime firedAt) {
+        this.type = type;
+        this.task = task;
+        this.firedAt = firedAt;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    // Version of the task when the event fired
+    public Task getTask() {
+        return task;
+    }
+
+    public LocalDateTime getFiredAt() {
+        return firedAt;
+    }
+}
@@ -0,0 +1,160 @@
+package com.encora.breakable_toy.service;
+
+import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.metrics.Counter;
+import com.encora.breakable_toy.metrics.MetricsRegistry;
+import com.encora.breakable_toy.repository.TaskRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Publishes an event when the deadline of an undone task comes within the notice period and when it passes
+// A single thread sleeps until the next deadline in the due date index, or until a write that may bring an earlier
+// one, then publishes the deadlines crossed since its last round; nothing scans the tasks or polls on a period.
+// Events mark a deadline being crossed: a task created or moved into the past is found by the overdue query instead.
+// The thread is started by the first subscription, partitions nobody listens to do not have one
+public class TaskDueNotifier {
+
+    private static final Logger log = LoggerFactory.getLogger(TaskDueNotifier.class);
+
+    // Longest sleep, so a wall clock adjustment is noticed within a minute
+    private static final long MAX_WAIT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final TaskRepository taskRepository;
+    // How long before its due date a task is announced as due soon, zero for no announcement
+    private final Duration notice;
+    private final String threadName;
+    private final List<Consumer<TaskDueEvent>> listeners = new CopyOnWriteArrayList<>();
+    private final Counter dueSoonEvents;
+    private final Counter overdueEvents;
+    // Guards the start and the stop of the thread
+    private final ReentrantLock lifecycleLock = new ReentrantLock();
+    private volatile boolean running;
+    private boolean stopped;
+    private Thread notifier;
+
+    public TaskDueNotifier(TaskRepository taskRepository, Duration notice, String threadName,
+                           MetricsRegistry metricsRegistry) {
+        if (notice.isNegative()) {
+            throw new IllegalArgumentException("The due soon notice cannot be negative");
+        }
+        this.taskRepository = taskRepository;
+        this.notice = notice;
+        this.threadName = threadName;
+        String help = "Due date events published to the subscribers";
+        this.dueSoonEvents = metricsRegistry.counter("todo_due_events_total", help, "type", "due_soon");
+        this.overdueEvents = metricsRegistry.counter("todo_due_events_total", help, "type", "overdue");
+    }
+
+    // Receive the due soon and overdue events of the deadlines crossed from now on
+    // Listeners run on the notifier thread, one at a time, and must hand slow work over to another thread
+    public void subscribe(Consumer<TaskDueEvent> listener) {
+        listeners.add(listener);
+        start();
+    }
+
+    // Stop receiving events
+    public void unsubscribe(Consumer<TaskDueEvent> listener) {
+        listeners.remove(listener);
+    }
+
+    // Stop the thread, if it was started
+    public void stop() throws InterruptedException {
+        lifecycleLock.lock();
+        try {
+            stopped = true;
+            if (notifier == null) {
+                return;
+            }
+            running = false;
+            notifier.interrupt();
+            notifier.join();
+        } finally {
+            lifecycleLock.unlock();
+        }
+    }
+
+    private void start() {
+        lifecycleLock.lock();
+        try {
+            if (notifier != null || stopped) {
+                return;
+            }
+            running = true;
+            notifier = new Thread(this::notifyLoop, threadName);
+            notifier.setDaemon(true);
+            notifier.start();
+        } finally {
+            lifecycleLock.unlock();
+        }
+    }
+
+    private void notifyLoop() {
+        // Deadlines before these instants were announced, or had passed before the thread started
+        LocalDateTime overdueCursor = LocalDateTime.now();
+        LocalDateTime dueSoonCursor = overdueCursor.plus(notice);
+        while (running) {
+            try {
+                // Read before the index, so a write racing with this round wakes the next wait up
+                long revision = taskRepository.getRevision();
+                LocalDateTime now = LocalDateTime.now();
+                LocalDateTime dueSoonLimit = now.plus(notice);
+                if (!notice.isZero() && dueSoonLimit.isAfter(dueSoonCursor)) {
+                    publish(TaskDueEvent.Type.DUE_SOON, dueSoonCursor, dueSoonLimit, now);
+                    dueSoonCursor = dueSoonLimit;
+                }
+                if (now.isAfter(overdueCursor)) {
+                    publish(TaskDueEvent.Type.OVERDUE, overdueCursor, now, now);
+                    overdueCursor = now;
+                }
+                taskRepository.awaitChangeAfter(revision, waitMillis(now, overdueCursor, dueSoonCursor),
+                        TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Due date notification failed", e);
+            }
+        }
+    }
+
+    // Time until the next deadline to announce, or the longest sleep when there is none
+    private long waitMillis(LocalDateTime now, LocalDateTime overdueCursor, LocalDateTime dueSoonCursor) {
+        LocalDateTime next = taskRepository.findNextDueDate(overdueCursor);
+        if (!notice.isZero()) {
+            LocalDateTime nextDueSoon = taskRepository.findNextDueDate(dueSoonCursor);
+            if (nextDueSoon != null && (next == null || nextDueSoon.minus(notice).isBefore(next))) {
+                next = nextDueSoon.minus(notice);
+            }
+        }
+        if (next == null) {
+            return MAX_WAIT_MILLIS;
+        }
+        // A deadline is announced once the clock is past it, hence the extra millisecond
+        long millis = Duration.between(now, next).toMillis() + 1;
+        return Math.max(1, Math.min(millis, MAX_WAIT_MILLIS));
+    }
+
+    // Publish an event for every undone task due at or after from and before to
+    private void publish(TaskDueEvent.Type type, LocalDateTime from, LocalDateTime to, LocalDateTime now) {
+        List<Task> tasks = taskRepository.findDueBetween(from, to, Integer.MAX_VALUE);
+        (type == TaskDueEvent.Type.OVERDUE ? overdueEvents : dueSoonEvents).add(tasks.size());
+        for (Task task : tasks) {
+            TaskDueEvent event = new TaskDueEvent(type, task, now);
+            for (Consumer<TaskDueEvent> listener : listeners) {
+                try {
+                    listener.accept(event);
+                } catch (RuntimeException e) {
+                    log.warn("Due date listener failed on task {}", task.getId(), e);
+                }
+            }
+        }
+    }
+}
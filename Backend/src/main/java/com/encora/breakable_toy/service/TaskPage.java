@@ -0,0 +1,34 @@
+package com.encora.breakable_toy.service;
+
+import com.encora.breakable_toy.entity.Task;
+
+import java.util.List;
+
+// One page of query results, as produced by the TaskQueryEngine
+public final class TaskPage {
+
+    private final List<Task> tasks;
+    private final int totalTasks;
+    private final String nextCursor;
+
+    public TaskPage(List<Task> tasks, int totalTasks, String nextCursor) {
+        this.tasks = tasks;
+        this.totalTasks = totalTasks;
+        this.nextCursor = nextCursor;
+    }
+
+    // Tasks of the page, in query order
+    public List<Task> getTasks() {
+        return tasks;
+    }
+
+    // Number of tasks matching the query, or -1 when the page was read with a cursor and nothing was counted
+    public int getTotalTasks() {
+        return totalTasks;
+    }
+
+    // Cursor pointing after the last task of the page, or null when there are no more matches
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,112 @@
+package com.encora.breakable_toy.service;
+
+import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.repository.TaskOrder;
+
+import java.util.Comparator;
+import java.util.function.Predicate;
+
+// A getAllTasks request compiled once: the sort order plus a single predicate combining every filter
+public final class TaskQuery {
+
+    // Order used when no sort is requested
+    private static final Comparator<Task> BY_ID = Comparator.comparing(Task::getId);
+
+    private final TaskOrder order;
+    private final Predicate<Task> filter;
+    private final boolean filtered;
+    private final String name;
+    private final Boolean done;
+    private final Integer priority;
+
+    private TaskQuery(TaskOrder order, Predicate<Task> filter, boolean filtered, String name, Boolean done,
+                      Integer priority) {
+        this.order = order;
+        this.filter = filter;
+        this.filtered = filtered;
+        this.name = name;
+        this.done = done;
+        this.priority = priority;
+    }
+
+    // Compile the request parameters of getAllTasks into a query
+    public static TaskQuery compile(String sortBy, String sortOrder, Boolean done, String name, Integer priority) {
+        TaskOrder order = null;
+        if ("priority".equalsIgnoreCase(sortBy) && "dueDate".equalsIgnoreCase(sortOrder)) {
+            order = TaskOrder.PRIORITY_AND_DUE_DATE;
+        } else if ("priority".equalsIgnoreCase(sortBy)) {
+            order = TaskOrder.PRIORITY;
+        } else if ("dueDate".equalsIgnoreCase(sortBy)) {
+            order = TaskOrder.DUE_DATE;
+        }
+
+        // Only the filters that were requested end up in the predicate
+        Predicate<Task> filter = task -> true;
+        boolean filtered = false;
+
+        if (done != null) {
+            boolean expectedDone = done;
+            filter = filter.and(task -> task.isDone() == expectedDone);
+            filtered = true;
+        }
+
+        if (name != null && !name.isEmpty()) {
+            filter = filter.and(task -> containsIgnoreCase(task.getName(), name));
+            filtered = true;
+        }
+
+        if (priority != null) {
+            int expectedPriority = priority;
+            filter = filter.and(task -> task.getPriority() == expectedPriority);
+            filtered = true;
+        }
+
+        return new TaskQuery(order, filter, filtered, name != null && !name.isEmpty() ? name : null, done, priority);
+    }
+
+    // Indexed order of the query, or null when tasks are returned by ID
+    public TaskOrder getOrder() {
+        return order;
+    }
+
+    // Comparator defining the order of the results
+    public Comparator<Task> comparator() {
+        return order != null ? order.comparator() : BY_ID;
+    }
+
+    // Substring the task names are filtered on, or null
+    public String getName() {
+        return name;
+    }
+
+    // Done flag the tasks are filtered on, or null
+    public Boolean getDone() {
+        return done;
+    }
+
+    // Priority the tasks are filtered on, or null
+    public Integer getPriority() {
+        return priority;
+    }
+
+    // Whether the query has at least one filter
+    public boolean isFiltered() {
+        return filtered;
+    }
+
+    // Check a task against every filter of the query
+    public boolean matches(Task task) {
+        return filter.test(task);
+    }
+
+    // Case-insensitive substring check that does not allocate a lowercase copy of the name
+    private static boolean containsIgnoreCase(String name, String search) {
+        int last = name.length() - search.length();
+        for (int i = 0; i <= last; i++) {
+            if (name.regionMatches(true, i, search, 0, search.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
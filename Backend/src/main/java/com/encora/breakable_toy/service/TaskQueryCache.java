@@ -0,0 +1,299 @@
+package com.encora.breakable_toy.service;
+
+import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.metrics.Counter;
+import com.encora.breakable_toy.metrics.MetricsRegistry;
+import com.encora.breakable_toy.repository.TaskOrder;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// Bounded cache of getAllTasks responses, keyed by the compiled query and the requested page
+// Identical requests arriving while a response is computed wait for that computation instead of starting their own.
+// A write only drops the entries whose filters match the task before or after the write: any other task is absent
+// from those results either way, so they cannot have changed. Entries are grouped by their done and priority
+// filters, so a write only tests the groups a task can belong to, and kept in access order, so the least recently
+// used one is evicted without a scan. Both structures are guarded by one lock, held for a few map operations only;
+// responses are computed outside of it
+public class TaskQueryCache {
+
+    // Normalized request: the compiled order and filters instead of the raw parameters
+    private static final class Key {
+        private final TaskOrder order;
+        private final Boolean done;
+        private final String name;
+        private final Integer priority;
+        private final int page;
+        private final String after;
+
+        private Key(TaskQuery query, int page, String after) {
+            this.order = query.getOrder();
+            this.done = query.getDone();
+            this.name = query.getName();
+            this.priority = query.getPriority();
+            // The page number is ignored when a cursor is given
+            this.page = after != null ? 0 : page;
+            this.after = after;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return page == key.page &&
+                    order == key.order &&
+                    Objects.equals(done, key.done) &&
+                    Objects.equals(name, key.name) &&
+                    Objects.equals(priority, key.priority) &&
+                    Objects.equals(after, key.after);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(order, done, name, priority, page, after);
+        }
+    }
+
+    // Done and priority filters of the entries of one group, null when the query does not filter on them
+    private static final class Group {
+        private final Boolean done;
+        private final Integer priority;
+
+        private Group(Boolean done, Integer priority) {
+            this.done = done;
+            this.priority = priority;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Group group = (Group) o;
+            return Objects.equals(done, group.done) && Objects.equals(priority, group.priority);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(done, priority);
+        }
+    }
+
+    // A response, complete or still being computed, and the query telling which writes affect it
+    private static final class Entry {
+        private final Key key;
+        private final TaskQuery query;
+        private final CompletableFuture<Map<String, Object>> response = new CompletableFuture<>();
+
+        private Entry(Key key, TaskQuery query) {
+            this.key = key;
+            this.query = query;
+        }
+    }
+
+    private final int capacity;
+    // Entries from the least to the most recently used
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Entries by the done and priority filters of their query
+    private final HashMap<Group, Map<Key, Entry>> groups = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+    private final Counter evictions;
+    private final Counter invalidations;
+
+    // A capacity of 0 disables the cache
+    public TaskQueryCache(int capacity, MetricsRegistry metricsRegistry) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Query cache size cannot be negative: " + capacity);
+        }
+        this.capacity = capacity;
+        String help = "getAllTasks requests by query cache outcome";
+        this.hits = metricsRegistry.counter("todo_query_cache_requests_total", help, "result", "hit");
+        this.misses = metricsRegistry.counter("todo_query_cache_requests_total", help, "result", "miss");
+        this.coalesced = metricsRegistry.counter("todo_query_cache_requests_total", help, "result", "coalesced");
+        this.evictions = metricsRegistry.counter("todo_query_cache_evictions_total",
+                "Query cache entries evicted to stay within the cache size");
+        this.invalidations = metricsRegistry.counter("todo_query_cache_invalidations_total",
+                "Query cache entries dropped because a write changed their result");
+    }
+
+    // Cached response of a request, computed by the loader on a miss
+    // The response is shared by every caller and must not be modified; a failure is passed to the callers that
+    // waited for it and is not cached
+    public Map<String, Object> get(TaskQuery query, int page, String after, Supplier<Map<String, Object>> loader) {
+        if (capacity == 0) {
+            return loader.get();
+        }
+        Key key = new Key(query, page, after);
+        Entry entry;
+        boolean created = false;
+        lock.lock();
+        try {
+            // The lookup moves the entry to the most recently used end
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(key, query);
+                add(entry);
+                evictLeastRecentlyUsed();
+                created = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (created) {
+            misses.increment();
+            return load(entry, loader);
+        }
+        (entry.response.isDone() ? hits : coalesced).increment();
+        return await(entry);
+    }
+
+    // Drop the responses a write may have changed, given the task before the write and after it (null when absent)
+    public void invalidate(Task previous, Task current) {
+        invalidate(Arrays.asList(previous, current));
+    }
+
+    // Drop the responses that any of the given task versions may appear in; null versions are ignored
+    // An entry still being computed is dropped as well, its result is then only handed to the callers already
+    // waiting for it
+    public void invalidate(Collection<Task> tasks) {
+        if (capacity == 0) {
+            return;
+        }
+        // Groups a task version may be listed in: those not filtering on a field, or filtering on its value
+        Set<Group> candidates = new HashSet<>();
+        for (Task task : tasks) {
+            if (task != null) {
+                candidates.add(new Group(null, null));
+                candidates.add(new Group(task.isDone(), null));
+                candidates.add(new Group(null, task.getPriority()));
+                candidates.add(new Group(task.isDone(), task.getPriority()));
+            }
+        }
+        int invalidated = 0;
+        lock.lock();
+        try {
+            for (Group group : candidates) {
+                Map<Key, Entry> members = groups.get(group);
+                if (members == null) {
+                    continue;
+                }
+                Iterator<Entry> iterator = members.values().iterator();
+                while (iterator.hasNext()) {
+                    Entry entry = iterator.next();
+                    if (matchesAny(entry.query, tasks)) {
+                        iterator.remove();
+                        entries.remove(entry.key);
+                        invalidated++;
+                    }
+                }
+                if (members.isEmpty()) {
+                    groups.remove(group);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        invalidations.add(invalidated);
+    }
+
+    // Drop every response
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            groups.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Number of cached responses, the ones being computed included
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Compute the response of a newly inserted entry and publish it to the waiting callers
+    private Map<String, Object> load(Entry entry, Supplier<Map<String, Object>> loader) {
+        Map<String, Object> response;
+        try {
+            response = Collections.unmodifiableMap(loader.get());
+        } catch (RuntimeException | Error e) {
+            lock.lock();
+            try {
+                if (entries.get(entry.key) == entry) {
+                    remove(entry);
+                }
+            } finally {
+                lock.unlock();
+            }
+            entry.response.completeExceptionally(e);
+            throw e;
+        }
+        entry.response.complete(response);
+        return response;
+    }
+
+    private static boolean matchesAny(TaskQuery query, Collection<Task> tasks) {
+        for (Task task : tasks) {
+            if (task != null && query.matches(task)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Add an entry to the access order and to its group, the caller holds the lock
+    private void add(Entry entry) {
+        entries.put(entry.key, entry);
+        groups.computeIfAbsent(new Group(entry.query.getDone(), entry.query.getPriority()), group -> new HashMap<>())
+                .put(entry.key, entry);
+    }
+
+    // Remove an entry from the access order and from its group, the caller holds the lock
+    private void remove(Entry entry) {
+        entries.remove(entry.key);
+        Group group = new Group(entry.query.getDone(), entry.query.getPriority());
+        Map<Key, Entry> members = groups.get(group);
+        if (members != null) {
+            members.remove(entry.key);
+            if (members.isEmpty()) {
+                groups.remove(group);
+            }
+        }
+    }
+
+    // Evict the entries used least recently, at the head of the access order, until the cache fits its size again;
+    // the caller holds the lock
+    private void evictLeastRecentlyUsed() {
+        while (entries.size() > capacity) {
+            remove(entries.values().iterator().next());
+            evictions.increment();
+        }
+    }
+
+    // Wait for the response of an entry, rethrowing the failure of its computation
+    private static Map<String, Object> await(Entry entry) {
+        try {
+            return entry.response.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
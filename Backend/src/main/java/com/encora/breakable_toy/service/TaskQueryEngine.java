@@ -0,0 +1,311 @@
+package com.encora.breakable_toy.service;
+
+import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.metrics.Counter;
+import com.encora.breakable_toy.metrics.MetricsRegistry;
+import com.encora.breakable_toy.metrics.Timer;
+import com.encora.breakable_toy.repository.TaskRepository;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+// Runs a compiled TaskQuery: filtering, sorting and paging happen in a single pass over the tasks
+// Full scans of large tables can run in parallel: the table is split into chunks scanned on a fork/join pool, each
+// chunk keeping its own top tasks, and the chunk results are merged; smaller tables stay on the sequential path
+public class TaskQueryEngine {
+
+    // Smallest chunk a parallel scan is split into, below it the forking costs more than the scan
+    private static final long MIN_CHUNK_SIZE = 8192;
+
+    private final TaskRepository taskRepository;
+    // Pool running the parallel scans, null when they are disabled
+    private final ForkJoinPool scanPool;
+    // Number of stored tasks from which a full scan runs in parallel
+    private final int parallelThreshold;
+    // Time of each query plan, and the tasks the plans tested against the query versus the ones they returned
+    private final Timer indexWalkTimer;
+    private final Timer topKTimer;
+    private final Timer parallelTopKTimer;
+    private final Timer cursorIndexWalkTimer;
+    private final Timer cursorTopKTimer;
+    private final Counter rowsScanned;
+    private final Counter rowsReturned;
+
+    // Engine scanning sequentially only
+    public TaskQueryEngine(TaskRepository taskRepository, MetricsRegistry metricsRegistry) {
+        this(taskRepository, metricsRegistry, null, Integer.MAX_VALUE);
+    }
+
+    // Engine running the full scans of at least parallelThreshold tasks on the given pool (null to disable them)
+    public TaskQueryEngine(TaskRepository taskRepository, MetricsRegistry metricsRegistry, ForkJoinPool scanPool,
+                           int parallelThreshold) {
+        this.taskRepository = taskRepository;
+        this.scanPool = scanPool;
+        this.parallelThreshold = parallelThreshold;
+        this.indexWalkTimer = planTimer(metricsRegistry, "index_walk");
+        this.topKTimer = planTimer(metricsRegistry, "top_k");
+        this.parallelTopKTimer = planTimer(metricsRegistry, "parallel_top_k");
+        this.cursorIndexWalkTimer = planTimer(metricsRegistry, "cursor_index_walk");
+        this.cursorTopKTimer = planTimer(metricsRegistry, "cursor_top_k");
+        this.rowsScanned = metricsRegistry.counter("todo_query_rows_scanned_total",
+                "Tasks tested against a query filter");
+        this.rowsReturned = metricsRegistry.counter("todo_query_rows_returned_total",
+                "Tasks returned in a query page");
+    }
+
+    // Retrieve one page of the tasks matching the query, along with the number of matching tasks
+    public TaskPage findPage(TaskQuery query, int page, int pageSize) {
+        long start = System.nanoTime();
+        long offset = (long) (page - 1) * pageSize;
+        Set<Long> candidates = nameCandidates(query);
+        // An index walk stops once the page is filled, unless a name filter makes it count every match
+        boolean parallel = candidates == null && (query.getOrder() == null || query.getName() != null)
+                && parallelScan();
+        TaskPage taskPage;
+        if (offset >= taskRepository.count()) {
+            // Past every stored task the page is empty, only the matches are counted
+            taskPage = new TaskPage(List.of(), countMatches(query, candidates, parallel), null);
+            topKTimer.recordSince(start);
+        } else if (query.getOrder() != null && candidates == null && !parallel) {
+            taskPage = walkIndex(query, (int) offset, pageSize);
+            indexWalkTimer.recordSince(start);
+        } else {
+            taskPage = topK(query, candidates, (int) offset, pageSize, parallel);
+            (parallel ? parallelTopKTimer : topKTimer).recordSince(start);
+        }
+        rowsReturned.add(taskPage.getTasks().size());
+        return taskPage;
+    }
+
+    // Retrieve the page of matching tasks that follows a cursor, without counting the matches
+    // Only the tasks after the cursor are visited, so deep pages cost the same as the first one
+    public TaskPage findPageAfter(TaskQuery query, String cursor, int pageSize) {
+        long start = System.nanoTime();
+        Task after = cursor != null ? TaskCursor.decode(query.getOrder(), cursor) : null;
+        Set<Long> candidates = nameCandidates(query);
+        List<Task> pageTasks;
+        Timer timer;
+        if (query.getOrder() != null && candidates == null) {
+            Boolean done = query.getDone();
+            Integer priority = query.getPriority();
+            Iterator<Task> iterator = after != null
+                    ? taskRepository.iterateSortedAfter(query.getOrder(), after, done, priority)
+                    : taskRepository.iterateSorted(query.getOrder(), done, priority);
+            pageTasks = new ArrayList<>(pageSize + 1);
+            int scanned = 0;
+            while (iterator.hasNext() && pageTasks.size() <= pageSize) {
+                Task task = iterator.next();
+                scanned++;
+                if (query.matches(task)) {
+                    pageTasks.add(task);
+                }
+            }
+            rowsScanned.add(scanned);
+            timer = cursorIndexWalkTimer;
+        } else {
+            pageTasks = collectTopK(query, candidates, after, pageSize + 1, null, candidates == null && parallelScan());
+            timer = cursorTopKTimer;
+        }
+
+        // One extra match was read to find out whether another page exists
+        TaskPage taskPage;
+        if (pageTasks.size() <= pageSize) {
+            taskPage = new TaskPage(pageTasks, -1, null);
+        } else {
+            List<Task> tasks = pageTasks.subList(0, pageSize);
+            taskPage = new TaskPage(tasks, -1, TaskCursor.encode(query.getOrder(), tasks.get(pageSize - 1)));
+        }
+        timer.recordSince(start);
+        rowsReturned.add(taskPage.getTasks().size());
+        return taskPage;
+    }
+
+    // Walk the sorted index of the query, keeping the tasks of the requested page
+    // The walk stops once the page is filled and the matches are counted by the storage, on its done and priority
+    // columns; only a name filter needs the walk to go on and test every remaining task
+    private TaskPage walkIndex(TaskQuery query, int start, int pageSize) {
+        List<Task> pageTasks = new ArrayList<>(Math.min(pageSize, 1024));
+        Iterator<Task> iterator = taskRepository.iterateSorted(query.getOrder(), query.getDone(), query.getPriority());
+        boolean countMatches = query.getName() != null;
+        int matches = 0;
+        int scanned = 0;
+        while (iterator.hasNext()) {
+            Task task = iterator.next();
+            scanned++;
+            if (!query.matches(task)) {
+                continue;
+            }
+            if (matches >= start && pageTasks.size() < pageSize) {
+                pageTasks.add(task);
+            }
+            matches++;
+            if (!countMatches && pageTasks.size() == pageSize) {
+                break;
+            }
+        }
+        rowsScanned.add(scanned);
+        int totalTasks = countMatches || !iterator.hasNext()
+                ? matches
+                : taskRepository.count(query.getDone(), query.getPriority());
+        return new TaskPage(pageTasks, totalTasks, null);
+    }
+
+    // Tasks whose name may match the query according to the name index, or null when every task has to be scanned
+    // The candidates of a selective name search are far fewer than the tasks an index walk would visit
+    private Set<Long> nameCandidates(TaskQuery query) {
+        return query.getName() != null ? taskRepository.findCandidateIdsByName(query.getName()) : null;
+    }
+
+    // Whether full scans run in parallel: the pool exists and the table is large enough for it to pay off
+    private boolean parallelScan() {
+        return scanPool != null && taskRepository.count() >= parallelThreshold;
+    }
+
+    // Number of tasks matching the query, counted by the storage unless a name filter needs every task tested
+    private int countMatches(TaskQuery query, Set<Long> candidates, boolean parallel) {
+        if (query.getName() == null) {
+            return taskRepository.count(query.getDone(), query.getPriority());
+        }
+        int[] matches = new int[1];
+        collectTopK(query, candidates, null, 0, matches, parallel);
+        return matches[0];
+    }
+
+    // Scan the candidates (or every task) once, keeping only the first start + pageSize matches in a bounded heap
+    // The start is below the number of stored tasks, the limit is capped so a large page size cannot overflow it
+    private TaskPage topK(TaskQuery query, Set<Long> candidates, int start, int pageSize, boolean parallel) {
+        int[] matches = new int[1];
+        int limit = (int) Math.min((long) start + pageSize, Integer.MAX_VALUE);
+        List<Task> tasks = collectTopK(query, candidates, null, limit, matches, parallel);
+        List<Task> pageTasks = start < tasks.size() ? tasks.subList(start, tasks.size()) : List.of();
+        return new TaskPage(pageTasks, matches[0], null);
+    }
+
+    // Collect, in query order, the first limit tasks matching the query and coming after the given key
+    // Only the candidate tasks are visited when a candidate set is given; a parallel collection scans every task
+    private List<Task> collectTopK(TaskQuery query, Set<Long> candidates, Task after, int limit, int[] matches,
+                                   boolean parallel) {
+        TopK topK;
+        if (parallel) {
+            Spliterator<Task> tasks = taskRepository.spliterator(query.getDone(), query.getPriority());
+            long chunkSize = Math.max(MIN_CHUNK_SIZE,
+                    taskRepository.count() / (4L * scanPool.getParallelism()));
+            topK = scanPool.invoke(new ScanTask(query, after, limit, tasks, chunkSize));
+        } else {
+            topK = new TopK(query, after, limit);
+            // The done and priority filters are pushed down so the storage can skip rows before materializing them
+            if (candidates != null) {
+                taskRepository.forEachById(candidates, query.getDone(), query.getPriority(), topK);
+            } else {
+                taskRepository.forEach(query.getDone(), query.getPriority(), topK);
+            }
+        }
+        rowsScanned.add(topK.scanned);
+        if (matches != null) {
+            matches[0] = topK.matches;
+        }
+        return Arrays.asList(topK.sorted());
+    }
+
+    // First limit tasks, in query order, of the matching tasks coming after a key, and the count of the matches
+    private static final class TopK implements Consumer<Task> {
+
+        private final TaskQuery query;
+        private final Comparator<Task> comparator;
+        private final Task after;
+        private final int limit;
+        // Max-heap on the query order: the root is the worst task kept so far
+        private final PriorityQueue<Task> heap;
+        private int matches;
+        private long scanned;
+
+        private TopK(TaskQuery query, Task after, int limit) {
+            this.query = query;
+            this.comparator = query.comparator();
+            this.after = after;
+            this.limit = limit;
+            this.heap = new PriorityQueue<>(Math.min(limit, 1024) + 1, comparator.reversed());
+        }
+
+        @Override
+        public void accept(Task task) {
+            scanned++;
+            if (!query.matches(task) || (after != null && comparator.compare(task, after) <= 0)) {
+                return;
+            }
+            matches++;
+            if (heap.size() < limit) {
+                heap.add(task);
+            } else if (limit > 0 && comparator.compare(task, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(task);
+            }
+        }
+
+        // Keep the first limit tasks of both, and the counts of both
+        private TopK merge(TopK other) {
+            matches += other.matches;
+            scanned += other.scanned;
+            for (Task task : other.heap) {
+                if (heap.size() < limit) {
+                    heap.add(task);
+                } else if (comparator.compare(task, heap.peek()) < 0) {
+                    heap.poll();
+                    heap.add(task);
+                }
+            }
+            return this;
+        }
+
+        // The kept tasks in query order, emptying the heap
+        private Task[] sorted() {
+            Task[] tasks = new Task[heap.size()];
+            for (int i = tasks.length - 1; i >= 0; i--) {
+                tasks[i] = heap.poll();
+            }
+            return tasks;
+        }
+    }
+
+    // Scans a part of the table: large parts are split in two, scanned concurrently and merged
+    private static final class ScanTask extends RecursiveTask<TopK> {
+
+        private final TaskQuery query;
+        private final Task after;
+        private final int limit;
+        private final Spliterator<Task> tasks;
+        private final long chunkSize;
+
+        private ScanTask(TaskQuery query, Task after, int limit, Spliterator<Task> tasks, long chunkSize) {
+            this.query = query;
+            this.after = after;
+            this.limit = limit;
+            this.tasks = tasks;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected TopK compute() {
+            if (tasks.estimateSize() > chunkSize) {
+                Spliterator<Task> prefix = tasks.trySplit();
+                if (prefix != null) {
+                    ScanTask first = new ScanTask(query, after, limit, prefix, chunkSize);
+                    first.fork();
+                    TopK second = new ScanTask(query, after, limit, tasks, chunkSize).compute();
+                    return first.join().merge(second);
+                }
+            }
+            TopK topK = new TopK(query, after, limit);
+            tasks.forEachRemaining(topK);
+            return topK;
+        }
+    }
+
+    // Timer of one query plan
+    private static Timer planTimer(MetricsRegistry metricsRegistry, String plan) {
+        return metricsRegistry.timer("todo_query_seconds", "Time spent running getAllTasks queries, by query plan",
+                "plan", plan);
+    }
+}
@@ -1,31 +1,76 @@
 package com.encora.breakable_toy.service;
 
 import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.metrics.MetricsRegistry;
+import com.encora.breakable_toy.metrics.Timer;
+import com.encora.breakable_toy.repository.TaskChange;
 import com.encora.breakable_toy.repository.TaskRepository;
 import com.encora.breakable_toy.utils.AverageTime;
+import com.encora.breakable_toy.utils.CompletionAnalytics;
 import com.encora.breakable_toy.utils.Pages;
 import com.encora.breakable_toy.utils.TaskValidator;
-import org.springframework.stereotype.Service;
 
+import java.time.DateTimeException;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
-@Service
 public class TaskService {
 
+    // Maximum number of name suggestions returned by the autocomplete
+    private static final int MAX_SUGGESTIONS = 50;
+    // Maximum number of changes returned by one delta request
+    private static final int MAX_CHANGES = 1000;
+    // Maximum number of tasks returned by one due date query
+    private static final int MAX_DUE_TASKS = 1000;
+
     private final TaskRepository taskRepository;
     private final TaskValidator taskValidator;
     private final AverageTime averageTime;
-    private final Pages pages;
+    private final CompletionAnalytics completionAnalytics;
+    private final TaskQueryEngine taskQueryEngine;
+    private final TaskQueryCache taskQueryCache;
+    // Revision of the data behind the read endpoints, bumped once a write and its statistics update completed
+    // Counted from zero in every process, the entity tags add the epoch of the change log to tell processes apart
+    private final AtomicLong dataRevision = new AtomicLong();
+    // Time spent in each operation, validation included
+    private final Timer createTaskTimer;
+    private final Timer createTasksTimer;
+    private final Timer exportTimer;
+    private final Timer importTimer;
+    private final Timer updateTaskTimer;
+    private final Timer markAsDoneTimer;
+    private final Timer markAsUndoneTimer;
+    private final Timer deleteTaskTimer;
+    private final Timer updateTasksTimer;
+    private final Timer autocompleteTimer;
+    private final Timer getAllTasksTimer;
+    private final Timer getDueTasksTimer;
 
     // Constructor to inject dependencies
-    public TaskService(TaskRepository taskRepository, TaskValidator taskValidator, AverageTime averageTime, Pages pages) {
+    public TaskService(TaskRepository taskRepository, TaskValidator taskValidator, AverageTime averageTime,
+                       CompletionAnalytics completionAnalytics, TaskQueryEngine taskQueryEngine, TaskQueryCache taskQueryCache, MetricsRegistry metricsRegistry) {
         this.taskRepository = taskRepository;
         this.taskValidator = taskValidator;
         this.averageTime = averageTime;
-        this.pages = pages;
+        this.completionAnalytics = completionAnalytics;
+        this.taskQueryEngine = taskQueryEngine;
+        this.taskQueryCache = taskQueryCache;
+        this.createTaskTimer = operationTimer(metricsRegistry, "createTask");
+        this.createTasksTimer = operationTimer(metricsRegistry, "createTasks");
+        this.exportTimer = operationTimer(metricsRegistry, "exportTasks");
+        this.importTimer = operationTimer(metricsRegistry, "importTasks");
+        this.updateTaskTimer = operationTimer(metricsRegistry, "updateTask");
+        this.markAsDoneTimer = operationTimer(metricsRegistry, "markAsDone");
+        this.markAsUndoneTimer = operationTimer(metricsRegistry, "markTaskAsUndone");
+        this.deleteTaskTimer = operationTimer(metricsRegistry, "deleteTask");
+        this.updateTasksTimer = operationTimer(metricsRegistry, "updateTasks");
+        this.autocompleteTimer = operationTimer(metricsRegistry, "autocompleteNames");
+        this.getAllTasksTimer = operationTimer(metricsRegistry, "getAllTasks");
+        this.getDueTasksTimer = operationTimer(metricsRegistry, "getDueTasks");
     }
 
     // Retrieve all tasks
@@ -35,118 +80,432 @@ public class TaskService {
 
     // Create a new task
     public Task createTask(Task task) {
-        taskValidator.validate(task); // Validate the task
-        taskValidator.validateDoneField(task.isDone()); // Ensure 'done' field is not set
-        Task createdTask = taskRepository.save(task); // Save the task
-        pages.updateTotalPages(taskRepository.findAll().size()); // Update total pages
-        return createdTask;
+        long start = System.nanoTime();
+        try {
+            taskValidator.validate(task); // Validate the task
+            taskValidator.validateDoneField(task.isDone()); // Ensure 'done' field is not set
+            Task savedTask = taskRepository.save(task); // Save the task
+            dataChanged(null, savedTask);
+            return savedTask;
+        } finally {
+            createTaskTimer.recordSince(start);
+        }
     }
 
-    // Create multiple tasks
+    // Create multiple tasks, all or nothing
     public List<Task> createTasks(List<Task> tasks) {
-        List<Task> createdTasks = new ArrayList<>();
-        for (Task task : tasks) {
-            createdTasks.add(createTask(task)); // Create each task
+        return createTasks(tasks, false).getCreatedTasks();
+    }
+
+    // Create multiple tasks in one batch
+    // The whole batch is validated in one pass, then the valid tasks are stored with a single repository call.
+    // Without partial mode any invalid task rejects the batch; in partial mode the valid tasks are created and
+    // the invalid ones are reported by index
+    public BulkCreateResult createTasks(List<Task> tasks, boolean partial) {
+        long start = System.nanoTime();
+        try {
+            List<Task> validTasks = new ArrayList<>(tasks.size());
+            List<BulkError> errors = new ArrayList<>();
+            for (int i = 0; i < tasks.size(); i++) {
+                Task task = tasks.get(i);
+                try {
+                    if (task == null) {
+                        throw new IllegalArgumentException("Task cannot be null");
+                    }
+                    taskValidator.validate(task); // Validate the task
+                    taskValidator.validateDoneField(task.isDone()); // Ensure 'done' field is not set
+                    validTasks.add(task);
+                } catch (IllegalArgumentException e) {
+                    errors.add(new BulkError(i, e.getMessage()));
+                }
+            }
+
+            if (!errors.isEmpty() && !partial) {
+                throw new BulkValidationException(errors);
+            }
+
+            taskRepository.saveAll(validTasks); // Save the whole batch
+            validTasks.forEach(completionAnalytics::add); // Update the analytics
+            if (!validTasks.isEmpty()) {
+                dataChanged(validTasks);
+            }
+            return new BulkCreateResult(validTasks, errors);
+        } finally {
+            createTasksTimer.recordSince(start);
+        }
+    }
+
+    // Visit every stored task, used to stream an export without building a list
+    public void exportTasks(Consumer<Task> consumer) {
+        long start = System.nanoTime();
+        try {
+            taskRepository.forEach(consumer);
+        } finally {
+            exportTimer.recordSince(start);
+        }
+    }
+
+    // Import a chunk of exported tasks, keeping their IDs, dates and state
+    // Tasks without an ID are created, tasks with an ID replace the stored version; the errors are reported by
+    // position in the import, starting at firstIndex for the first task of the chunk. The whole chunk is checked
+    // before anything is written, so a chunk refused with an IllegalArgumentException leaves no task behind
+    public List<BulkError> importTasks(List<Task> tasks, int firstIndex) {
+        long start = System.nanoTime();
+        // Every version replaced or written, for the cache invalidation
+        List<Task> changedTasks = new ArrayList<>();
+        try {
+            List<Task> newTasks = new ArrayList<>();
+            List<Task> replacingTasks = new ArrayList<>();
+            List<BulkError> errors = new ArrayList<>();
+            long nextId = 0;
+            for (int i = 0; i < tasks.size(); i++) {
+                Task task = tasks.get(i);
+                try {
+                    if (task == null) {
+                        throw new IllegalArgumentException("Task cannot be null");
+                    }
+                    // Exported tasks may be done or overdue, only the name, the priority and the dates are checked
+                    taskValidator.validateName(task.getName());
+                    taskValidator.validatePriority(task.getPriority());
+                    // The dates feed the average times, which are rebuilt from every stored task at startup
+                    if (task.getCreationDate() == null) {
+                        throw new IllegalArgumentException("A task must have a creationDate");
+                    }
+                    if (task.isDone() && task.getDoneDate() == null) {
+                        throw new IllegalArgumentException("A done task must have a doneDate");
+                    }
+                    if (task.getDoneDate() != null && task.getDoneDate().isBefore(task.getCreationDate())) {
+                        throw new IllegalArgumentException("The doneDate cannot be before the creationDate");
+                    }
+                    // An ID the storage cannot hold is refused before anything is written
+                    if (task.getId() != null && !taskRepository.accepts(task.getId())) {
+                        throw new IllegalArgumentException("Task ID out of range: " + task.getId());
+                    }
+                } catch (IllegalArgumentException e) {
+                    errors.add(new BulkError(firstIndex + i, e.getMessage()));
+                    continue;
+                }
+
+                if (task.getId() == null) {
+                    newTasks.add(task);
+                } else {
+                    replacingTasks.add(task);
+                    nextId = Math.max(nextId, task.getId() + 1);
+                }
+            }
+
+            // The new tasks get IDs above the ones the chunk assigns, and are stored first: the batch is refused as a
+            // whole when the ID sequence runs past the storage range, which no other write of the chunk can be
+            taskRepository.advanceNextId(nextId);
+            taskRepository.saveAll(newTasks); // Save the new tasks as one batch
+            changedTasks.addAll(newTasks);
+            for (Task task : newTasks) {
+                if (task.isDone()) {
+                    updateAverageTime(task); // Update average time
+                }
+                completionAnalytics.add(task); // Update the analytics
+            }
+
+            for (Task task : replacingTasks) {
+                Task previous = taskRepository.upsert(task);
+                changedTasks.add(previous);
+                changedTasks.add(task);
+                if (previous != null && previous.isDone()) {
+                    removeAverageTime(previous); // Remove average time of the replaced version
+                }
+                if (task.isDone()) {
+                    updateAverageTime(task); // Update average time
+                }
+                completionAnalytics.replace(previous, task); // Update the analytics
+            }
+            return errors;
+        } finally {
+            // Tasks may have been written before a failure
+            if (!changedTasks.isEmpty()) {
+                dataChanged(changedTasks);
+            }
+            importTimer.recordSince(start);
         }
-        return createdTasks;
     }
 
     // Update an existing task
+    // Stored tasks are never modified in place: each change is applied to a copy and published with a
+    // compare-and-replace, retrying when a concurrent request changed the task first
     public Task updateTask(Long id, Task updatedTask) {
-        taskValidator.validate(updatedTask); // Validate the updated task
-        Optional<Task> existingTaskOpt = taskRepository.findById(id);
-        if (existingTaskOpt.isPresent()) {
-            Task existingTask = existingTaskOpt.get();
-            existingTask.setName(updatedTask.getName());
-            existingTask.setPriority(updatedTask.getPriority());
-            existingTask.setDueDate(updatedTask.getDueDate());
-            return taskRepository.save(existingTask); // Save the updated task
-        } else {
-            throw new NoSuchElementException("Task not found with id: " + id);
+        long start = System.nanoTime();
+        try {
+            taskValidator.validate(updatedTask); // Validate the updated task
+            while (true) {
+                Task existingTask = findExistingTask(id);
+                Task task = new Task(existingTask);
+                task.setName(updatedTask.getName());
+                task.setPriority(updatedTask.getPriority());
+                task.setDueDate(updatedTask.getDueDate());
+                if (taskRepository.replace(existingTask, task)) { // Save the updated task
+                    dataChanged(existingTask, task);
+                    return task;
+                }
+            }
+        } finally {
+            updateTaskTimer.recordSince(start);
         }
     }
 
     // Mark a task as done
     public Task markAsDone(Long id) {
-        Optional<Task> existingTaskOpt = taskRepository.findById(id);
-        if (existingTaskOpt.isPresent()) {
-            Task existingTask = existingTaskOpt.get();
-            if (!existingTask.isDone()) {
-                existingTask.setDone(true);
-                existingTask.setDoneDate(LocalDateTime.now());
-                taskRepository.save(existingTask); // Save the task as done
-                updateAverageTime(existingTask); // Update average time
-            }
-            return existingTask;
-        } else {
-            throw new NoSuchElementException("Task not found with id: " + id);
+        long start = System.nanoTime();
+        try {
+            while (true) {
+                Task existingTask = findExistingTask(id);
+                if (existingTask.isDone()) {
+                    return existingTask;
+                }
+                Task task = new Task(existingTask);
+                task.setDone(true);
+                task.setDoneDate(LocalDateTime.now());
+                if (taskRepository.replace(existingTask, task)) { // Save the task as done
+                    updateAverageTime(task); // Update average time
+                    dataChanged(existingTask, task);
+                    return task;
+                }
+            }
+        } finally {
+            markAsDoneTimer.recordSince(start);
         }
     }
 
     // Mark a task as undone
     public Task markTaskAsUndone(Long id) {
-        Optional<Task> existingTaskOpt = taskRepository.findById(id);
-        if (existingTaskOpt.isPresent()) {
-            Task existingTask = existingTaskOpt.get();
-            if (existingTask.isDone()) {
-                removeAverageTime(existingTask); // Remove average time
-                existingTask.setDone(false);
-                existingTask.setDoneDate(null);
-                taskRepository.save(existingTask); // Save the task as undone
-            }
-            return existingTask;
-        } else {
-            throw new NoSuchElementException("Task not found with id: " + id);
+        long start = System.nanoTime();
+        try {
+            while (true) {
+                Task existingTask = findExistingTask(id);
+                if (!existingTask.isDone()) {
+                    return existingTask;
+                }
+                Task task = new Task(existingTask);
+                task.setDone(false);
+                task.setDoneDate(null);
+                if (taskRepository.replace(existingTask, task)) { // Save the task as undone
+                    removeAverageTime(existingTask); // Remove average time
+                    dataChanged(existingTask, task);
+                    return task;
+                }
+            }
+        } finally {
+            markAsUndoneTimer.recordSince(start);
         }
     }
 
     // Delete a task by its ID
     public void deleteTask(Long id) {
-        Optional<Task> taskOpt = taskRepository.findById(id);
-        if (taskOpt.isPresent()) {
-            Task task = taskOpt.get();
-            if (task.isDone()) {
-                removeAverageTime(task); // Remove average time
+        long start = System.nanoTime();
+        try {
+            while (true) {
+                Task task = findExistingTask(id);
+                if (taskRepository.delete(task)) { // Delete the task
+                    if (task.isDone()) {
+                        removeAverageTime(task); // Remove average time
+                    }
+                    dataChanged(task, null);
+                    return;
+                }
+            }
+        } finally {
+            deleteTaskTimer.recordSince(start);
+        }
+    }
+
+    // Apply one state change to many tasks, selected by ID, by the getAllTasks filters, or by both
+    // The changes are written as one repository batch and the cache and entity tags are invalidated once; tasks
+    // changed concurrently are read again and retried, like the single-task operations do
+    public BulkUpdateResult updateTasks(BulkUpdateRequest request) {
+        long start = System.nanoTime();
+        try {
+            BulkAction action = BulkAction.parse(request.getAction());
+            Integer newPriority = request.getPriority();
+            if (action == BulkAction.PRIORITY) {
+                if (newPriority == null) {
+                    throw new IllegalArgumentException("Priority is required by the priority action");
+                }
+                taskValidator.validatePriority(newPriority);
+            } else if (newPriority != null) {
+                throw new IllegalArgumentException("Priority is only used by the priority action");
+            }
+            BulkUpdateRequest.Filter filter = request.getFilter();
+            if (request.getIds() == null && filter == null) {
+                throw new IllegalArgumentException("Tasks must be selected by ids, filter or both");
+            }
+            TaskQuery query = filter != null
+                    ? TaskQuery.compile(null, null, filter.getDone(), filter.getName(), filter.getPriority())
+                    : null;
+
+            List<Long> notFound = new ArrayList<>();
+            List<Task> targets = selectTasks(request.getIds(), query, notFound);
+            List<Task> changedTasks = new ArrayList<>();
+            int updated = 0;
+            int unchanged = 0;
+            while (!targets.isEmpty()) {
+                List<Task> current = new ArrayList<>(targets.size());
+                List<Task> changes = new ArrayList<>(targets.size());
+                for (Task task : targets) {
+                    Task change = applyAction(action, task, newPriority);
+                    if (change == task) {
+                        unchanged++;
+                    } else {
+                        current.add(task);
+                        changes.add(change);
+                    }
+                }
+
+                boolean[] replaced = taskRepository.replaceAll(current, changes);
+                targets = new ArrayList<>();
+                for (int i = 0; i < replaced.length; i++) {
+                    Task task = current.get(i);
+                    Task change = changes.get(i);
+                    if (!replaced[i]) {
+                        // Changed by another request since it was read, retried on its latest version if still selected
+                        taskRepository.findById(task.getId())
+                                .filter(latest -> query == null || query.matches(latest))
+                                .ifPresent(targets::add);
+                        continue;
+                    }
+                    if (task.isDone()) {
+                        removeAverageTime(task); // Remove average time of the replaced version
+                    }
+                    if (change != null && change.isDone()) {
+                        updateAverageTime(change); // Update average time
+                    }
+                    completionAnalytics.replace(task, change); // Update the analytics
+                    changedTasks.add(task);
+                    changedTasks.add(change);
+                    updated++;
+                }
+            }
+            if (updated > 0) {
+                dataChanged(changedTasks);
+            }
+            return new BulkUpdateResult(updated + unchanged, updated, unchanged, notFound);
+        } finally {
+            updateTasksTimer.recordSince(start);
+        }
+    }
+
+    // Tasks selected by a bulk update: the listed ones when IDs are given, filtered by the query when there is one
+    // Listed IDs that do not exist are added to notFound
+    private List<Task> selectTasks(List<Long> ids, TaskQuery query, List<Long> notFound) {
+        List<Task> tasks = new ArrayList<>();
+        if (ids != null) {
+            for (Long id : new LinkedHashSet<>(ids)) {
+                if (id == null) {
+                    throw new IllegalArgumentException("Task ID cannot be null");
+                }
+                Optional<Task> task = taskRepository.findById(id);
+                if (task.isEmpty()) {
+                    notFound.add(id);
+                } else if (query == null || query.matches(task.get())) {
+                    tasks.add(task.get());
+                }
             }
-            taskRepository.deleteById(id); // Delete the task
-            pages.updateTotalPages(taskRepository.findAll().size()); // Update total pages
+            return tasks;
+        }
+        Consumer<Task> collector = task -> {
+            if (query.matches(task)) {
+                tasks.add(task);
+            }
+        };
+        // The done and priority filters are pushed down to the storage, the name index narrows a name filter when it can
+        Set<Long> candidates = query.getName() != null ? taskRepository.findCandidateIdsByName(query.getName()) : null;
+        if (candidates != null) {
+            taskRepository.forEachById(candidates, query.getDone(), query.getPriority(), collector);
         } else {
-            throw new NoSuchElementException("Task not found with id: " + id);
+            taskRepository.forEach(query.getDone(), query.getPriority(), collector);
         }
+        return tasks;
+    }
+
+    // New version of a task after a bulk action, the same instance when the task is already in the requested state,
+    // or null when it is deleted
+    private static Task applyAction(BulkAction action, Task task, Integer newPriority) {
+        if (action == BulkAction.DELETE) {
+            return null;
+        }
+        Task change = new Task(task);
+        switch (action) {
+            case DONE -> {
+                if (task.isDone()) {
+                    return task;
+                }
+                change.setDone(true);
+                change.setDoneDate(LocalDateTime.now());
+            }
+            case UNDONE -> {
+                if (!task.isDone()) {
+                    return task;
+                }
+                change.setDone(false);
+                change.setDoneDate(null);
+            }
+            case PRIORITY -> {
+                if (task.getPriority() == newPriority) {
+                    return task;
+                }
+                change.setPriority(newPriority);
+            }
+        }
+        return change;
+    }
+
+    // Find a stored task or fail if it does not exist
+    private Task findExistingTask(Long id) {
+        return taskRepository.findById(id)
+                .orElseThrow(() -> new NoSuchElementException("Task not found with id: " + id));
     }
 
     // Update the average time to complete tasks
     private void updateAverageTime(Task task) {
-        Duration duration = Duration.between(task.getCreationDate(), task.getDoneDate());
-        averageTime.addTotalDuration(duration);
-        switch (task.getPriority()) {
-            case 2:
-                averageTime.addHighDuration(duration);
-                break;
-            case 1:
-                averageTime.addMediumDuration(duration);
-                break;
-            case 0:
-                averageTime.addLowDuration(duration);
-                break;
-        }
+        averageTime.addDuration(task.getPriority(), Duration.between(task.getCreationDate(), task.getDoneDate()));
     }
 
     // Remove the average time of a task
     private void removeAverageTime(Task task) {
-        Duration duration = Duration.between(task.getCreationDate(), task.getDoneDate());
-        averageTime.subtractTotalDuration(duration);
-        switch (task.getPriority()) {
-            case 2:
-                averageTime.subtractHighDuration(duration);
-                break;
-            case 1:
-                averageTime.subtractMediumDuration(duration);
-                break;
-            case 0:
-                averageTime.subtractLowDuration(duration);
-                break;
-        }
+        averageTime.removeDuration(task.getPriority(), Duration.between(task.getCreationDate(), task.getDoneDate()));
+    }
+
+    // Recompute the completion statistics and the analytics from the stored tasks, used once the tasks were restored
+    // from disk
+    public void rebuildAverageTimes() {
+        completionAnalytics.clear();
+        taskRepository.forEach(task -> {
+            if (task.isDone()) {
+                updateAverageTime(task);
+            }
+            completionAnalytics.add(task);
+        });
+        taskQueryCache.clear();
+        dataRevision.incrementAndGet();
+    }
+
+    // Revision of the data served by the task list and the statistics, the entity tag of those responses
+    // Read before building a response, so a tag never covers a write the response missed; writes in flight may
+    // already show in the response, they bump the revision once done and the next request gets a new tag
+    public long getDataRevision() {
+        return dataRevision.get();
+    }
+
+    // Record that a write completed, given the task before and after it (null when absent)
+    // The analytics follow the write, the cached query results it may have changed are dropped and the entity tags
+    // handed out so far expire
+    private void dataChanged(Task previous, Task current) {
+        completionAnalytics.replace(previous, current);
+        taskQueryCache.invalidate(previous, current);
+        dataRevision.incrementAndGet();
+    }
+
+    // Record that a batch of writes completed, given every task version replaced or written
+    private void dataChanged(Collection<Task> tasks) {
+        taskQueryCache.invalidate(tasks);
+        dataRevision.incrementAndGet();
     }
 
     // Get average times
@@ -154,9 +513,75 @@ public class TaskService {
         return averageTime;
     }
 
-    // Get pages
-    public Pages getPages() {
-        return pages;
+    // Tasks created and completed over the last buckets of the given resolution (minute, hour or day)
+    public Map<String, Object> getAnalytics(String resolution) {
+        return completionAnalytics.snapshot(CompletionAnalytics.Resolution.parse(resolution));
+    }
+
+    // Suggest up to limit distinct task names starting with the prefix
+    public List<String> autocompleteNames(String prefix, int limit) {
+        long start = System.nanoTime();
+        try {
+            if (prefix == null || prefix.isEmpty()) {
+                throw new IllegalArgumentException("Prefix cannot be null or empty");
+            }
+            if (limit < 1 || limit > MAX_SUGGESTIONS) {
+                throw new IllegalArgumentException("Limit must be between 1 and " + MAX_SUGGESTIONS);
+            }
+            return taskRepository.findNamesByPrefix(prefix, limit);
+        } finally {
+            autocompleteTimer.recordSince(start);
+        }
+    }
+
+    // Retrieve the task mutations that followed a revision of the given epoch, for clients keeping their view in sync
+    // The response epoch and revision are the ones to ask from next time; resync is set when the change log no
+    // longer holds every change since the given revision, or the revision belongs to another epoch (a previous
+    // process, or none was given), and the client has to reload its tasks
+    public Map<String, Object> getChangesSince(String epoch, long since, int limit) {
+        if (limit < 1 || limit > MAX_CHANGES) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_CHANGES);
+        }
+        long currentRevision = taskRepository.getRevision();
+        List<TaskChange> changes = taskRepository.findChangesSince(epoch, since, limit);
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("epoch", taskRepository.getRevisionEpoch());
+        if (changes == null) {
+            response.put("revision", currentRevision);
+            response.put("resync", true);
+            return response;
+        }
+        long revision = changes.isEmpty() ? since : changes.get(changes.size() - 1).getRevision();
+        response.put("revision", revision);
+        response.put("changes", changes);
+        response.put("hasMore", revision < currentRevision);
+        return response;
+    }
+
+    // Retrieve the undone tasks due from now on and within the given ISO-8601 duration, earliest first
+    public Map<String, Object> getDueTasks(String within, int limit) {
+        Duration duration;
+        try {
+            duration = Duration.parse(within);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Within must be an ISO-8601 duration, such as PT1H");
+        }
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("Within must be a positive duration");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime to;
+        try {
+            to = now.plus(duration);
+        } catch (DateTimeException | ArithmeticException e) {
+            throw new IllegalArgumentException("Within is too long");
+        }
+        return findDueTasks(now, to, limit);
+    }
+
+    // Retrieve the undone tasks whose due date has passed, most overdue first
+    public Map<String, Object> getOverdueTasks(int limit) {
+        return findDueTasks(null, LocalDateTime.now(), limit);
     }
 
     // Retrieve all tasks sorted by priority
@@ -176,51 +601,95 @@ public class TaskService {
 
     // Retrieve all tasks with sorting, filtering, and pagination
     public Map<String, Object> getAllTasks(String sortBy, String sortOrder, int page, Boolean done, String name, Integer priority) {
-        Pages pages = getPages();
-
-        if (page < 1) {
-            throw new IllegalArgumentException("Page number must be greater than or equal to 1");
-        }
-
-        List<Task> tasks;
+        return getAllTasks(sortBy, sortOrder, page, done, name, priority, null);
+    }
 
-        if ("priority".equalsIgnoreCase(sortBy) && "dueDate".equalsIgnoreCase(sortOrder)) {
-            tasks = getAllTasksSortedByPriorityAndDueDate();
-        } else if ("priority".equalsIgnoreCase(sortBy)) {
-            tasks = getAllTasksSortedByPriority();
-        } else if ("dueDate".equalsIgnoreCase(sortBy)) {
-            tasks = getAllTasksSortedByDueDate();
-        } else {
-            tasks = getAllTasks();
+    // Retrieve all tasks with sorting, filtering, and pagination
+    // When a cursor is given (an empty one starts from the beginning) keyset pagination is used instead of the page number
+    public Map<String, Object> getAllTasks(String sortBy, String sortOrder, int page, Boolean done, String name, Integer priority,
+                                           String after) {
+        long start = System.nanoTime();
+        try {
+            // Filters, sorting and paging run in one pass of the query engine
+            TaskQuery query = TaskQuery.compile(sortBy, sortOrder, done, name, priority);
+            // Repeated queries are answered from the cache until a write changes their result
+            return taskQueryCache.get(query, page, after, () -> findTasks(query, page, after));
+        } finally {
+            getAllTasksTimer.recordSince(start);
         }
+    }
 
-        if (done != null) {
-            tasks = tasks.stream().filter(task -> task.isDone() == done).collect(Collectors.toList());
+    // Run a query and build its response
+    private Map<String, Object> findTasks(TaskQuery query, int page, String after) {
+        if (after != null) {
+            TaskPage taskPage = taskQueryEngine.findPageAfter(query, after.isEmpty() ? null : after, Pages.TASKS_PER_PAGE);
+            if (taskPage.getTasks().isEmpty() && after.isEmpty()) {
+                return Map.of("message", "No tasks found");
+            }
+            return pageResponse(taskPage, Map.of());
         }
 
-        if (name != null && !name.isEmpty()) {
-            tasks = tasks.stream().filter(task -> task.getName().toLowerCase().contains(name.toLowerCase())).collect(Collectors.toList());
+        if (page < 1) {
+            throw new IllegalArgumentException("Page number must be greater than or equal to 1");
         }
 
-        if (priority != null) {
-            tasks = tasks.stream().filter(task -> task.getPriority() == priority).collect(Collectors.toList());
-        }
+        // Pages are computed from the tasks matching this query only
+        TaskPage taskPage = taskQueryEngine.findPage(query, page, Pages.TASKS_PER_PAGE);
 
-        if (tasks.isEmpty()) {
+        if (taskPage.getTotalTasks() == 0) {
             return Map.of("message", "No tasks found");
         }
 
-        pages.setActualPage(page);
-        int totalPages = pages.getTotalPages();
+        int totalPages = Pages.totalPages(taskPage.getTotalTasks());
 
         if (page > totalPages) {
             throw new IllegalArgumentException("Page number exceeds total pages");
         }
 
-        int start = (page - 1) * Pages.TASKS_PER_PAGE;
-        int end = Math.min(start + Pages.TASKS_PER_PAGE, tasks.size());
-        List<Task> paginatedTasks = tasks.subList(start, end);
+        Map<String, Object> pagination = new LinkedHashMap<>();
+        pagination.put("currentPage", page);
+        pagination.put("totalPages", totalPages);
+        if (page < totalPages) {
+            // Lets clients switch to keyset pagination from any page
+            List<Task> tasks = taskPage.getTasks();
+            pagination.put("nextCursor", TaskCursor.encode(query.getOrder(), tasks.get(tasks.size() - 1)));
+        }
+        return pageResponse(taskPage, pagination);
+    }
+
+    // Build the response body for a page of tasks
+    private Map<String, Object> pageResponse(TaskPage taskPage, Map<String, Object> pagination) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("tasks", taskPage.getTasks());
+        response.putAll(pagination);
+        if (taskPage.getNextCursor() != null) {
+            response.put("nextCursor", taskPage.getNextCursor());
+        }
+        return response;
+    }
+
+    // Undone tasks due at or after from (null for the earliest) and before to, with whether more are left out
+    private Map<String, Object> findDueTasks(LocalDateTime from, LocalDateTime to, int limit) {
+        long start = System.nanoTime();
+        try {
+            if (limit < 1 || limit > MAX_DUE_TASKS) {
+                throw new IllegalArgumentException("Limit must be between 1 and " + MAX_DUE_TASKS);
+            }
+            // One task past the limit tells whether the result was cut
+            List<Task> tasks = taskRepository.findDueBetween(from, to, limit + 1);
+            boolean hasMore = tasks.size() > limit;
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("tasks", hasMore ? tasks.subList(0, limit) : tasks);
+            response.put("hasMore", hasMore);
+            return response;
+        } finally {
+            getDueTasksTimer.recordSince(start);
+        }
+    }
 
-        return Map.of("tasks", paginatedTasks, "currentPage", page, "totalPages", totalPages);
+    // Timer of one service operation
+    private static Timer operationTimer(MetricsRegistry metricsRegistry, String operation) {
+        return metricsRegistry.timer("todo_service_seconds", "Time spent in TaskService operations",
+                "operation", operation);
     }
 }
@@ -1,104 +1,76 @@
 package com.encora.breakable_toy.utils;
 
-import org.springframework.stereotype.Component;
-
 import java.time.Duration;
-import java.time.LocalTime;
+import java.util.concurrent.atomic.LongAdder;
 
-@Component
 public class AverageTime {
-    // Variables to store total time and times by priority
-    private LocalTime totalTime = LocalTime.of(0, 0);
-    private LocalTime highTime = LocalTime.of(0, 0);
-    private LocalTime mediumTime = LocalTime.of(0, 0);
-    private LocalTime lowTime = LocalTime.of(0, 0);
-
-    // Counters for the number of tasks by priority
-    private long totalCount = 0;
-    private long highCount = 0;
-    private long mediumCount = 0;
-    private long lowCount = 0;
+    // Completion statistics of every task and by priority (0 = Low, 1 = Medium, 2 = High)
+    private final CompletionStats total = new CompletionStats();
+    private final CompletionStats[] byPriority = {new CompletionStats(), new CompletionStats(), new CompletionStats()};
 
     // Getters to obtain average times in minutes
     public long getTotalTimeInMinutes() {
-        return getTimeInMinutes(calculateAverageTime(totalTime, totalCount));
+        return total.averageSeconds() / 60;
     }
 
     public long getHighTimeInMinutes() {
-        return getTimeInMinutes(calculateAverageTime(highTime, highCount));
+        return byPriority[2].averageSeconds() / 60;
     }
 
     public long getMediumTimeInMinutes() {
-        return getTimeInMinutes(calculateAverageTime(mediumTime, mediumCount));
+        return byPriority[1].averageSeconds() / 60;
     }
 
     public long getLowTimeInMinutes() {
-        return getTimeInMinutes(calculateAverageTime(lowTime, lowCount));
-    }
-
-    // Method to add a duration to a specific time
-    private LocalTime addDuration(Duration duration, LocalTime time) {
-        return time.plusSeconds(duration.getSeconds());
+        return byPriority[0].averageSeconds() / 60;
     }
 
-    // Method to subtract a duration from a specific time
-    private LocalTime subtractDuration(Duration duration, LocalTime time) {
-        return time.minusSeconds(duration.getSeconds());
+    // Completion time in minutes at the given percentile (0 to 100) for every task
+    public long getTotalPercentileInMinutes(double percentile) {
+        return total.histogram.percentile(percentile) / 60;
     }
 
-    // Public methods to add durations to the respective times
-    public void addTotalDuration(Duration duration) {
-        totalTime = addDuration(duration, totalTime);
-        totalCount++;
+    // Completion time in minutes at the given percentile (0 to 100) for one priority
+    public long getPercentileInMinutes(int priority, double percentile) {
+        return byPriority[priority].histogram.percentile(percentile) / 60;
     }
 
-    public void addHighDuration(Duration duration) {
-        highTime = addDuration(duration, highTime);
-        highCount++;
+    // Add the completion time of a task with the given priority
+    public void addDuration(int priority, Duration duration) {
+        long seconds = duration.getSeconds();
+        total.add(seconds);
+        byPriority[priority].add(seconds);
     }
 
-    public void addMediumDuration(Duration duration) {
-        mediumTime = addDuration(duration, mediumTime);
-        mediumCount++;
+    // Remove the completion time of a task that was added before, when it is undone or deleted
+    public void removeDuration(int priority, Duration duration) {
+        long seconds = duration.getSeconds();
+        total.remove(seconds);
+        byPriority[priority].remove(seconds);
     }
 
-    public void addLowDuration(Duration duration) {
-        lowTime = addDuration(duration, lowTime);
-        lowCount++;
-    }
-
-    // Public methods to subtract durations from the respective times
-    public void subtractTotalDuration(Duration duration) {
-        totalTime = subtractDuration(duration, totalTime);
-        totalCount--;
-    }
+    // Statistics of one group of tasks
+    // Sums are plain seconds in striped adders: they never wrap and concurrent updates do not contend
+    private static final class CompletionStats {
+        private final LongAdder totalSeconds = new LongAdder();
+        private final LongAdder count = new LongAdder();
+        private final Histogram histogram = new Histogram();
 
-    public void subtractHighDuration(Duration duration) {
-        highTime = subtractDuration(duration, highTime);
-        highCount--;
-    }
-
-    public void subtractMediumDuration(Duration duration) {
-        mediumTime = subtractDuration(duration, mediumTime);
-        mediumCount--;
-    }
-
-    public void subtractLowDuration(Duration duration) {
-        lowTime = subtractDuration(duration, lowTime);
-        lowCount--;
-    }
+        private void add(long seconds) {
+            totalSeconds.add(seconds);
+            count.increment();
+            histogram.record(seconds);
+        }
 
-    // Method to calculate average time based on total time and count
-    private LocalTime calculateAverageTime(LocalTime totalTime, long count) {
-        if (count == 0) {
-            return LocalTime.of(0, 0);
+        private void remove(long seconds) {
+            totalSeconds.add(-seconds);
+            count.decrement();
+            histogram.remove(seconds);
         }
-        long averageSeconds = totalTime.toSecondOfDay() / count;
-        return LocalTime.ofSecondOfDay(averageSeconds);
-    }
 
-    // Method to get time in minutes
-    public long getTimeInMinutes(LocalTime time) {
-        return time.toSecondOfDay() / 60;
+        private long averageSeconds() {
+            long tasks = count.sum();
+            return tasks > 0 ? totalSeconds.sum() / tasks : 0;
+        }
     }
 }
@@ -0,0 +1,253 @@
+package com.encora.breakable_toy.utils;
+
+import com.encora.breakable_toy.entity.Task;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Tasks created and completed over time, by minute, hour and day, with the average completion time by priority
+// Each resolution is a fixed ring of time buckets updated as tasks are written, so memory and reads cost the same
+// whatever the number of tasks. Like AverageTime the counts describe the stored tasks: a task counts in the bucket of
+// its creation date and, once done, in the bucket of its done date; undoing or deleting it takes it back out, so the
+// stored tasks rebuild the same counts after a restart. Dates outside a ring are not counted in it
+public class CompletionAnalytics {
+
+    // Bucket sizes and the number of buckets kept for each
+    public enum Resolution {
+        MINUTE(60, 60),
+        HOUR(3_600, 48),
+        DAY(86_400, 30);
+
+        private final long bucketSeconds;
+        private final int buckets;
+
+        Resolution(long bucketSeconds, int buckets) {
+            this.bucketSeconds = bucketSeconds;
+            this.buckets = buckets;
+        }
+
+        public long getBucketSeconds() {
+            return bucketSeconds;
+        }
+
+        public int getBuckets() {
+            return buckets;
+        }
+
+        // Parse a resolution name, ignoring case
+        public static Resolution parse(String name) {
+            for (Resolution resolution : values()) {
+                if (resolution.name().equalsIgnoreCase(name)) {
+                    return resolution;
+                }
+            }
+            throw new IllegalArgumentException("Resolution must be minute, hour or day");
+        }
+    }
+
+    private static final int PRIORITIES = 3;
+    private static final String[] PRIORITY_NAMES = {"low", "medium", "high"};
+    // Counter positions in a bucket
+    private static final int CREATED = 0;
+    private static final int COMPLETED = 1; // One per priority
+    private static final int COMPLETION_SECONDS = COMPLETED + PRIORITIES; // One per priority
+    private static final int COUNTERS = COMPLETION_SECONDS + PRIORITIES;
+
+    private final EnumMap<Resolution, Ring> rings = new EnumMap<>(Resolution.class);
+    // Decides which buckets are current, in the time zone of the task dates
+    private final Clock clock;
+
+    public CompletionAnalytics() {
+        this(Clock.systemDefaultZone());
+    }
+
+    public CompletionAnalytics(Clock clock) {
+        this.clock = clock;
+        for (Resolution resolution : Resolution.values()) {
+            rings.put(resolution, new Ring(resolution));
+        }
+    }
+
+    // Count a stored task version
+    public void add(Task task) {
+        update(task, 1);
+    }
+
+    // Take back a task version counted before, when it is replaced or deleted
+    public void remove(Task task) {
+        update(task, -1);
+    }
+
+    // Move a task from its previous version to its new one, either may be null
+    public void replace(Task previous, Task current) {
+        if (previous != null) {
+            remove(previous);
+        }
+        if (current != null) {
+            add(current);
+        }
+    }
+
+    // Drop every count, before rebuilding them from the stored tasks
+    public void clear() {
+        for (Ring ring : rings.values()) {
+            ring.clear();
+        }
+    }
+
+    // Buckets of one resolution up to the current one, oldest first, and the totals of the whole window
+    public Map<String, Object> snapshot(Resolution resolution) {
+        return rings.get(resolution).snapshot(epochSecond(LocalDateTime.now(clock)));
+    }
+
+    private void update(Task task, int delta) {
+        if (task.getCreationDate() == null) {
+            return;
+        }
+        long now = epochSecond(LocalDateTime.now(clock));
+        long created = epochSecond(task.getCreationDate());
+        boolean completed = task.isDone() && task.getDoneDate() != null;
+        long done = completed ? epochSecond(task.getDoneDate()) : 0;
+        // Clock changes aside, a task is completed after its creation
+        long seconds = completed ? Math.max(0, done - created) : 0;
+        int priority = task.getPriority();
+        for (Ring ring : rings.values()) {
+            ring.add(now, created, CREATED, delta);
+            if (completed) {
+                ring.add(now, done, COMPLETED + priority, delta);
+                ring.add(now, done, COMPLETION_SECONDS + priority, delta * seconds);
+            }
+        }
+    }
+
+    private static long epochSecond(LocalDateTime date) {
+        return date.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    // Counters of one time bucket, the bucket number never changes
+    private static final class Bucket {
+        private final long number;
+        private final AtomicLongArray counters = new AtomicLongArray(COUNTERS);
+
+        private Bucket(long number) {
+            this.number = number;
+        }
+    }
+
+    // The buckets of one resolution, bucket number n being kept in slot n % size until bucket n + size replaces it
+    private static final class Ring {
+        private final Resolution resolution;
+        private final AtomicReferenceArray<Bucket> slots;
+
+        private Ring(Resolution resolution) {
+            this.resolution = resolution;
+            this.slots = new AtomicReferenceArray<>(resolution.buckets);
+        }
+
+        // Add to a counter of the bucket holding the given date, unless the date is outside the current window
+        private void add(long now, long epochSecond, int counter, long delta) {
+            long current = Math.floorDiv(now, resolution.bucketSeconds);
+            long number = Math.floorDiv(epochSecond, resolution.bucketSeconds);
+            if (number > current || number <= current - resolution.buckets) {
+                return;
+            }
+            // Taking back a count never opens a bucket, the count it undoes went away with the bucket it was in
+            Bucket bucket = delta > 0 ? bucket(number) : existingBucket(number);
+            if (bucket != null) {
+                bucket.counters.addAndGet(counter, delta);
+            }
+        }
+
+        // Bucket of the given number, replacing an older one in its slot, or null when a newer one took the slot
+        private Bucket bucket(long number) {
+            int slot = slot(number);
+            while (true) {
+                Bucket bucket = slots.get(slot);
+                if (bucket != null && bucket.number == number) {
+                    return bucket;
+                }
+                if (bucket != null && bucket.number > number) {
+                    return null;
+                }
+                Bucket newBucket = new Bucket(number);
+                if (slots.compareAndSet(slot, bucket, newBucket)) {
+                    return newBucket;
+                }
+            }
+        }
+
+        // Bucket of the given number if its slot holds it
+        private Bucket existingBucket(long number) {
+            Bucket bucket = slots.get(slot(number));
+            return bucket != null && bucket.number == number ? bucket : null;
+        }
+
+        private int slot(long number) {
+            return (int) Math.floorMod(number, (long) resolution.buckets);
+        }
+
+        private void clear() {
+            for (int i = 0; i < slots.length(); i++) {
+                slots.set(i, null);
+            }
+        }
+
+        private Map<String, Object> snapshot(long now) {
+            long current = Math.floorDiv(now, resolution.bucketSeconds);
+            long[] totals = new long[COUNTERS];
+            List<Map<String, Object>> buckets = new ArrayList<>(resolution.buckets);
+            for (long number = current - resolution.buckets + 1; number <= current; number++) {
+                Bucket bucket = existingBucket(number);
+                long[] counters = new long[COUNTERS];
+                if (bucket != null && bucket.number == number) {
+                    for (int i = 0; i < COUNTERS; i++) {
+                        counters[i] = bucket.counters.get(i);
+                        totals[i] += counters[i];
+                    }
+                }
+                Map<String, Object> entry = counts(counters);
+                entry.put("start", start(number));
+                buckets.add(entry);
+            }
+            Map<String, Object> window = counts(totals);
+            window.put("start", start(current - resolution.buckets + 1));
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("resolution", resolution.name().toLowerCase());
+            response.put("bucketSeconds", resolution.bucketSeconds);
+            response.put("window", window);
+            response.put("buckets", buckets);
+            return response;
+        }
+
+        private LocalDateTime start(long number) {
+            return LocalDateTime.ofEpochSecond(number * resolution.bucketSeconds, 0, ZoneOffset.UTC);
+        }
+
+        // Created and completed counts, and the average completion time in seconds, in total and by priority
+        private static Map<String, Object> counts(long[] counters) {
+            Map<String, Object> completedByPriority = new LinkedHashMap<>();
+            Map<String, Object> averageByPriority = new LinkedHashMap<>();
+            long completed = 0;
+            long seconds = 0;
+            for (int priority = 0; priority < PRIORITIES; priority++) {
+                long count = counters[COMPLETED + priority];
+                long sum = counters[COMPLETION_SECONDS + priority];
+                completed += count;
+                seconds += sum;
+                completedByPriority.put(PRIORITY_NAMES[priority], count);
+                averageByPriority.put(PRIORITY_NAMES[priority], count > 0 ? sum / count : 0);
+            }
+            Map<String, Object> counts = new LinkedHashMap<>();
+            counts.put("created", counters[CREATED]);
+            counts.put("completed", completed);
+            counts.put("completedByPriority", completedByPriority);
+            counts.put("averageCompletionSeconds", completed > 0 ? seconds / completed : 0);
+            counts.put("averageCompletionSecondsByPriority", averageByPriority);
+            return counts;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.encora.breakable_toy.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Log-linear histogram of non-negative long values with a relative error below 1/32 (about 3%)
+// Values below 32 get their own bucket, every following power of two is split into 32 equal buckets.
+// Recording is one atomic increment and never allocates; values can be removed exactly, and two histograms with
+// the same layout merge by adding their buckets
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Enough buckets for every non-negative long
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    // Record a value, negative values are recorded as zero
+    public void record(long value) {
+        counts.incrementAndGet(bucketOf(value));
+    }
+
+    // Remove a previously recorded value
+    public void remove(long value) {
+        counts.decrementAndGet(bucketOf(value));
+    }
+
+    // Add every value of another histogram to this one
+    public void merge(Histogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+    }
+
+    // Number of recorded values
+    public long count() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    // Value at the given percentile (0 to 100), estimated as the middle of its bucket, or 0 when empty
+    public long percentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = Math.max(0, counts.get(i));
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return lowerBound(i) + (bucketWidth(i) - 1) / 2;
+            }
+        }
+        return lowerBound(BUCKETS - 1);
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(0, value);
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    private static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    }
+
+    private static long bucketWidth(int bucket) {
+        return bucket < SUB_BUCKETS ? 1 : 1L << (bucket / SUB_BUCKETS - 1);
+    }
+}
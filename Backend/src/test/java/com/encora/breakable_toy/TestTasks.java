@@ -0,0 +1,58 @@
+package com.encora.breakable_toy;
+
+import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.metrics.MetricsRegistry;
+import com.encora.breakable_toy.partition.TaskPartitionFactory;
+import com.encora.breakable_toy.repository.TaskChangeLog;
+import com.encora.breakable_toy.repository.TaskRepository;
+import com.encora.breakable_toy.service.TaskQueryCache;
+import com.encora.breakable_toy.service.TaskQueryEngine;
+import com.encora.breakable_toy.service.TaskService;
+import com.encora.breakable_toy.utils.AverageTime;
+import com.encora.breakable_toy.utils.CompletionAnalytics;
+import com.encora.breakable_toy.utils.TaskValidator;
+
+import java.time.LocalDateTime;
+import java.util.SplittableRandom;
+
+// Repositories, services and tasks wired the way a partition wires them, shared by the tests
+public final class TestTasks {
+
+    private TestTasks() {
+    }
+
+    // Empty repository on the given storage type (map or columnar), whose change log keeps the given number of changes
+    public static TaskRepository repository(String storage, int changeLogCapacity) {
+        return new TaskRepository(TaskPartitionFactory.storage(storage), new TaskChangeLog(changeLogCapacity),
+                new MetricsRegistry());
+    }
+
+    // Service running its queries on a sequential engine, with a query cache of the given size (0 disables it)
+    public static TaskService service(TaskRepository repository, int cacheSize) {
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        return new TaskService(repository, new TaskValidator(), new AverageTime(), new CompletionAnalytics(),
+                new TaskQueryEngine(repository, metricsRegistry), new TaskQueryCache(cacheSize, metricsRegistry),
+                metricsRegistry);
+    }
+
+    // New task without an ID, as a client sends it
+    public static Task task(String name, int priority) {
+        Task task = new Task();
+        task.setName(name);
+        task.setPriority(priority);
+        return task;
+    }
+
+    // New task with random priority, due date and done flag, the name carrying the given word
+    public static Task randomTask(SplittableRandom random, String word) {
+        Task task = task(word + " " + random.nextInt(1_000_000), random.nextInt(3));
+        // A fifth of the tasks have no due date, many share one so the orders have ties to break
+        if (random.nextInt(5) != 0) {
+            task.setDueDate(LocalDateTime.of(2030, 1, 1, 0, 0).plusHours(random.nextInt(1000)));
+        }
+        if (random.nextInt(3) == 0) {
+            task.setDone(true);
+        }
+        return task;
+    }
+}
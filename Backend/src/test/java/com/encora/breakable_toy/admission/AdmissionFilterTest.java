@@ -0,0 +1,170 @@
+package com.encora.breakable_toy.admission;
+
+import com.encora.breakable_toy.metrics.MetricsRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Requests beyond the budget of their class are shed with 429 while the other classes keep being served
+class AdmissionFilterTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private MetricsRegistry metricsRegistry;
+    private AdmissionFilter filter;
+    // Requests passed down the chain hold their slot until this latch opens
+    private CountDownLatch release;
+    private CountDownLatch entered;
+
+    @BeforeEach
+    void createFilter() {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setBulk(budget(1, 1, Duration.ofMillis(50), Duration.ofMillis(300)));
+        properties.setWrite(budget(1, 1, Duration.ofSeconds(5), Duration.ofMillis(2500)));
+        properties.setRead(budget(1, 0, Duration.ZERO, Duration.ofSeconds(1)));
+        metricsRegistry = new MetricsRegistry();
+        filter = new AdmissionFilter(properties, metricsRegistry, 200, false);
+        release = new CountDownLatch(1);
+        entered = new CountDownLatch(1);
+    }
+
+    @AfterEach
+    void releaseRequests() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void shedsWritesBeyondTheBudgetAndKeepsServingReads() throws Exception {
+        Future<MockHttpServletResponse> held = executor.submit(() -> send("POST", "/api/v1/todos", holdingChain()));
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // The queue slot of the write class is taken by a request waiting for the held one
+        Future<MockHttpServletResponse> queued = executor.submit(() -> send("PUT", "/api/v1/todos/1", passingChain()));
+        waitUntilQueued();
+        MockHttpServletResponse rejected = send("DELETE", "/api/v1/todos/1", passingChain());
+        assertThat(rejected.getStatus()).isEqualTo(429);
+        assertThat(rejected.getHeader("Retry-After")).isEqualTo("3");
+        assertThat(rejected.getContentType()).isEqualTo("application/json");
+        assertThat(rejected.getContentAsString()).contains("\"error\"").contains("write");
+        assertThat(rejected.getHeader("Access-Control-Allow-Origin")).isNull();
+        assertThat(metricsRegistry.scrape())
+                .contains("todo_admission_rejected_total{class=\"write\",reason=\"queue_full\"} 1");
+
+        // The frontend's origin may read the rejection and its Retry-After, other origins may not
+        MockHttpServletResponse frontend = send("DELETE", "/api/v1/todos/1", "http://localhost:8080", passingChain());
+        assertThat(frontend.getStatus()).isEqualTo(429);
+        assertThat(frontend.getHeader("Access-Control-Allow-Origin")).isEqualTo("http://localhost:8080");
+        assertThat(frontend.getHeader("Access-Control-Expose-Headers")).isEqualTo("Retry-After");
+        assertThat(frontend.getHeaders("Vary")).contains("Origin");
+        MockHttpServletResponse other = send("DELETE", "/api/v1/todos/1", "http://evil.example", passingChain());
+        assertThat(other.getStatus()).isEqualTo(429);
+        assertThat(other.getHeader("Access-Control-Allow-Origin")).isNull();
+
+        // Other classes and unlimited requests are not affected
+        assertThat(send("GET", "/api/v1/todos", passingChain()).getStatus()).isEqualTo(200);
+        assertThat(send("POST", "/api/v1/todos/import", passingChain()).getStatus()).isEqualTo(200);
+        assertThat(send("GET", "/api/v1/todos/changes/stream", passingChain()).getStatus()).isEqualTo(200);
+        assertThat(send("GET", "/metrics", passingChain()).getStatus()).isEqualTo(200);
+
+        // Once the held request completes the queued one is admitted, then new writes pass again
+        release.countDown();
+        assertThat(held.get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(200);
+        assertThat(queued.get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(200);
+        assertThat(send("POST", "/api/v1/todos", passingChain()).getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void shedsBulkRequestsAfterTheirMaximumWait() throws Exception {
+        executor.submit(() -> send("POST", "/api/v1/todoslist", holdingChain()));
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // Each request waits in the queue for the slot of the held one and gives up; export is a bulk read, it
+        // competes with the bulk writes and not with the reads
+        for (String[] request : new String[][]{{"GET", "/api/v1/todos/export"}, {"POST", "/api/v1/todos/bulk"},
+                {"POST", "/api/v1/todos/import"}}) {
+            MockHttpServletResponse response = send(request[0], request[1], passingChain());
+            assertThat(response.getStatus()).as(request[1]).isEqualTo(429);
+            assertThat(response.getHeader("Retry-After")).isEqualTo("1");
+        }
+        assertThat(metricsRegistry.scrape())
+                .contains("todo_admission_rejected_total{class=\"bulk\",reason=\"timeout\"} 3");
+        assertThat(send("GET", "/api/v1/todos", passingChain()).getStatus()).isEqualTo(200);
+        assertThat(send("POST", "/api/v1/todos", passingChain()).getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void letsEverythingThroughWhenDisabled() throws Exception {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setEnabled(false);
+        properties.setWrite(budget(1, 0, Duration.ZERO, Duration.ofSeconds(1)));
+        filter = new AdmissionFilter(properties, new MetricsRegistry(), 200, false);
+
+        executor.submit(() -> send("POST", "/api/v1/todos", holdingChain()));
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(send("POST", "/api/v1/todos", passingChain()).getStatus()).isEqualTo(200);
+    }
+
+    private MockHttpServletResponse send(String method, String uri, FilterChain chain) throws Exception {
+        return send(method, uri, null, chain);
+    }
+
+    private MockHttpServletResponse send(String method, String uri, String origin, FilterChain chain)
+            throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        if (origin != null) {
+            request.addHeader("Origin", origin);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    // Chain signalling that the request got through, then holding it until the test releases it
+    private FilterChain holdingChain() {
+        return (request, response) -> {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+
+    private static FilterChain passingChain() {
+        return (request, response) -> {
+        };
+    }
+
+    // Poll the queue gauge until the write submitted in the background waits for a slot
+    private void waitUntilQueued() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!metricsRegistry.scrape().contains("todo_admission_queued{class=\"write\"} 1")) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static AdmissionProperties.Budget budget(int maxConcurrent, int maxQueued, Duration maxWait,
+                                                     Duration retryAfter) {
+        AdmissionProperties.Budget budget = new AdmissionProperties.Budget();
+        budget.setMaxConcurrent(maxConcurrent);
+        budget.setMaxQueued(maxQueued);
+        budget.setMaxWait(maxWait);
+        budget.setRetryAfter(retryAfter);
+        return budget;
+    }
+}
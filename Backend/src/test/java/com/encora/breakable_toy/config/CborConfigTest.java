@@ -0,0 +1,72 @@
+package com.encora.breakable_toy.config;
+
+import com.encora.breakable_toy.TestTasks;
+import com.encora.breakable_toy.entity.Task;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// CBOR dates are epoch seconds, or [epoch seconds, nanoseconds], and must come back exactly as they were written
+class CborConfigTest {
+
+    private final ObjectMapper mapper = CborConfig.cborMapper();
+
+    @Test
+    void tasksRoundTripExactly() throws Exception {
+        Task task = TestTasks.task("round trip ✓", 2);
+        task.setId(42L);
+        task.setCreationDate(LocalDateTime.of(2024, 1, 1, 10, 0));
+        task.setDueDate(LocalDateTime.of(2030, 6, 15, 23, 59, 59, 999_999_999));
+        task.setDoneDate(LocalDateTime.of(1969, 12, 31, 23, 59, 59, 1));
+        task.setDone(true);
+
+        Task decoded = mapper.readValue(mapper.writeValueAsBytes(task), Task.class);
+
+        assertThat(decoded).usingRecursiveComparison().isEqualTo(task);
+    }
+
+    @Test
+    void writesWholeSecondsAsOneNumber() throws Exception {
+        LocalDateTime whole = LocalDateTime.of(2024, 1, 1, 10, 0);
+        LocalDateTime fraction = whole.withNano(500_000_000);
+        Map<String, LocalDateTime> dates = new LinkedHashMap<>();
+        dates.put("whole", whole);
+        dates.put("fraction", fraction);
+
+        JsonNode tree = mapper.readTree(mapper.writeValueAsBytes(dates));
+
+        assertThat(tree.get("whole").isIntegralNumber()).isTrue();
+        assertThat(tree.get("whole").longValue()).isEqualTo(1_704_103_200L);
+        assertThat(tree.get("fraction").isArray()).isTrue();
+        assertThat(tree.get("fraction").get(0).longValue()).isEqualTo(1_704_103_200L);
+        assertThat(tree.get("fraction").get(1).intValue()).isEqualTo(500_000_000);
+    }
+
+    @Test
+    void readsIsoStringsAndRejectsMalformedDates() throws Exception {
+        assertThat(readDueDate("2030-01-01T12:30:00.25"))
+                .isEqualTo(LocalDateTime.of(2030, 1, 1, 12, 30, 0, 250_000_000));
+
+        for (Object malformed : new Object[]{new long[]{1, 2, 3}, new long[]{1, 1_000_000_000}, new long[]{1, -1},
+                new long[]{1}, "yesterday", true}) {
+            assertThatThrownBy(() -> readDueDate(malformed))
+                    .as("%s", malformed)
+                    .isInstanceOf(JsonMappingException.class);
+        }
+    }
+
+    private LocalDateTime readDueDate(Object dueDate) throws Exception {
+        Map<String, Object> task = new LinkedHashMap<>();
+        task.put("name", "dated");
+        task.put("dueDate", dueDate);
+        return mapper.readValue(mapper.writeValueAsBytes(task), Task.class).getDueDate();
+    }
+}
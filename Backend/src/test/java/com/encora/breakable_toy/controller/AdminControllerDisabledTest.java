@@ -0,0 +1,31 @@
+package com.encora.breakable_toy.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Without a configured token the admin endpoints refuse every request, whatever it sends
+@SpringBootTest
+@AutoConfigureMockMvc
+class AdminControllerDisabledTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void refusesEveryRequest() throws Exception {
+        mockMvc.perform(get("/api/v1/admin/tenants"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/api/v1/admin/todos").header(HttpHeaders.AUTHORIZATION, "Bearer "))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(put("/api/v1/admin/tenants/anyone").header(HttpHeaders.AUTHORIZATION, "Bearer anything"))
+                .andExpect(status().isForbidden());
+    }
+}
@@ -0,0 +1,72 @@
+package com.encora.breakable_toy.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// The admin endpoints require the configured token, and new tenants are refused once the limit is reached
+@SpringBootTest(properties = {"todo.admin.token=" + AdminControllerTest.TOKEN, "todo.partitions.max-tenants=3"})
+@AutoConfigureMockMvc
+class AdminControllerTest {
+
+    static final String TOKEN = "admin-test-token";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void requiresTheAdminToken() throws Exception {
+        mockMvc.perform(get("/api/v1/admin/tenants"))
+                .andExpect(status().isUnauthorized())
+                .andExpect(header().string(HttpHeaders.WWW_AUTHENTICATE, "Bearer"));
+        mockMvc.perform(get("/api/v1/admin/todos").header(HttpHeaders.AUTHORIZATION, "Bearer wrong-token"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(put("/api/v1/admin/tenants/intruder").header(HttpHeaders.AUTHORIZATION, TOKEN))
+                .andExpect(status().isUnauthorized());
+
+        mockMvc.perform(get("/api/v1/admin/tenants").header(HttpHeaders.AUTHORIZATION, "Bearer " + TOKEN))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].tenant").value("default"));
+        mockMvc.perform(get("/api/v1/admin/todos").header(HttpHeaders.AUTHORIZATION, "Bearer " + TOKEN))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void provisionsTenantsUpToTheLimit() throws Exception {
+        mockMvc.perform(put("/api/v1/admin/tenants/provisioned").header(HttpHeaders.AUTHORIZATION, "Bearer " + TOKEN))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.created").value(true));
+        mockMvc.perform(put("/api/v1/admin/tenants/provisioned").header(HttpHeaders.AUTHORIZATION, "Bearer " + TOKEN))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(false));
+        mockMvc.perform(put("/api/v1/admin/tenants/not a tenant").header(HttpHeaders.AUTHORIZATION, "Bearer " + TOKEN))
+                .andExpect(status().isBadRequest());
+
+        // The default tenant, the provisioned one and this one fill the three slots
+        mockMvc.perform(put("/api/v1/admin/tenants/last").header(HttpHeaders.AUTHORIZATION, "Bearer " + TOKEN))
+                .andExpect(status().isCreated());
+        mockMvc.perform(put("/api/v1/admin/tenants/overflow").header(HttpHeaders.AUTHORIZATION, "Bearer " + TOKEN))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.error").exists());
+        mockMvc.perform(post("/api/v1/todos").header("X-Tenant", "overflow")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"refused\",\"priority\":1}"))
+                .andExpect(status().isServiceUnavailable());
+        // Existing tenants keep accepting writes
+        mockMvc.perform(post("/api/v1/todos").header("X-Tenant", "last")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"accepted\",\"priority\":1}"))
+                .andExpect(status().isCreated());
+    }
+}
@@ -0,0 +1,131 @@
+package com.encora.breakable_toy.controller;
+
+import com.encora.breakable_toy.TestTasks;
+import com.encora.breakable_toy.config.CborConfig;
+import com.encora.breakable_toy.entity.Task;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasItem;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Content negotiation between JSON and CBOR: tasks sent in CBOR come back unchanged in either format, and an export
+// as a CBOR sequence imports into another tenant as the same tasks; every test works in a tenant of its own
+@SpringBootTest
+@AutoConfigureMockMvc
+class CborControllerTest {
+
+    private final ObjectMapper cborMapper = CborConfig.cborMapper();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void createsAndListsTasksInCbor() throws Exception {
+        Task task = TestTasks.task("binary", 2);
+        LocalDateTime due = LocalDateTime.now().plusDays(1).withNano(123_456_789);
+        task.setDueDate(due);
+        mockMvc.perform(post("/api/v1/todos").header("X-Tenant", "cbor-create")
+                        .contentType(CborConfig.CBOR)
+                        .content(cborMapper.writeValueAsBytes(task)))
+                .andExpect(status().isCreated());
+
+        MvcResult cbor = mockMvc.perform(get("/api/v1/todos").header("X-Tenant", "cbor-create")
+                        .accept(CborConfig.CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(CborConfig.CBOR))
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT)))
+                .andReturn();
+        JsonNode page = cborMapper.readTree(cbor.getResponse().getContentAsByteArray());
+        Task listed = cborMapper.treeToValue(page.get("tasks").get(0), Task.class);
+        assertThat(listed.getName()).isEqualTo("binary");
+        assertThat(listed.getDueDate()).isEqualTo(due);
+        assertThat(page.get("tasks").size()).isEqualTo(1);
+
+        // JSON stays the default and carries the same date as an ISO string
+        mockMvc.perform(get("/api/v1/todos").header("X-Tenant", "cbor-create"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.tasks[0].dueDate").value(due.toString()));
+    }
+
+    @Test
+    void rejectsMalformedCbor() throws Exception {
+        mockMvc.perform(post("/api/v1/todos").header("X-Tenant", "cbor-malformed")
+                        .contentType(CborConfig.CBOR)
+                        .content(new byte[]{(byte) 0xbf, 0x64, 'n', 'a'}))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/v1/todos/import").header("X-Tenant", "cbor-malformed")
+                        .contentType(CborConfig.CBOR_SEQ)
+                        .content(new byte[]{(byte) 0xa1, 0x64}))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid CBOR at task 0"));
+    }
+
+    @Test
+    void exportedSequencesImportAsTheSameTasks() throws Exception {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Task task = TestTasks.task("exported " + i, i % 3);
+            task.setDueDate(LocalDateTime.now().plusDays(i + 1));
+            tasks.add(task);
+        }
+        mockMvc.perform(post("/api/v1/todoslist").header("X-Tenant", "cbor-source")
+                        .contentType(CborConfig.CBOR)
+                        .content(cborMapper.writeValueAsBytes(tasks)))
+                .andExpect(status().isCreated());
+        mockMvc.perform(post("/api/v1/todos/1/done").header("X-Tenant", "cbor-source"))
+                .andExpect(status().isOk());
+
+        byte[] exported = export("cbor-source");
+        List<Task> source = readSequence(exported);
+        assertThat(source).hasSize(5);
+        assertThat(source.get(0).isDone()).isTrue();
+
+        mockMvc.perform(post("/api/v1/todos/import").header("X-Tenant", "cbor-target")
+                        .contentType(CborConfig.CBOR_SEQ)
+                        .content(exported))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(5));
+        assertThat(readSequence(export("cbor-target"))).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(source);
+    }
+
+    private byte[] export(String tenant) throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/v1/todos/export").header("X-Tenant", tenant)
+                        .accept(CborConfig.CBOR_SEQ))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(CborConfig.CBOR_SEQ))
+                .andReturn().getResponse().getContentAsByteArray();
+    }
+
+    private List<Task> readSequence(byte[] sequence) throws Exception {
+        try (MappingIterator<Task> iterator = cborMapper.readerFor(Task.class).readValues(sequence)) {
+            return iterator.readAll();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.encora.breakable_toy.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Entity tags of the task list and the statistics: 304 while the data is unchanged, a new tag after every write
+@SpringBootTest
+@AutoConfigureMockMvc
+class ConditionalRequestTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void answersNotModifiedUntilAWrite() throws Exception {
+        long id = createTask("etag-writes", "first");
+        String tag = list("etag-writes", null).getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(tag).startsWith("W/\"etag-writes-");
+
+        mockMvc.perform(get("/api/v1/todos").header("X-Tenant", "etag-writes").header(HttpHeaders.IF_NONE_MATCH, tag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, tag))
+                .andExpect(content().string(""));
+        // The statistics share the tag of the data they are computed from
+        mockMvc.perform(get("/api/v1/avg-time").header("X-Tenant", "etag-writes")
+                        .header(HttpHeaders.IF_NONE_MATCH, tag))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(post("/api/v1/todos/" + id + "/done").header("X-Tenant", "etag-writes"))
+                .andExpect(status().isOk());
+        MvcResult changed = list("etag-writes", tag);
+        assertThat(changed.getResponse().getStatus()).isEqualTo(200);
+        assertThat(changed.getResponse().getHeader(HttpHeaders.ETAG)).isNotEqualTo(tag);
+        assertThat(changed.getResponse().getContentAsString()).contains("\"done\":true");
+        mockMvc.perform(get("/api/v1/avg-time").header("X-Tenant", "etag-writes")
+                        .header(HttpHeaders.IF_NONE_MATCH, tag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void matchesAnyTagOfTheList() throws Exception {
+        createTask("etag-list", "task");
+        String tag = list("etag-list", null).getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/v1/todos").header("X-Tenant", "etag-list")
+                        .header(HttpHeaders.IF_NONE_MATCH, "W/\"stale\", " + tag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void tagsNeverValidateAnotherTenant() throws Exception {
+        createTask("etag-one", "task");
+        createTask("etag-two", "task");
+        MvcResult one = list("etag-one", null);
+        String tag = one.getResponse().getHeader(HttpHeaders.ETAG);
+
+        // Both tenants have seen one write, only the tenant part of their tags differs
+        MvcResult two = list("etag-two", tag);
+        assertThat(two.getResponse().getStatus()).isEqualTo(200);
+        assertThat(two.getResponse().getHeader(HttpHeaders.ETAG)).isNotEqualTo(tag);
+        assertThat(one.getResponse().getHeaders(HttpHeaders.VARY)).contains("X-Tenant", "Accept");
+    }
+
+    private long createTask(String tenant, String name) throws Exception {
+        String body = mockMvc.perform(post("/api/v1/todos").header("X-Tenant", tenant)
+                        .contentType("application/json").content("{\"name\":\"" + name + "\",\"priority\":1}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return Long.parseLong(body.replaceAll("^\\{\"id\":\"?(\\d+).*", "$1"));
+    }
+
+    private MvcResult list(String tenant, String ifNoneMatch) throws Exception {
+        var request = get("/api/v1/todos").header("X-Tenant", tenant);
+        if (ifNoneMatch != null) {
+            request.header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return mockMvc.perform(request).andReturn();
+    }
+}
@@ -0,0 +1,20 @@
+package com.encora.breakable_toy.controller;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ErrorMessagesTest {
+
+    @Test
+    void usesTheExceptionMessage() {
+        assertThat(ErrorMessages.of(new IllegalArgumentException("Invalid priority"))).isEqualTo("Invalid priority");
+    }
+
+    @Test
+    void fallsBackToTheExceptionTypeWithoutAMessage() {
+        assertThat(ErrorMessages.of(new NoSuchElementException())).isEqualTo("NoSuchElementException");
+    }
+}
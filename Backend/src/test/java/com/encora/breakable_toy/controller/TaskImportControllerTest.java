@@ -0,0 +1,124 @@
+package com.encora.breakable_toy.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// NDJSON import: error accounting, refused chunks and tenant creation; every test works in a tenant of its own
+@SpringBootTest
+@AutoConfigureMockMvc
+class TaskImportControllerTest {
+
+    private static final String CREATED = "\"creationDate\":\"2024-01-01T10:00:00\"";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void importsValidTasksAndReportsTheOthersByPosition() throws Exception {
+        String body = String.join("\n",
+                "{\"name\":\"first\",\"priority\":1," + CREATED + "}",
+                "{\"name\":\"\",\"priority\":1," + CREATED + "}",
+                "{\"id\":40,\"name\":\"kept id\",\"priority\":2," + CREATED + "}",
+                "{\"name\":\"no creation date\",\"priority\":1,\"creationDate\":null}",
+                "{\"done\":true,\"name\":\"done\",\"priority\":0," + CREATED
+                        + ",\"doneDate\":\"2024-01-02T10:00:00\"}",
+                "{\"name\":\"done before created\",\"priority\":0," + CREATED
+                        + ",\"doneDate\":\"2023-01-02T10:00:00\"}",
+                "{\"name\":\"priority\",\"priority\":9," + CREATED + "}");
+
+        importTasks("import-errors", body)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(3))
+                .andExpect(jsonPath("$.failed").value(4))
+                .andExpect(jsonPath("$.errors[*].index").value(contains(1, 3, 5, 6)));
+
+        // New tasks are numbered after the IDs the import assigned
+        mockMvc.perform(get("/api/v1/todos").header("X-Tenant", "import-errors"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.tasks[*].id").value(contains(40, 41, 42)));
+    }
+
+    @Test
+    void aRefusedChunkStoresNoneOfItsTasks() throws Exception {
+        // The first task takes the last ID of the sequence, the new task of the chunk cannot get one
+        String body = String.join("\n",
+                "{\"id\":5,\"name\":\"explicit\",\"priority\":1," + CREATED + "}",
+                "{\"id\":9223372036854775806,\"name\":\"last id\",\"priority\":1," + CREATED + "}",
+                "{\"name\":\"no id left\",\"priority\":1," + CREATED + "}");
+        mockMvc.perform(post("/api/v1/todos").header("X-Tenant", "import-refused")
+                        .contentType("application/json").content("{\"name\":\"existing\",\"priority\":1}"))
+                .andExpect(status().isCreated());
+
+        importTasks("import-refused", body)
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.imported").value(0))
+                .andExpect(jsonPath("$.error").value(containsString("out of range")));
+
+        mockMvc.perform(get("/api/v1/todos").header("X-Tenant", "import-refused"))
+                .andExpect(jsonPath("$.tasks[*].name").value(contains("existing")));
+    }
+
+    @Test
+    void malformedLinesAnswerHowFarTheImportWent() throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            body.append("{\"name\":\"task ").append(i).append("\",\"priority\":1,").append(CREATED).append("}\n");
+        }
+        body.append("{\"name\":\"cut");
+
+        importTasks("import-malformed", body.toString())
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.imported").value(1000))
+                .andExpect(jsonPath("$.error").value("Invalid JSON at task 1000"));
+    }
+
+    @Test
+    void anEmptyOrMalformedImportCreatesNoTenant() throws Exception {
+        importTasks("import-empty", "")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(0));
+        importTasks("import-empty", "{\"name\":")
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/api/v1/todos").header("X-Tenant", "import-empty"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void exportWritesOneTaskPerLine() throws Exception {
+        importTasks("import-export", "{\"name\":\"exported\",\"priority\":2," + CREATED + "}\n"
+                + "{\"name\":\"exported too\",\"priority\":0," + CREATED + "}")
+                .andExpect(jsonPath("$.imported").value(2));
+
+        MvcResult started = mockMvc.perform(get("/api/v1/todos/export").header("X-Tenant", "import-export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String export = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(export.split("\n")).hasSize(2).allSatisfy(line -> assertThat(line).startsWith("{\"id\":"));
+    }
+
+    private ResultActions importTasks(String tenant, String body) throws Exception {
+        return mockMvc.perform(post("/api/v1/todos/import").header("X-Tenant", tenant)
+                .contentType("application/x-ndjson").content(body));
+    }
+}
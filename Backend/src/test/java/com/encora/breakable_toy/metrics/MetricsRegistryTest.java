@@ -0,0 +1,67 @@
+package com.encora.breakable_toy.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// The scrape must be valid Prometheus text, with timers as cumulative histograms a server can window itself
+class MetricsRegistryTest {
+
+    @Test
+    void rendersTimersAsCumulativeHistograms() {
+        MetricsRegistry registry = new MetricsRegistry();
+        Timer timer = registry.timer("todo_test_seconds", "Test durations", "plan", "scan");
+        timer.record(10_000);
+        timer.record(100_000);
+        timer.record(3_000_000);
+        timer.record(60_000_000_000L);
+
+        assertThat(registry.scrape()).contains(
+                "# TYPE todo_test_seconds histogram\n",
+                "todo_test_seconds_bucket{plan=\"scan\",le=\"0.00005\"} 1\n",
+                // A duration equal to a bound falls in that bound's bucket
+                "todo_test_seconds_bucket{plan=\"scan\",le=\"0.0001\"} 2\n",
+                "todo_test_seconds_bucket{plan=\"scan\",le=\"0.0025\"} 2\n",
+                "todo_test_seconds_bucket{plan=\"scan\",le=\"0.005\"} 3\n",
+                "todo_test_seconds_bucket{plan=\"scan\",le=\"10\"} 3\n",
+                "todo_test_seconds_bucket{plan=\"scan\",le=\"+Inf\"} 4\n",
+                "todo_test_seconds_sum{plan=\"scan\"} 60.003110000\n",
+                "todo_test_seconds_count{plan=\"scan\"} 4\n");
+        assertThat(registry.scrape()).doesNotContain("quantile");
+    }
+
+    @Test
+    void bucketsOnlyGrow() {
+        // A window is the difference of two scrapes, so no bucket may ever decrease
+        MetricsRegistry registry = new MetricsRegistry();
+        Timer timer = registry.timer("todo_test_seconds", "Test durations");
+        timer.record(1_000_000_000);
+        long before = timer.bucketCounts()[Timer.boundsNanos().length];
+        timer.record(1_000);
+
+        assertThat(timer.count()).isEqualTo(2);
+        assertThat(timer.bucketCounts()[Timer.boundsNanos().length]).isEqualTo(before);
+        assertThat(registry.scrape()).contains("todo_test_seconds_bucket{le=\"1\"} 2\n",
+                "todo_test_seconds_bucket{le=\"0.00005\"} 1\n");
+    }
+
+    @Test
+    void rendersCountersAndGaugesWithEscapedLabels() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("todo_test_total", "Test events", "path", "/a\"b").increment();
+        AtomicLong depth = new AtomicLong(7);
+        registry.gauge("todo_test_depth", "Test depth", depth::get);
+        depth.set(9);
+
+        assertThat(registry.scrape()).contains(
+                "# TYPE todo_test_total counter\n",
+                "todo_test_total{path=\"/a\\\"b\"} 1\n",
+                "# TYPE todo_test_depth gauge\n",
+                "todo_test_depth 9\n");
+        assertThatThrownBy(() -> registry.counter("todo_test_depth", "Test depth"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,111 @@
+package com.encora.breakable_toy.partition;
+
+import com.encora.breakable_toy.TestTasks;
+import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.metrics.MetricsRegistry;
+import com.encora.breakable_toy.persistence.PersistenceProperties;
+import com.encora.breakable_toy.service.TaskQuery;
+import com.encora.breakable_toy.utils.Pages;
+import com.encora.breakable_toy.utils.TaskValidator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// The merged pages of an admin query must equal sorting the matching tasks of every tenant together
+class CrossTenantQueryTest {
+
+    private static final String[] TENANTS = {"alpha", "beta", "gamma", "empty"};
+
+    private TaskPartitions taskPartitions;
+    private CrossTenantQuery crossTenantQuery;
+
+    @BeforeEach
+    void createTenants() throws Exception {
+        PersistenceProperties properties = new PersistenceProperties();
+        TaskPartitionFactory factory = new TaskPartitionFactory("map", 1000, 0, Duration.ZERO, 1, 200_000,
+                properties, new TaskValidator(), new MetricsRegistry());
+        taskPartitions = new TaskPartitions(factory, properties, 10, Duration.ZERO);
+        taskPartitions.start();
+        crossTenantQuery = new CrossTenantQuery(taskPartitions, new MetricsRegistry(), 2);
+
+        SplittableRandom random = new SplittableRandom(18);
+        for (String tenant : TENANTS) {
+            TaskPartition partition = taskPartitions.getOrCreate(tenant);
+            // Tenants of different sizes, with the same IDs and many equal sort keys across tenants
+            int size = tenant.equals("empty") ? 0 : 10 + random.nextInt(40);
+            List<Task> tasks = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                tasks.add(TestTasks.randomTask(random, i % 2 == 0 ? "report" : "meeting"));
+            }
+            partition.getTaskRepository().saveAll(tasks);
+        }
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        crossTenantQuery.stop();
+        taskPartitions.stop();
+    }
+
+    @Test
+    void pagesMatchASortOfEveryTenant() {
+        String[][] orders = {{null, null}, {"priority", null}, {"priority", "dueDate"}, {"dueDate", null}};
+        for (String[] order : orders) {
+            for (Boolean done : new Boolean[]{null, false, true}) {
+                for (String name : new String[]{null, "REPORT"}) {
+                    assertPagesMatch(order[0], order[1], done, name, null);
+                }
+            }
+            assertPagesMatch(order[0], order[1], null, null, 1);
+        }
+    }
+
+    @Test
+    void answersNoTasksAndRejectsPagesBeyondTheLast() {
+        assertThat(crossTenantQuery.findPage(null, null, 1, null, "nothing matches", null))
+                .containsEntry("message", "No tasks found");
+        assertThatThrownBy(() -> crossTenantQuery.findPage(null, null, 1000, null, null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> crossTenantQuery.findPage(null, null, 0, null, null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void assertPagesMatch(String sortBy, String sortOrder, Boolean done, String name, Integer priority) {
+        TaskQuery query = TaskQuery.compile(sortBy, sortOrder, done, name, priority);
+        Comparator<Task> comparator = query.comparator();
+        List<TenantTask> expected = new ArrayList<>();
+        for (TaskPartition partition : taskPartitions.all()) {
+            for (Task task : partition.getTaskRepository().findAll()) {
+                if (query.matches(task)) {
+                    expected.add(new TenantTask(partition.getTenant(), task));
+                }
+            }
+        }
+        expected.sort(Comparator.<TenantTask, Task>comparing(TenantTask::getTask, comparator)
+                .thenComparing(TenantTask::getTenant));
+
+        List<String> actual = new ArrayList<>();
+        for (int page = 1; (page - 1) * Pages.TASKS_PER_PAGE < expected.size(); page++) {
+            Map<String, Object> response = crossTenantQuery.findPage(sortBy, sortOrder, page, done, name, priority);
+            assertThat(response).containsEntry("totalTasks", (long) expected.size()).containsEntry("tenants", 5);
+            for (TenantTask task : (List<TenantTask>) response.get("tasks")) {
+                actual.add(task.getTenant() + "/" + task.getTask().getId());
+            }
+        }
+        assertThat(actual).as("%s %s done=%s name=%s priority=%s", sortBy, sortOrder, done, name, priority)
+                .containsExactlyElementsOf(expected.stream()
+                        .map(task -> task.getTenant() + "/" + task.getTask().getId())
+                        .toList());
+    }
+}
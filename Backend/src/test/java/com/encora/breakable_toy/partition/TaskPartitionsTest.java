@@ -0,0 +1,137 @@
+package com.encora.breakable_toy.partition;
+
+import com.encora.breakable_toy.TestTasks;
+import com.encora.breakable_toy.metrics.MetricsRegistry;
+import com.encora.breakable_toy.persistence.PersistenceProperties;
+import com.encora.breakable_toy.utils.TaskValidator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Tenants are created by writes, evicted once idle and unused by any request, and restored when persisted
+class TaskPartitionsTest {
+
+    private static final Duration IDLE_TIMEOUT = Duration.ofMillis(100);
+
+    @TempDir
+    Path directory;
+
+    private TaskPartitions taskPartitions;
+
+    @AfterEach
+    void stop() throws Exception {
+        RequestContextHolder.resetRequestAttributes();
+        if (taskPartitions != null) {
+            taskPartitions.stop();
+        }
+    }
+
+    @Test
+    void readsNeverCreateATenant() throws Exception {
+        start(false, 10, Duration.ZERO);
+
+        assertThatThrownBy(() -> taskPartitions.get("unknown")).isInstanceOf(UnknownTenantException.class);
+        assertThatThrownBy(() -> taskPartitions.getOrCreate("no spaces")).isInstanceOf(InvalidTenantException.class);
+        assertThat(taskPartitions.provision("known")).isTrue();
+        assertThat(taskPartitions.provision("known")).isFalse();
+        assertThat(taskPartitions.get("known").getTenant()).isEqualTo("known");
+        assertThat(taskPartitions.get(null).getTenant()).isEqualTo(TaskPartitions.DEFAULT_TENANT);
+        assertThat(tenants()).containsExactly("default", "known");
+    }
+
+    @Test
+    void refusesTenantsBeyondTheLimit() throws Exception {
+        start(false, 2, Duration.ZERO);
+        taskPartitions.getOrCreate("first");
+
+        assertThatThrownBy(() -> taskPartitions.getOrCreate("second")).isInstanceOf(TenantLimitException.class);
+        assertThatThrownBy(() -> taskPartitions.provision("second")).isInstanceOf(TenantLimitException.class);
+        // Existing tenants are still served
+        assertThat(taskPartitions.getOrCreate("first").getTenant()).isEqualTo("first");
+    }
+
+    @Test
+    void evictsIdleEmptyTenantsOnlyWithoutPersistence() throws Exception {
+        start(false, 10, IDLE_TIMEOUT);
+        taskPartitions.getOrCreate("empty");
+        taskPartitions.getOrCreate("holding").getTaskService().createTask(TestTasks.task("kept", 1));
+
+        assertThat(await(() -> !tenants().contains("empty"))).isTrue();
+        assertThat(tenants()).containsExactly("default", "holding");
+        // Without persistence an evicted tenant is gone
+        assertThatThrownBy(() -> taskPartitions.get("empty")).isInstanceOf(UnknownTenantException.class);
+    }
+
+    @Test
+    void requestsHoldTheirTenantUntilTheyComplete() throws Exception {
+        start(false, 10, IDLE_TIMEOUT);
+        ServletRequestAttributes request = new ServletRequestAttributes(new MockHttpServletRequest());
+        RequestContextHolder.setRequestAttributes(request);
+        TaskPartition leased = taskPartitions.getOrCreate("leased");
+        // Later lookups of the same request get the partition it already holds
+        assertThat(taskPartitions.get("leased")).isSameAs(leased);
+
+        Thread.sleep(IDLE_TIMEOUT.toMillis() * 5);
+        assertThat(tenants()).contains("leased");
+
+        request.requestCompleted();
+        RequestContextHolder.resetRequestAttributes();
+        assertThat(await(() -> !tenants().contains("leased"))).isTrue();
+    }
+
+    @Test
+    void restoresEvictedTenantsFromDisk() throws Exception {
+        start(true, 10, IDLE_TIMEOUT);
+        TaskPartition partition = taskPartitions.getOrCreate("persisted");
+        partition.getTaskService().createTask(TestTasks.task("survives eviction", 2));
+
+        assertThat(await(() -> !tenants().contains("persisted"))).isTrue();
+
+        TaskPartition restored = taskPartitions.get("persisted");
+        assertThat(restored).isNotSameAs(partition);
+        assertThat(restored.getTaskRepository().findAll())
+                .extracting(task -> task.getName())
+                .containsExactly("survives eviction");
+        // Every persisted tenant is loaded again by a restart
+        taskPartitions.stop();
+        start(true, 10, Duration.ZERO);
+        assertThat(tenants()).containsExactly("default", "persisted");
+    }
+
+    private void start(boolean persistent, int maxTenants, Duration idleTimeout) throws Exception {
+        PersistenceProperties properties = new PersistenceProperties();
+        properties.setEnabled(persistent);
+        properties.setDirectory(directory.toString());
+        TaskPartitionFactory factory = new TaskPartitionFactory("map", 1000, 0, Duration.ZERO, 1, 200_000,
+                properties, new TaskValidator(), new MetricsRegistry());
+        taskPartitions = new TaskPartitions(factory, properties, maxTenants, idleTimeout);
+        taskPartitions.start();
+    }
+
+    private List<String> tenants() {
+        return taskPartitions.all().stream().map(TaskPartition::getTenant).toList();
+    }
+
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(20);
+        }
+        return true;
+    }
+}
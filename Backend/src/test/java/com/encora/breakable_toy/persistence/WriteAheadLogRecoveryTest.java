@@ -0,0 +1,201 @@
+package com.encora.breakable_toy.persistence;
+
+import com.encora.breakable_toy.TestTasks;
+import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.repository.TaskOrder;
+import com.encora.breakable_toy.repository.TaskRepository;
+import com.encora.breakable_toy.service.TaskService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Crashes are simulated by copying the persistence directory of a running store, which is what a killed process
+// leaves behind with the ALWAYS fsync policy; the copy is then restored by a fresh store
+class WriteAheadLogRecoveryTest {
+
+    @TempDir
+    Path temp;
+
+    private final List<TaskPersistence> started = new ArrayList<>();
+
+    @AfterEach
+    void stopStores() throws IOException {
+        for (TaskPersistence persistence : started) {
+            persistence.stop();
+        }
+    }
+
+    @Test
+    void restoresEveryAcknowledgedWriteAfterACrash() throws IOException {
+        Store store = start(temp.resolve("live"));
+        for (int i = 0; i < 20; i++) {
+            store.service.createTask(TestTasks.task("task " + i, i % 3));
+        }
+        store.service.markAsDone(3L);
+        store.service.updateTask(4L, TestTasks.task("renamed", 2));
+        store.service.deleteTask(5L);
+
+        Store restored = start(crash(store));
+
+        assertThat(restored.repository.findAll()).containsExactlyInAnyOrderElementsOf(store.repository.findAll());
+        assertThat(restored.service.createTask(TestTasks.task("after", 0)).getId()).isEqualTo(21L);
+    }
+
+    @Test
+    void replaysTheLogOnTopOfTheLatestSnapshot() throws IOException {
+        Store store = start(temp.resolve("live"));
+        for (int i = 0; i < 10; i++) {
+            store.service.createTask(TestTasks.task("before " + i, 1));
+        }
+        store.persistence.snapshot();
+        store.service.deleteTask(1L);
+        store.service.markAsDone(2L);
+        for (int i = 0; i < 10; i++) {
+            store.service.createTask(TestTasks.task("after " + i, 1));
+        }
+
+        Store restored = start(crash(store));
+
+        assertThat(restored.repository.findAll()).containsExactlyInAnyOrderElementsOf(store.repository.findAll());
+    }
+
+    @Test
+    void restoresIntoTheIndexesWithoutRecordingChanges() throws IOException {
+        Store store = start(temp.resolve("live"));
+        for (int i = 0; i < 10; i++) {
+            Task task = TestTasks.task("indexed " + i, i % 3);
+            task.setDueDate(LocalDateTime.of(2030, 1, 1, 0, 0).plusDays(10 - i));
+            store.service.createTask(task);
+        }
+        store.persistence.snapshot();
+        // Replayed from the log: a task saved several times, then deleted, and a renamed one
+        store.service.updateTask(1L, TestTasks.task("renamed", 2));
+        store.service.markAsDone(2L);
+        store.service.markAsDone(3L);
+        store.service.deleteTask(3L);
+
+        TaskRepository repository = TestTasks.repository("columnar", 1000);
+        long revision = repository.getRevision();
+        Store restored = start(crash(store), repository);
+
+        // Clients of the restored store are not sent the restored tasks as changes
+        assertThat(repository.getRevision()).isEqualTo(revision);
+        assertThat(repository.findChangesSince(revision, 100)).isEmpty();
+        for (TaskOrder order : TaskOrder.values()) {
+            assertThat(repository.findAllSorted(order)).containsExactlyElementsOf(store.repository.findAllSorted(order));
+        }
+        assertThat(repository.findCandidateIdsByName("indexed 0")).isEmpty();
+        assertThat(repository.findCandidateIdsByName("renamed")).containsExactly(1L);
+        assertThat(repository.findDueBetween(null, LocalDateTime.MAX, 100))
+                .containsExactlyElementsOf(store.repository.findDueBetween(null, LocalDateTime.MAX, 100));
+        assertThat(repository.count(true, null)).isEqualTo(1);
+        assertThat(restored.service.getAllTasks(null, null, 1, true, null, null).get("tasks"))
+                .isEqualTo(store.repository.findById(2L).stream().toList());
+        assertThat(repository.getNextId()).isEqualTo(11L);
+    }
+
+    @Test
+    void dropsATornHeaderAndKeepsLaterWrites() throws IOException {
+        // Fewer bytes than a record header
+        tornTailIsDropped(ByteBuffer.allocate(3).put(new byte[]{0, 0, 1}).array());
+    }
+
+    @Test
+    void dropsATornBodyAndKeepsLaterWrites() throws IOException {
+        // A header announcing more bytes than the segment holds
+        tornTailIsDropped(ByteBuffer.allocate(12).putInt(64).putInt(0).putInt(7).array());
+    }
+
+    @Test
+    void dropsACorruptRecordAndKeepsLaterWrites() throws IOException {
+        // A complete record whose checksum does not match its body
+        tornTailIsDropped(ByteBuffer.allocate(8 + 9).putInt(9).putInt(12345).put((byte) 1).putLong(99).array());
+    }
+
+    // Append the given bytes to the last log segment of a crashed store, then check that the restored store keeps its
+    // acknowledged writes and that the writes made after the restore survive the next crash too
+    private void tornTailIsDropped(byte[] tail) throws IOException {
+        Store store = start(temp.resolve("live"));
+        for (int i = 0; i < 10; i++) {
+            store.service.createTask(TestTasks.task("task " + i, i % 3));
+        }
+        List<Task> acknowledged = store.repository.findAll();
+        Path crashed = crash(store);
+        Path segment = lastSegment(crashed);
+        long goodLength = Files.size(segment);
+        Files.write(segment, tail, StandardOpenOption.APPEND);
+
+        Store restored = start(crashed);
+        assertThat(restored.repository.findAll()).containsExactlyInAnyOrderElementsOf(acknowledged);
+        // The garbage is cut off before the log is appended to again
+        assertThat(Files.size(segment)).isEqualTo(goodLength);
+
+        for (int i = 0; i < 5; i++) {
+            restored.service.createTask(TestTasks.task("later " + i, 0));
+        }
+        restored.service.deleteTask(1L);
+
+        Store restoredAgain = start(crash(restored));
+        assertThat(restoredAgain.repository.findAll())
+                .containsExactlyInAnyOrderElementsOf(restored.repository.findAll())
+                .hasSize(14);
+    }
+
+    private Store start(Path directory) throws IOException {
+        return start(directory, TestTasks.repository("map", 1000));
+    }
+
+    private Store start(Path directory, TaskRepository repository) throws IOException {
+        PersistenceProperties properties = new PersistenceProperties();
+        properties.setEnabled(true);
+        properties.setDirectory(directory.toString());
+        properties.setFsyncPolicy(FsyncPolicy.ALWAYS);
+        // Snapshots are only taken when a test asks for one
+        properties.setSnapshotInterval(Duration.ZERO);
+        Files.createDirectories(directory);
+
+        TaskService service = TestTasks.service(repository, 0);
+        TaskPersistence persistence = new TaskPersistence(properties, directory, null, repository, service);
+        persistence.start();
+        started.add(persistence);
+        return new Store(repository, service, persistence, directory);
+    }
+
+    // Copy the files of a running store, as a crash would leave them
+    private Path crash(Store store) throws IOException {
+        Path copy = temp.resolve("crash-" + started.size());
+        Files.createDirectories(copy);
+        try (Stream<Path> files = Files.list(store.directory)) {
+            for (Path file : files.toList()) {
+                Files.copy(file, copy.resolve(file.getFileName()));
+            }
+        }
+        return copy;
+    }
+
+    private static Path lastSegment(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("wal-"))
+                    .max(Comparator.comparing(Path::toString))
+                    .orElseThrow();
+        }
+    }
+
+    private record Store(TaskRepository repository, TaskService service, TaskPersistence persistence,
+                         Path directory) {
+    }
+}
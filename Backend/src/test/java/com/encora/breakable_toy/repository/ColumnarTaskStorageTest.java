@@ -0,0 +1,189 @@
+package com.encora.breakable_toy.repository;
+
+import com.encora.breakable_toy.entity.Task;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// The columnar storage must behave as the map storage does, and readers must never see a row half written
+class ColumnarTaskStorageTest {
+
+    private static final LocalDateTime CREATED = LocalDateTime.of(2024, 1, 1, 10, 0, 0, 123_456_789);
+
+    @Test
+    void matchesTheMapStorageUnderRandomWrites() {
+        SplittableRandom random = new SplittableRandom(10);
+        ColumnarTaskStorage columnar = new ColumnarTaskStorage();
+        MapTaskStorage map = new MapTaskStorage();
+        for (int i = 0; i < 20_000; i++) {
+            // IDs span several pages, a third of the writes delete
+            long id = random.nextInt(10_000);
+            Task task = random.nextInt(3) == 0 ? null : randomTask(random, id);
+            columnar.compute(id, previous -> task);
+            map.compute(id, previous -> task);
+        }
+
+        assertThat(columnar.size()).isEqualTo(map.size());
+        for (long id = 0; id < 10_000; id++) {
+            assertThat(columnar.get(id)).isEqualTo(map.get(id));
+        }
+        for (Boolean done : new Boolean[]{null, true, false}) {
+            for (Integer priority : new Integer[]{null, 0, 1, 2}) {
+                assertThat(columnar.count(done, priority)).isEqualTo(map.count(done, priority));
+                assertThat(scan(columnar, done, priority)).containsExactlyInAnyOrderElementsOf(scan(map, done, priority));
+                assertThat(StreamSupport.stream(columnar.spliterator(done, priority), true).toList())
+                        .containsExactlyInAnyOrderElementsOf(scan(map, done, priority));
+                assertThat(columnar.getMatching(1, done, priority)).isEqualTo(map.getMatching(1, done, priority));
+            }
+        }
+    }
+
+    @Test
+    void keepsMissingDatesAndFractionsOfSeconds() {
+        ColumnarTaskStorage storage = new ColumnarTaskStorage();
+        Task task = new Task(7L, "dates", true, 1, CREATED, CREATED.plusNanos(1), null);
+        storage.compute(7, previous -> task);
+
+        assertThat(storage.get(7)).isEqualTo(task);
+        assertThat(storage.get(8)).isNull();
+    }
+
+    @Test
+    void refusesIdsOutOfRange() {
+        ColumnarTaskStorage storage = new ColumnarTaskStorage();
+
+        assertThat(storage.accepts(ColumnarTaskStorage.MAX_ID)).isTrue();
+        assertThat(storage.accepts(ColumnarTaskStorage.MAX_ID + 1)).isFalse();
+        assertThat(storage.accepts(-1)).isFalse();
+        assertThatThrownBy(() -> storage.compute(ColumnarTaskStorage.MAX_ID + 1, previous -> task(1, "too far")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(storage.get(-1)).isNull();
+        assertThat(storage.get(Long.MAX_VALUE)).isNull();
+
+        storage.compute(ColumnarTaskStorage.MAX_ID, previous -> task(ColumnarTaskStorage.MAX_ID, "last"));
+        assertThat(storage.get(ColumnarTaskStorage.MAX_ID).getName()).isEqualTo("last");
+    }
+
+    @Test
+    void namePoolRecyclesTheSlotsOfUnusedNames() {
+        NamePool pool = new NamePool();
+        int shared = pool.acquire("shared");
+        assertThat(pool.acquire("shared")).isEqualTo(shared);
+        int other = pool.acquire("other");
+
+        pool.release(other);
+        assertThat(pool.get(other)).isNull();
+        assertThat(pool.acquire("reused")).isEqualTo(other);
+
+        // The first release keeps the name, another task still uses it
+        pool.release(shared);
+        assertThat(pool.get(shared)).isEqualTo("shared");
+        pool.release(shared);
+        assertThat(pool.get(shared)).isNull();
+        assertThat(pool.size()).isEqualTo(1);
+        assertThat(pool.acquire(null)).isEqualTo(NamePool.NO_NAME);
+    }
+
+    @Test
+    void renamingAndDeletingReleaseTheirNames() {
+        ColumnarTaskStorage storage = new ColumnarTaskStorage();
+        for (long id = 0; id < 100; id++) {
+            long number = id;
+            storage.compute(id, previous -> task(number, "name " + number % 10));
+        }
+        for (long id = 0; id < 100; id++) {
+            long number = id;
+            storage.compute(id, previous -> number % 2 == 0 ? null : task(number, "renamed"));
+        }
+
+        assertThat(storage.size()).isEqualTo(50);
+        assertThat(scan(storage, null, null)).extracting(Task::getName).containsOnly("renamed");
+        // Rows written after the recycling get the names they were given, not a stale one
+        storage.compute(0, previous -> task(0, "name 3"));
+        assertThat(storage.get(0).getName()).isEqualTo("name 3");
+        assertThat(storage.get(1).getName()).isEqualTo("renamed");
+    }
+
+    @Test
+    void readersNeverSeeAHalfWrittenRow() throws InterruptedException {
+        // Each row flips between two versions; a torn read would mix the fields of both
+        ColumnarTaskStorage storage = new ColumnarTaskStorage();
+        int rows = 64;
+        for (long id = 0; id < rows; id++) {
+            long number = id;
+            storage.compute(id, previous -> version(number, false));
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        ConcurrentLinkedQueue<String> torn = new ConcurrentLinkedQueue<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < 2; w++) {
+            int writer = w;
+            threads.add(new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(writer);
+                while (running.get()) {
+                    long id = random.nextInt(rows);
+                    storage.compute(id, previous -> version(id, !previous.isDone()));
+                }
+            }));
+        }
+        for (int r = 0; r < 2; r++) {
+            threads.add(new Thread(() -> {
+                while (running.get()) {
+                    for (long id = 0; id < rows; id++) {
+                        Task task = storage.get(id);
+                        if (!task.equals(version(id, task.isDone()))) {
+                            torn.add(task.toString());
+                        }
+                    }
+                    storage.forEachMatching(null, null, task -> {
+                        if (!task.equals(version(task.getId(), task.isDone()))) {
+                            torn.add(task.toString());
+                        }
+                    });
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        Thread.sleep(1000);
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(torn).isEmpty();
+        assertThat(storage.size()).isEqualTo(rows);
+    }
+
+    // Every field of the two versions of a row differs
+    private static Task version(long id, boolean done) {
+        return done
+                ? new Task(id, "done " + id, true, 2, CREATED.plusDays(1), CREATED.plusDays(2), CREATED.plusDays(3))
+                : new Task(id, "open " + id, false, 0, CREATED, null, null);
+    }
+
+    private static Task task(long id, String name) {
+        return new Task(id, name, false, 1, CREATED, null, null);
+    }
+
+    private static Task randomTask(SplittableRandom random, long id) {
+        boolean done = random.nextBoolean();
+        LocalDateTime due = random.nextInt(4) == 0 ? null : CREATED.plusMinutes(random.nextInt(100_000));
+        return new Task(id, "task " + random.nextInt(50), done, random.nextInt(3), CREATED,
+                done ? CREATED.plusSeconds(random.nextInt(100_000)) : null, due);
+    }
+
+    private static List<Task> scan(TaskStorage storage, Boolean done, Integer priority) {
+        List<Task> tasks = new ArrayList<>();
+        storage.forEachMatching(done, priority, tasks::add);
+        return tasks;
+    }
+}
@@ -0,0 +1,108 @@
+package com.encora.breakable_toy.repository;
+
+import com.encora.breakable_toy.TestTasks;
+import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.service.TaskQuery;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The trigram index narrows name searches to candidates, which must include every task the name filter matches
+class NameIndexTest {
+
+    private NameIndex index;
+
+    @BeforeEach
+    void indexNames() {
+        index = new NameIndex();
+        add(1, "Buy groceries");
+        add(2, "Groceries for the party");
+        add(3, "Call the plumber");
+        add(4, "buy GROCERIES");
+        add(5, "İstanbul trip");
+        add(6, "Straße repairs");
+    }
+
+    @Test
+    void findsSubstringsIgnoringCase() {
+        assertThat(index.candidates("GROCER")).containsExactlyInAnyOrder(1L, 2L, 4L);
+        assertThat(index.candidates("the p")).containsExactlyInAnyOrder(2L, 3L);
+        assertThat(index.candidates("plumber")).containsExactly(3L);
+    }
+
+    @Test
+    void candidatesIncludeEveryMatchOfTheNameFilter() {
+        List<Task> tasks = List.of(task(1, "Buy groceries"), task(2, "Groceries for the party"),
+                task(3, "Call the plumber"), task(4, "buy GROCERIES"), task(5, "İstanbul trip"),
+                task(6, "Straße repairs"));
+        for (String search : new String[]{"ist", "İST", "istanbul", "STRASSE", "straße", "BUY", "ies f", "ROCE"}) {
+            TaskQuery query = TaskQuery.compile(null, null, null, search, null);
+            Set<Long> candidates = index.candidates(search);
+            for (Task task : tasks) {
+                if (query.matches(task)) {
+                    assertThat(candidates).as(search).contains(task.getId());
+                }
+            }
+        }
+    }
+
+    @Test
+    void cannotNarrowSearchesShorterThanATrigram() {
+        assertThat(index.candidates("gr")).isNull();
+        assertThat(index.candidates("")).isNull();
+        assertThat(index.candidates(null)).isNull();
+    }
+
+    @Test
+    void findsNothingForAnUnknownTrigram() {
+        assertThat(index.candidates("groceriez")).isEmpty();
+    }
+
+    @Test
+    void removedNamesAreNoLongerFound() {
+        index.remove(task(1, "Buy groceries"));
+        index.remove(task(4, "buy GROCERIES"));
+
+        assertThat(index.candidates("buy")).isEmpty();
+        assertThat(index.candidates("groceries")).containsExactly(2L);
+        assertThat(index.completions("buy", 10)).isEmpty();
+    }
+
+    @Test
+    void completesDistinctNamesInOrder() {
+        add(7, "Buy milk");
+
+        // Both "buy groceries" tasks share one name
+        assertThat(index.completions("BUY", 10)).hasSize(2).contains(7L).containsAnyOf(1L, 4L);
+        assertThat(index.completions("buy", 1)).containsAnyOf(1L, 4L).hasSize(1);
+        assertThat(index.completions("z", 10)).isEmpty();
+    }
+
+    @Test
+    void theRepositoryFollowsRenames() {
+        TaskRepository repository = TestTasks.repository("columnar", 1000);
+        Task task = repository.save(TestTasks.task("Walk the dog", 1));
+        Task renamed = new Task(task);
+        renamed.setName("Feed the cat");
+
+        repository.replace(task, renamed);
+
+        assertThat(repository.findCandidateIdsByName("dog")).isEmpty();
+        assertThat(repository.findCandidateIdsByName("cat")).containsExactly(task.getId());
+        assertThat(repository.findNamesByPrefix("fe", 10)).containsExactly("Feed the cat");
+    }
+
+    private void add(long id, String name) {
+        index.add(task(id, name));
+    }
+
+    private static Task task(long id, String name) {
+        Task task = TestTasks.task(name, 0);
+        task.setId(id);
+        return task;
+    }
+}
@@ -0,0 +1,142 @@
+package com.encora.breakable_toy.repository;
+
+import com.encora.breakable_toy.TestTasks;
+import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.service.TaskService;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Many threads creating, updating, completing and deleting tasks at once, then every index, count and the change
+// log are checked against the stored tasks
+class TaskRepositoryConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 2_000;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"map", "columnar"})
+    void concurrentWritesKeepIndexesAndChangeLogConsistent(String storage) throws Exception {
+        TaskRepository repository = TestTasks.repository(storage, 1 << 20);
+        TaskService service = TestTasks.service(repository, 100);
+        long initialRevision = repository.getRevision();
+        AtomicLong created = new AtomicLong();
+        AtomicLong deleted = new AtomicLong();
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                SplittableRandom random = new SplittableRandom(t);
+                workers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < OPERATIONS; i++) {
+                        // Every thread works on the IDs created so far, so the threads keep racing on the same tasks
+                        long id = 1 + random.nextLong(Math.max(1, repository.getNextId() - 1));
+                        try {
+                            switch (random.nextInt(6)) {
+                                case 0, 1 -> {
+                                    service.createTask(TestTasks.task("stress " + random.nextInt(100),
+                                            random.nextInt(3)));
+                                    created.incrementAndGet();
+                                }
+                                case 2 -> service.markAsDone(id);
+                                case 3 -> service.markTaskAsUndone(id);
+                                case 4 -> service.updateTask(id, TestTasks.task("renamed " + random.nextInt(100),
+                                        random.nextInt(3)));
+                                default -> {
+                                    service.deleteTask(id);
+                                    deleted.incrementAndGet();
+                                }
+                            }
+                        } catch (NoSuchElementException e) {
+                            // Deleted by another thread, or not created yet
+                        }
+                        // Reads race with the writes too
+                        if (i % 50 == 0) {
+                            service.getAllTasks("priority", "dueDate", 1, null, "stress", null);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<Task> stored = repository.findAll();
+        Map<Long, Task> byId = stored.stream().collect(Collectors.toMap(Task::getId, task -> task));
+        assertThat(byId).hasSize(stored.size());
+        assertThat(stored).hasSize((int) (created.get() - deleted.get()));
+        assertThat(repository.count()).isEqualTo(stored.size());
+
+        // Every sorted index holds exactly the stored tasks, in order
+        for (TaskOrder order : TaskOrder.values()) {
+            List<Task> sorted = new ArrayList<>();
+            repository.iterateSorted(order).forEachRemaining(sorted::add);
+            assertThat(sorted).containsExactlyElementsOf(stored.stream().sorted(order.comparator()).toList());
+            for (Boolean done : new Boolean[]{null, true, false}) {
+                for (Integer priority : new Integer[]{null, 0, 1, 2}) {
+                    List<Task> matching = new ArrayList<>();
+                    Iterator<Task> iterator = repository.iterateSorted(order, done, priority);
+                    iterator.forEachRemaining(matching::add);
+                    List<Task> expected = stored.stream()
+                            .filter(task -> done == null || task.isDone() == done)
+                            .filter(task -> priority == null || task.getPriority() == priority)
+                            .sorted(order.comparator())
+                            .toList();
+                    assertThat(matching).containsExactlyElementsOf(expected);
+                    assertThat(repository.count(done, priority)).isEqualTo(expected.size());
+                }
+            }
+        }
+
+        // The name index finds every stored task by a word of its name
+        for (String word : new String[]{"stress", "renamed"}) {
+            Set<Long> expected = stored.stream()
+                    .filter(task -> task.getName().contains(word))
+                    .map(Task::getId)
+                    .collect(Collectors.toSet());
+            assertThat(repository.findCandidateIdsByName(word)).containsAll(expected);
+        }
+
+        // The change log has one change per revision, and replaying it rebuilds the stored tasks
+        List<TaskChange> changes = repository.findChangesSince(initialRevision, Integer.MAX_VALUE);
+        assertThat(changes).isNotNull();
+        assertThat(changes).hasSize((int) (repository.getRevision() - initialRevision));
+        Map<Long, Task> replayed = new HashMap<>();
+        long revision = initialRevision;
+        for (TaskChange change : changes) {
+            assertThat(change.getRevision()).isEqualTo(++revision);
+            if (change.getType() == TaskChange.Type.SAVED) {
+                replayed.put(change.getId(), change.getTask());
+            } else {
+                replayed.remove(change.getId());
+            }
+        }
+        assertThat(replayed).isEqualTo(byId);
+        assertThat(new HashSet<>(replayed.values())).hasSize(stored.size());
+    }
+}
@@ -0,0 +1,131 @@
+package com.encora.breakable_toy.repository;
+
+import com.encora.breakable_toy.TestTasks;
+import com.encora.breakable_toy.entity.Task;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The sorted indexes follow every write, so the sorted reads never sort and never show a task twice
+class TaskRepositorySortedIndexTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2030, 6, 1, 12, 0);
+
+    private TaskRepository repository;
+
+    @BeforeEach
+    void createTasks() {
+        repository = TestTasks.repository("map", 1000);
+        repository.save(task("low late", 0, DAY.plusDays(2)));
+        repository.save(task("high none", 2, null));
+        repository.save(task("medium early", 1, DAY));
+        repository.save(task("high early", 2, DAY));
+        repository.save(task("low none", 0, null));
+        repository.save(task("high late", 2, DAY.plusDays(2)));
+    }
+
+    @Test
+    void sortsByPriorityDescendingThenId() {
+        assertThat(ids(repository.findAllSortedByPriority())).containsExactly(2L, 4L, 6L, 3L, 1L, 5L);
+    }
+
+    @Test
+    void sortsByDueDateWithTasksWithoutOneLast() {
+        assertThat(ids(repository.findAllSortedByDueDate())).containsExactly(3L, 4L, 1L, 6L, 2L, 5L);
+    }
+
+    @Test
+    void sortsByPriorityThenDueDate() {
+        assertThat(ids(repository.findAllSortedByPriorityAndDueDate())).containsExactly(4L, 6L, 2L, 3L, 1L, 5L);
+    }
+
+    @Test
+    void replacedTasksMoveToTheirNewPosition() {
+        Task current = repository.findById(5L).orElseThrow();
+        Task updated = new Task(current);
+        updated.setPriority(2);
+        updated.setDueDate(DAY.minusDays(1));
+
+        assertThat(repository.replace(current, updated)).isTrue();
+
+        assertThat(ids(repository.findAllSortedByPriority())).containsExactly(2L, 4L, 5L, 6L, 3L, 1L);
+        assertThat(ids(repository.findAllSortedByDueDate())).containsExactly(5L, 3L, 4L, 1L, 6L, 2L);
+        assertThat(ids(repository.findAllSortedByPriorityAndDueDate())).containsExactly(5L, 4L, 6L, 2L, 3L, 1L);
+    }
+
+    @Test
+    void deletedTasksLeaveEveryIndex() {
+        repository.deleteById(4L);
+        repository.delete(repository.findById(2L).orElseThrow());
+
+        for (TaskOrder order : TaskOrder.values()) {
+            assertThat(ids(repository.findAllSorted(order))).hasSize(4).doesNotContain(2L, 4L);
+        }
+    }
+
+    @Test
+    void filteredWalksOnlyReturnMatchingTasks() {
+        repository.replace(repository.findById(6L).orElseThrow(), done(repository.findById(6L).orElseThrow()));
+
+        assertThat(ids(repository.iterateSorted(TaskOrder.DUE_DATE, null, 2))).containsExactly(4L, 6L, 2L);
+        assertThat(ids(repository.iterateSorted(TaskOrder.DUE_DATE, false, 2))).containsExactly(4L, 2L);
+        assertThat(ids(repository.iterateSorted(TaskOrder.PRIORITY, true, null))).containsExactly(6L);
+    }
+
+    @Test
+    void walksResumeStrictlyAfterAKey() {
+        Task key = repository.findById(6L).orElseThrow();
+
+        assertThat(ids(repository.iterateSortedAfter(TaskOrder.PRIORITY, key, null, null)))
+                .containsExactly(3L, 1L, 5L);
+        assertThat(ids(repository.iterateSortedAfter(TaskOrder.DUE_DATE, key, null, 0))).containsExactly(5L);
+    }
+
+    @Test
+    void staleKeysOfAnIndexAreSkipped() {
+        SortedTaskIndex index = new SortedTaskIndex(TaskOrder.PRIORITY);
+        Task first = task("first", 0, null);
+        first.setId(1L);
+        Task second = new Task(first);
+        second.setPriority(2);
+
+        // Both versions are indexed while the write moving the task is in progress
+        index.add(first);
+        index.add(second);
+        index.remove(first);
+
+        List<Long> ids = new ArrayList<>();
+        index.iterator().forEachRemaining(key -> ids.add(key.getId()));
+        assertThat(ids).containsExactly(1L);
+        assertThat(index.iterator().next().matches(second)).isTrue();
+        assertThat(index.iterator().next().matches(first)).isFalse();
+    }
+
+    private static Task task(String name, int priority, LocalDateTime dueDate) {
+        Task task = TestTasks.task(name, priority);
+        task.setDueDate(dueDate);
+        return task;
+    }
+
+    private static Task done(Task task) {
+        Task done = new Task(task);
+        done.setDone(true);
+        return done;
+    }
+
+    private static List<Long> ids(List<Task> tasks) {
+        return tasks.stream().map(Task::getId).toList();
+    }
+
+    private static List<Long> ids(Iterator<Task> tasks) {
+        List<Long> ids = new ArrayList<>();
+        tasks.forEachRemaining(task -> ids.add(task.getId()));
+        return ids;
+    }
+}
@@ -0,0 +1,149 @@
+package com.encora.breakable_toy.service;
+
+import com.encora.breakable_toy.TestTasks;
+import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.partition.TaskPartition;
+import com.encora.breakable_toy.partition.TaskPartitions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Change streams over real connections: a client that stops reading must not hold back the others, and revisions
+// from another epoch of the change log must lead to a resync
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class TaskChangeFeedTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TaskPartitions taskPartitions;
+
+    @Test
+    void aStalledClientDoesNotHoldBackTheOthers() throws Exception {
+        TaskPartition partition = taskPartitions.getOrCreate("feed-stalled");
+        TaskChangeFeed feed = partition.getTaskChangeFeed();
+        try (Socket stalled = stream("feed-stalled", null, 1024); Socket reading = stream("feed-stalled", null, 0)) {
+            BufferedReader lines = reader(reading);
+            assertThat(readUntil(lines, "event:revision")).isNotNull();
+
+            // Ten megabytes of changes, far more than the socket buffers of the stalled client hold
+            int tasks = 5000;
+            List<Task> batch = new ArrayList<>();
+            for (int i = 0; i < tasks; i++) {
+                Task task = TestTasks.task("x".repeat(2000) + i, i % 3);
+                task.setCreationDate(LocalDateTime.now());
+                batch.add(task);
+            }
+            partition.getTaskRepository().saveAll(batch);
+
+            CompletableFuture<Integer> received = CompletableFuture.supplyAsync(() -> countChanges(lines, tasks));
+            assertThat(received.get(20, TimeUnit.SECONDS)).isEqualTo(tasks);
+            assertThat(feed.hasSubscribers()).isTrue();
+        }
+
+        // Writes to the closed connections fail, the subscribers are dropped and the dispatcher ends
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (feed.isDispatching() && System.nanoTime() < deadline) {
+            partition.getTaskRepository().save(TestTasks.task("wake the dispatcher", 0));
+            Thread.sleep(100);
+        }
+        assertThat(feed.hasSubscribers()).isFalse();
+        assertThat(feed.isDispatching()).isFalse();
+    }
+
+    @Test
+    void resumesWithinItsEpochAndResyncsAcrossEpochs() throws Exception {
+        TaskPartition partition = taskPartitions.getOrCreate("feed-epoch");
+        String epoch = partition.getTaskRepository().getRevisionEpoch();
+        long revision = partition.getTaskRepository().getRevision();
+        partition.getTaskRepository().save(TestTasks.task("after the revision", 1));
+
+        try (Socket resumed = stream("feed-epoch", epoch + ":" + revision, 0)) {
+            BufferedReader lines = reader(resumed);
+            assertThat(readUntil(lines, "event:change")).isEqualTo("id:" + epoch + ":" + (revision + 1));
+        }
+        // The same revision from a previous process
+        try (Socket restarted = stream("feed-epoch", "previous:" + revision, 0)) {
+            BufferedReader lines = reader(restarted);
+            assertThat(readUntil(lines, "event:resync")).isEqualTo("id:" + epoch + ":" + (revision + 1));
+        }
+
+        TaskService taskService = partition.getTaskService();
+        assertThat(taskService.getChangesSince(epoch, revision, 10))
+                .containsEntry("epoch", epoch).containsEntry("revision", revision + 1).doesNotContainKey("resync");
+        Map<String, Object> otherEpoch = taskService.getChangesSince("previous", revision, 10);
+        assertThat(otherEpoch).containsEntry("resync", true).containsEntry("epoch", epoch);
+        assertThat(taskService.getChangesSince(null, revision, 10)).containsEntry("resync", true);
+        assertThat(partition.getDataETag()).startsWith("W/\"feed-epoch-" + epoch + "-");
+    }
+
+    // Open a change stream over HTTP/1.0, so the events arrive unchunked; a positive receive buffer size limits
+    // what the connection holds before the server's writes block
+    private Socket stream(String tenant, String lastEventId, int receiveBuffer) throws IOException {
+        Socket socket = new Socket();
+        if (receiveBuffer > 0) {
+            socket.setReceiveBufferSize(receiveBuffer);
+        }
+        socket.connect(new InetSocketAddress("localhost", port));
+        String request = "GET /api/v1/todos/changes/stream?tenant=" + tenant + " HTTP/1.0\r\n"
+                + "Accept: text/event-stream\r\n"
+                + (lastEventId != null ? "Last-Event-ID: " + lastEventId + "\r\n" : "")
+                + "\r\n";
+        OutputStream out = socket.getOutputStream();
+        out.write(request.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        return socket;
+    }
+
+    private static BufferedReader reader(Socket socket) throws IOException {
+        socket.setSoTimeout(20_000);
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    // Read up to the given line and return the line before it, the ID of the event
+    private static String readUntil(BufferedReader lines, String wanted) throws IOException {
+        String previous = null;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            if (line.equals(wanted)) {
+                return previous;
+            }
+            previous = line;
+        }
+        return null;
+    }
+
+    private static int countChanges(BufferedReader lines, int expected) {
+        int changes = 0;
+        try {
+            String line;
+            while (changes < expected && (line = lines.readLine()) != null) {
+                if (line.equals("event:change")) {
+                    changes++;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return changes;
+    }
+}
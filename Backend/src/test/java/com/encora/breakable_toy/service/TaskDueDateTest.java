@@ -0,0 +1,191 @@
+package com.encora.breakable_toy.service;
+
+import com.encora.breakable_toy.TestTasks;
+import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.metrics.MetricsRegistry;
+import com.encora.breakable_toy.repository.TaskRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// The due date index must hold exactly the undone tasks with a due date through every write, the due and overdue
+// queries must return them in deadline order, and the notifier must announce each deadline once, on time
+class TaskDueDateTest {
+
+    private static final LocalDateTime EPOCH = LocalDateTime.of(2030, 1, 1, 0, 0);
+
+    @Test
+    void indexFollowsEveryWrite() {
+        for (String storage : new String[]{"map", "columnar"}) {
+            TaskRepository repository = TestTasks.repository(storage, 1000);
+            SplittableRandom random = new SplittableRandom(19);
+            List<Task> tasks = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                tasks.add(TestTasks.randomTask(random, "due"));
+            }
+            repository.saveAll(tasks);
+
+            for (int i = 0; i < 2000; i++) {
+                Task current = repository.findById(1L + random.nextInt(500)).orElse(null);
+                if (current == null) {
+                    continue;
+                }
+                int write = random.nextInt(10);
+                if (write == 0) {
+                    repository.deleteById(current.getId());
+                    continue;
+                }
+                Task updated = copy(current);
+                if (write < 4) {
+                    updated.setDone(!current.isDone());
+                } else if (write < 8) {
+                    updated.setDueDate(random.nextInt(5) == 0 ? null : EPOCH.plusHours(random.nextInt(1000)));
+                } else {
+                    updated.setPriority(random.nextInt(3));
+                }
+                repository.replace(current, updated);
+            }
+
+            LocalDateTime[][] ranges = {{null, EPOCH.plusHours(1000)}, {EPOCH.plusHours(100), EPOCH.plusHours(101)},
+                    {EPOCH.plusHours(250), EPOCH.plusHours(750)}, {null, EPOCH},
+                    {EPOCH.plusHours(999), EPOCH.plusYears(1)}};
+            for (LocalDateTime[] range : ranges) {
+                assertThat(ids(repository.findDueBetween(range[0], range[1], Integer.MAX_VALUE)))
+                        .as("%s %s", storage, Arrays.asList(range))
+                        .containsExactlyElementsOf(ids(expectedDue(repository, range[0], range[1])));
+            }
+            assertThat(repository.findDueBetween(null, EPOCH.plusYears(1), 7)).hasSize(7);
+            assertThat(repository.findNextDueDate(EPOCH.plusHours(500)))
+                    .isEqualTo(expectedDue(repository, EPOCH.plusHours(500), EPOCH.plusYears(1)).get(0).getDueDate());
+            assertThat(repository.findNextDueDate(EPOCH.plusYears(1))).isNull();
+        }
+    }
+
+    @Test
+    void dueAndOverdueQueriesAreOrderedAndLimited() {
+        TaskRepository repository = TestTasks.repository("map", 1000);
+        TaskService service = TestTasks.service(repository, 0);
+        LocalDateTime now = LocalDateTime.now();
+        // Past due dates are refused by the validator, so overdue tasks are stored as a restore would
+        List<Task> overdue = new ArrayList<>();
+        for (int hours : new int[]{1, 3, 2}) {
+            Task task = TestTasks.task("late " + hours, 1);
+            task.setDueDate(now.minusHours(hours));
+            overdue.add(task);
+        }
+        Task doneLate = TestTasks.task("done late", 1);
+        doneLate.setDueDate(now.minusHours(4));
+        doneLate.setDone(true);
+        overdue.add(doneLate);
+        repository.saveAll(overdue);
+        for (int minutes : new int[]{50, 10, 30, 90}) {
+            Task task = TestTasks.task("soon " + minutes, 2);
+            task.setDueDate(now.plusMinutes(minutes));
+            service.createTask(task);
+        }
+        service.createTask(TestTasks.task("no due date", 0));
+
+        assertThat(names(service.getOverdueTasks(100))).containsExactly("late 3", "late 2", "late 1");
+        assertThat(names(service.getDueTasks("PT1H", 100))).containsExactly("soon 10", "soon 30", "soon 50");
+        assertThat(service.getDueTasks("PT1H", 100)).containsEntry("hasMore", false);
+        assertThat(names(service.getDueTasks("PT2H", 2))).containsExactly("soon 10", "soon 30");
+        assertThat(service.getDueTasks("PT2H", 2)).containsEntry("hasMore", true);
+        assertThat(service.getDueTasks("PT5M", 10)).containsEntry("hasMore", false);
+        assertThat(names(service.getDueTasks("PT5M", 10))).isEmpty();
+
+        // Completing a task takes it out of both queries, reopening it brings it back
+        Long soonest = repository.findDueBetween(now, now.plusHours(1), 1).get(0).getId();
+        service.markAsDone(soonest);
+        assertThat(names(service.getDueTasks("PT1H", 100))).containsExactly("soon 30", "soon 50");
+        service.markTaskAsUndone(soonest);
+        assertThat(names(service.getDueTasks("PT1H", 100))).containsExactly("soon 10", "soon 30", "soon 50");
+
+        assertThatThrownBy(() -> service.getDueTasks("an hour", 10)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.getDueTasks("PT0S", 10)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.getDueTasks("-PT1H", 10)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.getDueTasks("PT1H", 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.getOverdueTasks(1001)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void notifierAnnouncesEachDeadlineOnce() throws Exception {
+        TaskRepository repository = TestTasks.repository("map", 1000);
+        TaskService service = TestTasks.service(repository, 0);
+        TaskDueNotifier notifier = new TaskDueNotifier(repository, Duration.ofMillis(500), "due-test",
+                new MetricsRegistry());
+        BlockingQueue<TaskDueEvent> events = new LinkedBlockingQueue<>();
+        Consumer<TaskDueEvent> listener = events::add;
+        notifier.subscribe(listener);
+        try {
+            // Created while the notifier sleeps without any deadline, so the write has to wake it up
+            Thread.sleep(100);
+            LocalDateTime due = LocalDateTime.now().plusSeconds(1);
+            Task announced = TestTasks.task("announced", 1);
+            announced.setDueDate(due);
+            Long id = service.createTask(announced).getId();
+            Task completed = TestTasks.task("completed first", 1);
+            completed.setDueDate(due);
+            service.markAsDone(service.createTask(completed).getId());
+
+            TaskDueEvent dueSoon = events.poll(5, TimeUnit.SECONDS);
+            assertThat(dueSoon).isNotNull();
+            assertThat(dueSoon.getType()).isEqualTo(TaskDueEvent.Type.DUE_SOON);
+            assertThat(dueSoon.getTask().getId()).isEqualTo(id);
+            assertThat(dueSoon.getFiredAt()).isAfterOrEqualTo(due.minus(Duration.ofMillis(500))).isBefore(due);
+
+            TaskDueEvent overdue = events.poll(5, TimeUnit.SECONDS);
+            assertThat(overdue).isNotNull();
+            assertThat(overdue.getType()).isEqualTo(TaskDueEvent.Type.OVERDUE);
+            assertThat(overdue.getTask().getId()).isEqualTo(id);
+            assertThat(overdue.getFiredAt()).isAfterOrEqualTo(due);
+
+            // Neither deadline is announced again, and the done task never is
+            assertThat(events.poll(500, TimeUnit.MILLISECONDS)).isNull();
+        } finally {
+            notifier.unsubscribe(listener);
+            notifier.stop();
+        }
+    }
+
+    // Undone tasks due in the range, in the index's order: due date, then ID
+    private static List<Task> expectedDue(TaskRepository repository, LocalDateTime from, LocalDateTime to) {
+        return repository.findAll().stream()
+                .filter(task -> !task.isDone() && task.getDueDate() != null)
+                .filter(task -> (from == null || !task.getDueDate().isBefore(from)) && task.getDueDate().isBefore(to))
+                .sorted(Comparator.comparing(Task::getDueDate).thenComparing(Task::getId))
+                .toList();
+    }
+
+    private static Task copy(Task task) {
+        Task copy = TestTasks.task(task.getName(), task.getPriority());
+        copy.setId(task.getId());
+        copy.setDueDate(task.getDueDate());
+        copy.setDone(task.isDone());
+        copy.setCreationDate(task.getCreationDate());
+        copy.setDoneDate(task.getDoneDate());
+        return copy;
+    }
+
+    private static List<Long> ids(List<Task> tasks) {
+        return tasks.stream().map(Task::getId).toList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> names(Map<String, Object> response) {
+        return ((List<Task>) response.get("tasks")).stream().map(Task::getName).toList();
+    }
+}
@@ -0,0 +1,177 @@
+package com.encora.breakable_toy.service;
+
+import com.encora.breakable_toy.TestTasks;
+import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.metrics.MetricsRegistry;
+import com.encora.breakable_toy.repository.TaskRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Cached getAllTasks responses are reused until a write that may change them, and never outlive one
+class TaskQueryCacheInvalidationTest {
+
+    private TaskRepository repository;
+    private TaskService service;
+
+    @BeforeEach
+    void createTasks() {
+        repository = TestTasks.repository("map", 1000);
+        service = TestTasks.service(repository, 100);
+        for (int i = 0; i < 15; i++) {
+            service.createTask(TestTasks.task("groceries " + i, i % 3));
+        }
+    }
+
+    @Test
+    void repeatedQueriesAreAnsweredFromTheCache() {
+        Map<String, Object> first = service.getAllTasks("priority", null, 1, null, null, null);
+
+        assertThat(service.getAllTasks("priority", null, 1, null, null, null)).isSameAs(first);
+        assertThat(service.getAllTasks("priority", null, 2, null, null, null)).isNotSameAs(first);
+    }
+
+    @Test
+    void createInvalidatesTheQueriesItMatches() {
+        Map<String, Object> cached = service.getAllTasks("priority", null, 1, null, null, 2);
+
+        service.createTask(TestTasks.task("urgent", 2));
+
+        Map<String, Object> fresh = service.getAllTasks("priority", null, 1, null, null, 2);
+        assertThat(fresh).isNotSameAs(cached);
+        assertThat(names(fresh)).contains("urgent");
+    }
+
+    @Test
+    void renameInvalidatesTheQueriesOfBothNames() {
+        Map<String, Object> oldName = service.getAllTasks(null, null, 1, null, "groceries 3", null);
+        Map<String, Object> newName = service.getAllTasks(null, null, 1, null, "laundry", null);
+        assertThat(newName).containsEntry("message", "No tasks found");
+
+        service.updateTask(4L, TestTasks.task("laundry", 0));
+
+        assertThat(service.getAllTasks(null, null, 1, null, "groceries 3", null))
+                .isNotSameAs(oldName)
+                .containsEntry("message", "No tasks found");
+        assertThat(names(service.getAllTasks(null, null, 1, null, "laundry", null))).containsExactly("laundry");
+    }
+
+    @Test
+    void doneAndUndoneInvalidateTheQueriesOfBothStates() {
+        Map<String, Object> undone = service.getAllTasks(null, null, 1, false, null, null);
+        assertThat(service.getAllTasks(null, null, 1, true, null, null)).containsEntry("message", "No tasks found");
+
+        service.markAsDone(1L);
+
+        assertThat(service.getAllTasks(null, null, 1, false, null, null)).isNotSameAs(undone);
+        assertThat(ids(service.getAllTasks(null, null, 1, true, null, null))).containsExactly(1L);
+
+        service.markTaskAsUndone(1L);
+
+        assertThat(service.getAllTasks(null, null, 1, true, null, null)).containsEntry("message", "No tasks found");
+    }
+
+    @Test
+    void deleteInvalidatesTheQueriesOfTheDeletedTask() {
+        Map<String, Object> cached = service.getAllTasks(null, null, 1, null, null, null);
+
+        service.deleteTask(1L);
+
+        Map<String, Object> fresh = service.getAllTasks(null, null, 1, null, null, null);
+        assertThat(fresh).isNotSameAs(cached);
+        assertThat(ids(fresh)).doesNotContain(1L);
+    }
+
+    @Test
+    void writesOutsideAQueryKeepItsResponse() {
+        Map<String, Object> cached = service.getAllTasks("dueDate", null, 1, true, null, null);
+
+        // Neither version of these tasks is done, so the done query cannot change
+        service.createTask(TestTasks.task("groceries new", 1));
+        service.updateTask(2L, TestTasks.task("groceries renamed", 1));
+        service.deleteTask(3L);
+
+        assertThat(service.getAllTasks("dueDate", null, 1, true, null, null)).isSameAs(cached);
+    }
+
+    @Test
+    void batchCreateInvalidatesTheQueriesItMatches() {
+        Map<String, Object> cached = service.getAllTasks(null, null, 1, null, "batch", null);
+
+        service.createTasks(List.of(TestTasks.task("batch one", 0), TestTasks.task("batch two", 1)));
+
+        assertThat(service.getAllTasks(null, null, 1, null, "batch", null)).isNotSameAs(cached);
+        assertThat(names(service.getAllTasks(null, null, 1, null, "batch", null)))
+                .containsExactly("batch one", "batch two");
+    }
+
+    @Test
+    void writesOnlyDropTheGroupsOfTheirTask() {
+        Map<String, Object> high = service.getAllTasks(null, null, 1, null, null, 2);
+        Map<String, Object> highUndone = service.getAllTasks(null, null, 1, false, null, 2);
+        Map<String, Object> lowUndone = service.getAllTasks(null, null, 1, false, null, 0);
+        Map<String, Object> all = service.getAllTasks(null, null, 1, null, null, null);
+
+        service.createTask(TestTasks.task("low", 0));
+
+        assertThat(service.getAllTasks(null, null, 1, null, null, 2)).isSameAs(high);
+        assertThat(service.getAllTasks(null, null, 1, false, null, 2)).isSameAs(highUndone);
+        assertThat(service.getAllTasks(null, null, 1, false, null, 0)).isNotSameAs(lowUndone);
+        assertThat(service.getAllTasks(null, null, 1, null, null, null)).isNotSameAs(all);
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedResponse() {
+        TaskQueryCache cache = new TaskQueryCache(2, new MetricsRegistry());
+        TaskQuery first = TaskQuery.compile(null, null, null, "first", null);
+        TaskQuery second = TaskQuery.compile(null, null, null, "second", null);
+        TaskQuery third = TaskQuery.compile(null, null, null, "third", null);
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<Map<String, Object>> loader = () -> Map.of("load", loads.incrementAndGet());
+
+        cache.get(first, 1, null, loader);
+        cache.get(second, 1, null, loader);
+        // Using the first response makes the second one the least recently used
+        cache.get(first, 1, null, loader);
+        cache.get(third, 1, null, loader);
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get(first, 1, null, loader)).containsEntry("load", 1);
+        assertThat(cache.get(third, 1, null, loader)).containsEntry("load", 3);
+        assertThat(cache.get(second, 1, null, loader)).containsEntry("load", 4);
+        assertThat(loads).hasValue(4);
+    }
+
+    @Test
+    void failedLoadsAreNotCached() {
+        TaskQueryCache cache = new TaskQueryCache(2, new MetricsRegistry());
+        TaskQuery query = TaskQuery.compile(null, null, null, null, null);
+
+        assertThatThrownBy(() -> cache.get(query, 1, null, () -> {
+            throw new IllegalArgumentException("Invalid page");
+        })).isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(cache.size()).isZero();
+        assertThat(cache.get(query, 1, null, () -> Map.of("tasks", List.of()))).containsKey("tasks");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Task> tasks(Map<String, Object> response) {
+        return (List<Task>) response.get("tasks");
+    }
+
+    private static List<String> names(Map<String, Object> response) {
+        return tasks(response).stream().map(Task::getName).toList();
+    }
+
+    private static List<Long> ids(Map<String, Object> response) {
+        return tasks(response).stream().map(Task::getId).toList();
+    }
+}
@@ -0,0 +1,159 @@
+package com.encora.breakable_toy.service;
+
+import com.encora.breakable_toy.TestTasks;
+import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.metrics.MetricsRegistry;
+import com.encora.breakable_toy.repository.TaskRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Walking a query page by page with keyset cursors visits every match once, in query order
+class TaskQueryEngineCursorTest {
+
+    private static final int PAGE_SIZE = 7;
+
+    private static TaskRepository repository;
+    private static TaskQueryEngine engine;
+
+    @BeforeAll
+    static void createTasks() {
+        repository = TestTasks.repository("columnar", 1000);
+        engine = new TaskQueryEngine(repository, new MetricsRegistry());
+        SplittableRandom random = new SplittableRandom(42);
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            tasks.add(TestTasks.randomTask(random, i % 4 == 0 ? "Report" : "email"));
+        }
+        repository.saveAll(tasks);
+    }
+
+    static Stream<Arguments> queries() {
+        List<Arguments> queries = new ArrayList<>();
+        for (String[] sort : new String[][]{{null, null}, {"priority", null}, {"dueDate", null},
+                {"priority", "dueDate"}}) {
+            queries.add(Arguments.of(sort[0], sort[1], null, null, null));
+            queries.add(Arguments.of(sort[0], sort[1], false, null, 1));
+            queries.add(Arguments.of(sort[0], sort[1], null, "report", null));
+            queries.add(Arguments.of(sort[0], sort[1], true, "REP", 2));
+        }
+        return queries.stream();
+    }
+
+    @ParameterizedTest
+    @MethodSource("queries")
+    void cursorPagesCoverEveryMatchOnce(String sortBy, String sortOrder, Boolean done, String name, Integer priority) {
+        TaskQuery query = TaskQuery.compile(sortBy, sortOrder, done, name, priority);
+        List<Task> expected = repository.findAll().stream()
+                .filter(query::matches)
+                .sorted(query.comparator())
+                .toList();
+
+        List<Task> walked = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            TaskPage page = engine.findPageAfter(query, cursor, PAGE_SIZE);
+            assertThat(page.getTasks()).hasSizeLessThanOrEqualTo(PAGE_SIZE);
+            walked.addAll(page.getTasks());
+            cursor = page.getNextCursor();
+            // Only the last page has no cursor, and it is never followed by an empty page
+            if (cursor != null) {
+                assertThat(page.getTasks()).hasSize(PAGE_SIZE);
+            }
+            assertThat(++pages).isLessThanOrEqualTo(expected.size() / PAGE_SIZE + 1);
+        } while (cursor != null);
+
+        assertThat(walked).containsExactlyElementsOf(expected);
+    }
+
+    @ParameterizedTest
+    @MethodSource("queries")
+    void cursorPagesMatchNumberedPages(String sortBy, String sortOrder, Boolean done, String name, Integer priority) {
+        TaskQuery query = TaskQuery.compile(sortBy, sortOrder, done, name, priority);
+
+        String cursor = null;
+        for (int page = 1; ; page++) {
+            TaskPage numbered = engine.findPage(query, page, PAGE_SIZE);
+            TaskPage keyset = engine.findPageAfter(query, cursor, PAGE_SIZE);
+            assertThat(keyset.getTasks()).containsExactlyElementsOf(numbered.getTasks());
+            cursor = keyset.getNextCursor();
+            if (cursor == null) {
+                assertThat(page).isEqualTo(Math.max(1, (numbered.getTotalTasks() + PAGE_SIZE - 1) / PAGE_SIZE));
+                return;
+            }
+        }
+    }
+
+    @Test
+    void cursorsSurviveWritesBetweenPages() {
+        TaskRepository repository = TestTasks.repository("map", 1000);
+        TaskService service = TestTasks.service(repository, 100);
+        for (int i = 0; i < 25; i++) {
+            service.createTask(TestTasks.task("task " + i, i % 3));
+        }
+
+        Map<String, Object> first = service.getAllTasks("priority", null, 1, null, null, null, "");
+        List<Long> walked = new ArrayList<>(ids(first));
+        // A new task sorting before the cursor and the deletion of a task already returned shift numbered pages,
+        // the keyset continues right after the last task returned
+        service.createTask(TestTasks.task("late", 2));
+        service.deleteTask(walked.get(0));
+        String cursor = (String) first.get("nextCursor");
+        while (cursor != null) {
+            Map<String, Object> page = service.getAllTasks("priority", null, 1, null, null, null, cursor);
+            walked.addAll(ids(page));
+            cursor = (String) page.get("nextCursor");
+        }
+
+        assertThat(walked).doesNotHaveDuplicates().hasSize(25).doesNotContain(26L);
+    }
+
+    @Test
+    void numberedPagesHandOutTheCursorOfTheirLastTask() {
+        TaskRepository repository = TestTasks.repository("map", 1000);
+        TaskService service = TestTasks.service(repository, 0);
+        for (int i = 0; i < 25; i++) {
+            service.createTask(TestTasks.task("task " + i, i % 3));
+        }
+
+        Map<String, Object> second = service.getAllTasks("priority", null, 2, null, null, null);
+        Map<String, Object> third = service.getAllTasks("priority", null, 3, null, null, null);
+
+        assertThat(ids(service.getAllTasks("priority", null, 1, null, null, null, (String) second.get("nextCursor"))))
+                .isEqualTo(ids(third));
+        assertThat(third).doesNotContainKey("nextCursor");
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        TaskQuery byPriority = TaskQuery.compile("priority", null, null, null, null);
+        TaskQuery byBoth = TaskQuery.compile("priority", "dueDate", null, null, null);
+        TaskQuery byDueDate = TaskQuery.compile("dueDate", null, null, null, null);
+
+        assertThatThrownBy(() -> engine.findPageAfter(byPriority, "high,3", PAGE_SIZE))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> engine.findPageAfter(byPriority, "17", PAGE_SIZE))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> engine.findPageAfter(byBoth, "2,3", PAGE_SIZE))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> engine.findPageAfter(byDueDate, "tomorrow,3", PAGE_SIZE))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Long> ids(Map<String, Object> response) {
+        return ((List<Task>) response.get("tasks")).stream().map(Task::getId).toList();
+    }
+}
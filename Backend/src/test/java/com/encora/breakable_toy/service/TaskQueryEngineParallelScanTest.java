@@ -0,0 +1,110 @@
+package com.encora.breakable_toy.service;
+
+import com.encora.breakable_toy.TestTasks;
+import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.metrics.MetricsRegistry;
+import com.encora.breakable_toy.repository.TaskRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Full scans split over a pool return the same pages and counts as a single thread scanning the table
+class TaskQueryEngineParallelScanTest {
+
+    // Several scan chunks per worker
+    private static final int TASKS = 50_000;
+    private static final int PAGE_SIZE = 2_500;
+
+    private static final List<TaskRepository> repositories = new ArrayList<>();
+    private static ForkJoinPool scanPool;
+
+    @BeforeAll
+    static void createTasks() {
+        scanPool = new ForkJoinPool(4);
+        for (String storage : new String[]{"map", "columnar"}) {
+            TaskRepository repository = TestTasks.repository(storage, 1000);
+            SplittableRandom random = new SplittableRandom(7);
+            List<Task> tasks = new ArrayList<>(TASKS);
+            for (int i = 0; i < TASKS; i++) {
+                tasks.add(TestTasks.randomTask(random, i % 10 == 0 ? "Invoice" : "meeting"));
+            }
+            repository.saveAll(tasks);
+            repositories.add(repository);
+        }
+    }
+
+    @AfterAll
+    static void stopPool() {
+        scanPool.shutdownNow();
+    }
+
+    // Queries planned as full scans: no sort order, or a name search too short for the name index
+    static Stream<Arguments> queries() {
+        List<Arguments> queries = new ArrayList<>();
+        for (int storage = 0; storage < 2; storage++) {
+            queries.add(Arguments.of(storage, null, null, null, null, null));
+            queries.add(Arguments.of(storage, null, null, true, null, 2));
+            queries.add(Arguments.of(storage, null, null, null, "in", null));
+            queries.add(Arguments.of(storage, "priority", null, null, "v", null));
+            queries.add(Arguments.of(storage, "dueDate", null, false, "IN", null));
+            queries.add(Arguments.of(storage, "priority", "dueDate", null, "e", 1));
+        }
+        return queries.stream();
+    }
+
+    @ParameterizedTest
+    @MethodSource("queries")
+    void parallelPagesMatchSequentialPages(int storage, String sortBy, String sortOrder, Boolean done, String name,
+                                           Integer priority) {
+        TaskRepository repository = repositories.get(storage);
+        TaskQueryEngine sequential = new TaskQueryEngine(repository, new MetricsRegistry());
+        TaskQueryEngine parallel = new TaskQueryEngine(repository, new MetricsRegistry(), scanPool, 0);
+        TaskQuery query = TaskQuery.compile(sortBy, sortOrder, done, name, priority);
+        long matches = repository.findAll().stream().filter(query::matches).count();
+        assertThat(matches).isPositive();
+
+        int pages = (int) ((matches + PAGE_SIZE - 1) / PAGE_SIZE);
+        for (int page : new int[]{1, 2, pages / 2, pages, pages + 1}) {
+            if (page < 1) {
+                continue;
+            }
+            TaskPage expected = sequential.findPage(query, page, PAGE_SIZE);
+            TaskPage actual = parallel.findPage(query, page, PAGE_SIZE);
+            assertThat(actual.getTotalTasks()).isEqualTo(expected.getTotalTasks()).isEqualTo((int) matches);
+            assertThat(ids(actual)).containsExactlyElementsOf(ids(expected));
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("queries")
+    void parallelCursorPagesMatchSequentialCursorPages(int storage, String sortBy, String sortOrder, Boolean done,
+                                                       String name, Integer priority) {
+        TaskRepository repository = repositories.get(storage);
+        TaskQueryEngine sequential = new TaskQueryEngine(repository, new MetricsRegistry());
+        TaskQueryEngine parallel = new TaskQueryEngine(repository, new MetricsRegistry(), scanPool, 0);
+        TaskQuery query = TaskQuery.compile(sortBy, sortOrder, done, name, priority);
+
+        String cursor = null;
+        do {
+            TaskPage expected = sequential.findPageAfter(query, cursor, PAGE_SIZE);
+            TaskPage actual = parallel.findPageAfter(query, cursor, PAGE_SIZE);
+            assertThat(ids(actual)).containsExactlyElementsOf(ids(expected));
+            assertThat(actual.getNextCursor()).isEqualTo(expected.getNextCursor());
+            cursor = actual.getNextCursor();
+        } while (cursor != null);
+    }
+
+    private static List<Long> ids(TaskPage page) {
+        return page.getTasks().stream().map(Task::getId).toList();
+    }
+}
@@ -0,0 +1,110 @@
+package com.encora.breakable_toy.service;
+
+import com.encora.breakable_toy.TestTasks;
+import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.repository.TaskChange;
+import com.encora.breakable_toy.repository.TaskRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+// Batches are validated in one pass and stored with one repository call, all or nothing unless partial
+class TaskServiceBulkCreateTest {
+
+    private TaskRepository repository;
+    private TaskService service;
+
+    @BeforeEach
+    void createService() {
+        repository = TestTasks.repository("columnar", 1000);
+        service = TestTasks.service(repository, 100);
+        service.createTask(TestTasks.task("existing", 1));
+    }
+
+    @Test
+    void storesTheBatchWithConsecutiveIds() {
+        long revision = repository.getRevision();
+        List<Task> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(TestTasks.task("bulk " + i, i % 3));
+        }
+
+        List<Task> created = service.createTasks(batch);
+
+        assertThat(created).extracting(Task::getId).containsExactlyElementsOf(ids(2, 101));
+        assertThat(repository.count()).isEqualTo(101);
+        assertThat(repository.findCandidateIdsByName("bulk 42")).contains(44L);
+        // One change per task, in ID order, for the change feed
+        List<TaskChange> changes = repository.findChangesSince(revision, 1000);
+        assertThat(changes).extracting(TaskChange::getId).containsExactlyElementsOf(ids(2, 101));
+        assertThat(service.createTask(TestTasks.task("next", 0)).getId()).isEqualTo(102L);
+    }
+
+    @Test
+    void rejectsTheWholeBatchWhenOneTaskIsInvalid() {
+        long revision = repository.getRevision();
+        Task done = TestTasks.task("done already", 1);
+        done.setDone(true);
+        Task pastDue = TestTasks.task("past due", 1);
+        pastDue.setDueDate(LocalDateTime.now().minusDays(1));
+        List<Task> batch = Arrays.asList(TestTasks.task("fine", 0), TestTasks.task("", 0), null, done,
+                TestTasks.task("bad priority", 7), pastDue);
+
+        BulkValidationException error = catchThrowableOfType(() -> service.createTasks(batch),
+                BulkValidationException.class);
+
+        assertThat(error.getErrors()).extracting(BulkError::getIndex).containsExactly(1, 2, 3, 4, 5);
+        assertThat(error.getErrors()).extracting(BulkError::getError).doesNotContainNull();
+        assertThat(repository.count()).isEqualTo(1);
+        assertThat(repository.getRevision()).isEqualTo(revision);
+        assertThat(repository.getNextId()).isEqualTo(2L);
+    }
+
+    @Test
+    void createsTheValidTasksInPartialMode() {
+        List<Task> batch = Arrays.asList(TestTasks.task("first", 0), TestTasks.task(null, 0),
+                TestTasks.task("second", 2));
+
+        BulkCreateResult result = service.createTasks(batch, true);
+
+        assertThat(result.getCreatedTasks()).extracting(Task::getName).containsExactly("first", "second");
+        assertThat(result.getCreatedTasks()).extracting(Task::getId).containsExactly(2L, 3L);
+        assertThat(result.getErrors()).extracting(BulkError::getIndex).containsExactly(1);
+        assertThat(repository.count()).isEqualTo(3);
+    }
+
+    @Test
+    void invalidatesTheCachedPagesTheBatchShowsIn() {
+        Map<String, Object> cached = service.getAllTasks("priority", null, 1, null, null, 2);
+        assertThat(cached).containsEntry("message", "No tasks found");
+
+        service.createTasks(List.of(TestTasks.task("urgent one", 2), TestTasks.task("urgent two", 2)));
+
+        assertThat(service.getAllTasks("priority", null, 1, null, null, 2).get("tasks"))
+                .asList().hasSize(2);
+    }
+
+    @Test
+    void anEmptyBatchChangesNothing() {
+        long revision = repository.getRevision();
+
+        assertThat(service.createTasks(List.of())).isEmpty();
+        assertThat(repository.getRevision()).isEqualTo(revision);
+    }
+
+    private static List<Long> ids(long first, long last) {
+        List<Long> ids = new ArrayList<>();
+        for (long id = first; id <= last; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+}
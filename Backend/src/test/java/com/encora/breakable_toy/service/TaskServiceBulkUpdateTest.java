@@ -0,0 +1,169 @@
+package com.encora.breakable_toy.service;
+
+import com.encora.breakable_toy.TestTasks;
+import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.repository.TaskChange;
+import com.encora.breakable_toy.repository.TaskRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Bulk updates select tasks by ID, by filter or by both, and report what they changed
+class TaskServiceBulkUpdateTest {
+
+    private TaskRepository repository;
+    private TaskService service;
+
+    @BeforeEach
+    void createTasks() {
+        repository = TestTasks.repository("map", 1000);
+        service = TestTasks.service(repository, 100);
+        // IDs 1 to 12: "release" tasks are the odd IDs, priorities cycle through 0, 1 and 2
+        for (int i = 1; i <= 12; i++) {
+            service.createTask(TestTasks.task((i % 2 == 1 ? "release " : "chore ") + i, i % 3));
+        }
+    }
+
+    @Test
+    void marksTheFilteredTasksDone() {
+        BulkUpdateResult result = service.updateTasks(request("done", null, filter(null, "RELEASE", null), null));
+
+        assertThat(result.getMatched()).isEqualTo(6);
+        assertThat(result.getUpdated()).isEqualTo(6);
+        assertThat(result.getUnchanged()).isZero();
+        assertThat(repository.findAll()).allSatisfy(task -> {
+            assertThat(task.isDone()).isEqualTo(task.getId() % 2 == 1);
+            assertThat(task.getDoneDate() != null).isEqualTo(task.isDone());
+        });
+
+        // Tasks already done are counted as unchanged
+        BulkUpdateResult again = service.updateTasks(request("done", null, filter(null, "release", null), null));
+        assertThat(again.getMatched()).isEqualTo(6);
+        assertThat(again.getUpdated()).isZero();
+        assertThat(again.getUnchanged()).isEqualTo(6);
+    }
+
+    @Test
+    void changesTheListedTasksMatchingTheFilter() {
+        BulkUpdateResult result = service.updateTasks(
+                request("priority", ids(1, 2, 3, 3, 99), filter(false, null, null), 2));
+
+        assertThat(result.getMatched()).isEqualTo(3);
+        // Task 2 already has priority 2
+        assertThat(result.getUpdated()).isEqualTo(2);
+        assertThat(result.getUnchanged()).isEqualTo(1);
+        assertThat(result.getNotFound()).containsExactly(99L);
+        assertThat(repository.findById(1L).orElseThrow().getPriority()).isEqualTo(2);
+        assertThat(repository.findById(3L).orElseThrow().getPriority()).isEqualTo(2);
+        assertThat(repository.findById(4L).orElseThrow().getPriority()).isEqualTo(1);
+    }
+
+    @Test
+    void listedTasksOutsideTheFilterAreLeftAlone() {
+        service.markAsDone(1L);
+
+        BulkUpdateResult result = service.updateTasks(request("delete", ids(1, 2), filter(true, null, null), null));
+
+        assertThat(result.getMatched()).isEqualTo(1);
+        assertThat(result.getUpdated()).isEqualTo(1);
+        assertThat(result.getNotFound()).isEmpty();
+        assertThat(repository.findById(1L)).isEmpty();
+        assertThat(repository.findById(2L)).isPresent();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void undoneAndDeleteLeaveTheStatisticsOfTheRemovedVersions() {
+        service.updateTasks(request("done", null, filter(null, null, 0), null));
+        assertThat(repository.count(true, null)).isEqualTo(4);
+
+        BulkUpdateResult undone = service.updateTasks(request("undone", ids(3, 6), null, null));
+        assertThat(undone.getUpdated()).isEqualTo(2);
+        assertThat(repository.findById(3L).orElseThrow().getDoneDate()).isNull();
+
+        BulkUpdateResult deleted = service.updateTasks(request("delete", null, filter(true, null, null), null));
+        assertThat(deleted.getUpdated()).isEqualTo(2);
+        assertThat(repository.count()).isEqualTo(10);
+        assertThat(service.getAllTasks(null, null, 1, true, null, null)).containsEntry("message", "No tasks found");
+        assertThat((Map<String, Object>) service.getAnalytics("day").get("window")).containsEntry("completed", 0L);
+    }
+
+    @Test
+    void recordsOneChangePerUpdatedTask() {
+        long revision = repository.getRevision();
+
+        service.updateTasks(request("priority", null, filter(null, "chore", 0), 1));
+
+        // Chores with priority 0 are 6 and 12
+        assertThat(repository.findChangesSince(revision, 100))
+                .extracting(TaskChange::getId)
+                .containsExactlyInAnyOrder(6L, 12L);
+    }
+
+    @Test
+    void rejectsInvalidRequests() {
+        assertThatThrownBy(() -> service.updateTasks(request("archive", ids(1), null, null)))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Action must be");
+        assertThatThrownBy(() -> service.updateTasks(request("done", null, null, null)))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("ids, filter or both");
+        assertThatThrownBy(() -> service.updateTasks(request("priority", ids(1), null, null)))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Priority is required");
+        assertThatThrownBy(() -> service.updateTasks(request("priority", ids(1), null, 7)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.updateTasks(request("done", ids(1), null, 1)))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("only used");
+        assertThatThrownBy(() -> service.updateTasks(request("done", Arrays.asList(1L, null), null, null)))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("cannot be null");
+
+        assertThat(repository.findAll()).noneMatch(Task::isDone);
+    }
+
+    @Test
+    void concurrentBulkUpdatesAllApply() throws InterruptedException {
+        // Both requests select every task, each one moves a field the other one leaves alone
+        Thread priorities = new Thread(() -> service.updateTasks(request("priority", null, filter(null, null, null), 2)));
+        Thread done = new Thread(() -> service.updateTasks(request("done", null, filter(null, null, null), null)));
+        priorities.start();
+        done.start();
+        priorities.join();
+        done.join();
+
+        assertThat(repository.findAll()).allSatisfy(task -> {
+            assertThat(task.getPriority()).isEqualTo(2);
+            assertThat(task.isDone()).isTrue();
+        });
+    }
+
+    private static BulkUpdateRequest request(String action, List<Long> ids, BulkUpdateRequest.Filter filter,
+                                             Integer priority) {
+        BulkUpdateRequest request = new BulkUpdateRequest();
+        request.setAction(action);
+        request.setIds(ids);
+        request.setFilter(filter);
+        request.setPriority(priority);
+        return request;
+    }
+
+    private static BulkUpdateRequest.Filter filter(Boolean done, String name, Integer priority) {
+        BulkUpdateRequest.Filter filter = new BulkUpdateRequest.Filter();
+        filter.setDone(done);
+        filter.setName(name);
+        filter.setPriority(priority);
+        return filter;
+    }
+
+    private static List<Long> ids(long... ids) {
+        List<Long> list = new ArrayList<>();
+        for (long id : ids) {
+            list.add(id);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,115 @@
+package com.encora.breakable_toy.service;
+
+import com.encora.breakable_toy.TestTasks;
+import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.metrics.MetricsRegistry;
+import com.encora.breakable_toy.repository.TaskRepository;
+import com.encora.breakable_toy.utils.Pages;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// getAllTasks filters, sorts and pages in one pass; every page must be the slice of the fully filtered and sorted
+// table a naive implementation would return
+class TaskServiceGetAllTasksTest {
+
+    private static TaskRepository repository;
+    private static TaskService service;
+
+    @BeforeAll
+    static void createTasks() {
+        repository = TestTasks.repository("map", 1000);
+        service = TestTasks.service(repository, 0);
+        SplittableRandom random = new SplittableRandom(3);
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 237; i++) {
+            tasks.add(TestTasks.randomTask(random, i % 3 == 0 ? "Write report" : "call"));
+        }
+        repository.saveAll(tasks);
+    }
+
+    static Stream<Arguments> queries() {
+        List<Arguments> queries = new ArrayList<>();
+        for (String[] sort : new String[][]{{null, null}, {"priority", null}, {"dueDate", null},
+                {"priority", "dueDate"}, {"name", null}}) {
+            queries.add(Arguments.of(sort[0], sort[1], null, null, null));
+            queries.add(Arguments.of(sort[0], sort[1], true, null, null));
+            queries.add(Arguments.of(sort[0], sort[1], null, null, 0));
+            queries.add(Arguments.of(sort[0], sort[1], false, "REPORT", 2));
+            queries.add(Arguments.of(sort[0], sort[1], null, "al", null));
+        }
+        return queries.stream();
+    }
+
+    @ParameterizedTest
+    @MethodSource("queries")
+    void everyPageIsASliceOfTheSortedMatches(String sortBy, String sortOrder, Boolean done, String name,
+                                             Integer priority) {
+        TaskQuery query = TaskQuery.compile(sortBy, sortOrder, done, name, priority);
+        List<Task> expected = repository.findAll().stream().filter(query::matches).sorted(query.comparator()).toList();
+        int totalPages = Pages.totalPages(expected.size());
+        assertThat(totalPages).isGreaterThan(1);
+
+        for (int page = 1; page <= totalPages; page++) {
+            Map<String, Object> response = service.getAllTasks(sortBy, sortOrder, page, done, name, priority);
+            int from = (page - 1) * Pages.TASKS_PER_PAGE;
+            assertThat(response.get("tasks"))
+                    .isEqualTo(expected.subList(from, Math.min(from + Pages.TASKS_PER_PAGE, expected.size())));
+            assertThat(response).containsEntry("currentPage", page).containsEntry("totalPages", totalPages);
+        }
+    }
+
+    @Test
+    void answersNoTasksFoundWhenNothingMatches() {
+        assertThat(service.getAllTasks("priority", null, 1, null, "nothing like this", null))
+                .isEqualTo(Map.of("message", "No tasks found"));
+    }
+
+    @Test
+    void rejectsPagesOutOfRange() {
+        assertThatThrownBy(() -> service.getAllTasks(null, null, 0, null, null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        int totalPages = Pages.totalPages(repository.count());
+        assertThatThrownBy(() -> service.getAllTasks(null, null, totalPages + 1, null, null, null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Page number exceeds total pages");
+        // The page offset does not fit in an int
+        assertThatThrownBy(() -> service.getAllTasks("priority", null, Integer.MAX_VALUE, null, "report", null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Page number exceeds total pages");
+    }
+
+    @Test
+    void pagesPastTheStoredTasksStillCountTheMatches() {
+        TaskQueryEngine engine = new TaskQueryEngine(repository, new MetricsRegistry());
+        TaskQuery query = TaskQuery.compile(null, null, null, "report", null);
+        long matches = repository.findAll().stream().filter(query::matches).count();
+
+        TaskPage page = engine.findPage(query, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+        assertThat(page.getTasks()).isEmpty();
+        assertThat(page.getTotalTasks()).isEqualTo((int) matches);
+    }
+
+    @Test
+    void aPageLargerThanTheTableHoldsEveryMatch() {
+        TaskQueryEngine engine = new TaskQueryEngine(repository, new MetricsRegistry());
+        TaskQuery query = TaskQuery.compile(null, null, true, null, null);
+
+        TaskPage page = engine.findPage(query, 1, Integer.MAX_VALUE);
+
+        assertThat(page.getTasks())
+                .isEqualTo(repository.findAll().stream().filter(query::matches).sorted(query.comparator()).toList());
+    }
+}
@@ -0,0 +1,87 @@
+package com.encora.breakable_toy.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+// Completion averages and percentiles, checked against exact values computed from the recorded durations
+class AverageTimeTest {
+
+    @Test
+    void averagesDoNotWrapAfterADay() {
+        AverageTime averageTime = new AverageTime();
+        averageTime.addDuration(2, Duration.ofDays(3));
+        averageTime.addDuration(2, Duration.ofDays(1));
+        averageTime.addDuration(0, Duration.ofMinutes(30));
+
+        assertThat(averageTime.getHighTimeInMinutes()).isEqualTo(2 * 24 * 60);
+        assertThat(averageTime.getLowTimeInMinutes()).isEqualTo(30);
+        assertThat(averageTime.getMediumTimeInMinutes()).isZero();
+        assertThat(averageTime.getTotalTimeInMinutes()).isEqualTo((4 * 24 * 60 + 30) / 3);
+    }
+
+    @Test
+    void removedDurationsLeaveTheAveragesAndPercentiles() {
+        AverageTime averageTime = new AverageTime();
+        averageTime.addDuration(1, Duration.ofMinutes(10));
+        averageTime.addDuration(1, Duration.ofHours(10));
+        averageTime.removeDuration(1, Duration.ofHours(10));
+
+        assertThat(averageTime.getMediumTimeInMinutes()).isEqualTo(10);
+        assertThat(averageTime.getTotalTimeInMinutes()).isEqualTo(10);
+        assertThat(averageTime.getPercentileInMinutes(1, 100)).isBetween(9L, 10L);
+        assertThat(averageTime.getTotalPercentileInMinutes(99)).isBetween(9L, 10L);
+
+        averageTime.removeDuration(1, Duration.ofMinutes(10));
+        assertThat(averageTime.getMediumTimeInMinutes()).isZero();
+        assertThat(averageTime.getPercentileInMinutes(1, 50)).isZero();
+    }
+
+    @Test
+    void percentilesAreWithinTheHistogramError() {
+        SplittableRandom random = new SplittableRandom(9);
+        AverageTime averageTime = new AverageTime();
+        long[] seconds = new long[20_000];
+        for (int i = 0; i < seconds.length; i++) {
+            // Log-uniform from a second to a month, so every magnitude has values
+            seconds[i] = (long) Math.exp(random.nextDouble(Math.log(30L * 24 * 3600)));
+            averageTime.addDuration(i % 3, Duration.ofSeconds(seconds[i]));
+        }
+        Arrays.sort(seconds);
+
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            long exact = seconds[(int) Math.ceil(percentile / 100 * seconds.length) - 1] / 60;
+            assertThat((double) averageTime.getTotalPercentileInMinutes(percentile))
+                    .as("p%s", percentile)
+                    .isCloseTo(exact, within(Math.max(1, exact / 32.0)));
+        }
+    }
+
+    @Test
+    void histogramKeepsSmallValuesExactAndMerges() {
+        Histogram small = new Histogram();
+        for (long value = 0; value < 32; value++) {
+            small.record(value);
+        }
+        assertThat(small.percentile(0)).isZero();
+        assertThat(small.percentile(50)).isEqualTo(15);
+        assertThat(small.percentile(100)).isEqualTo(31);
+
+        Histogram large = new Histogram();
+        large.record(Long.MAX_VALUE);
+        large.record(-5);
+        large.merge(small);
+        assertThat(large.count()).isEqualTo(34);
+        assertThat(large.percentile(0)).isZero();
+        assertThat((double) large.percentile(100)).isCloseTo(Long.MAX_VALUE, within(Long.MAX_VALUE / 32.0));
+
+        large.remove(Long.MAX_VALUE);
+        assertThat(large.percentile(100)).isEqualTo(31);
+        assertThat(new Histogram().percentile(99)).isZero();
+    }
+}
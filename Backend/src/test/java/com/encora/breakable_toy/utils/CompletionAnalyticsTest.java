@@ -0,0 +1,149 @@
+package com.encora.breakable_toy.utils;
+
+import com.encora.breakable_toy.TestTasks;
+import com.encora.breakable_toy.entity.Task;
+import com.encora.breakable_toy.utils.CompletionAnalytics.Resolution;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Buckets rotate with the clock: a count leaves the window once its bucket is older than the ring, the slot is
+// reused by the new bucket, and taking back a count whose bucket rotated out changes nothing
+class CompletionAnalyticsTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2030, 1, 1, 0, 0, 30);
+
+    private final MutableClock clock = new MutableClock(START);
+    private final CompletionAnalytics analytics = new CompletionAnalytics(clock);
+
+    @Test
+    void countsCreationsAndCompletionsInTheirBuckets() {
+        Task open = task(START.minusMinutes(2), null, 0);
+        Task low = task(START.minusMinutes(3), START.minusMinutes(1), 0);
+        Task high = task(START.minusMinutes(3), START.minusMinutes(1).minusSeconds(60), 2);
+        analytics.add(open);
+        analytics.add(low);
+        analytics.add(high);
+
+        List<Map<String, Object>> buckets = buckets(Resolution.MINUTE);
+        assertThat(buckets).hasSize(60);
+        assertThat(buckets.get(59).get("start")).isEqualTo(START.withSecond(0));
+        assertThat(buckets.get(56)).containsEntry("created", 2L).containsEntry("completed", 0L);
+        assertThat(buckets.get(57)).containsEntry("created", 1L).containsEntry("completed", 1L);
+        assertThat(buckets.get(58)).containsEntry("created", 0L).containsEntry("completed", 1L)
+                .containsEntry("averageCompletionSeconds", 120L)
+                .containsEntry("completedByPriority", Map.of("low", 1L, "medium", 0L, "high", 0L));
+        assertThat(window(Resolution.MINUTE)).containsEntry("created", 3L).containsEntry("completed", 2L)
+                .containsEntry("averageCompletionSeconds", 90L)
+                .containsEntry("averageCompletionSecondsByPriority", Map.of("low", 120L, "medium", 0L, "high", 60L));
+        assertThat(window(Resolution.HOUR)).containsEntry("created", 3L).containsEntry("completed", 2L);
+        assertThat(window(Resolution.DAY)).containsEntry("created", 3L).containsEntry("completed", 2L);
+
+        // Undoing a completion takes it back out, the creation stays
+        analytics.replace(low, task(low.getCreationDate(), null, 0));
+        assertThat(window(Resolution.MINUTE)).containsEntry("created", 3L).containsEntry("completed", 1L)
+                .containsEntry("averageCompletionSeconds", 60L);
+        analytics.remove(open);
+        assertThat(window(Resolution.MINUTE)).containsEntry("created", 2L);
+    }
+
+    @Test
+    void bucketsRotateOutOfTheirRing() {
+        Task early = task(START, null, 1);
+        analytics.add(early);
+
+        // Still in the oldest minute bucket, then one minute too old for the minute ring
+        clock.advance(Duration.ofMinutes(59));
+        assertThat(buckets(Resolution.MINUTE).get(0)).containsEntry("created", 1L);
+        clock.advance(Duration.ofMinutes(1));
+        assertThat(window(Resolution.MINUTE)).containsEntry("created", 0L);
+        assertThat(window(Resolution.HOUR)).containsEntry("created", 1L);
+
+        // The new bucket takes the slot of the old one, which left nothing behind in it
+        Task late = task(LocalDateTime.now(clock), null, 1);
+        analytics.add(late);
+        assertThat(window(Resolution.MINUTE)).containsEntry("created", 1L);
+        assertThat(buckets(Resolution.MINUTE).get(59)).containsEntry("created", 1L);
+
+        // Taking back the rotated count neither goes negative nor touches the bucket now in its slot
+        analytics.remove(early);
+        assertThat(window(Resolution.MINUTE)).containsEntry("created", 1L);
+        assertThat(window(Resolution.HOUR)).containsEntry("created", 1L);
+
+        // Dates outside a ring are never counted in it
+        analytics.add(task(START.minusDays(31), null, 0));
+        analytics.add(task(LocalDateTime.now(clock).plusDays(1), null, 0));
+        assertThat(window(Resolution.DAY)).containsEntry("created", 1L);
+
+        clock.advance(Duration.ofDays(30));
+        assertThat(window(Resolution.DAY)).containsEntry("created", 0L);
+        assertThat(window(Resolution.HOUR)).containsEntry("created", 0L);
+    }
+
+    @Test
+    void clearDropsEveryBucket() {
+        analytics.add(task(START, START.plusSeconds(10), 2));
+        analytics.clear();
+        for (Resolution resolution : Resolution.values()) {
+            assertThat(window(resolution)).containsEntry("created", 0L).containsEntry("completed", 0L);
+        }
+    }
+
+    private Map<String, Object> window(Resolution resolution) {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> window = (Map<String, Object>) analytics.snapshot(resolution).get("window");
+        return window;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> buckets(Resolution resolution) {
+        return (List<Map<String, Object>>) analytics.snapshot(resolution).get("buckets");
+    }
+
+    private static Task task(LocalDateTime created, LocalDateTime done, int priority) {
+        Task task = TestTasks.task("counted", priority);
+        task.setCreationDate(created);
+        if (done != null) {
+            task.setDone(true);
+            task.setDoneDate(done);
+        }
+        return task;
+    }
+
+    // Clock moved by the tests, in UTC so local dates map to instants one to one
+    private static final class MutableClock extends Clock {
+        private Instant instant;
+
+        private MutableClock(LocalDateTime start) {
+            this.instant = start.toInstant(ZoneOffset.UTC);
+        }
+
+        private void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
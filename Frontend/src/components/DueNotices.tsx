@@ -0,0 +1,34 @@
+import React from "react";
+import { Alert, Container, Typography } from "@mui/material";
+import { useTasks } from "../context/TaskContext";
+
+// Defining the DueNotices component, listing the latest due soon and overdue events
+const DueNotices: React.FC = () => {
+  // Using the custom hook to access tasks context
+  const { dueEvents } = useTasks();
+
+  if (dueEvents.length === 0) {
+    return null;
+  }
+
+  return (
+    <Container sx={{ bgcolor: "#393939", padding: 3, marginTop: 3 }}>
+      <Typography variant="h5" sx={{ marginBottom: 1 }}>
+        <strong>Due Dates</strong>
+      </Typography>
+      {dueEvents.map((event) => (
+        <Alert
+          key={`${event.type}-${event.task.id}-${event.firedAt}`}
+          severity={event.type === "OVERDUE" ? "error" : "warning"}
+          sx={{ marginBottom: 1 }}
+        >
+          {event.task.name}{" "}
+          {event.type === "OVERDUE" ? "is overdue" : "is due soon"} (due{" "}
+          {event.task.dueDate})
+        </Alert>
+      ))}
+    </Container>
+  );
+};
+
+export default DueNotices;
@@ -3,9 +3,12 @@ import React, {
   useContext,
   useState,
   useEffect,
+  useCallback,
+  useRef,
   ReactNode,
 } from "react";
-import { Task } from "../models/Task";
+import { Task, TaskChange, TaskDueEvent } from "../models/Task";
+import axiosInstance from "../api/axiosConfig";
 import {
   getTasks,
   createTask as createTaskService,
@@ -38,8 +41,30 @@ interface TaskContextProps {
   };
   fetchAverageTime: () => void;
   updateAverageTime: () => void;
+  dueEvents: TaskDueEvent[];
 }
 
+// Query of the listed page, kept so a resync reloads the page the user is looking at
+interface TaskQuery {
+  page: number;
+  name?: string;
+  priority?: number;
+  done?: boolean;
+}
+
+// Number of tasks in a page of the server's responses
+const TASKS_PER_PAGE = 10;
+// Number of due date events kept, latest first
+const MAX_DUE_EVENTS = 5;
+// Delay gathering the changes of a burst into one statistics request, or one page reload
+const REFRESH_DELAY_MS = 500;
+
+// Whether a task matches the filters of a query, as the server applies them
+const matchesQuery = (task: Task, query: TaskQuery): boolean =>
+  (!query.name || task.name.toLowerCase().includes(query.name.toLowerCase())) &&
+  (query.priority === undefined || task.priority === query.priority) &&
+  (query.done === undefined || task.done === query.done);
+
 // Defining the shape of the TaskProvider's props
 interface TaskProviderProps {
   children: ReactNode;
@@ -65,13 +90,26 @@ export const TaskProvider: React.FC<TaskProviderProps> = ({ children }) => {
     lowTime: 0,
   });
 
+  // State to manage the latest due date events
+  const [dueEvents, setDueEvents] = useState<TaskDueEvent[]>([]);
+
+  // Listed tasks, read by the change feed listener outside of renders
+  const tasksRef = useRef<Task[]>([]);
+  tasksRef.current = tasks;
+  // Query of the listed page
+  const queryRef = useRef<TaskQuery>({ page: 1 });
+  // Pending debounced statistics request and page reload
+  const averageTimeTimer = useRef<ReturnType<typeof setTimeout>>();
+  const reloadTimer = useRef<ReturnType<typeof setTimeout>>();
+
   // Function to fetch tasks from the server
-  const fetchTasks = async (
+  const fetchTasks = useCallback(async (
     page: number = 1,
     name?: string,
     priority?: number,
     done?: boolean
   ): Promise<void> => {
+    queryRef.current = { page, name, priority, done };
     try {
       const response = await getTasks(
         undefined,
@@ -86,29 +124,61 @@ export const TaskProvider: React.FC<TaskProviderProps> = ({ children }) => {
       console.error("Error fetching tasks:", error);
       setTasks([]);
     }
-  };
+  }, []);
+
+  // Function to reload the listed page with its current query
+  const reloadTasks = useCallback((): Promise<void> => {
+    const { page, name, priority, done } = queryRef.current;
+    return fetchTasks(page, name, priority, done);
+  }, [fetchTasks]);
 
   // Function to fetch average time from the server
-  const fetchAverageTime = async (): Promise<void> => {
+  const fetchAverageTime = useCallback(async (): Promise<void> => {
     try {
       const data = await getAverageTime();
       setAverageTime(data);
     } catch (error) {
       console.error("Error fetching average time:", error);
     }
-  };
+  }, []);
 
-  // Function to update average time
-  const updateAverageTime = (): void => {
-    fetchAverageTime();
-  };
+  // Function to update average time, a burst of changes leads to a single request
+  const updateAverageTime = useCallback((): void => {
+    clearTimeout(averageTimeTimer.current);
+    averageTimeTimer.current = setTimeout(fetchAverageTime, REFRESH_DELAY_MS);
+  }, [fetchAverageTime]);
+
+  // Function to reload the listed page once a burst of changes is over
+  const scheduleReload = useCallback((): void => {
+    clearTimeout(reloadTimer.current);
+    reloadTimer.current = setTimeout(reloadTasks, REFRESH_DELAY_MS);
+  }, [reloadTasks]);
+
+  // Apply one change of the feed to the listed page
+  // Changed tasks are patched in place; a task leaving the page is removed and the page reloaded to fill the gap,
+  // and a new matching task is appended when the page is the last one, where the ID order puts it
+  const applyChange = useCallback((change: TaskChange): void => {
+    const saved = change.type === "SAVED" ? change.task : null;
+    if (saved && matchesQuery(saved, queryRef.current)) {
+      setTasks((current) =>
+        current.some((task) => task.id === change.id)
+          ? current.map((task) => (task.id === change.id ? saved : task))
+          : current.length < TASKS_PER_PAGE
+            ? [...current, saved]
+            : current
+      );
+    } else if (tasksRef.current.some((task) => task.id === change.id)) {
+      setTasks((current) => current.filter((task) => task.id !== change.id));
+      scheduleReload();
+    }
+  }, [scheduleReload]);
 
   // Helper function to update state after performing an action
+  // The server's change feed brings the change back to this client too, only the statistics are refreshed here
   const updateState = async (
     updateFunction: () => Promise<any>
   ): Promise<void> => {
     await updateFunction();
-    fetchTasks();
     updateAverageTime();
   };
 
@@ -132,7 +202,33 @@ export const TaskProvider: React.FC<TaskProviderProps> = ({ children }) => {
   useEffect(() => {
     fetchTasks();
     fetchAverageTime();
-  }, []);
+  }, [fetchTasks, fetchAverageTime]);
+
+  // Subscribe to the server's change feed so the listed tasks follow the changes made by every client
+  useEffect(() => {
+    const source = new EventSource(
+      `${axiosInstance.defaults.baseURL}/todos/changes/stream`
+    );
+    source.addEventListener("change", (event) => {
+      applyChange(JSON.parse((event as MessageEvent).data));
+      updateAverageTime();
+    });
+    // Deadlines coming up or passing, the task itself is unchanged
+    source.addEventListener("due", (event) => {
+      const dueEvent: TaskDueEvent = JSON.parse((event as MessageEvent).data);
+      setDueEvents((current) => [dueEvent, ...current].slice(0, MAX_DUE_EVENTS));
+    });
+    // The server no longer has the missed changes, so the page is reloaded with its current query
+    source.addEventListener("resync", () => {
+      reloadTasks();
+      fetchAverageTime();
+    });
+    return () => {
+      source.close();
+      clearTimeout(averageTimeTimer.current);
+      clearTimeout(reloadTimer.current);
+    };
+  }, [applyChange, updateAverageTime, reloadTasks, fetchAverageTime]);
 
   return (
     // Providing the context value to all child components
@@ -148,6 +244,7 @@ export const TaskProvider: React.FC<TaskProviderProps> = ({ children }) => {
         averageTime,
         fetchAverageTime,
         updateAverageTime,
+        dueEvents,
       }}
     >
       {children}
@@ -9,3 +9,18 @@ export interface Task {
   doneDate: string | null;
   dueDate: string | null;
 }
+
+// One task mutation pushed by the server's change feed, task is null when it was deleted
+export interface TaskChange {
+  revision: number;
+  type: "SAVED" | "DELETED";
+  id: number;
+  task: Task | null;
+}
+
+// A deadline of an undone task coming up or passing, pushed by the server's change feed
+export interface TaskDueEvent {
+  type: "DUE_SOON" | "OVERDUE";
+  task: Task;
+  firedAt: string;
+}
@@ -2,6 +2,7 @@ import React, { useState } from "react";
 import { Container, Typography } from "@mui/material";
 import SearchTask from "../components/SearchTask";
 import AverageTime from "../components/AverageTime";
+import DueNotices from "../components/DueNotices";
 import TaskTable from "../components/TaskTable";
 import { TaskProvider } from "../context/TaskContext";
 
@@ -46,6 +47,8 @@ const MainPage: React.FC = () => {
             searchCriteria={searchCriteria}
           />
         </Container>
+        {/* DueNotices component for displaying the tasks coming due or overdue */}
+        <DueNotices />
         {/* AverageTime component for displaying average time to complete tasks */}
         <AverageTime />
         <Typography